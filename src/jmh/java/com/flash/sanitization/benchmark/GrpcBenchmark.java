@@ -0,0 +1,178 @@
+package com.flash.sanitization.benchmark;
+
+import com.flash.sanitization.FlashSanitizerServiceApplication;
+import com.flash.sanitization.api.grpc.GrpcServer;
+import com.flash.sanitization.api.grpc.proto.SanitizeBatchRequest;
+import com.flash.sanitization.api.grpc.proto.SanitizeBatchResponse;
+import com.flash.sanitization.api.grpc.proto.SanitizeRequest;
+import com.flash.sanitization.api.grpc.proto.SanitizeResponse;
+import com.flash.sanitization.api.grpc.proto.SanitizerServiceGrpc;
+import com.flash.sanitization.db.exception.RecordExistsException;
+import com.flash.sanitization.db.record.ConfigRecord;
+import com.flash.sanitization.sanitizer.service.SanitizationService;
+import io.grpc.Grpc;
+import io.grpc.InsecureChannelCredentials;
+import io.grpc.ManagedChannel;
+import io.grpc.stub.StreamObserver;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * The same values sanitized over the rest api and over grpc, both on localhost: one at a time, as a batch of
+ * {@value #BATCH} and, for grpc only, as a stream of {@value #BATCH} over a single call. The value goes through the
+ * word, sql and html sanitizers, so the difference is mostly what it costs to get it to the service and back.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 5)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GrpcBenchmark {
+
+    private static final String INPUT_TYPE = "benchmark";
+    private static final String VALUE = "<p>a value with <b>some</b> html<script>x</script> and select * from it</p>";
+    private static final int BATCH = 100;
+
+    private ConfigurableApplicationContext context;
+    private HttpClient client;
+    private ManagedChannel channel;
+    private SanitizerServiceGrpc.SanitizerServiceBlockingStub blocking;
+    private SanitizerServiceGrpc.SanitizerServiceStub async;
+
+    private HttpRequest restRequest;
+    private HttpRequest restBatchRequest;
+    private SanitizeRequest grpcRequest;
+    private SanitizeBatchRequest grpcBatchRequest;
+
+    @Setup
+    public void setup() throws RecordExistsException {
+        context = new SpringApplicationBuilder(FlashSanitizerServiceApplication.class)
+            .profiles("h2")
+            .run(
+                "--server.port=0",
+                "--flash.sanitizer.grpc.port=0",
+                "--spring.jpa.show-sql=false",
+                "--logging.level.root=WARN",
+                "--flash.sanitizer.default.reload-interval=0s");
+
+        context.getBean(SanitizationService.class).createInputType(
+            INPUT_TYPE,
+            List.of(
+                new ConfigRecord(
+                    "benchmark-words",
+                    "word-sanitizer-factory",
+                    Map.of("mask", "***", "src", "CLASSPATH:default-word-list.txt")),
+                new ConfigRecord("sql-sanitizer", null, null),
+                new ConfigRecord("html-sanitizer", null, null)));
+
+        int restPort = ((WebServerApplicationContext) context).getWebServer().getPort();
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+        String item = "{\"inputType\":\"%s\",\"toSanitize\":\"%s\"}".formatted(INPUT_TYPE, VALUE);
+        restRequest = HttpRequest.newBuilder(URI.create("http://localhost:%d/flash/sanitize".formatted(restPort)))
+            .header("Content-Type", "application/json")
+            .POST(HttpRequest.BodyPublishers.ofString(item))
+            .build();
+        restBatchRequest = HttpRequest.newBuilder(
+                URI.create("http://localhost:%d/flash/sanitize/batch".formatted(restPort)))
+            .header("Content-Type", "application/json")
+            .POST(HttpRequest.BodyPublishers.ofString(IntStream.range(0, BATCH)
+                .mapToObj(i -> item)
+                .collect(Collectors.joining(",", "[", "]"))))
+            .build();
+
+        channel = Grpc.newChannelBuilderForAddress(
+                "localhost",
+                context.getBean(GrpcServer.class).getPort(),
+                InsecureChannelCredentials.create())
+            .build();
+        blocking = SanitizerServiceGrpc.newBlockingStub(channel);
+        async = SanitizerServiceGrpc.newStub(channel);
+
+        grpcRequest = SanitizeRequest.newBuilder().setInputType(INPUT_TYPE).setToSanitize(VALUE).build();
+        grpcBatchRequest = SanitizeBatchRequest.newBuilder()
+            .addAllRequests(IntStream.range(0, BATCH).mapToObj(i -> grpcRequest).toList())
+            .build();
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        context.close();
+    }
+
+    @Benchmark
+    public String rest() throws IOException, InterruptedException {
+        return client.send(restRequest, HttpResponse.BodyHandlers.ofString()).body();
+    }
+
+    @Benchmark
+    public SanitizeResponse grpc() {
+        return blocking.sanitize(grpcRequest);
+    }
+
+    @Benchmark
+    public String restBatch() throws IOException, InterruptedException {
+        return client.send(restBatchRequest, HttpResponse.BodyHandlers.ofString()).body();
+    }
+
+    @Benchmark
+    public SanitizeBatchResponse grpcBatch() {
+        return blocking.sanitizeBatch(grpcBatchRequest);
+    }
+
+    @Benchmark
+    public int grpcStream() throws ExecutionException, InterruptedException {
+        CompletableFuture<Integer> done = new CompletableFuture<>();
+        StreamObserver<SanitizeRequest> requests = async.sanitizeStream(new StreamObserver<>() {
+            private int responses;
+
+            @Override
+            public void onNext(SanitizeResponse response) {
+                responses++;
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                done.completeExceptionally(t);
+            }
+
+            @Override
+            public void onCompleted() {
+                done.complete(responses);
+            }
+        });
+
+        for (int i = 0; i < BATCH; i++) {
+            requests.onNext(grpcRequest);
+        }
+        requests.onCompleted();
+        return done.get();
+    }
+}
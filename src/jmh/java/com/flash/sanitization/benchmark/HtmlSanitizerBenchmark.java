@@ -0,0 +1,54 @@
+package com.flash.sanitization.benchmark;
+
+import com.flash.sanitization.sanitizer.implementation.HtmlSanitizer;
+import com.flash.sanitization.sanitizer.implementation.NoConfigSanitizer;
+import com.flash.sanitization.sanitizer.implementation.StreamingHtmlSanitizer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link HtmlSanitizer} and {@link StreamingHtmlSanitizer} on realistic and adversarial documents.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HtmlSanitizerBenchmark {
+
+    @Param({"article", "script", "adversarial"})
+    private String corpus;
+
+    @Param({"jsoup", "streaming"})
+    private String implementation;
+
+    private String input;
+    private NoConfigSanitizer htmlSanitizer;
+
+    @Setup
+    public void setup() {
+        input = Corpus.html(corpus);
+        htmlSanitizer = switch (implementation) {
+            case "jsoup" -> new HtmlSanitizer();
+            case "streaming" -> new StreamingHtmlSanitizer();
+            default -> throw new IllegalArgumentException("Unknown implementation " + implementation);
+        };
+    }
+
+    @Benchmark
+    public String sanitize() {
+        return htmlSanitizer.sanitize(input);
+    }
+}
@@ -0,0 +1,218 @@
+package com.flash.sanitization.benchmark;
+
+import com.flash.sanitization.FlashSanitizerServiceApplication;
+import com.flash.sanitization.db.exception.RecordExistsException;
+import com.flash.sanitization.db.record.ConfigRecord;
+import com.flash.sanitization.sanitizer.service.SanitizationService;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Throughput and latency of {@code /flash/sanitize} with a thousand concurrent connections, served by Tomcat's platform
+ * threads and by virtual threads. It's a load test rather than a JMH benchmark, run it with:
+ * <pre>
+ *     ./mvnw -Pbenchmark test-compile exec:java -Dexec.classpathScope=test \
+ *         -Dexec.mainClass=com.flash.sanitization.benchmark.SanitizeLoadTest
+ * </pre>
+ * Every request picks one of more input types than the pipeline cache holds, so most of them are cold and have to read
+ * their configuration from the database. The in memory database answers in microseconds, so every connection taken
+ * from the pool is held for a few milliseconds to make it behave like one across the network.
+ * <br />
+ * Set with system properties: {@code load.connections} (1000), {@code load.seconds} (20), {@code load.warmup} (5),
+ * {@code load.latency} in milliseconds (5), {@code load.inputTypes} (1000) and {@code load.cacheSize} (100).
+ */
+public class SanitizeLoadTest {
+
+    private static final int CONNECTIONS = Integer.getInteger("load.connections", 1_000);
+    private static final int SECONDS = Integer.getInteger("load.seconds", 20);
+    private static final int WARMUP = Integer.getInteger("load.warmup", 5);
+    private static final int LATENCY = Integer.getInteger("load.latency", 5);
+    private static final int INPUT_TYPES = Integer.getInteger("load.inputTypes", 1_000);
+    private static final int CACHE_SIZE = Integer.getInteger("load.cacheSize", 100);
+
+    public static void main(String[] args) throws Exception {
+        List<String> results = new ArrayList<>();
+        for (boolean virtual : new boolean[]{false, true}) {
+            results.add(run(virtual));
+        }
+
+        System.out.printf(
+            "%n%d connections, %d input types, cache of %d, %d ms per connection%n",
+            CONNECTIONS,
+            INPUT_TYPES,
+            CACHE_SIZE,
+            LATENCY);
+        System.out.printf(
+            "%-10s %10s %10s %10s %10s %8s%n", "threads", "req/s", "p50 ms", "p99 ms", "max ms", "errors");
+        results.forEach(System.out::println);
+    }
+
+    private static String run(boolean virtual) throws Exception {
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(FlashSanitizerServiceApplication.class)
+            .profiles("h2")
+            .initializers(initializing -> initializing.getBeanFactory().addBeanPostProcessor(new SlowDatabase()))
+            // as arguments, so they win over application.properties
+            .run(
+                "--server.port=0",
+                "--flash.sanitizer.grpc.port=0",
+                "--spring.threads.virtual.enabled=" + virtual,
+                "--spring.datasource.url=jdbc:h2:mem:load-%s;DB_CLOSE_DELAY=-1".formatted(virtual),
+                "--spring.jpa.show-sql=false",
+                "--logging.level.root=WARN",
+                // failed requests are counted, not logged
+                "--logging.level.com.flash.sanitization=OFF",
+                "--flash.sanitizer.default.reload-interval=0s",
+                "--flash.sanitizer.cache.change-poll-interval=0s",
+                "--flash.sanitizer.cache.max-size=" + CACHE_SIZE);
+
+        try {
+            SanitizationService sanitizationService = context.getBean(SanitizationService.class);
+            for (int i = 0; i < INPUT_TYPES; i++) {
+                createInputType(sanitizationService, i);
+            }
+
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            Load load = new Load(URI.create("http://localhost:%d/flash/sanitize".formatted(port)));
+
+            load.run(Duration.ofSeconds(WARMUP));
+            return load.run(Duration.ofSeconds(SECONDS)).format(virtual ? "virtual" : "platform");
+        } finally {
+            context.close();
+        }
+    }
+
+    private static void createInputType(SanitizationService sanitizationService, int i) throws RecordExistsException {
+        sanitizationService.createInputType(
+            "load-" + i,
+            List.of(new ConfigRecord(
+                "load-html-" + i,
+                "html-sanitizer-factory",
+                // stored as it is, the mapper removes empty values from it
+                new HashMap<>(Map.of("tags", "span")))));
+    }
+
+    /**
+     * Every connection stays with the caller for a while before it gets it, like a query over the network would.
+     */
+    private static class SlowDatabase implements BeanPostProcessor {
+
+        @Override
+        public Object postProcessAfterInitialization(Object bean, String beanName) {
+            if (!(bean instanceof DataSource dataSource)) {
+                return bean;
+            }
+
+            return new DelegatingDataSource(dataSource) {
+                @Override
+                public Connection getConnection() throws SQLException {
+                    Connection connection = super.getConnection();
+                    try {
+                        Thread.sleep(LATENCY);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return connection;
+                }
+            };
+        }
+    }
+
+    /**
+     * A thousand clients, each sending its next request as soon as it has the response to the last one.
+     */
+    private record Load(URI uri) {
+
+        Result run(Duration duration) throws InterruptedException {
+            HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(30))
+                .build();
+
+            AtomicBoolean running = new AtomicBoolean(true);
+            long[][] latencies = new long[CONNECTIONS][];
+            int[] errors = new int[CONNECTIONS];
+            List<Thread> clients = new ArrayList<>();
+
+            for (int c = 0; c < CONNECTIONS; c++) {
+                int connection = c;
+                clients.add(Thread.ofVirtual().start(() -> {
+                    long[] measured = new long[1024];
+                    int count = 0;
+                    while (running.get()) {
+                        long start = System.nanoTime();
+                        if (!send(client)) {
+                            errors[connection]++;
+                        }
+                        if (count == measured.length) {
+                            measured = Arrays.copyOf(measured, count * 2);
+                        }
+                        measured[count++] = System.nanoTime() - start;
+                    }
+                    latencies[connection] = Arrays.copyOf(measured, count);
+                }));
+            }
+
+            long start = System.nanoTime();
+            Thread.sleep(duration);
+            running.set(false);
+            for (Thread thread : clients) {
+                thread.join();
+            }
+            long elapsed = System.nanoTime() - start;
+
+            long[] all = Arrays.stream(latencies).flatMapToLong(Arrays::stream).sorted().toArray();
+            return new Result(all, Arrays.stream(errors).sum(), elapsed);
+        }
+
+        private boolean send(HttpClient client) {
+            int inputType = ThreadLocalRandom.current().nextInt(INPUT_TYPES);
+            HttpRequest request = HttpRequest.newBuilder(uri)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(
+                    "{\"inputType\":\"load-%d\",\"toSanitize\":\"<p>value <span>%d</span><script>x</script></p>\"}"
+                        .formatted(inputType, ThreadLocalRandom.current().nextInt())))
+                .build();
+            try {
+                return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200;
+            } catch (Exception e) {
+                return false;
+            }
+        }
+    }
+
+    private record Result(long[] latencies, int errors, long elapsed) {
+
+        String format(String threads) {
+            return "%-10s %10.0f %10.1f %10.1f %10.1f %8d".formatted(
+                threads,
+                latencies.length / (elapsed / 1e9),
+                percentile(0.50),
+                percentile(0.99),
+                latencies.length == 0 ? 0.0 : latencies[latencies.length - 1] / 1e6,
+                errors);
+        }
+
+        private double percentile(double percentile) {
+            return latencies.length == 0 ? 0.0 : latencies[(int) (percentile * (latencies.length - 1))] / 1e6;
+        }
+    }
+}
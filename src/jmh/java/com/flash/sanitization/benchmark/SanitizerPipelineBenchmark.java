@@ -0,0 +1,109 @@
+package com.flash.sanitization.benchmark;
+
+import com.flash.sanitization.sanitizer.implementation.HtmlSanitizer;
+import com.flash.sanitization.sanitizer.implementation.Sanitizer;
+import com.flash.sanitization.sanitizer.implementation.SqlSanitizer;
+import com.flash.sanitization.sanitizer.implementation.WordSanitizer;
+import com.flash.sanitization.sanitizer.pipeline.PipelineOptimizer;
+import com.flash.sanitization.sanitizer.pipeline.SanitizerPipeline;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the buffer reusing {@link SanitizerPipeline} with running the same stages one String at a time, and with
+ * the pipeline its adjacent word sanitizers are fused in, see {@link PipelineOptimizer}.
+ * <br />
+ * The REST requests run on virtual threads, a new one for every request, so both are measured on those as well. These
+ * include starting the thread.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SanitizerPipelineBenchmark {
+
+    /**
+     * word-sql: only buffer sanitizers.
+     * word-sql-html: a String sanitizer in between.
+     * words: three word sanitizers in a row, which the optimized pipeline runs as one.
+     */
+    @Param({"word-sql", "word-sql-html", "words"})
+    private String stages;
+
+    @Param({"short", "script"})
+    private String corpus;
+
+    private String input;
+    private List<Sanitizer> sanitizers;
+    private SanitizerPipeline pipeline;
+    private SanitizerPipeline optimized;
+
+    @Setup
+    public void setup() {
+        input = Corpus.sql(corpus);
+
+        WordSanitizer words = new WordSanitizer(List.of("users", "audit", "sessions", "password"), "***");
+        WordSanitizer moreWords = new WordSanitizer(List.of("login", "nightly", "cleanup"), "###");
+        WordSanitizer keywords = new WordSanitizer(List.of("select", "delete", "from", "where"), "");
+        sanitizers = switch (stages) {
+            case "word-sql" -> List.of(words, new SqlSanitizer(), moreWords);
+            case "word-sql-html" -> List.of(words, new SqlSanitizer(), new HtmlSanitizer(), moreWords);
+            case "words" -> List.of(words, moreWords, keywords);
+            default -> throw new IllegalArgumentException("Unknown stages " + stages);
+        };
+        pipeline = new SanitizerPipeline(sanitizers);
+        optimized = new SanitizerPipeline(sanitizers, Set.of(), PipelineOptimizer.optimize(sanitizers, null));
+    }
+
+    @Benchmark
+    public String pipeline() {
+        return pipeline.sanitize(input);
+    }
+
+    @Benchmark
+    public String optimized() {
+        return optimized.sanitize(input);
+    }
+
+    @Benchmark
+    public String sequential() {
+        String value = input;
+        for (Sanitizer sanitizer : sanitizers) {
+            value = sanitizer.sanitize(value);
+        }
+        return value;
+    }
+
+    @Benchmark
+    public String pipelineVirtual() throws Exception {
+        return onVirtualThread(this::pipeline);
+    }
+
+    @Benchmark
+    public String sequentialVirtual() throws Exception {
+        return onVirtualThread(this::sequential);
+    }
+
+    private static String onVirtualThread(Callable<String> task) throws Exception {
+        FutureTask<String> result = new FutureTask<>(task);
+        Thread.startVirtualThread(result);
+        return result.get();
+    }
+}
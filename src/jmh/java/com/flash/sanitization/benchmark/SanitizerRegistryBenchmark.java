@@ -0,0 +1,84 @@
+package com.flash.sanitization.benchmark;
+
+import com.flash.sanitization.FlashSanitizerServiceApplication;
+import com.flash.sanitization.db.exception.RecordExistsException;
+import com.flash.sanitization.db.record.ConfigRecord;
+import com.flash.sanitization.sanitizer.pipeline.SanitizerPipeline;
+import com.flash.sanitization.sanitizer.registry.SanitizerRegistry;
+import com.flash.sanitization.sanitizer.service.SanitizationService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link SanitizerRegistry#getPipeline(String)} against an in memory H2 database. Hot finds the pipeline in the cache,
+ * cold has to read the configuration from the database and construct every sanitizer again.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SanitizerRegistryBenchmark {
+
+    private static final String INPUT_TYPE = "benchmark";
+
+    private ConfigurableApplicationContext context;
+    private SanitizerRegistry registry;
+
+    @Setup
+    public void setup() throws RecordExistsException {
+        context = new SpringApplicationBuilder(FlashSanitizerServiceApplication.class)
+            .web(WebApplicationType.NONE)
+            .profiles("h2")
+            .properties(
+                "spring.jpa.show-sql=false",
+                "logging.level.root=WARN",
+                "flash.sanitizer.default.reload-interval=0s")
+            .run();
+
+        context.getBean(SanitizationService.class).createInputType(
+            INPUT_TYPE,
+            List.of(
+                new ConfigRecord(
+                    "benchmark-words",
+                    "word-sanitizer-factory",
+                    Map.of("mask", "***", "src", "CLASSPATH:default-word-list.txt")),
+                new ConfigRecord("sql-sanitizer", null, null),
+                new ConfigRecord("html-sanitizer", null, null)));
+
+        registry = context.getBean(SanitizerRegistry.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public SanitizerPipeline hot() {
+        return registry.getPipeline(INPUT_TYPE);
+    }
+
+    @Benchmark
+    public SanitizerPipeline cold() {
+        registry.clearCache();
+        return registry.getPipeline(INPUT_TYPE);
+    }
+}
@@ -0,0 +1,67 @@
+package com.flash.sanitization.benchmark;
+
+import com.flash.sanitization.sanitizer.implementation.WordSanitizer;
+import com.flash.sanitization.sanitizer.pipeline.SanitizerPipeline;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sanitizes a single value of ~10MB in one go and in segments on a fork-join pool with as many threads as there are
+ * processors, see {@link SanitizerPipeline#sanitize(String, int, ForkJoinPool)}. The speedup is bound by the number of
+ * processors, on a single one the segmented run only shows the cost of splitting and joining.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SegmentedPipelineBenchmark {
+
+    @Param({"65536", "262144"})
+    private int segmentLength;
+
+    private String input;
+    private SanitizerPipeline pipeline;
+    private ForkJoinPool pool;
+
+    @Setup
+    public void setup() {
+        List<String> words = Corpus.words(1_000);
+        input = Corpus.text(words).repeat(100);
+
+        pipeline = new SanitizerPipeline(List.of(
+            WordSanitizer.of(words.subList(0, 500), "***"),
+            WordSanitizer.of(words.subList(500, 1_000), "")));
+        pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public String whole() {
+        return pipeline.sanitize(input);
+    }
+
+    @Benchmark
+    public String segmented() {
+        return pipeline.sanitize(input, segmentLength, pool);
+    }
+}
@@ -0,0 +1,64 @@
+package com.flash.sanitization.benchmark;
+
+import com.flash.sanitization.sanitizer.implementation.SqlSanitizer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the single pass lexer in {@link SqlSanitizer} with the chain of regular expressions it replaced.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SqlSanitizerBenchmark {
+
+    @Param({"short", "clean", "script", "adversarial"})
+    private String corpus;
+
+    private String input;
+
+    private final SqlSanitizer sqlSanitizer = new SqlSanitizer();
+
+    @Setup
+    public void setup() {
+        input = Corpus.sql(corpus);
+    }
+
+    @Benchmark
+    public String lexer() {
+        return sqlSanitizer.sanitize(input);
+    }
+
+    @Benchmark
+    public String regex() {
+        return legacySanitize(input);
+    }
+
+    /**
+     * The implementation the lexer replaced.
+     */
+    static String legacySanitize(String toSanitize) {
+        return toSanitize
+            .replaceAll("(?i)--.*?$", "")
+            .replaceAll("(?i)/\\*.*?\\*/", "")
+            .replaceAll("(?i)\\bDROP\\b", "")
+            .replaceAll("(?i)\\bDELETE\\b", "")
+            .replaceAll("(?i)\\bINSERT\\b", "")
+            .replaceAll("(?i)\\bUPDATE\\b", "")
+            .trim();
+    }
+}
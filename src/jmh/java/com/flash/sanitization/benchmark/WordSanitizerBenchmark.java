@@ -0,0 +1,64 @@
+package com.flash.sanitization.benchmark;
+
+import com.flash.sanitization.sanitizer.implementation.WordSanitizer;
+import com.flash.sanitization.sanitizer.matcher.AhoCorasickMatcher;
+import com.flash.sanitization.sanitizer.matcher.CompactTrieMatcher;
+import com.flash.sanitization.sanitizer.matcher.WordMatcher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link WordSanitizer} on ~100KB of text with word lists of different sizes, and the time it takes to compile the
+ * word lists, for both kinds of {@link WordMatcher}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WordSanitizerBenchmark {
+
+    @Param({"10", "1000", "10000", "100000"})
+    private int words;
+
+    @Param({"automaton", "trie"})
+    private String matcher;
+
+    private List<String> wordList;
+    private String input;
+    private WordSanitizer wordSanitizer;
+
+    @Setup
+    public void setup() {
+        wordList = Corpus.words(words);
+        input = Corpus.text(wordList);
+        wordSanitizer = new WordSanitizer(compile(), "***");
+    }
+
+    @Benchmark
+    public String sanitize() {
+        return wordSanitizer.sanitize(input);
+    }
+
+    @Benchmark
+    public WordMatcher compile() {
+        return switch (matcher) {
+            case "automaton" -> AhoCorasickMatcher.compile(wordList);
+            case "trie" -> CompactTrieMatcher.compile(wordList);
+            default -> throw new IllegalArgumentException("Unknown matcher " + matcher);
+        };
+    }
+}
@@ -1,12 +1,27 @@
 package com.flash.sanitization;
 
+import com.flash.sanitization.cli.DictionaryCompiler;
+import com.flash.sanitization.cli.FileSanitizer;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 
+import java.util.Arrays;
+
 @SpringBootApplication(scanBasePackages = "com.flash.sanitization")
 public class FlashSanitizerServiceApplication {
 
 	public static void main(String[] args) {
+		// offline tools run without starting the service
+		if (args.length > 0 && DictionaryCompiler.COMMAND.equals(args[0])) {
+			System.exit(DictionaryCompiler.run(Arrays.copyOfRange(args, 1, args.length)));
+		}
+		if (args.length > 0 && FileSanitizer.COMMAND.equals(args[0])) {
+			System.exit(FileSanitizer.run(Arrays.copyOfRange(args, 1, args.length)));
+		}
+		if (args.length > 0 && FileSanitizer.COLUMNS_COMMAND.equals(args[0])) {
+			System.exit(FileSanitizer.runColumns(Arrays.copyOfRange(args, 1, args.length)));
+		}
+
 		SpringApplication.run(FlashSanitizerServiceApplication.class, args);
 	}
 
@@ -1,23 +1,57 @@
 package com.flash.sanitization.api.controller;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.flash.sanitization.api.representation.PipelineStageResponse;
 import com.flash.sanitization.api.representation.SanitizerRequest;
 import com.flash.sanitization.api.representation.SanitizerResponse;
+import com.flash.sanitization.sanitizer.columns.ColumnFormat;
+import com.flash.sanitization.sanitizer.columns.ColumnSanitizer;
+import com.flash.sanitization.sanitizer.implementation.StreamingSanitizer;
+import com.flash.sanitization.sanitizer.implementation.WordSanitizer;
+import com.flash.sanitization.sanitizer.pipeline.PipelineOptimizer;
 import com.flash.sanitization.sanitizer.service.SanitizationService;
+import com.flash.sanitization.sanitizer.service.SanitizationService.BatchItem;
+import com.flash.sanitization.sanitizer.service.SanitizationService.BatchResult;
+import com.flash.sanitization.sanitizer.service.SanitizationService.LineFormat;
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.ExampleObject;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import org.apache.commons.lang3.StringUtils;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.slf4j.MDC;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
 import java.util.UUID;
 
 @RestController
@@ -27,6 +61,7 @@ import java.util.UUID;
 public class SanitizerController {
 
     private final SanitizationService sanitizationService;
+    private final ObjectMapper objectMapper;
 
     @Operation(
         summary = "sanitize a string based on input type",
@@ -113,4 +148,355 @@ public class SanitizerController {
 
         return ResponseEntity.ok(response);
     }
+
+    @Operation(
+        summary = "the stages the pipeline of an input type runs",
+        description = "Adjacent word sanitizers are fused into a single stage that scans the text once for all of "
+            + "their words, with the same result as running them one after the other. Every other sanitizer is a "
+            + "stage of its own.",
+        responses = {
+            @ApiResponse(
+                responseCode = "200",
+                description = "The stages, in the order they run",
+                content = @Content(
+                    mediaType = "application/json",
+                    array = @ArraySchema(schema = @Schema(implementation = PipelineStageResponse.class)),
+                    examples = @ExampleObject(
+                        value = "[{\"sanitizers\":[\"profanity\",\"sql-keywords\"],\"implementation\":\"WordSanitizer\","
+                            + "\"fused\":true,\"words\":1200}, "
+                            + "{\"sanitizers\":[\"html-sanitizer\"],\"implementation\":\"HtmlSanitizer\",\"fused\":false}]"
+                    )
+                )
+            ),
+            @ApiResponse(
+                responseCode = "500",
+                description = "The input type does not match any configuration, or an unexpected error",
+                content = @Content(
+                    mediaType = "application/json",
+                    schema = @Schema(implementation = SanitizerResponse.class)
+                )
+            )
+        }
+    )
+    @GetMapping("/sanitize/plan")
+    public ResponseEntity<List<PipelineStageResponse>> plan(
+        @Parameter(description = "The input type, the default sanitizer is used if there is none")
+        @RequestParam(required = false) String inputType)
+    {
+
+        MDC.put("requestID", UUID.randomUUID().toString());
+
+        List<PipelineStageResponse> stages = sanitizationService.getPlan(inputType)
+            .stream()
+            .map(stage -> {
+                PipelineStageResponse response = new PipelineStageResponse();
+                response.setSanitizers(stage.sanitizers());
+                response.setImplementation(PipelineOptimizer.implementation(stage.sanitizer()));
+                response.setFused(stage.fused());
+                if (stage.fused() && stage.sanitizer() instanceof WordSanitizer words) {
+                    response.setWords(words.getMatcher().getWordCount());
+                }
+                return response;
+            })
+            .toList();
+
+        return ResponseEntity.ok(stages);
+    }
+
+    @Operation(
+        summary = "sanitize a batch of strings based on their input types",
+        description = "Sanitizes every item the same way as /flash/sanitize would, in parallel. The responses are in "
+            + "the same order as the requests. An item that fails doesn't fail the batch, its response contains the "
+            + "error message instead.",
+        requestBody = @io.swagger.v3.oas.annotations.parameters.RequestBody(
+            description = "Strings to be sanitized",
+            content = @Content(
+                array = @ArraySchema(schema = @Schema(implementation = SanitizerRequest.class)),
+                examples = @ExampleObject(
+                    value = "[{ \"requestId\": \"1\", \"toSanitize\": \"<script>alert('xss')</script>\", \"inputType\": \"html\" }, "
+                        + "{ \"requestId\": \"2\", \"toSanitize\": \"DROP TABLE users\", \"inputType\": \"sql\" }]"
+                )
+            )
+        ),
+        responses = {
+            @ApiResponse(
+                responseCode = "200",
+                description = "Batch processed, check the individual responses for errors",
+                content = @Content(
+                    mediaType = "application/json",
+                    array = @ArraySchema(schema = @Schema(implementation = SanitizerResponse.class)),
+                    examples = @ExampleObject(
+                        value = "[{\"requestId\":\"1\",\"sanitized\":\"\"}, "
+                            + "{\"requestId\":\"2\",\"message\":\"Configuration or Request Error: Could not find a sanitizer matching '{sql}'\"}]"
+                    )
+                )
+            ),
+            @ApiResponse(
+                responseCode = "400",
+                description = "Bad request - too many items",
+                content = @Content(
+                    mediaType = "application/json",
+                    schema = @Schema(implementation = SanitizerResponse.class)
+                )
+            )
+        }
+    )
+    @PostMapping("/sanitize/batch")
+    public ResponseEntity<List<SanitizerResponse>> sanitizeBatch(@RequestBody List<SanitizerRequest> sanitizerRequests) {
+
+        MDC.put("requestID", UUID.randomUUID().toString());
+
+        List<BatchItem> items = sanitizerRequests
+            .stream()
+            .map(request -> Objects.isNull(request) ?
+                new BatchItem(null, null) :
+                new BatchItem(request.getInputType(), request.getToSanitize()))
+            .toList();
+
+        List<BatchResult> results = sanitizationService.sanitizeBatch(items);
+
+        List<SanitizerResponse> responses = new ArrayList<>(results.size());
+        for (int i = 0; i < results.size(); i++) {
+            SanitizerRequest request = sanitizerRequests.get(i);
+            BatchResult result = results.get(i);
+
+            SanitizerResponse response = new SanitizerResponse();
+            response.setRequestId(Objects.isNull(request) ? null : request.getRequestId());
+            response.setSanitized(result.sanitized());
+            response.setMessage(result.error());
+            responses.add(response);
+        }
+
+        return ResponseEntity.ok(responses);
+    }
+
+    @Operation(
+        summary = "sanitize a large text based on input type, streaming it",
+        description = "The request body is the raw text to sanitize, the sanitized text is written to the response "
+            + "while the request is still being read, so the text never has to be held in memory as a whole. "
+            + "Errors that happen after the response started can't change the status anymore.",
+        requestBody = @io.swagger.v3.oas.annotations.parameters.RequestBody(
+            description = "Text to be sanitized",
+            content = @Content(
+                mediaType = "text/plain",
+                examples = @ExampleObject(value = "SELECT * FROM users; DROP TABLE users -- bye")
+            )
+        ),
+        responses = {
+            @ApiResponse(
+                responseCode = "200",
+                description = "Sanitization successful",
+                content = @Content(
+                    mediaType = "text/plain",
+                    examples = @ExampleObject(value = "SELECT * FROM users;  TABLE users")
+                )
+            ),
+            @ApiResponse(
+                responseCode = "500",
+                description = "The input type does not match any configuration, or an unexpected error",
+                content = @Content(
+                    mediaType = "application/json",
+                    schema = @Schema(implementation = SanitizerResponse.class)
+                )
+            )
+        }
+    )
+    @PostMapping("/sanitize/stream")
+    public void sanitizeStream(
+        @Parameter(description = "The input type, the default sanitizer is used if there is none")
+        @RequestParam(required = false) String inputType,
+        @RequestParam(required = false) String requestId,
+        HttpServletRequest request,
+        HttpServletResponse response) throws IOException
+    {
+
+        MDC.put("requestID",
+            StringUtils.isEmpty(requestId) ?
+                UUID.randomUUID().toString() :
+                requestId);
+
+        // resolve it before writing anything, so configuration errors still get a proper response
+        StreamingSanitizer sanitizer = sanitizationService.streamingSanitizer(inputType);
+
+        Charset charset = Objects.isNull(request.getCharacterEncoding()) ?
+            StandardCharsets.UTF_8 :
+            Charset.forName(request.getCharacterEncoding());
+
+        response.setContentType("text/plain");
+        response.setCharacterEncoding(charset.name());
+
+        try (Reader reader = new InputStreamReader(request.getInputStream(), charset);
+             Writer writer = sanitizer.sanitizing(response.getWriter()))
+        {
+            reader.transferTo(writer);
+        }
+    }
+
+    @Operation(
+        summary = "sanitize a stream of requests, one per line",
+        description = "The request body is newline delimited json, a request like the ones of /flash/sanitize on every "
+            + "line. A response is written for every one of them in the same order while the rest are still being "
+            + "read, so the stream can be as long as needed. A line that fails doesn't fail the stream, its response "
+            + "contains the error message instead. Blank lines are skipped.",
+        requestBody = @io.swagger.v3.oas.annotations.parameters.RequestBody(
+            description = "Requests to be sanitized, one per line",
+            content = @Content(
+                mediaType = MediaType.APPLICATION_NDJSON_VALUE,
+                examples = @ExampleObject(
+                    value = "{ \"requestId\": \"1\", \"toSanitize\": \"<script>alert('xss')</script>\", \"inputType\": \"html\" }\n"
+                        + "{ \"requestId\": \"2\", \"toSanitize\": \"DROP TABLE users\", \"inputType\": \"sql\" }"
+                )
+            )
+        ),
+        responses = {
+            @ApiResponse(
+                responseCode = "200",
+                description = "Stream processed, check the individual responses for errors",
+                content = @Content(
+                    mediaType = MediaType.APPLICATION_NDJSON_VALUE,
+                    examples = @ExampleObject(
+                        value = "{\"requestId\":\"1\",\"sanitized\":\"\"}\n"
+                            + "{\"requestId\":\"2\",\"message\":\"Configuration or Request Error: Could not find a sanitizer matching '{sql}'\"}"
+                    )
+                )
+            )
+        }
+    )
+    @PostMapping(
+        value = "/sanitize/ndjson",
+        consumes = MediaType.APPLICATION_NDJSON_VALUE,
+        produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public void sanitizeNdjson(HttpServletRequest request, HttpServletResponse response) throws IOException {
+
+        MDC.put("requestID", UUID.randomUUID().toString());
+
+        Charset charset = Objects.isNull(request.getCharacterEncoding()) ?
+            StandardCharsets.UTF_8 :
+            Charset.forName(request.getCharacterEncoding());
+
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        response.setCharacterEncoding(charset.name());
+
+        // not the PrintWriter of the response, it swallows the failure of a client that's gone
+        Writer writer = new OutputStreamWriter(response.getOutputStream(), charset);
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(request.getInputStream(), charset))) {
+            sanitizationService.sanitizeLines(reader, writer, new NdjsonFormat());
+        }
+    }
+
+    @Operation(
+        summary = "sanitize the columns of a csv or tsv, each based on its own input type",
+        description = "The request body is the csv or tsv in utf-8, the sanitized records are written to the response "
+            + "in the same order while the rest are still being read. Every column to sanitize is given with its "
+            + "input type, by its name in the header or its index from 0. The header and the other columns are "
+            + "written as they are. Errors that happen after the response started can't change the status anymore.",
+        requestBody = @io.swagger.v3.oas.annotations.parameters.RequestBody(
+            description = "Records to be sanitized",
+            content = @Content(
+                mediaType = "text/csv",
+                examples = @ExampleObject(value = "id,email,comment\n1,me@example.com,\"<b>hi</b><script>x</script>\"")
+            )
+        ),
+        responses = {
+            @ApiResponse(
+                responseCode = "200",
+                description = "Sanitization successful",
+                content = @Content(
+                    mediaType = "text/csv",
+                    examples = @ExampleObject(value = "id,email,comment\n1,me@example.com,\"<b>hi</b>\"")
+                )
+            ),
+            @ApiResponse(
+                responseCode = "400",
+                description = "Bad request - a column isn't in the header, the format is unknown or a record is too "
+                    + "long",
+                content = @Content(
+                    mediaType = "application/json",
+                    schema = @Schema(implementation = SanitizerResponse.class)
+                )
+            ),
+            @ApiResponse(
+                responseCode = "500",
+                description = "An input type does not match any configuration, or an unexpected error",
+                content = @Content(
+                    mediaType = "application/json",
+                    schema = @Schema(implementation = SanitizerResponse.class)
+                )
+            )
+        }
+    )
+    @PostMapping("/sanitize/columns")
+    public void sanitizeColumns(
+        @Parameter(description = "The columns to sanitize with their input types, e.g. comment:html,email:word")
+        @RequestParam String columns,
+        @Parameter(description = "csv or tsv")
+        @RequestParam(defaultValue = "csv") String format,
+        @Parameter(description = "Whether the first record is the header")
+        @RequestParam(defaultValue = "true") boolean header,
+        @RequestParam(required = false) String requestId,
+        HttpServletRequest request,
+        HttpServletResponse response) throws IOException
+    {
+
+        MDC.put("requestID",
+            StringUtils.isEmpty(requestId) ?
+                UUID.randomUUID().toString() :
+                requestId);
+
+        ColumnFormat columnFormat = ColumnFormat.of(format);
+
+        try (InputStream input = request.getInputStream()) {
+            sanitizationService.sanitizeColumns(
+                input,
+                // only once the columns are resolved, errors before that are written as json
+                () -> {
+                    response.setContentType(columnFormat.mediaType());
+                    response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+                    return response.getOutputStream();
+                },
+                columnFormat,
+                header,
+                ColumnSanitizer.columns(columns));
+        }
+    }
+
+    /**
+     * Every line is a request or response on its own, so they're read and written without any indentation.
+     */
+    private class NdjsonFormat implements LineFormat<SanitizerRequest> {
+
+        private final ObjectReader reader = objectMapper.readerFor(SanitizerRequest.class);
+        private final ObjectWriter writer = objectMapper.writer().without(SerializationFeature.INDENT_OUTPUT);
+
+        @Override
+        public SanitizerRequest parse(String line) {
+            try {
+                return reader.readValue(line);
+            } catch (JsonProcessingException e) {
+                throw new IllegalArgumentException(e.getOriginalMessage(), e);
+            }
+        }
+
+        @Override
+        public BatchItem item(SanitizerRequest request) {
+            return Objects.isNull(request) ?
+                new BatchItem(null, null) :
+                new BatchItem(request.getInputType(), request.getToSanitize());
+        }
+
+        @Override
+        public String format(SanitizerRequest request, BatchResult result) {
+
+            SanitizerResponse response = new SanitizerResponse();
+            response.setRequestId(Objects.isNull(request) ? null : request.getRequestId());
+            response.setSanitized(result.sanitized());
+            response.setMessage(result.error());
+
+            try {
+                return writer.writeValueAsString(response);
+            } catch (JsonProcessingException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
 }
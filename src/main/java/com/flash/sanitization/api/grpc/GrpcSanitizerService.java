@@ -0,0 +1,200 @@
+package com.flash.sanitization.api.grpc;
+
+import com.flash.sanitization.api.grpc.proto.SanitizeBatchRequest;
+import com.flash.sanitization.api.grpc.proto.SanitizeBatchResponse;
+import com.flash.sanitization.api.grpc.proto.SanitizeRequest;
+import com.flash.sanitization.api.grpc.proto.SanitizeResponse;
+import com.flash.sanitization.api.grpc.proto.SanitizerServiceGrpc;
+import com.flash.sanitization.sanitizer.exception.BatchSizeException;
+import com.flash.sanitization.sanitizer.exception.NoFactoryException;
+import com.flash.sanitization.sanitizer.exception.NoSanitizerException;
+import com.flash.sanitization.sanitizer.exception.SanitizationException;
+import com.flash.sanitization.sanitizer.properties.GrpcProperties;
+import com.flash.sanitization.sanitizer.service.SanitizationService;
+import com.flash.sanitization.sanitizer.service.SanitizationService.BatchItem;
+import com.flash.sanitization.sanitizer.service.SanitizationService.BatchResult;
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.MDC;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * The grpc version of the {@code /flash/sanitize} endpoints, see {@code src/main/proto/sanitizer.proto}. Errors are
+ * described the same way as by the rest api, as the status of the call or the message of a response.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class GrpcSanitizerService extends SanitizerServiceGrpc.SanitizerServiceImplBase {
+
+    private final SanitizationService sanitizationService;
+    private final GrpcProperties grpcProperties;
+
+    @Override
+    public void sanitize(SanitizeRequest request, StreamObserver<SanitizeResponse> responseObserver) {
+
+        MDC.put("requestID",
+            StringUtils.isEmpty(request.getRequestId()) ?
+                UUID.randomUUID().toString() :
+                request.getRequestId());
+        try {
+            String sanitized = sanitizationService.santizeString(request.getToSanitize(), request.getInputType());
+
+            responseObserver.onNext(SanitizeResponse.newBuilder()
+                .setRequestId(request.getRequestId())
+                .setSanitized(sanitized)
+                .build());
+            responseObserver.onCompleted();
+        } catch (RuntimeException e) {
+            responseObserver.onError(status(e).asRuntimeException());
+        } finally {
+            MDC.remove("requestID");
+        }
+    }
+
+    @Override
+    public void sanitizeBatch(SanitizeBatchRequest request, StreamObserver<SanitizeBatchResponse> responseObserver) {
+
+        MDC.put("requestID", UUID.randomUUID().toString());
+        try {
+            List<BatchItem> items = request.getRequestsList()
+                .stream()
+                .map(item -> new BatchItem(item.getInputType(), item.getToSanitize()))
+                .toList();
+
+            List<BatchResult> results = sanitizationService.sanitizeBatch(items);
+
+            SanitizeBatchResponse.Builder response = SanitizeBatchResponse.newBuilder();
+            for (int i = 0; i < results.size(); i++) {
+                response.addResponses(response(request.getRequests(i).getRequestId(), results.get(i)));
+            }
+
+            responseObserver.onNext(response.build());
+            responseObserver.onCompleted();
+        } catch (RuntimeException e) {
+            responseObserver.onError(status(e).asRuntimeException());
+        } finally {
+            MDC.remove("requestID");
+        }
+    }
+
+    /**
+     * Requests are asked for up to {@link GrpcProperties#getStreamWindow()} at a time, and only while the responses
+     * can be sent without buffering them. A client that doesn't read its responses stops its own requests, rather than
+     * filling the memory of the server.
+     */
+    @Override
+    public StreamObserver<SanitizeRequest> sanitizeStream(StreamObserver<SanitizeResponse> responseObserver) {
+        return new SanitizeStream(
+            (ServerCallStreamObserver<SanitizeResponse>) responseObserver,
+            Math.max(1, grpcProperties.getStreamWindow()));
+    }
+
+    private BatchResult sanitize(SanitizeRequest request) {
+        try {
+            return new BatchResult(
+                sanitizationService.santizeString(request.getToSanitize(), request.getInputType()),
+                null);
+        } catch (RuntimeException e) {
+            log.error("Failed to sanitize a streamed value", e);
+            return new BatchResult(null, message(e));
+        }
+    }
+
+    private static SanitizeResponse response(String requestId, BatchResult result) {
+
+        SanitizeResponse.Builder response = SanitizeResponse.newBuilder().setRequestId(requestId);
+        if (Objects.nonNull(result.error())) {
+            response.setMessage(result.error());
+        } else {
+            response.setSanitized(result.sanitized());
+        }
+        return response.build();
+    }
+
+    /**
+     * The status a call fails with, the counterpart of the status the rest api responds with.
+     */
+    private static Status status(RuntimeException e) {
+
+        if (e instanceof BatchSizeException) {
+            log.error("REQUEST ERROR:", e);
+            return Status.INVALID_ARGUMENT.withDescription("Request Error: %s".formatted(e.getMessage()));
+        } else if (e instanceof NoSanitizerException || e instanceof NoFactoryException) {
+            log.error("CONFIG OR REQUEST ERROR:", e);
+            return Status.NOT_FOUND.withDescription(message(e));
+        }
+
+        log.error("API ERROR:", e);
+        return Status.INTERNAL.withDescription(message(e)).withCause(e);
+    }
+
+    private static String message(RuntimeException e) {
+        return e instanceof SanitizationException ?
+            "Configuration or Request Error: %s".formatted(e.getMessage()) :
+            "UNEXPECTED ERROR: %s".formatted(e.getMessage());
+    }
+
+    /**
+     * grpc calls the handlers of a call one at a time, so the stream doesn't have to synchronize.
+     */
+    private class SanitizeStream implements StreamObserver<SanitizeRequest> {
+
+        private final ServerCallStreamObserver<SanitizeResponse> responses;
+        private final int window;
+        private final String streamId = UUID.randomUUID().toString();
+
+        // requested and not received yet
+        private int outstanding;
+
+        SanitizeStream(ServerCallStreamObserver<SanitizeResponse> responses, int window) {
+            this.responses = responses;
+            this.window = window;
+
+            responses.disableAutoRequest();
+            responses.setOnReadyHandler(this::request);
+        }
+
+        private void request() {
+            // topped up once half of it is used, rather than one request at a time
+            if (outstanding <= window / 2 && responses.isReady()) {
+                responses.request(window - outstanding);
+                outstanding = window;
+            }
+        }
+
+        @Override
+        public void onNext(SanitizeRequest request) {
+
+            outstanding--;
+            MDC.put("requestID",
+                StringUtils.isEmpty(request.getRequestId()) ?
+                    streamId :
+                    request.getRequestId());
+            try {
+                responses.onNext(response(request.getRequestId(), sanitize(request)));
+            } finally {
+                MDC.remove("requestID");
+            }
+            request();
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            log.warn("Sanitize stream {} was cancelled: {}", streamId, Status.fromThrowable(t));
+        }
+
+        @Override
+        public void onCompleted() {
+            responses.onCompleted();
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.flash.sanitization.api.grpc;
+
+import com.flash.sanitization.sanitizer.properties.GrpcProperties;
+import io.grpc.Grpc;
+import io.grpc.InsecureServerCredentials;
+import io.grpc.Server;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serves the {@link GrpcSanitizerService} on a port and threads of its own, next to the rest api. It's started with
+ * the application context and stopped before the beans it uses are.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class GrpcServer implements SmartLifecycle {
+
+    private final GrpcProperties grpcProperties;
+    private final GrpcSanitizerService grpcSanitizerService;
+
+    private Server server;
+    private ExecutorService executor;
+
+    @Override
+    public synchronized void start() {
+
+        if (!grpcProperties.isEnabled() || isRunning()) {
+            return;
+        }
+
+        executor = Executors.newFixedThreadPool(
+            Math.max(1, grpcProperties.getThreads()),
+            Thread.ofPlatform().name("grpc-sanitizer-", 0).factory());
+
+        try {
+            server = Grpc.newServerBuilderForPort(grpcProperties.getPort(), InsecureServerCredentials.create())
+                .executor(executor)
+                .maxInboundMessageSize((int) grpcProperties.getMaxMessageSize().toBytes())
+                .addService(grpcSanitizerService)
+                .build()
+                .start();
+        } catch (IOException e) {
+            executor.shutdownNow();
+            throw new UncheckedIOException("Could not start the grpc server on port %d".formatted(
+                grpcProperties.getPort()), e);
+        }
+
+        log.info("gRPC server started on port {}", server.getPort());
+    }
+
+    @Override
+    public synchronized void stop() {
+
+        if (!isRunning()) {
+            return;
+        }
+
+        server.shutdown();
+        try {
+            if (!server.awaitTermination(grpcProperties.getShutdownTimeout().toMillis(), TimeUnit.MILLISECONDS)) {
+                server.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            server.shutdownNow();
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Override
+    public synchronized boolean isRunning() {
+        return Objects.nonNull(server) && !server.isShutdown();
+    }
+
+    /**
+     * The port the server listens on, the actual one if it was configured as 0.
+     */
+    public synchronized int getPort() {
+        return isRunning() ? server.getPort() : -1;
+    }
+}
@@ -1,6 +1,8 @@
 package com.flash.sanitization.api.handler;
 
 import com.flash.sanitization.api.representation.SanitizerResponse;
+import com.flash.sanitization.sanitizer.exception.BatchSizeException;
+import com.flash.sanitization.sanitizer.exception.InvalidColumnsException;
 import com.flash.sanitization.sanitizer.exception.NoSanitizerException;
 import lombok.extern.slf4j.Slf4j;
 import org.slf4j.MDC;
@@ -42,4 +44,32 @@ public class ControllerExceptionHandler {
             HttpStatus.INTERNAL_SERVER_ERROR);
     }
 
-}
\ No newline at end of file
+    @ExceptionHandler(BatchSizeException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public ResponseEntity<SanitizerResponse> handlerBatchSize(BatchSizeException ex) {
+
+        log.error("REQUEST ERROR:", ex);
+        SanitizerResponse response = new SanitizerResponse();
+        response.setRequestId(MDC.get("requestID"));
+        response.setMessage("Request Error: %s".formatted(ex.getMessage()));
+
+        return new ResponseEntity<>(
+            response,
+            HttpStatus.BAD_REQUEST);
+    }
+
+    @ExceptionHandler(InvalidColumnsException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public ResponseEntity<SanitizerResponse> handlerInvalidColumns(InvalidColumnsException ex) {
+
+        log.error("REQUEST ERROR:", ex);
+        SanitizerResponse response = new SanitizerResponse();
+        response.setRequestId(MDC.get("requestID"));
+        response.setMessage("Request Error: %s".formatted(ex.getMessage()));
+
+        return new ResponseEntity<>(
+            response,
+            HttpStatus.BAD_REQUEST);
+    }
+
+}
@@ -0,0 +1,36 @@
+package com.flash.sanitization.api.representation;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+import java.util.List;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@Data
+public class PipelineStageResponse {
+
+    @Schema(
+        description = "The configured sanitizers the stage runs for, in order. More than one if they were fused",
+        example = "[\"profanity\", \"sql-keywords\"]"
+    )
+    private List<String> sanitizers;
+
+    @Schema(
+        description = "The sanitizer the stage runs",
+        example = "WordSanitizer"
+    )
+    private String implementation;
+
+    @Schema(
+        description = "Whether the stage was fused from several configured sanitizers",
+        example = "true"
+    )
+    private boolean fused;
+
+    @Schema(
+        description = "The number of words a fused word stage matches",
+        example = "1200"
+    )
+    private Integer words;
+}
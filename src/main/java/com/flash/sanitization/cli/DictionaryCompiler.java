@@ -0,0 +1,77 @@
+package com.flash.sanitization.cli;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.flash.sanitization.sanitizer.matcher.CompactTrieMatcher;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Compiles a word list into the file a word sanitizer can map with a {@code COMPILED:} source, so the list doesn't
+ * have to be parsed and compiled every time the sanitizer is created.
+ * <br />
+ * Run it from the service jar, without starting the service:
+ * <pre>
+ *     java -jar flash-sanitizer-service.jar compile-dictionary words.json words.dict
+ * </pre>
+ * The word list has the same json format as a {@code FILE:} source.
+ */
+@Slf4j
+public final class DictionaryCompiler {
+
+    public static final String COMMAND = "compile-dictionary";
+
+    private DictionaryCompiler() {
+    }
+
+    /**
+     * @param args The word list and the file to write.
+     *
+     * @return The exit code.
+     */
+    public static int run(String... args) {
+        if (args.length != 2) {
+            System.err.printf("Usage: %s <words.json> <output file>%n", COMMAND);
+            return 2;
+        }
+
+        try {
+            compile(Path.of(args[0]), Path.of(args[1]));
+            return 0;
+        } catch (IOException | RuntimeException e) {
+            log.error("Failed to compile {}", args[0], e);
+            return 1;
+        }
+    }
+
+    /**
+     * Compile the words in a json file and write them to the output file.
+     *
+     * @param words The json array of words.
+     * @param output The file to write, it's replaced if it exists.
+     *
+     * @return The compiled words.
+     */
+    public static CompactTrieMatcher compile(Path words, Path output) throws IOException {
+        long start = System.nanoTime();
+
+        ObjectMapper objectMapper = new ObjectMapper();
+        List<String> wordList = objectMapper.readValue(
+            words.toFile(),
+            objectMapper.getTypeFactory().constructCollectionType(List.class, String.class));
+
+        CompactTrieMatcher matcher = CompactTrieMatcher.compile(wordList);
+        matcher.write(output);
+
+        log.info(
+            "Compiled {} words into {} ({} bytes) in {} ms",
+            matcher.getWordCount(),
+            output,
+            Files.size(output),
+            (System.nanoTime() - start) / 1_000_000);
+        return matcher;
+    }
+}
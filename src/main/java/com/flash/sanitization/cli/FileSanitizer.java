@@ -0,0 +1,474 @@
+package com.flash.sanitization.cli;
+
+import com.flash.sanitization.FlashSanitizerServiceApplication;
+import com.flash.sanitization.sanitizer.columns.ColumnFormat;
+import com.flash.sanitization.sanitizer.columns.ColumnSanitizer;
+import com.flash.sanitization.sanitizer.exception.InvalidColumnsException;
+import com.flash.sanitization.sanitizer.implementation.Sanitizer;
+import com.flash.sanitization.sanitizer.properties.BatchProperties;
+import com.flash.sanitization.sanitizer.registry.SanitizerRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.CommandLinePropertySource;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.MutablePropertySources;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Function;
+
+/**
+ * Sanitizes a large file with the pipeline of an input type, without going through the http api. Every line of the
+ * file is a record, like a line of a csv or jsonl export, and is sanitized on its own.
+ * <br />
+ * Run it from the service jar, it connects to the database the service is configured with, without changing its schema,
+ * but doesn't serve requests:
+ * <pre>
+ *     java -jar flash-sanitizer-service.jar sanitize-file export.jsonl sanitized.jsonl html [--spring.property=value]
+ * </pre>
+ * An empty input type uses the default sanitizer. The file is read in chunks of
+ * {@code flash.sanitizer.batch.file-chunk-size}, sanitized by {@code flash.sanitizer.batch.parallelism} threads.
+ * <br />
+ * Records are split at line breaks only, so a quoted csv value with a line break in it is sanitized as two records.
+ * The file has to be utf-8, malformed bytes are replaced.
+ * <br />
+ * The columns of a csv or tsv file can each be sanitized with their own input type instead, see
+ * {@link ColumnSanitizer}:
+ * <pre>
+ *     java -jar flash-sanitizer-service.jar sanitize-columns export.csv sanitized.csv csv email:word,comment:html
+ * </pre>
+ * The columns are named by the header, or by their index from 0 when {@value #NO_HEADER} is given. Quoted csv values
+ * can have line breaks in them here, the file is only split at the end of a record.
+ */
+@Slf4j
+public final class FileSanitizer {
+
+    public static final String COMMAND = "sanitize-file";
+    public static final String COLUMNS_COMMAND = "sanitize-columns";
+
+    private static final String NO_HEADER = "--no-header";
+
+    /**
+     * The settings a command runs with, over those of the application properties: it only reads the configuration of
+     * the input types, and mustn't create or drop the schema of the database the service uses, or serve requests next
+     * to the service on the same host. Arguments given to the command still win.
+     */
+    static final Map<String, Object> COMMAND_PROPERTIES = Map.of(
+        // only the input types of the file are used
+        "flash.sanitizer.warm-up.enabled", "false",
+        "flash.sanitizer.grpc.enabled", "false",
+        "spring.jpa.hibernate.ddl-auto", "none");
+
+    /**
+     * How far to look at a time for the end of the line a chunk ends in.
+     */
+    private static final int SCAN_SIZE = 8 * 1024;
+
+    private FileSanitizer() {
+    }
+
+    /**
+     * @param args The file to sanitize, the file to write and the input type, followed by any arguments for the
+     * application.
+     *
+     * @return The exit code.
+     */
+    public static int run(String... args) {
+        if (args.length < 3) {
+            System.err.printf("Usage: %s <input file> <output file> <input type> [application arguments]%n", COMMAND);
+            return 2;
+        }
+
+        return start(
+            args[0],
+            Arrays.copyOfRange(args, 3, args.length),
+            (registry, pool, batchProperties) -> sanitize(
+                Path.of(args[0]),
+                Path.of(args[1]),
+                resolve(registry, args[2]),
+                pool,
+                batchProperties.getFileChunkSize().toBytes()));
+    }
+
+    /**
+     * @param args The csv or tsv file to sanitize, the file to write, its format and the input types of its columns,
+     * followed by {@value #NO_HEADER} if it has no header and any arguments for the application.
+     *
+     * @return The exit code.
+     */
+    public static int runColumns(String... args) {
+        if (args.length < 4) {
+            System.err.printf(
+                "Usage: %s <input file> <output file> <csv|tsv> <column:inputType,...> [%s] [application arguments]%n",
+                COLUMNS_COMMAND,
+                NO_HEADER);
+            return 2;
+        }
+
+        List<String> applicationArgs = new ArrayList<>(Arrays.asList(args).subList(4, args.length));
+        boolean header = !applicationArgs.remove(NO_HEADER);
+
+        return start(
+            args[0],
+            applicationArgs.toArray(String[]::new),
+            (registry, pool, batchProperties) -> sanitizeColumns(
+                Path.of(args[0]),
+                Path.of(args[1]),
+                ColumnFormat.of(args[2]),
+                header,
+                ColumnSanitizer.columns(args[3]),
+                inputType -> resolve(registry, inputType),
+                pool,
+                batchProperties.getFileChunkSize().toBytes(),
+                batchProperties.getMaxRecordSize().toBytes()));
+    }
+
+    private static int start(String input, String[] applicationArgs, Command command) {
+
+        SpringApplicationBuilder application = new SpringApplicationBuilder(FlashSanitizerServiceApplication.class)
+            .web(WebApplicationType.NONE)
+            // default properties would lose to application.properties
+            .initializers(context -> addCommandProperties(context.getEnvironment().getPropertySources()));
+
+        try (ConfigurableApplicationContext context = application.run(applicationArgs)) {
+            BatchProperties batchProperties = context.getBean(BatchProperties.class);
+            SanitizerRegistry registry = context.getBean(SanitizerRegistry.class);
+
+            ForkJoinPool pool = new ForkJoinPool(Math.max(1, batchProperties.getParallelism()));
+            try {
+                Result result = command.run(registry, pool, batchProperties);
+
+                log.info(
+                    "Sanitized {} records, {} bytes into {} bytes in {} ms, {} MB/s",
+                    result.records(),
+                    result.bytesRead(),
+                    result.bytesWritten(),
+                    result.nanos() / 1_000_000,
+                    "%.1f".formatted(result.megabytesPerSecond()));
+            } finally {
+                pool.shutdownNow();
+            }
+            return 0;
+        } catch (IOException | RuntimeException e) {
+            log.error("Failed to sanitize {}", input, e);
+            return 1;
+        }
+    }
+
+    private static void addCommandProperties(MutablePropertySources propertySources) {
+        MapPropertySource commandProperties = new MapPropertySource("sanitizerCommand", COMMAND_PROPERTIES);
+        if (propertySources.contains(CommandLinePropertySource.COMMAND_LINE_PROPERTY_SOURCE_NAME)) {
+            propertySources.addAfter(CommandLinePropertySource.COMMAND_LINE_PROPERTY_SOURCE_NAME, commandProperties);
+        } else {
+            propertySources.addFirst(commandProperties);
+        }
+    }
+
+    private static Sanitizer resolve(SanitizerRegistry registry, String inputType) {
+        // No input type provided. So we default.
+        return inputType.isEmpty() ? registry.getDefault() : registry.getPipeline(inputType);
+    }
+
+    /**
+     * Sanitize every line of the input and write them to the output in the same order.
+     * <br />
+     * The input is split into chunks of about the chunk size, ending at a line break, which are mapped into memory
+     * and sanitized on the pool. Only twice as many chunks as the pool has threads are in progress at any time, the
+     * output is written in order as they finish.
+     *
+     * @param input The file to sanitize.
+     * @param output The file to write, it's replaced if it exists.
+     * @param sanitizer Used for every line.
+     * @param pool The threads the chunks are sanitized on.
+     * @param chunkSize The number of bytes to sanitize at a time, a chunk is longer if a line is.
+     *
+     * @return How much was sanitized, and how long it took.
+     */
+    public static Result sanitize(Path input, Path output, Sanitizer sanitizer, ForkJoinPool pool, long chunkSize)
+        throws IOException
+    {
+        long start = System.nanoTime();
+
+        try (FileChannel in = FileChannel.open(input, StandardOpenOption.READ);
+             FileChannel out = open(output))
+        {
+            Records lines = new Records() {
+                @Override
+                public long end(FileChannel in, long from, long target, long size) throws IOException {
+                    return lineEnd(in, target, size);
+                }
+
+                @Override
+                public Chunk sanitize(ByteBuffer chunk) {
+                    return sanitizeLines(chunk, sanitizer);
+                }
+            };
+
+            return sanitize(in, out, 0, 0, 0, lines, pool, chunkSize, start);
+        }
+    }
+
+    /**
+     * Sanitize the columns of a csv or tsv file, each with the pipeline of its input type, and write the records to
+     * the output in the same order. The header is written as it is. Otherwise the same as
+     * {@link #sanitize(Path, Path, Sanitizer, ForkJoinPool, long)}, except that a chunk ends at the end of a record
+     * rather than any line break. A record longer than the maximum, like the rest of the file after a quote that isn't
+     * closed, fails it with an {@link InvalidColumnsException}.
+     *
+     * @param input The file to sanitize.
+     * @param output The file to write, it's replaced if it exists.
+     * @param format The format of the file.
+     * @param header Whether the first record is the header.
+     * @param columns The input type of every column to sanitize, see {@link ColumnSanitizer#columns(String)}.
+     * @param resolve Resolves the sanitizer of an input type, once for every distinct input type.
+     * @param pool The threads the chunks are sanitized on.
+     * @param chunkSize The number of bytes to sanitize at a time, a chunk is longer if a record is.
+     * @param maxRecordSize The maximum number of bytes of a record.
+     *
+     * @return How much was sanitized, and how long it took.
+     */
+    public static Result sanitizeColumns(
+        Path input,
+        Path output,
+        ColumnFormat format,
+        boolean header,
+        Map<String, String> columns,
+        Function<String, Sanitizer> resolve,
+        ForkJoinPool pool,
+        long chunkSize,
+        long maxRecordSize) throws IOException
+    {
+        long start = System.nanoTime();
+
+        try (FileChannel in = FileChannel.open(input, StandardOpenOption.READ);
+             FileChannel out = open(output))
+        {
+            long size = in.size();
+            long headerEnd = 0;
+            List<String> names = null;
+            if (header) {
+                headerEnd = recordEnd(in, format, 0, Math.max(1, chunkSize), maxRecordSize, size, true);
+                ByteBuffer headerBytes = in.map(FileChannel.MapMode.READ_ONLY, 0, headerEnd);
+                names = format.values(headerBytes, 0, headerBytes.limit());
+                write(out, headerBytes);
+            }
+
+            ColumnSanitizer columnSanitizer = ColumnSanitizer.of(format, names, columns, resolve);
+            Records records = new Records() {
+                @Override
+                public long end(FileChannel in, long from, long target, long size) throws IOException {
+                    return recordEnd(in, format, from, target - from, maxRecordSize, size, false);
+                }
+
+                @Override
+                public Chunk sanitize(ByteBuffer chunk) {
+                    ColumnSanitizer.Sanitized sanitized = columnSanitizer.sanitize(chunk);
+                    return new Chunk(sanitized.bytes(), sanitized.records());
+                }
+            };
+
+            return sanitize(in, out, headerEnd, headerEnd, header ? 1 : 0, records, pool, chunkSize, start);
+        }
+    }
+
+    /**
+     * Sanitize the chunks from the given position on, and write them in order.
+     */
+    private static Result sanitize(
+        FileChannel in,
+        FileChannel out,
+        long position,
+        long written,
+        long records,
+        Records format,
+        ForkJoinPool pool,
+        long chunkSize,
+        long start) throws IOException
+    {
+        long size = in.size();
+        int inProgress = 2 * pool.getParallelism();
+        Deque<ForkJoinTask<Chunk>> chunks = new ArrayDeque<>();
+
+        try {
+            while (position < size || !chunks.isEmpty()) {
+                while (position < size && chunks.size() < inProgress) {
+                    long end = format.end(in, position, position + Math.max(1, chunkSize), size);
+                    ByteBuffer mapped = in.map(FileChannel.MapMode.READ_ONLY, position, end - position);
+                    chunks.add(pool.submit(() -> format.sanitize(mapped)));
+                    position = end;
+                }
+
+                Chunk chunk = chunks.remove().join();
+                records += chunk.records();
+                written += write(out, chunk.bytes());
+            }
+        } finally {
+            chunks.forEach(chunk -> chunk.cancel(true));
+        }
+
+        return new Result(size, written, records, System.nanoTime() - start);
+    }
+
+    private static FileChannel open(Path output) throws IOException {
+        return FileChannel.open(
+            output,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.WRITE);
+    }
+
+    private static long write(FileChannel out, ByteBuffer bytes) throws IOException {
+        long written = bytes.remaining();
+        while (bytes.hasRemaining()) {
+            out.write(bytes);
+        }
+        return written;
+    }
+
+    /**
+     * The end of the first record, or the last one, that ends within the window from the given position on. The window
+     * is doubled until there is one, or it reaches the end of the file. It's not grown past the maximum size of a
+     * record, or the window if that's bigger.
+     */
+    private static long recordEnd(
+        FileChannel in,
+        ColumnFormat format,
+        long from,
+        long window,
+        long maxRecordSize,
+        long size,
+        boolean first) throws IOException
+    {
+        long maxLength = Math.max(window, maxRecordSize);
+        for (long length = window; ; length = Math.min(length * 2, maxLength)) {
+            long to = Math.min(size, from + length);
+            ByteBuffer mapped = in.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+            int end = first ?
+                format.recordEnd(mapped, 0, mapped.limit()) :
+                format.recordsEnd(mapped, 0, mapped.limit());
+
+            if (end >= 0) {
+                return from + end;
+            } else if (to == size) {
+                return size;
+            } else if (length >= maxLength) {
+                throw new InvalidColumnsException(
+                    "The record at byte %d is longer than %d bytes, is a quote not closed?".formatted(from, length));
+            }
+        }
+    }
+
+    /**
+     * The position right after the first line break from the given position on, or the end of the file.
+     */
+    private static long lineEnd(FileChannel in, long from, long size) throws IOException {
+
+        ByteBuffer scan = ByteBuffer.allocate(SCAN_SIZE);
+        for (long position = from; position < size; position += scan.limit()) {
+            scan.clear();
+            if (in.read(scan, position) < 0) {
+                break;
+            }
+            scan.flip();
+            for (int i = 0; i < scan.limit(); i++) {
+                if (scan.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Sanitize every line in the chunk. The line breaks themselves, {@code \n} or {@code \r\n}, are kept as they are.
+     * Line breaks a sanitizer adds, like the html one does between elements, are replaced by a space so every line
+     * still gives a single line.
+     */
+    private static Chunk sanitizeLines(ByteBuffer bytes, Sanitizer sanitizer) {
+
+        // a chunk ends at a line break, so it never ends halfway a character
+        CharBuffer text = StandardCharsets.UTF_8.decode(bytes);
+        char[] chars = text.array();
+        int length = text.limit();
+
+        StringBuilder sanitized = new StringBuilder(length);
+        long records = 0;
+        int from = 0;
+        while (from < length) {
+            int next = from;
+            while (next < length && chars[next] != '\n') {
+                next++;
+            }
+            int end = next > from && chars[next - 1] == '\r' ? next - 1 : next;
+            next = Math.min(length, next + 1);
+
+            if (end > from) {
+                sanitized.append(oneLine(sanitizer.sanitize(new String(chars, from, end - from))));
+            }
+            sanitized.append(chars, end, next - end);
+
+            records++;
+            from = next;
+        }
+
+        return new Chunk(StandardCharsets.UTF_8.encode(CharBuffer.wrap(sanitized)), records);
+    }
+
+    private static String oneLine(String sanitized) {
+        return Objects.isNull(sanitized) ? "" : sanitized.replace('\r', ' ').replace('\n', ' ');
+    }
+
+    /**
+     * How the records of a file are found and sanitized.
+     */
+    private interface Records {
+
+        /**
+         * The end of the records that are sanitized as one chunk.
+         *
+         * @param from Where the chunk starts.
+         * @param target Where it should end, about.
+         * @param size The size of the file.
+         */
+        long end(FileChannel in, long from, long target, long size) throws IOException;
+
+        Chunk sanitize(ByteBuffer chunk);
+    }
+
+    private interface Command {
+
+        Result run(SanitizerRegistry registry, ForkJoinPool pool, BatchProperties batchProperties) throws IOException;
+    }
+
+    private record Chunk(ByteBuffer bytes, long records) {
+    }
+
+    /**
+     * @param bytesRead The size of the input.
+     * @param bytesWritten The size of the output.
+     * @param records The number of lines sanitized.
+     * @param nanos How long it took.
+     */
+    public record Result(long bytesRead, long bytesWritten, long records, long nanos) {
+
+        public double megabytesPerSecond() {
+            return nanos == 0 ? 0 : bytesRead / 1e6 / (nanos / 1e9);
+        }
+    }
+}
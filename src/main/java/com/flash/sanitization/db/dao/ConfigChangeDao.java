@@ -0,0 +1,74 @@
+package com.flash.sanitization.db.dao;
+
+import com.flash.sanitization.db.entity.ConfigChangeEntity;
+import com.flash.sanitization.db.record.ConfigChangeRecord;
+import com.flash.sanitization.db.repository.ConfigChangeRepo;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Reads the log of configuration changes. The changes themselves are written by {@link ConfigDao} and
+ * {@link InputTypeDao}, in the same transaction as the change.
+ */
+@Component
+@RequiredArgsConstructor
+public class ConfigChangeDao {
+
+    private final ConfigChangeRepo configChangeRepo;
+
+    /**
+     * @return The version of the latest change, zero if nothing has been changed yet.
+     */
+    @Transactional(readOnly = true)
+    public long findLatestVersion() {
+        return configChangeRepo.findLatestVersion();
+    }
+
+    /**
+     * Retrieve the changes after a version.
+     * <br />
+     * @param version
+     * The last version that was seen
+     * @param missing
+     * Versions before that which weren't seen yet, they're included if they've been committed since.
+     * @return
+     * The changes, ordered by version.
+     */
+    @Transactional(readOnly = true)
+    public List<ConfigChangeRecord> findChangesSince(long version, Collection<Long> missing) {
+
+        List<ConfigChangeEntity> changes = new ArrayList<>();
+        if (!missing.isEmpty()) {
+            changes.addAll(configChangeRepo.findByVersionIn(missing));
+        }
+        changes.addAll(configChangeRepo.findByVersionGreaterThanOrderByVersion(version));
+
+        return changes
+            .stream()
+            .sorted(Comparator.comparing(ConfigChangeEntity::getVersion))
+            .map(change -> new ConfigChangeRecord(change.getVersion(), change.getSanitizer(), change.getInputType()))
+            .toList();
+    }
+
+    /**
+     * Delete the changes that are no longer needed, so the log doesn't keep growing.
+     * <br />
+     * @param version
+     * The last version that was seen, later changes are kept.
+     * @param before
+     * Changes made since are kept, a node may not have seen them yet.
+     * @return
+     * The number of changes deleted.
+     */
+    @Transactional
+    public int deleteChangesBefore(long version, Instant before) {
+        return configChangeRepo.deleteByVersionAtMostAndChangedAtBefore(version, before);
+    }
+}
@@ -1,6 +1,8 @@
 package com.flash.sanitization.db.dao;
 
+import com.flash.sanitization.db.entity.ConfigChangeEntity;
 import com.flash.sanitization.db.entity.ConfigEntity;
+import com.flash.sanitization.db.repository.ConfigChangeRepo;
 import com.flash.sanitization.db.repository.ConfigRepo;
 import jakarta.annotation.Nullable;
 import lombok.NonNull;
@@ -15,6 +17,7 @@ import java.util.Map;
 public class ConfigDao {
 
     private final ConfigRepo configRepo;
+    private final ConfigChangeRepo configChangeRepo;
 
     @Transactional
     public void createConfig(
@@ -47,5 +50,8 @@ public class ConfigDao {
                 })
                 .orElseThrow()
         );
+
+        // let every node know its copy of the sanitizer is out of date
+        configChangeRepo.saveAndFlush(ConfigChangeEntity.sanitizerChanged(sanitizer));
     }
 }
@@ -1,20 +1,25 @@
 package com.flash.sanitization.db.dao;
 
+import com.flash.sanitization.db.entity.ConfigChangeEntity;
 import com.flash.sanitization.db.entity.ConfigEntity;
 import com.flash.sanitization.db.entity.InputTypeEntity;
 import com.flash.sanitization.db.exception.RecordExistsException;
 import com.flash.sanitization.db.mapper.ConfigRecordMapper;
+import com.flash.sanitization.db.mapper.ConfigRowMapper;
 import com.flash.sanitization.db.record.ConfigRecord;
+import com.flash.sanitization.db.repository.ConfigChangeRepo;
 import com.flash.sanitization.db.repository.ConfigRepo;
 import com.flash.sanitization.db.repository.InputTypeRepo;
 import jakarta.annotation.Nullable;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.CollectionUtils;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
@@ -24,12 +29,40 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class InputTypeDao {
 
+    private static final String CONFIG_BY_INPUT_TYPE = """
+        SELECT c.sanitizer_name, c.sanitizer_factory_name, c.sanitizer_config
+        FROM tbl_input_type_config i
+        JOIN tbl_sensitizer_config c ON c.sanitizer_name = i.sanitizer_name
+        WHERE i.sansitizer_input_type = ?
+    """;
+
     private final InputTypeRepo inputTypeRepo;
     private final ConfigRepo configRepo;
+    private final ConfigChangeRepo configChangeRepo;
+    private final JdbcTemplate jdbcTemplate;
+    private final ConfigRowMapper configRowMapper;
 
-    @Transactional
+    /**
+     * The sanitizer config of every sanitizer used by an input type, selected in one query and mapped straight to
+     * records. Nothing is loaded into the persistence context, this is called whenever a pipeline is built.
+     */
     public List<ConfigRecord> findConfigByInputType(String inputType) {
-        return inputTypeRepo.findConfigByInputType(inputType).stream().map(ConfigRecordMapper::mapToRecord).toList();
+        return jdbcTemplate.query(CONFIG_BY_INPUT_TYPE, configRowMapper, inputType);
+    }
+
+    /**
+     * Retrieve the configuration of every input type at once.
+     * <br />
+     * @return
+     * The configuration per input type.
+     */
+    @Transactional
+    public Map<String, List<ConfigRecord>> findAllConfig() {
+        return inputTypeRepo.findAllWithConfig()
+            .stream()
+            .collect(Collectors.toMap(
+                InputTypeEntity::getType,
+                inputType -> inputType.getConfigs().stream().map(ConfigRecordMapper::mapToRecord).toList()));
     }
 
     /**
@@ -125,6 +158,9 @@ public class InputTypeDao {
 
         inputTypeRepo.saveAndFlush(toCreate);
 
+        // let every node know its pipeline for this input type is out of date
+        configChangeRepo.saveAndFlush(ConfigChangeEntity.inputTypeChanged(inputType));
+
     }
 
 }
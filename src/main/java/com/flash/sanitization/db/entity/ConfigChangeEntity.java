@@ -0,0 +1,54 @@
+package com.flash.sanitization.db.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+
+/**
+ * An entry in the log of configuration changes. Every node reads the log to find out which of the sanitizers and
+ * pipelines it has cached are out of date.
+ * <br />
+ * Either the sanitizer or the input type is set, depending on what was changed.
+ */
+@Getter
+@Setter
+@Entity
+@Table(name = "tbl_config_change")
+@NoArgsConstructor
+@AllArgsConstructor
+public class ConfigChangeEntity {
+
+    /**
+     * Increases with every change, so a node only has to read the changes after the last version it has seen.
+     */
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "change_version", nullable = false)
+    private Long version;
+
+    @Column(name = "sanitizer_name")
+    private String sanitizer;
+
+    @Column(name = "sansitizer_input_type")
+    private String inputType;
+
+    @Column(name = "changed_at", nullable = false)
+    private Instant changedAt;
+
+    public static ConfigChangeEntity sanitizerChanged(String sanitizer) {
+        return new ConfigChangeEntity(null, sanitizer, null, Instant.now());
+    }
+
+    public static ConfigChangeEntity inputTypeChanged(String inputType) {
+        return new ConfigChangeEntity(null, null, inputType, Instant.now());
+    }
+}
@@ -0,0 +1,53 @@
+package com.flash.sanitization.db.mapper;
+
+import com.flash.sanitization.db.record.ConfigRecord;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Component;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Map a row of sanitizer config straight to a Config Record, without going through a
+ * {@link com.flash.sanitization.db.entity.ConfigEntity}.
+ * <br />
+ * The same config is read over and over again as pipelines are built, so the parsed config is cached by its json.
+ * The cached maps are shared, so they can't be modified.
+ */
+@Component
+public class ConfigRowMapper implements RowMapper<ConfigRecord> {
+
+    static final int MAX_CACHED_CONFIG = 1_000;
+
+    private final ConfigDbMapper configDbMapper = new ConfigDbMapper();
+
+    private final Cache<String, Map<String, String>> parsedConfig =
+        Caffeine.newBuilder()
+            .maximumSize(MAX_CACHED_CONFIG)
+            .build();
+
+    @Override
+    public ConfigRecord mapRow(ResultSet rs, int rowNum) throws SQLException {
+        return new ConfigRecord(
+            rs.getString("sanitizer_name"),
+            rs.getString("sanitizer_factory_name"),
+            parseConfig(rs.getString("sanitizer_config"))
+        );
+    }
+
+    /**
+     * @return The parsed config, an empty map if there is none.
+     */
+    Map<String, String> parseConfig(String json) {
+        if (json == null) {
+            return Map.of();
+        }
+        return parsedConfig.get(
+            json,
+            key -> Collections.unmodifiableMap(configDbMapper.convertToEntityAttribute(key)));
+    }
+}
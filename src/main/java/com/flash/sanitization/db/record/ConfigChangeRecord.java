@@ -0,0 +1,23 @@
+package com.flash.sanitization.db.record;
+
+import jakarta.annotation.Nullable;
+
+/**
+ * Record to a configuration change. Matches {@link com.flash.sanitization.db.entity.ConfigChangeEntity}
+ * but is not database attached.
+ *
+ * @param version
+ * The version of the change
+ *
+ * @param sanitizer
+ * The name of the sanitizer that was changed, if any
+ *
+ * @param inputType
+ * The input type that was changed, if any
+ */
+public record ConfigChangeRecord(
+    long version,
+    @Nullable String sanitizer,
+    @Nullable String inputType
+) {
+}
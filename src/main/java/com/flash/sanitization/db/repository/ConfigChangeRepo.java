@@ -0,0 +1,36 @@
+package com.flash.sanitization.db.repository;
+
+import com.flash.sanitization.db.entity.ConfigChangeEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+@Transactional
+@Repository
+public interface ConfigChangeRepo extends JpaRepository<ConfigChangeEntity, Long> {
+
+    List<ConfigChangeEntity> findByVersionGreaterThanOrderByVersion(@Param("version") long version);
+
+    List<ConfigChangeEntity> findByVersionIn(@Param("versions") Collection<Long> versions);
+
+    @Query("""
+        SELECT COALESCE(MAX(c.version), 0)
+        FROM ConfigChangeEntity c
+    """)
+    long findLatestVersion();
+
+    @Modifying
+    @Query("""
+        DELETE FROM ConfigChangeEntity c
+        WHERE c.version <= :version
+        AND c.changedAt < :before
+    """)
+    int deleteByVersionAtMostAndChangedAtBefore(@Param("version") long version, @Param("before") Instant before);
+}
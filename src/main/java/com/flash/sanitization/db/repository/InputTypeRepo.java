@@ -31,5 +31,17 @@ public interface InputTypeRepo extends JpaRepository<InputTypeEntity, String>  {
     )
     List<ConfigEntity> findConfigByInputType(@Param("type") String type);
 
+    /**
+     * All the input types with their config, fetched in a single query.
+     */
+    @Query(
+        """
+        SELECT DISTINCT i
+        FROM InputTypeEntity i
+        LEFT JOIN FETCH i.configs
+    """
+    )
+    List<InputTypeEntity> findAllWithConfig();
+
     boolean existsByType(@Param("type") String inputTypeName);
 }
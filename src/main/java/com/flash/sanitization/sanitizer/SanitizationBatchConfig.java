@@ -0,0 +1,34 @@
+package com.flash.sanitization.sanitizer;
+
+import com.flash.sanitization.sanitizer.properties.BatchProperties;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+
+@Configuration
+@RequiredArgsConstructor
+public class SanitizationBatchConfig {
+
+    private final BatchProperties batchProperties;
+
+    /**
+     * Bounded pool the batch items are sanitized on, so a few large batches can't starve the rest of the application.
+     */
+    @Bean(name = "batch-executor", destroyMethod = "shutdown")
+    public ExecutorService batchExecutor() {
+
+        return new ForkJoinPool(
+            Math.max(1, batchProperties.getParallelism()),
+            pool -> {
+                ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                thread.setName("batch-sanitizer-" + thread.getPoolIndex());
+                return thread;
+            },
+            null,
+            false);
+    }
+}
@@ -1,17 +1,22 @@
 package com.flash.sanitization.sanitizer;
 
 import com.flash.sanitization.sanitizer.implementation.Sanitizer;
-import com.flash.sanitization.sanitizer.pipeline.SanitizerPipeline;
 import com.flash.sanitization.sanitizer.properties.CacheProperties;
 import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+@Slf4j
 @Configuration
 @EnableCaching
 @EnableAutoConfiguration
@@ -30,13 +35,43 @@ public class SanitizationCacheConfig {
             .build();
     }
 
-    @Bean("pipeline-cache")
-    public Cache<String, SanitizerPipeline> pipelineCache() {
+    /**
+     * The pipeline cache is a loading cache, so it's built by the registry which knows how to load a pipeline.
+     * Concurrent misses for the same input type then wait for a single load, rather than all hitting the database.
+     * <br />
+     * Pipelines that are still in use are rebuilt in the background after the refresh time, so a popular input type
+     * never has to wait for its pipeline to be rebuilt when it expires.
+     */
+    @Bean("pipeline-cache-builder")
+    public Caffeine<Object, Object> pipelineCacheBuilder() {
 
-        return Caffeine.newBuilder()
+        Caffeine<Object, Object> builder = Caffeine.newBuilder()
             .expireAfterWrite(cacheProperties.getExpiryTime())
-            .maximumSize(cacheProperties.getMaxSize())
-            .build();
+            .maximumSize(cacheProperties.getMaxSize());
+
+        Duration refreshTime = cacheProperties.getRefreshTime();
+        if (refreshTime != null && refreshTime.isPositive()) {
+            if (refreshTime.compareTo(cacheProperties.getExpiryTime()) < 0) {
+                builder.refreshAfterWrite(refreshTime);
+            } else {
+                log.warn(
+                    "Pipeline refresh time {} is not shorter than the expiry time {}, pipelines won't be refreshed",
+                    refreshTime,
+                    cacheProperties.getExpiryTime());
+            }
+        }
+
+        return builder;
+    }
+
+    /**
+     * Where the pipelines that are still in use are refreshed. A refresh waits on the database, so every refresh gets a
+     * virtual thread of its own rather than holding on to a thread of the common pool.
+     */
+    @Bean(name = "pipeline-loader", destroyMethod = "shutdown")
+    public ExecutorService pipelineLoader() {
+
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("pipeline-loader-", 0).factory());
     }
 
 }
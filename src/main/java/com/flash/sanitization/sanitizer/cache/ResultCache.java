@@ -0,0 +1,324 @@
+package com.flash.sanitization.sanitizer.cache;
+
+import com.flash.sanitization.sanitizer.metrics.SanitizerMetricBundle;
+import com.flash.sanitization.sanitizer.properties.ResultCacheProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Supplier;
+
+/**
+ * Cache of sanitized values, keyed by the input type, the version of the pipeline that sanitized them and a hash of
+ * the value.
+ * <br />
+ * The values are stored in a single direct buffer that's used as a ring: new entries are written after the newest
+ * one, evicting the oldest ones they overlap. Next to the sanitized value the original value is stored, so a hash
+ * collision can never return the sanitized version of another value. Only the small index lives on the heap.
+ * <br />
+ * Concurrent requests for the same value that isn't cached yet wait for the first one to sanitize it, rather than
+ * all sanitizing it.
+ * <br />
+ * When a pipeline is replaced its version changes, so the results of the old pipeline are never returned again. They
+ * are dropped as soon as the new version is first used, or when the registry drops the pipeline.
+ */
+@Slf4j
+@Component
+public class ResultCache {
+
+    /**
+     * Direct buffers are indexed by int, and this keeps the offsets in characters well within range.
+     */
+    static final long MAX_SIZE = 1L << 30;
+
+    private final CharBuffer arena;
+    private final int maxEntryChars;
+
+    private final StampedLock lock = new StampedLock();
+    private final Map<Key, Slot> index = new HashMap<>();
+    private final ArrayDeque<Slot> slots = new ArrayDeque<>();
+    private int tail;
+    private long liveChars;
+
+    private final Map<String, Long> versions = new ConcurrentHashMap<>();
+    private final Map<InFlight, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public ResultCache(ResultCacheProperties resultCacheProperties, SanitizerMetricBundle sanitizerMetricBundle) {
+        long size = Math.min(MAX_SIZE, resultCacheProperties.getMaxSize().toBytes());
+
+        if (resultCacheProperties.isEnabled() && size > 1) {
+            arena = ByteBuffer.allocateDirect((int) size).asCharBuffer();
+            maxEntryChars = (int) Math.min(arena.capacity(), resultCacheProperties.getMaxEntrySize().toBytes() / 2);
+            log.info("Result cache enabled, {} bytes", size);
+        } else {
+            arena = null;
+            maxEntryChars = 0;
+        }
+
+        sanitizerMetricBundle.registerResultCache(this::hitRatio, this::bytesUsed);
+    }
+
+    public boolean isEnabled() {
+        return arena != null;
+    }
+
+    /**
+     * Get the sanitized version of a value, sanitizing it if it isn't cached.
+     *
+     * @param inputType The input type the value is sanitized for.
+     * @param version The version of the pipeline sanitizing it.
+     * @param value The value to sanitize.
+     * @param sanitize Sanitizes the value if it isn't cached.
+     *
+     * @return The sanitized value.
+     */
+    public String get(String inputType, long version, String value, Supplier<String> sanitize) {
+        if (!isEnabled()) {
+            return sanitize.get();
+        }
+
+        Long current = versions.get(inputType);
+        if (current == null || current != version) {
+            newVersion(inputType, version);
+        }
+
+        Key key = new Key(inputType, version, hash(value));
+        String cached = read(key, value);
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+        misses.increment();
+
+        InFlight flight = new InFlight(inputType, version, value);
+        CompletableFuture<String> future = new CompletableFuture<>();
+        CompletableFuture<String> running = inFlight.putIfAbsent(flight, future);
+        if (running != null) {
+            return await(running);
+        }
+
+        try {
+            String sanitized = sanitize.get();
+            write(key, value, sanitized);
+            future.complete(sanitized);
+            return sanitized;
+        } catch (RuntimeException | Error e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(flight, future);
+        }
+    }
+
+    /**
+     * @return The share of the lookups that were found in the cache, since the start.
+     */
+    public double hitRatio() {
+        long hit = hits.sum();
+        long total = hit + misses.sum();
+        return total == 0 ? 0 : (double) hit / total;
+    }
+
+    /**
+     * @return The bytes taken by the entries that can still be found.
+     */
+    public long bytesUsed() {
+        long stamp = lock.readLock();
+        try {
+            return liveChars * 2;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Drop everything that's cached.
+     */
+    public void clear() {
+        if (!isEnabled()) {
+            return;
+        }
+
+        long stamp = lock.writeLock();
+        try {
+            index.clear();
+            slots.clear();
+            tail = 0;
+            liveChars = 0;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Drop what was sanitized for an input type, its pipeline was dropped and won't be used again.
+     *
+     * @param inputType The input type whose pipeline was dropped.
+     */
+    public void invalidate(String inputType) {
+        if (!isEnabled()) {
+            return;
+        }
+
+        purge(inputType, Long.MAX_VALUE);
+    }
+
+    /**
+     * Remember the version of the pipeline of an input type, and drop what older versions sanitized.
+     */
+    private void newVersion(String inputType, long version) {
+        Long previous;
+        do {
+            previous = versions.putIfAbsent(inputType, version);
+            // a request can still have the old pipeline just after it was replaced, that's no reason to purge
+            if (previous == null || previous >= version) {
+                return;
+            }
+            // only the request that swaps the version purges, a concurrent one may have swapped it already
+        } while (!versions.replace(inputType, previous, version));
+
+        purge(inputType, version);
+    }
+
+    /**
+     * Drop the entries of an input type sanitized by a version older than the one given.
+     */
+    private void purge(String inputType, long version) {
+        long stamp = lock.writeLock();
+        try {
+            index.values().removeIf(slot -> {
+                if (slot.key.inputType.equals(inputType) && slot.key.version < version) {
+                    liveChars -= slot.length();
+                    return true;
+                }
+                return false;
+            });
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private String read(Key key, String value) {
+        long stamp = lock.readLock();
+        try {
+            Slot slot = index.get(key);
+            if (slot == null || slot.valueLength != value.length()) {
+                return null;
+            }
+            for (int i = 0; i < slot.valueLength; i++) {
+                if (arena.get(slot.offset + i) != value.charAt(i)) {
+                    return null;
+                }
+            }
+
+            char[] sanitized = new char[slot.sanitizedLength];
+            arena.get(slot.offset + slot.valueLength, sanitized, 0, slot.sanitizedLength);
+            return new String(sanitized);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private void write(Key key, String value, String sanitized) {
+        int length = value.length() + sanitized.length();
+        if (length > maxEntryChars) {
+            return;
+        }
+
+        long stamp = lock.writeLock();
+        try {
+            int offset = tail;
+            if (offset + length > arena.capacity()) {
+                // skip the end of the arena, everything still stored there is older than what's at the start
+                while (!slots.isEmpty() && slots.peekFirst().offset >= tail) {
+                    evict(slots.pollFirst());
+                }
+                offset = 0;
+            }
+            while (!slots.isEmpty() && slots.peekFirst().overlaps(offset, length)) {
+                evict(slots.pollFirst());
+            }
+
+            CharBuffer target = arena.duplicate();
+            target.position(offset);
+            target.put(value);
+            target.put(sanitized);
+
+            Slot slot = new Slot(key, offset, value.length(), sanitized.length());
+            slots.addLast(slot);
+
+            Slot replaced = index.put(key, slot);
+            if (replaced != null) {
+                liveChars -= replaced.length();
+            }
+            liveChars += length;
+            tail = offset + length;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private void evict(Slot slot) {
+        if (index.remove(slot.key, slot)) {
+            liveChars -= slot.length();
+        }
+    }
+
+    private static String await(CompletableFuture<String> running) {
+        try {
+            return running.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 64 bit FNV-1a, so unrelated values rarely end up under the same key.
+     */
+    static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private record Key(String inputType, long version, long hash) {
+    }
+
+    private record InFlight(String inputType, long version, String value) {
+    }
+
+    /**
+     * Where an entry is stored in the arena, the value followed by its sanitized version.
+     */
+    private record Slot(Key key, int offset, int valueLength, int sanitizedLength) {
+
+        int length() {
+            return valueLength + sanitizedLength;
+        }
+
+        boolean overlaps(int from, int length) {
+            return offset < from + length && from < offset + length();
+        }
+    }
+}
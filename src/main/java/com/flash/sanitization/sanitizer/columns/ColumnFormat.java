@@ -0,0 +1,203 @@
+package com.flash.sanitization.sanitizer.columns;
+
+import com.flash.sanitization.sanitizer.exception.InvalidColumnsException;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The formats of delimited records, a record per line. Only csv has quoted values, which may contain the delimiter and
+ * line breaks, with a quote in them written twice.
+ * <br />
+ * The records are tokenized on their utf-8 bytes where they are, without decoding them: the delimiter, the quote and
+ * the line break are ascii so they can't be part of another character. Only the values that are needed are decoded.
+ */
+public enum ColumnFormat {
+
+    CSV((byte) ',', true, "text/csv"),
+    TSV((byte) '\t', false, "text/tab-separated-values");
+
+    private static final byte QUOTE = '"';
+
+    private final byte delimiter;
+    private final boolean quoted;
+    private final String mediaType;
+
+    ColumnFormat(byte delimiter, boolean quoted, String mediaType) {
+        this.delimiter = delimiter;
+        this.quoted = quoted;
+        this.mediaType = mediaType;
+    }
+
+    public static ColumnFormat of(String name) {
+        for (ColumnFormat format : values()) {
+            if (format.name().equalsIgnoreCase(name)) {
+                return format;
+            }
+        }
+        throw new InvalidColumnsException("Unknown format '%s', expected csv or tsv".formatted(name));
+    }
+
+    public String mediaType() {
+        return mediaType;
+    }
+
+    byte delimiter() {
+        return delimiter;
+    }
+
+    /**
+     * The end of the first record from the given position on, right after its line break.
+     *
+     * @param bytes The records.
+     * @param from Where a record starts.
+     * @param to The end of the bytes to look in.
+     *
+     * @return The end of the record, or -1 if there's no complete record.
+     */
+    public int recordEnd(ByteBuffer bytes, int from, int to) {
+        return recordEnd(bytes, from, to, true);
+    }
+
+    /**
+     * The end of the last record from the given position on, right after its line break.
+     *
+     * @param bytes The records.
+     * @param from Where a record starts.
+     * @param to The end of the bytes to look in.
+     *
+     * @return The end of the last record, or -1 if there's no complete record.
+     */
+    public int recordsEnd(ByteBuffer bytes, int from, int to) {
+        return recordEnd(bytes, from, to, false);
+    }
+
+    private int recordEnd(ByteBuffer bytes, int from, int to, boolean first) {
+
+        // a line break is only the end of a record outside a quoted value. Like valueEnd a quote only opens a value at
+        // its start, a stray one further on (5" tv) is part of the value
+        boolean inQuotes = false;
+        boolean valueStart = true;
+        int end = -1;
+        for (int i = from; i < to; i++) {
+            byte b = bytes.get(i);
+            if (inQuotes) {
+                if (b == QUOTE) {
+                    if (i + 1 < to && bytes.get(i + 1) == QUOTE) {
+                        i++;
+                    } else {
+                        inQuotes = false;
+                    }
+                }
+            } else if (b == '\n') {
+                end = i + 1;
+                if (first) {
+                    return end;
+                }
+                valueStart = true;
+            } else if (b == delimiter) {
+                valueStart = true;
+            } else {
+                inQuotes = quoted && valueStart && b == QUOTE;
+                valueStart = false;
+            }
+        }
+        return end;
+    }
+
+    /**
+     * The end of the value that starts at the given position: the position of the delimiter or line break after it,
+     * or the end of the bytes.
+     */
+    int valueEnd(ByteBuffer bytes, int from, int to) {
+
+        int i = from;
+        if (isQuoted(bytes, from, to)) {
+            for (i = from + 1; i < to; i++) {
+                if (bytes.get(i) == QUOTE) {
+                    if (i + 1 < to && bytes.get(i + 1) == QUOTE) {
+                        i++;
+                    } else {
+                        i++;
+                        break;
+                    }
+                }
+            }
+        }
+
+        // anything after the closing quote is still part of the value
+        while (i < to && bytes.get(i) != delimiter && bytes.get(i) != '\n') {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * The end of the value without the carriage return of a {@code \r\n} line break that follows it.
+     */
+    static int withoutCarriageReturn(ByteBuffer bytes, int from, int end, int to) {
+        return end < to && end > from && bytes.get(end) == '\n' && bytes.get(end - 1) == '\r' ? end - 1 : end;
+    }
+
+    boolean isQuoted(ByteBuffer bytes, int from, int to) {
+        return quoted && from < to && bytes.get(from) == QUOTE;
+    }
+
+    /**
+     * Decode a value, without its quotes.
+     */
+    String value(ByteBuffer bytes, int from, int to) {
+
+        if (!isQuoted(bytes, from, to)) {
+            return decode(bytes, from, to);
+        }
+
+        int end = to - from > 1 && bytes.get(to - 1) == QUOTE ? to - 1 : to;
+        return decode(bytes, from + 1, end).replace("\"\"", "\"");
+    }
+
+    /**
+     * Encode a value, quoted if it has to be or if it was.
+     */
+    byte[] encode(String value, boolean wasQuoted) {
+
+        if (!quoted) {
+            // tsv has no way to write these in a value
+            return value.replace('\t', ' ').replace('\r', ' ').replace('\n', ' ').getBytes(StandardCharsets.UTF_8);
+        }
+
+        boolean quote = wasQuoted;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == delimiter || c == QUOTE || c == '\r' || c == '\n';
+        }
+        return quote ?
+            ("\"" + value.replace("\"", "\"\"") + "\"").getBytes(StandardCharsets.UTF_8) :
+            value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * The values of the record that starts at the given position.
+     */
+    public List<String> values(ByteBuffer bytes, int from, int to) {
+
+        List<String> values = new ArrayList<>();
+        int position = from;
+        while (true) {
+            int end = valueEnd(bytes, position, to);
+            values.add(value(bytes, position, withoutCarriageReturn(bytes, position, end, to)));
+            if (end >= to || bytes.get(end) != delimiter) {
+                return values;
+            }
+            position = end + 1;
+        }
+    }
+
+    private static String decode(ByteBuffer bytes, int from, int to) {
+        byte[] value = new byte[to - from];
+        bytes.get(from, value);
+        return new String(value, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,206 @@
+package com.flash.sanitization.sanitizer.columns;
+
+import com.flash.sanitization.sanitizer.exception.InvalidColumnsException;
+import com.flash.sanitization.sanitizer.implementation.Sanitizer;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * Sanitizes csv or tsv records, every column with the sanitizer of its own input type. The columns that aren't
+ * sanitized are copied as the bytes they are, without ever being decoded.
+ * <br />
+ * It holds nothing but the sanitizers, so blocks of records can be sanitized on several threads at the same time.
+ */
+public class ColumnSanitizer {
+
+    /**
+     * The number of columns records without a header can have sanitized, by their index.
+     */
+    static final int MAX_COLUMNS = 4_096;
+
+    private final ColumnFormat format;
+
+    /**
+     * By the index of their column, null for the columns that aren't sanitized.
+     */
+    private final Sanitizer[] sanitizers;
+
+    public ColumnSanitizer(ColumnFormat format, Sanitizer[] sanitizers) {
+        this.format = format;
+        this.sanitizers = sanitizers.clone();
+    }
+
+    /**
+     * Match the columns to sanitize to the columns of the records. Every distinct input type is only resolved once.
+     *
+     * @param format The format of the records.
+     * @param header The names of the columns, or null if the records have no header.
+     * @param columns The input type of every column to sanitize, by the name of the column or its index from 0. An
+     * index has to be a column of the header, or below {@value #MAX_COLUMNS} without one.
+     * @param resolve Resolves the sanitizer of an input type.
+     */
+    public static ColumnSanitizer of(
+        ColumnFormat format,
+        List<String> header,
+        Map<String, String> columns,
+        Function<String, Sanitizer> resolve)
+    {
+        Map<String, Sanitizer> resolved = new HashMap<>();
+        Sanitizer[] sanitizers = new Sanitizer[0];
+
+        for (Map.Entry<String, String> column : columns.entrySet()) {
+            int index = index(column.getKey(), header);
+            if (index >= sanitizers.length) {
+                sanitizers = Arrays.copyOf(sanitizers, index + 1);
+            }
+            sanitizers[index] = resolved.computeIfAbsent(column.getValue(), resolve);
+        }
+        return new ColumnSanitizer(format, sanitizers);
+    }
+
+    private static int index(String column, List<String> header) {
+
+        if (Objects.nonNull(header) && header.contains(column)) {
+            return header.indexOf(column);
+        } else if (StringUtils.isNumeric(column)) {
+            // the sanitizers are kept by index, so it can't be anything the request asks for
+            int columnCount = Objects.isNull(header) ? MAX_COLUMNS : header.size();
+            int index = NumberUtils.toInt(column, Integer.MAX_VALUE);
+            if (index >= columnCount) {
+                throw new InvalidColumnsException(Objects.isNull(header) ?
+                    "Column %s is out of range, only the first %d can be sanitized".formatted(column, columnCount) :
+                    "Column %s is out of range, the header has %d columns".formatted(column, columnCount));
+            }
+            return index;
+        }
+
+        throw new InvalidColumnsException(Objects.isNull(header) ?
+            "Column '%s' has to be an index, there's no header".formatted(column) :
+            "Column '%s' is not in the header".formatted(column));
+    }
+
+    /**
+     * Read the columns to sanitize, written as {@code column:inputType,column:inputType}.
+     */
+    public static Map<String, String> columns(String columns) {
+
+        Map<String, String> parsed = new LinkedHashMap<>();
+        for (String column : StringUtils.defaultString(columns).split(",", -1)) {
+            String[] parts = column.split(":", 2);
+            if (parts.length != 2 || parts[0].isBlank() || parts[1].isBlank()) {
+                throw new InvalidColumnsException(
+                    "Column '%s' should be written as column:inputType".formatted(column.trim()));
+            }
+            parsed.put(parts[0].trim(), parts[1].trim());
+        }
+        return parsed;
+    }
+
+    /**
+     * Sanitize whole records.
+     *
+     * @param records The records, from their position to their limit, which isn't changed.
+     *
+     * @return The sanitized records.
+     */
+    public Sanitized sanitize(ByteBuffer records) {
+
+        int to = records.limit();
+        Output output = new Output(to - records.position() + 64);
+
+        int position = records.position();
+        int count = 0;
+        while (position < to) {
+            position = sanitizeRecord(records, position, to, output);
+            count++;
+        }
+        return new Sanitized(output.toByteBuffer(), count);
+    }
+
+    /**
+     * @return The position after the record.
+     */
+    private int sanitizeRecord(ByteBuffer records, int from, int to, Output output) {
+
+        int position = from;
+        for (int column = 0; ; column++) {
+            int end = format.valueEnd(records, position, to);
+            int valueEnd = ColumnFormat.withoutCarriageReturn(records, position, end, to);
+
+            Sanitizer sanitizer = column < sanitizers.length ? sanitizers[column] : null;
+            if (Objects.isNull(sanitizer) || valueEnd == position) {
+                output.put(records, position, valueEnd - position);
+            } else {
+                String value = format.value(records, position, valueEnd);
+                output.put(format.encode(sanitizer.sanitize(value), format.isQuoted(records, position, valueEnd)));
+            }
+
+            if (end >= to) {
+                return to;
+            } else if (records.get(end) != format.delimiter()) {
+                // the line break, as it was
+                output.put(records, valueEnd, end + 1 - valueEnd);
+                return end + 1;
+            }
+
+            output.put(format.delimiter());
+            position = end + 1;
+        }
+    }
+
+    /**
+     * @param bytes The sanitized records, ready to be read.
+     * @param records The number of records.
+     */
+    public record Sanitized(ByteBuffer bytes, int records) {
+    }
+
+    /**
+     * The sanitized records, grown as they're written.
+     */
+    private static class Output {
+
+        private byte[] bytes;
+        private int length;
+
+        Output(int capacity) {
+            this.bytes = new byte[capacity];
+        }
+
+        void put(ByteBuffer source, int from, int count) {
+            ensureCapacity(count);
+            source.get(from, bytes, length, count);
+            length += count;
+        }
+
+        void put(byte b) {
+            ensureCapacity(1);
+            bytes[length++] = b;
+        }
+
+        void put(byte[] source) {
+            ensureCapacity(source.length);
+            System.arraycopy(source, 0, bytes, length, source.length);
+            length += source.length;
+        }
+
+        private void ensureCapacity(int count) {
+            if (length + count > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + count));
+            }
+        }
+
+        ByteBuffer toByteBuffer() {
+            return ByteBuffer.wrap(bytes, 0, length);
+        }
+    }
+}
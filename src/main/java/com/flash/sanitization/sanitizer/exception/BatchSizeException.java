@@ -0,0 +1,13 @@
+package com.flash.sanitization.sanitizer.exception;
+
+/**
+ * Thrown when a batch contains more items than allowed.
+ */
+public class BatchSizeException extends SanitizationException {
+
+    public BatchSizeException(int size, int maxItems) {
+        super(
+            "The batch contains %d items, at most %d are allowed"
+                .formatted(size, maxItems));
+    }
+}
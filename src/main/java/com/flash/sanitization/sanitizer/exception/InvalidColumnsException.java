@@ -0,0 +1,11 @@
+package com.flash.sanitization.sanitizer.exception;
+
+/**
+ * Thrown when the columns to sanitize of a csv or tsv can't be matched to the columns it has.
+ */
+public class InvalidColumnsException extends SanitizationException {
+
+    public InvalidColumnsException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,14 @@
+package com.flash.sanitization.sanitizer.exception;
+
+/**
+ * Thrown when a line of a stream isn't a valid request.
+ */
+public class InvalidLineException extends SanitizationException {
+
+    public InvalidLineException(long line, Throwable cause) {
+        super(
+            "Line %d is not a valid request: %s"
+                .formatted(line, cause.getMessage()),
+            cause);
+    }
+}
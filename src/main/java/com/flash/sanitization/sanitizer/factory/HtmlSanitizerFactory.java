@@ -0,0 +1,135 @@
+package com.flash.sanitization.sanitizer.factory;
+
+import com.flash.sanitization.db.record.ConfigRecord;
+import com.flash.sanitization.sanitizer.exception.ConstructionException;
+import com.flash.sanitization.sanitizer.implementation.HtmlSanitizer;
+import com.flash.sanitization.sanitizer.implementation.Sanitizer;
+import com.flash.sanitization.sanitizer.implementation.StreamingHtmlSanitizer;
+import com.flash.sanitization.sanitizer.metrics.annotation.SanitizerMeasure;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.jsoup.safety.Safelist;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Creates html-sanitizers with their own {@link Safelist}, rather than the basic one of the
+ * {@link HtmlSanitizer} bean. All the settings are optional:
+ * <pre>
+ *     safelist                   none, simpleText, basic (the default), basicWithImages or relaxed to start from
+ *     tags                       b,i,span             tags to allow on top of that
+ *     remove-tags                a,img                tags to no longer allow
+ *     attributes.&lt;tag&gt;           class,title          attributes to allow on the tag, or on every tag with :all
+ *     protocols.&lt;tag&gt;.&lt;attr&gt;    https,mailto         the only protocols allowed in the url of the attribute,
+ *                                                     instead of those of the base safelist
+ *     enforced.&lt;tag&gt;.&lt;attr&gt;     nofollow             a value the attribute always gets
+ *     parser                     jsoup (the default) or streaming, see {@link StreamingHtmlSanitizer}
+ * </pre>
+ * The safelist is built once per configuration and never changed afterward, so the sanitizer can share it between
+ * threads.
+ */
+@Slf4j
+@Component("html-sanitizer-factory")
+public class HtmlSanitizerFactory implements SanitizerFactory {
+
+    /**
+     * Every protocol the base safelists allow an attribute, there's no way to ask a {@link Safelist} for them.
+     */
+    private static final String[] BASE_PROTOCOLS = {"ftp", "http", "https", "mailto"};
+
+    @SanitizerMeasure
+    @Override
+    public Sanitizer createSanitizer(ConfigRecord properties)
+        throws ConstructionException
+    {
+        try {
+            Map<String, String> config = Objects.isNull(properties.config()) ? Map.of() : properties.config();
+
+            Safelist safelist = safelist(config);
+
+            String parser = StringUtils.defaultIfEmpty(config.get("parser"), "jsoup");
+            log.info("Creating html sanitizer {} with the {} parser", properties.sanitizer(), parser);
+            return switch (parser) {
+                case "jsoup" -> new HtmlSanitizer(safelist);
+                case "streaming" -> new StreamingHtmlSanitizer(safelist);
+                default -> throw new IllegalArgumentException("Unknown parser '%s'".formatted(parser));
+            };
+        } catch(Exception e) {
+            throw new ConstructionException(
+                properties.sanitizer(),
+                properties.factory(),
+                e
+            );
+        }
+    }
+
+    /**
+     * Build the safelist described by the configuration.
+     */
+    static Safelist safelist(Map<String, String> config) {
+
+        String base = StringUtils.defaultIfEmpty(config.get("safelist"), "basic");
+        Safelist safelist = switch (base) {
+            case "none" -> Safelist.none();
+            case "simpleText" -> Safelist.simpleText();
+            case "basic" -> Safelist.basic();
+            case "basicWithImages" -> Safelist.basicWithImages();
+            case "relaxed" -> Safelist.relaxed();
+            default -> throw new IllegalArgumentException("Unknown safelist '%s'".formatted(base));
+        };
+
+        if (config.containsKey("tags")) {
+            safelist.addTags(split(config.get("tags")));
+        }
+
+        for (Map.Entry<String, String> setting : config.entrySet()) {
+            String[] key = setting.getKey().split("\\.");
+
+            if (key[0].equals("attributes") && key.length == 2) {
+                safelist.addAttributes(key[1], split(setting.getValue()));
+            } else if (key[0].equals("protocols") && key.length == 3) {
+                protocols(safelist, key[1], key[2], split(setting.getValue()));
+            } else if (key[0].equals("enforced") && key.length == 3) {
+                safelist.addEnforcedAttribute(key[1], key[2], setting.getValue());
+            } else if (key[0].equals("attributes") || key[0].equals("protocols") || key[0].equals("enforced")) {
+                throw new IllegalArgumentException("Setting '%s' is missing the tag or attribute".formatted(
+                    setting.getKey()));
+            }
+        }
+
+        // last, so a removed tag doesn't come back with its attributes
+        if (config.containsKey("remove-tags")) {
+            safelist.removeTags(split(config.get("remove-tags")));
+        }
+        return safelist;
+    }
+
+    /**
+     * Allow only the given protocols in the url of the attribute, rather than adding them to those of the base
+     * safelist. They're added before the others are removed, an attribute without any protocols allows them all.
+     */
+    private static void protocols(Safelist safelist, String tag, String attribute, String[] protocols) {
+
+        if (protocols.length == 0) {
+            throw new IllegalArgumentException("Setting 'protocols.%s.%s' has no protocols".formatted(tag, attribute));
+        }
+
+        safelist.addProtocols(tag, attribute, protocols);
+        String[] others = Arrays.stream(BASE_PROTOCOLS)
+            .filter(protocol -> Arrays.stream(protocols).noneMatch(protocol::equalsIgnoreCase))
+            .toArray(String[]::new);
+        if (others.length > 0) {
+            safelist.removeProtocols(tag, attribute, others);
+        }
+    }
+
+    private static String[] split(String value) {
+        return Arrays.stream(StringUtils.defaultString(value).split(","))
+            .map(String::trim)
+            .filter(s -> !s.isEmpty())
+            .toArray(String[]::new);
+    }
+}
@@ -5,13 +5,18 @@ import com.flash.sanitization.db.record.ConfigRecord;
 import com.flash.sanitization.sanitizer.exception.ConstructionException;
 import com.flash.sanitization.sanitizer.implementation.Sanitizer;
 import com.flash.sanitization.sanitizer.implementation.WordSanitizer;
+import com.flash.sanitization.sanitizer.matcher.CompactTrieMatcher;
+import com.flash.sanitization.sanitizer.matcher.WordMatcher;
+import com.flash.sanitization.sanitizer.metrics.SanitizerMetricBundle;
 import com.flash.sanitization.sanitizer.metrics.annotation.SanitizerMeasure;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
+import org.springframework.core.io.ClassPathResource;
 import org.springframework.stereotype.Component;
 import org.springframework.util.CollectionUtils;
 
+import java.io.InputStream;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -22,7 +27,14 @@ import java.util.List;
 @RequiredArgsConstructor
 public class WordSanitizerFactory implements SanitizerFactory {
 
+    /**
+     * From this many words on the words are compiled into a {@link CompactTrieMatcher}, which takes about a third of
+     * the memory of an automaton and compiles several times faster. Below it either is only a few hundred KB.
+     */
+    static final int COMPACT_THRESHOLD = 10_000;
+
     private final ObjectMapper objectMapper;
+    private final SanitizerMetricBundle sanitizerMetricBundle;
 
     @SanitizerMeasure
     @Override
@@ -54,11 +66,20 @@ public class WordSanitizerFactory implements SanitizerFactory {
                 );
             }
 
+            // a word list that was compiled up front, see DictionaryCompiler, is mapped rather than read. It doesn't
+            // have the words, but it knows whether they contain white space
+            if (src.startsWith("COMPILED:")) {
+                CompactTrieMatcher matcher = CompactTrieMatcher.map(Path.of(src.substring("COMPILED:".length())));
+                report(properties, matcher);
+                return WordSanitizer.of(matcher, maskValue, !matcher.hasWhiteSpace());
+            }
+
             List<String> blackList = new ArrayList<>();
 
-            // we allow for two configuration of banned words
+            // we allow for three configuration of banned words
             // either as a list, which is specified in the property i.e. LIST:this,is,bad
-            // or we allow it to be read from a file.
+            // or we allow it to be read from a file, either on the file system or the classpath.
+            // Large lists are better compiled up front, and configured as COMPILED:/path/to/words.dict
             if (src.startsWith("LIST:")) {
                 src = src.substring("LIST:".length());
                 blackList = Arrays.stream(src.split(","))
@@ -83,11 +104,33 @@ public class WordSanitizerFactory implements SanitizerFactory {
                 blackList =
                     objectMapper.readValue(path.toFile(),
                     objectMapper.getTypeFactory().constructCollectionType(List.class, String.class));
+            } else if (src.startsWith("CLASSPATH:")) {
+                src = src.substring("CLASSPATH:".length());
+
+                // Read it as a stream, inside a packaged jar there is no file we could point to.
+                try (InputStream inputStream = new ClassPathResource(src).getInputStream()) {
+                    blackList =
+                        objectMapper.readValue(inputStream,
+                        objectMapper.getTypeFactory().constructCollectionType(List.class, String.class));
+                }
             }
 
             log.debug("Black List: {}", blackList);
 
-            return new WordSanitizer(blackList, maskValue);
+            // compile the words once, the sanitizer can then be reused for every request. Only a sanitizer that
+            // keeps its words can be fused with others, which a large list is better off without. Either can
+            // sanitize segments if none of the words contains white space
+            WordSanitizer sanitizer;
+            if (blackList.size() >= COMPACT_THRESHOLD) {
+                CompactTrieMatcher matcher = CompactTrieMatcher.compile(blackList);
+                sanitizer = WordSanitizer.of(matcher, maskValue, !matcher.hasWhiteSpace());
+            } else {
+                sanitizer = WordSanitizer.of(blackList, maskValue);
+            }
+
+            report(properties, sanitizer.getMatcher());
+
+            return sanitizer;
         } catch(Exception e) {
             throw new ConstructionException(
                 properties.sanitizer(),
@@ -96,4 +139,14 @@ public class WordSanitizerFactory implements SanitizerFactory {
             );
         }
     }
+
+    private void report(ConfigRecord properties, WordMatcher matcher) {
+        log.info(
+            "Loaded {} words for {} into a {} of {} bytes",
+            matcher.getWordCount(),
+            properties.sanitizer(),
+            matcher.getClass().getSimpleName(),
+            matcher.getFootprint());
+        sanitizerMetricBundle.recordDictionary(properties.sanitizer(), matcher.getFootprint());
+    }
 }
@@ -0,0 +1,65 @@
+package com.flash.sanitization.sanitizer.implementation;
+
+/**
+ * Optional lower level contract for sanitizers that can read from any {@link CharSequence} and append to a
+ * {@link StringBuilder}. This lets a {@link com.flash.sanitization.sanitizer.pipeline.SanitizerPipeline} pass the same
+ * buffers from stage to stage, instead of every stage creating a new String.
+ */
+public interface BufferSanitizer extends Sanitizer {
+
+    /**
+     * Sanitize a value and append the result to the output. The appended value must be the same as what
+     * {@link #sanitize(String)} would return.
+     *
+     * @param toSanitize
+     * The value to sanitize, never null.
+     *
+     * @param output
+     * Where to append the sanitized value. Anything already in the output must be left alone.
+     */
+    void sanitize(CharSequence toSanitize, StringBuilder output);
+
+    /**
+     * Wrap a sanitizer so it can be used as a BufferSanitizer. Sanitizers that already implement the contract are
+     * returned as is, others go through a String.
+     */
+    static BufferSanitizer of(Sanitizer sanitizer) {
+        if (sanitizer instanceof BufferSanitizer bufferSanitizer) {
+            return bufferSanitizer;
+        }
+
+        return new BufferSanitizer() {
+            @Override
+            public void sanitize(CharSequence toSanitize, StringBuilder output) {
+                String sanitized = sanitizer.sanitize(toSanitize.toString());
+                if (sanitized != null) {
+                    output.append(sanitized);
+                }
+            }
+
+            @Override
+            public String sanitize(String toSanitize) {
+                return sanitizer.sanitize(toSanitize);
+            }
+        };
+    }
+
+    /**
+     * Trim the output from the given position onwards, the same way {@link String#trim()} does.
+     */
+    static void trim(StringBuilder output, int from) {
+        int end = output.length();
+        while (end > from && output.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        output.setLength(end);
+
+        int start = from;
+        while (start < end && output.charAt(start) <= ' ') {
+            start++;
+        }
+        if (start > from) {
+            output.delete(from, start);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.flash.sanitization.sanitizer.implementation;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Base for the writers returned by {@link StreamingSanitizer#sanitizing(Writer)}.
+ */
+abstract class SanitizingWriter extends Writer {
+
+    /**
+     * How much input the writers collect before they try to pass something on.
+     */
+    static final int CHUNK_SIZE = 8192;
+
+    protected final Writer downstream;
+
+    private char[] transfer;
+    private boolean closed;
+
+    SanitizingWriter(Writer downstream) {
+        this.downstream = downstream;
+    }
+
+    /**
+     * Called once when the writer is closed, write out everything that is still held back.
+     */
+    protected abstract void finish() throws IOException;
+
+    /**
+     * Write the first characters of the buffer downstream and remove them from the buffer.
+     */
+    protected void emit(StringBuilder buffer, int length) throws IOException {
+        if (length == 0) {
+            return;
+        }
+        if (transfer == null) {
+            transfer = new char[CHUNK_SIZE];
+        }
+
+        for (int start = 0; start < length; start += transfer.length) {
+            int end = Math.min(length, start + transfer.length);
+            buffer.getChars(start, end, transfer, 0);
+            downstream.write(transfer, 0, end - start);
+        }
+        buffer.delete(0, length);
+    }
+
+    protected void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+    }
+
+    /**
+     * Only passes on the flush, what's held back because it may still change is not written.
+     */
+    @Override
+    public void flush() throws IOException {
+        ensureOpen();
+        downstream.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        try {
+            finish();
+        } finally {
+            downstream.close();
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.flash.sanitization.sanitizer.implementation;
+
+/**
+ * Optional contract for sanitizers that can sanitize a value in segments, so a large value can be split up and
+ * sanitized on several threads at once. Only sanitizers that need no more context than the text between two white
+ * space characters can, which rules out anything parsing a structure, like html.
+ */
+public interface SegmentableSanitizer extends Sanitizer {
+
+    /**
+     * Sanitize a segment of a value, appending the result to the output. The value is split right before white space
+     * characters, and the segments joined and trimmed afterward have to give the same result as
+     * {@link #sanitize(String)}. So unlike that the segment isn't trimmed, and white space that isn't replaced has to
+     * be left where it is.
+     *
+     * @param segment
+     * The segment to sanitize, never null.
+     *
+     * @param output
+     * Where to append the sanitized segment. Anything already in the output must be left alone.
+     */
+    void sanitizeSegment(CharSequence segment, StringBuilder output);
+}
@@ -1,23 +1,321 @@
 package com.flash.sanitization.sanitizer.implementation;
 
+import lombok.NonNull;
 import org.springframework.stereotype.Component;
 
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Objects;
+
 /**
  * A very simple sql-sanitizer.
  * Added just so the sanitizer pipeline has some other options available to it.
+ * <br />
+ * Removes line comments, block comments and the DROP, DELETE, INSERT and UPDATE keywords using a hand-written lexer,
+ * so the input is only scanned once and the output is only allocated if something was removed.
  */
 @Component("sql-sanitizer")
-public class SqlSanitizer implements NoConfigSanitizer {
+public class SqlSanitizer implements NoConfigSanitizer, BufferSanitizer, StreamingSanitizer {
+
     @Override
     public String sanitize(String toSanitize) {
-        return toSanitize
-            .replaceAll("(?i)--.*?$", "")
-            .replaceAll("(?i)/\\*.*?\\*/", "")
-            .replaceAll("(?i)\\bDROP\\b", "")
-            .replaceAll("(?i)\\bDELETE\\b", "")
-            .replaceAll("(?i)\\bINSERT\\b", "")
-            .replaceAll("(?i)\\bUPDATE\\b", "")
-            .trim();
 
+        if (Objects.isNull(toSanitize)) {
+            return null;
+        }
+
+        Lexer lexer = new Lexer(toSanitize);
+        lexer.feed(toSanitize, 0, toSanitize.length());
+        lexer.finish();
+
+        return lexer.result().trim();
+    }
+
+    @Override
+    public void sanitize(CharSequence toSanitize, StringBuilder output) {
+        int start = output.length();
+
+        Lexer lexer = new Lexer(output);
+        lexer.feed(toSanitize, 0, toSanitize.length());
+        lexer.finish();
+
+        BufferSanitizer.trim(output, start);
+    }
+
+    @Override
+    public Writer sanitizing(Writer downstream) {
+        return new LexerWriter(new TrimWriter(downstream));
+    }
+
+    /**
+     * Feeds the lexer as the input comes in, and passes on the output up to the word that could still turn out to be
+     * a keyword.
+     */
+    private static class LexerWriter extends SanitizingWriter {
+
+        private final StringBuilder output = new StringBuilder();
+        private final Lexer lexer = new Lexer(output);
+
+        private LexerWriter(Writer downstream) {
+            super(downstream);
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) throws IOException {
+            ensureOpen();
+
+            lexer.feed(cbuf, off, off + len);
+            if (output.length() >= CHUNK_SIZE) {
+                int stable = lexer.stableLength();
+                emit(output, stable);
+                lexer.discarded(stable);
+            }
+        }
+
+        @Override
+        protected void finish() throws IOException {
+            lexer.finish();
+            emit(output, output.length());
+        }
+    }
+
+    /**
+     * A character at a time state machine, so it doesn't matter where the input is split when it's fed to the lexer.
+     * <br />
+     * Keywords are matched against the output rather than the input, that way a keyword that's only formed once a
+     * comment in the middle of it is removed is still removed.
+     */
+    static class Lexer {
+
+        private static final int CODE = 0;
+        private static final int AFTER_DASH = 1;
+        private static final int AFTER_SLASH = 2;
+        private static final int LINE_COMMENT = 3;
+        private static final int BLOCK_COMMENT = 4;
+        private static final int BLOCK_COMMENT_AFTER_STAR = 5;
+
+        private static final String[] KEYWORDS = {"DROP", "DELETE", "INSERT", "UPDATE"};
+        private static final int MAX_KEYWORD_LENGTH = 6;
+
+        private static final int NOT_IN_WORD = -1;
+        private static final int LONG_WORD = -2;
+
+        /**
+         * When lexing a source the output stays virtual, the first outputLength characters of the source, until
+         * something is actually removed.
+         */
+        private final CharSequence source;
+        private int outputLength;
+        private StringBuilder out;
+
+        private int state = CODE;
+
+        /**
+         * Position in the output where the current word started, {@link #NOT_IN_WORD} when we're not in a word and
+         * {@link #LONG_WORD} when the word is too long to be a keyword.
+         */
+        private int wordStart = NOT_IN_WORD;
+
+        Lexer(@NonNull CharSequence source) {
+            this.source = source;
+        }
+
+        /**
+         * Lexer that appends straight to the output.
+         */
+        Lexer(@NonNull StringBuilder out) {
+            this.source = null;
+            this.out = out;
+        }
+
+        void feed(CharSequence input, int from, int to) {
+            for (int i = from; i < to; i++) {
+                accept(input.charAt(i));
+            }
+        }
+
+        void feed(char[] input, int from, int to) {
+            for (int i = from; i < to; i++) {
+                accept(input[i]);
+            }
+        }
+
+        /**
+         * @return The length of the output that can't change anymore, whatever input is still to come.
+         */
+        int stableLength() {
+            return wordStart >= 0 ? wordStart : out.length();
+        }
+
+        /**
+         * The first characters of the output have been written somewhere else and were removed from it.
+         */
+        void discarded(int length) {
+            if (wordStart >= 0) {
+                wordStart -= length;
+            }
+        }
+
+        /**
+         * Signal the end of the input, releasing anything the lexer was holding on to.
+         */
+        void finish() {
+            if (state == AFTER_DASH) {
+                emit('-');
+            } else if (state == AFTER_SLASH) {
+                emit('/');
+            }
+            // an unterminated block comment is dropped completely
+            state = CODE;
+            endWord();
+        }
+
+        /**
+         * @return The lexed output, the source itself if nothing was removed.
+         */
+        String result() {
+            return Objects.isNull(out) ? source.toString() : out.toString();
+        }
+
+        private void accept(char c) {
+            switch (state) {
+                case CODE -> code(c);
+                case AFTER_DASH -> {
+                    if (c == '-') {
+                        state = LINE_COMMENT;
+                        removed();
+                    } else {
+                        emit('-');
+                        state = CODE;
+                        code(c);
+                    }
+                }
+                case AFTER_SLASH -> {
+                    if (c == '*') {
+                        state = BLOCK_COMMENT;
+                        removed();
+                    } else {
+                        emit('/');
+                        state = CODE;
+                        code(c);
+                    }
+                }
+                case LINE_COMMENT -> {
+                    // the line terminator is not part of the comment
+                    if (isLineTerminator(c)) {
+                        state = CODE;
+                        emit(c);
+                    }
+                }
+                case BLOCK_COMMENT -> {
+                    if (c == '*') {
+                        state = BLOCK_COMMENT_AFTER_STAR;
+                    }
+                }
+                case BLOCK_COMMENT_AFTER_STAR -> {
+                    if (c == '/') {
+                        state = CODE;
+                    } else if (c != '*') {
+                        state = BLOCK_COMMENT;
+                    }
+                }
+                default -> throw new IllegalStateException("Unknown lexer state " + state);
+            }
+        }
+
+        private void code(char c) {
+            // hold on to these until we know if they start a comment
+            if (c == '-') {
+                state = AFTER_DASH;
+            } else if (c == '/') {
+                state = AFTER_SLASH;
+            } else {
+                emit(c);
+            }
+        }
+
+        private void emit(char c) {
+            if (isWordChar(c)) {
+                if (wordStart == NOT_IN_WORD) {
+                    wordStart = length();
+                } else if (wordStart >= 0 && length() - wordStart >= MAX_KEYWORD_LENGTH) {
+                    wordStart = LONG_WORD;
+                }
+            } else {
+                endWord();
+            }
+
+            if (Objects.isNull(out)) {
+                outputLength++;
+            } else {
+                out.append(c);
+            }
+        }
+
+        private void endWord() {
+            if (wordStart >= 0 && isKeyword(wordStart, length())) {
+                truncate(wordStart);
+            }
+            wordStart = NOT_IN_WORD;
+        }
+
+        private boolean isKeyword(int from, int to) {
+            int length = to - from;
+            if (length != 4 && length != MAX_KEYWORD_LENGTH) {
+                return false;
+            }
+
+            for (String keyword : KEYWORDS) {
+                if (keyword.length() != length) {
+                    continue;
+                }
+
+                int i = 0;
+                // keywords are upper case letters, so clearing the lower case bit folds the case
+                while (i < length && (charAt(from + i) & ~0x20) == keyword.charAt(i)) {
+                    i++;
+                }
+                if (i == length) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private int length() {
+            return Objects.isNull(out) ? outputLength : out.length();
+        }
+
+        private char charAt(int index) {
+            return Objects.isNull(out) ? source.charAt(index) : out.charAt(index);
+        }
+
+        private void truncate(int length) {
+            if (Objects.isNull(out)) {
+                out = new StringBuilder(source.length()).append(source, 0, length);
+            } else {
+                out.setLength(length);
+            }
+        }
+
+        /**
+         * Something was dropped from the input so the output can no longer be a prefix of the source.
+         */
+        private void removed() {
+            if (Objects.isNull(out)) {
+                out = new StringBuilder(source.length()).append(source, 0, outputLength);
+            }
+        }
+
+        /**
+         * Word characters as used by \b, letters, digits and underscores from the ASCII range.
+         */
+        private static boolean isWordChar(char c) {
+            return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+        }
+
+        private static boolean isLineTerminator(char c) {
+            return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+        }
     }
 }
@@ -0,0 +1,1137 @@
+package com.flash.sanitization.sanitizer.implementation;
+
+import lombok.NonNull;
+import org.jsoup.nodes.Attribute;
+import org.jsoup.nodes.Element;
+import org.jsoup.parser.Parser;
+import org.jsoup.parser.Tag;
+import org.jsoup.safety.Safelist;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An html-sanitizer that cleans the html while it's being read, rather than parsing it into a document first.
+ * <br />
+ * It keeps what {@link HtmlSanitizer} keeps: the tags, attributes and protocols allowed by the {@link Safelist} (by
+ * default {@link Safelist#basic()}), the text of every other element except scripts, styles and the like, and the
+ * attributes the safelist enforces. The checks themselves are done by the safelist, only the parsing is different.
+ * <br />
+ * Instead of a tree only the elements that are still open are kept, which is enough to follow the rules of the html
+ * parser that change the structure: paragraphs that are closed by the next block, list items closed by the next item
+ * and formatting elements that are reopened after a block is closed. Misnested formatting elements around blocks and
+ * content moved out of tables are where it can differ from jsoup, its output is always as safe though.
+ * <br />
+ * Memory is the depth of the html and the tag that's being read, not the size of the input.
+ */
+@Component("streaming-html-sanitizer")
+public class StreamingHtmlSanitizer implements NoConfigSanitizer, BufferSanitizer, StreamingSanitizer {
+
+    private final Safelist safelist;
+
+    /**
+     * The start tags of the allowed elements when they have no attributes, which is most of them.
+     */
+    private final Map<String, String> plainStartTags = new ConcurrentHashMap<>();
+
+    public StreamingHtmlSanitizer() {
+        this(Safelist.basic());
+    }
+
+    public StreamingHtmlSanitizer(@NonNull Safelist safelist) {
+        this.safelist = safelist;
+    }
+
+    @Override
+    public String sanitize(String toSanitize) {
+
+        if (Objects.isNull(toSanitize)) {
+            return null;
+        }
+
+        StringBuilder output = new StringBuilder(toSanitize.length());
+        sanitize(toSanitize, output);
+        return output.toString();
+    }
+
+    @Override
+    public void sanitize(CharSequence toSanitize, StringBuilder output) {
+        int start = output.length();
+
+        Tokenizer tokenizer = new Tokenizer(new TreeBuilder(output));
+        tokenizer.feed(toSanitize, 0, toSanitize.length());
+        tokenizer.finish();
+
+        BufferSanitizer.trim(output, start);
+    }
+
+    @Override
+    public Writer sanitizing(Writer downstream) {
+        return new TokenizerWriter(new TrimWriter(downstream));
+    }
+
+    /**
+     * Feeds the tokenizer as the input comes in. Nothing that's been written to the output ever changes, so it can
+     * all be passed on.
+     */
+    private class TokenizerWriter extends SanitizingWriter {
+
+        private final StringBuilder output = new StringBuilder();
+        private final Tokenizer tokenizer = new Tokenizer(new TreeBuilder(output));
+
+        private TokenizerWriter(Writer downstream) {
+            super(downstream);
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) throws IOException {
+            ensureOpen();
+
+            tokenizer.feed(cbuf, off, off + len);
+            if (output.length() >= CHUNK_SIZE) {
+                emit(output, output.length());
+            }
+        }
+
+        @Override
+        protected void finish() throws IOException {
+            tokenizer.finish();
+            emit(output, output.length());
+        }
+    }
+
+    private static final Set<String> RAW_TEXT = Set.of("script", "style", "xmp", "iframe", "noembed", "noframes");
+    private static final Set<String> RCDATA = Set.of("title", "textarea");
+
+    /**
+     * A character at a time version of the html tokenizer, so it doesn't matter where the input is split when it's
+     * fed to it. Text is collected and decoded in one go, tags are handed to the {@link TreeBuilder} once complete.
+     */
+    private class Tokenizer {
+
+        private static final int DATA = 0;
+        private static final int TAG_OPEN = 1;
+        private static final int END_TAG_OPEN = 2;
+        private static final int TAG_NAME = 3;
+        private static final int BEFORE_ATTRIBUTE_NAME = 4;
+        private static final int ATTRIBUTE_NAME = 5;
+        private static final int AFTER_ATTRIBUTE_NAME = 6;
+        private static final int BEFORE_ATTRIBUTE_VALUE = 7;
+        private static final int ATTRIBUTE_VALUE_DOUBLE = 8;
+        private static final int ATTRIBUTE_VALUE_SINGLE = 9;
+        private static final int ATTRIBUTE_VALUE_UNQUOTED = 10;
+        private static final int AFTER_ATTRIBUTE_VALUE = 11;
+        private static final int SELF_CLOSING = 12;
+        private static final int MARKUP_DECLARATION = 13;
+        private static final int COMMENT_START = 14;
+        private static final int COMMENT_START_DASH = 15;
+        private static final int COMMENT = 16;
+        private static final int COMMENT_END_DASH = 17;
+        private static final int COMMENT_END = 18;
+        private static final int COMMENT_END_BANG = 19;
+        private static final int BOGUS_COMMENT = 20;
+        private static final int RAW = 21;
+        private static final int RAW_LESS_THAN = 22;
+        private static final int RAW_END_TAG = 23;
+        private static final int PLAINTEXT = 24;
+
+        /**
+         * A character reference is never longer than this, so text can be decoded up to the last '&' before it.
+         */
+        private static final int MAX_REFERENCE_LENGTH = 40;
+
+        private final TreeBuilder tree;
+        private int state = DATA;
+
+        private final StringBuilder text = new StringBuilder();
+        private boolean decodeText = true;
+        private boolean keepText = true;
+
+        private final StringBuilder tagName = new StringBuilder();
+        private boolean endTag;
+        private boolean selfClosing;
+
+        /**
+         * The attributes are only collected for tags that are kept.
+         */
+        private boolean keepAttributes;
+        private boolean inAttribute;
+        private final StringBuilder attributeName = new StringBuilder();
+        private final StringBuilder attributeValue = new StringBuilder();
+        private final List<String> attributeNames = new ArrayList<>();
+        private final List<String> attributeValues = new ArrayList<>();
+
+        /**
+         * The element whose end tag ends the raw text, with how much of the end tag was matched and where it starts
+         * in the text.
+         */
+        private String rawEndTag;
+        private int rawMatched;
+        private int rawEndStart;
+
+        private int dashes;
+
+        Tokenizer(TreeBuilder tree) {
+            this.tree = tree;
+        }
+
+        void feed(CharSequence input, int from, int to) {
+            for (int i = from; i < to; i++) {
+                accept(input.charAt(i));
+            }
+        }
+
+        void feed(char[] input, int from, int to) {
+            for (int i = from; i < to; i++) {
+                accept(input[i]);
+            }
+        }
+
+        /**
+         * Signal the end of the input. A tag or comment that isn't complete is dropped.
+         */
+        void finish() {
+            if (state == TAG_OPEN) {
+                text.append('<');
+            } else if (state == END_TAG_OPEN) {
+                text.append("</");
+            }
+            flushText();
+            tree.finish();
+        }
+
+        private void accept(char c) {
+            switch (state) {
+                case DATA -> {
+                    if (c == '<') {
+                        state = TAG_OPEN;
+                    } else {
+                        appendText(c);
+                    }
+                }
+                case TAG_OPEN -> {
+                    if (isAsciiLetter(c)) {
+                        startTag(false);
+                        accept(c);
+                    } else if (c == '/') {
+                        state = END_TAG_OPEN;
+                    } else if (c == '!') {
+                        dashes = 0;
+                        state = MARKUP_DECLARATION;
+                    } else if (c == '?') {
+                        comment(BOGUS_COMMENT);
+                    } else {
+                        text.append('<');
+                        state = DATA;
+                        accept(c);
+                    }
+                }
+                case END_TAG_OPEN -> {
+                    if (isAsciiLetter(c)) {
+                        startTag(true);
+                        accept(c);
+                    } else if (c == '>') {
+                        state = DATA;
+                    } else {
+                        comment(BOGUS_COMMENT);
+                    }
+                }
+                case TAG_NAME -> {
+                    if (isWhitespace(c)) {
+                        startAttributes();
+                        state = BEFORE_ATTRIBUTE_NAME;
+                    } else if (c == '/') {
+                        startAttributes();
+                        state = SELF_CLOSING;
+                    } else if (c == '>') {
+                        emitTag();
+                    } else {
+                        tagName.append(lowerCase(c));
+                    }
+                }
+                case BEFORE_ATTRIBUTE_NAME -> {
+                    if (c == '/') {
+                        state = SELF_CLOSING;
+                    } else if (c == '>') {
+                        emitTag();
+                    } else if (!isWhitespace(c)) {
+                        // even '=' starts the name here
+                        startAttribute(c);
+                    }
+                }
+                case ATTRIBUTE_NAME -> {
+                    if (isWhitespace(c)) {
+                        state = AFTER_ATTRIBUTE_NAME;
+                    } else if (c == '/') {
+                        state = SELF_CLOSING;
+                    } else if (c == '=') {
+                        state = BEFORE_ATTRIBUTE_VALUE;
+                    } else if (c == '>') {
+                        emitTag();
+                    } else if (keepAttributes) {
+                        attributeName.append(lowerCase(c));
+                    }
+                }
+                case AFTER_ATTRIBUTE_NAME -> {
+                    if (c == '/') {
+                        state = SELF_CLOSING;
+                    } else if (c == '=') {
+                        state = BEFORE_ATTRIBUTE_VALUE;
+                    } else if (c == '>') {
+                        emitTag();
+                    } else if (!isWhitespace(c)) {
+                        startAttribute(c);
+                    }
+                }
+                case BEFORE_ATTRIBUTE_VALUE -> {
+                    if (c == '"') {
+                        state = ATTRIBUTE_VALUE_DOUBLE;
+                    } else if (c == '\'') {
+                        state = ATTRIBUTE_VALUE_SINGLE;
+                    } else if (c == '>') {
+                        emitTag();
+                    } else if (!isWhitespace(c)) {
+                        state = ATTRIBUTE_VALUE_UNQUOTED;
+                        accept(c);
+                    }
+                }
+                case ATTRIBUTE_VALUE_DOUBLE -> {
+                    if (c == '"') {
+                        state = AFTER_ATTRIBUTE_VALUE;
+                    } else {
+                        appendValue(c);
+                    }
+                }
+                case ATTRIBUTE_VALUE_SINGLE -> {
+                    if (c == '\'') {
+                        state = AFTER_ATTRIBUTE_VALUE;
+                    } else {
+                        appendValue(c);
+                    }
+                }
+                case ATTRIBUTE_VALUE_UNQUOTED -> {
+                    if (isWhitespace(c)) {
+                        state = BEFORE_ATTRIBUTE_NAME;
+                    } else if (c == '>') {
+                        emitTag();
+                    } else {
+                        appendValue(c);
+                    }
+                }
+                case AFTER_ATTRIBUTE_VALUE -> {
+                    if (c == '/') {
+                        state = SELF_CLOSING;
+                    } else if (c == '>') {
+                        emitTag();
+                    } else {
+                        state = BEFORE_ATTRIBUTE_NAME;
+                        accept(c);
+                    }
+                }
+                case SELF_CLOSING -> {
+                    if (c == '>') {
+                        selfClosing = true;
+                        emitTag();
+                    } else {
+                        state = BEFORE_ATTRIBUTE_NAME;
+                        accept(c);
+                    }
+                }
+                case MARKUP_DECLARATION -> {
+                    // only <!-- starts a real comment, doctypes, cdata and the rest end at the first '>'
+                    if (c == '-' && dashes == 0) {
+                        dashes++;
+                    } else if (c == '-') {
+                        comment(COMMENT_START);
+                    } else {
+                        comment(BOGUS_COMMENT);
+                        accept(c);
+                    }
+                }
+                case COMMENT_START -> state = c == '-' ? COMMENT_START_DASH : c == '>' ? DATA : COMMENT;
+                case COMMENT_START_DASH -> state = c == '-' ? COMMENT_END : c == '>' ? DATA : COMMENT;
+                case COMMENT -> state = c == '-' ? COMMENT_END_DASH : COMMENT;
+                case COMMENT_END_DASH -> state = c == '-' ? COMMENT_END : COMMENT;
+                case COMMENT_END -> state = c == '>' ? DATA : c == '!' ? COMMENT_END_BANG : c == '-' ? COMMENT_END : COMMENT;
+                case COMMENT_END_BANG -> state = c == '>' ? DATA : c == '-' ? COMMENT_END_DASH : COMMENT;
+                case BOGUS_COMMENT -> state = c == '>' ? DATA : BOGUS_COMMENT;
+                case RAW -> {
+                    if (c == '<') {
+                        rawEndStart = text.length();
+                        appendRaw(c);
+                        state = RAW_LESS_THAN;
+                    } else {
+                        appendText(c);
+                    }
+                }
+                case RAW_LESS_THAN -> {
+                    if (c == '/') {
+                        appendRaw(c);
+                        rawMatched = 0;
+                        state = RAW_END_TAG;
+                    } else {
+                        state = RAW;
+                        accept(c);
+                    }
+                }
+                case RAW_END_TAG -> {
+                    if (rawMatched < rawEndTag.length() && lowerCase(c) == rawEndTag.charAt(rawMatched)) {
+                        appendRaw(c);
+                        rawMatched++;
+                    } else if (rawMatched == rawEndTag.length() && (isWhitespace(c) || c == '/' || c == '>')) {
+                        if (keepText) {
+                            text.setLength(rawEndStart);
+                        }
+                        flushText();
+                        decodeText = true;
+                        keepText = true;
+                        startTag(true);
+                        tagName.append(rawEndTag);
+                        accept(c);
+                    } else {
+                        state = RAW;
+                        accept(c);
+                    }
+                }
+                case PLAINTEXT -> appendText(c);
+                default -> throw new IllegalStateException("Unknown tokenizer state " + state);
+            }
+        }
+
+        private void startTag(boolean end) {
+            tagName.setLength(0);
+            endTag = end;
+            selfClosing = false;
+            keepAttributes = false;
+            inAttribute = false;
+            attributeNames.clear();
+            attributeValues.clear();
+            state = TAG_NAME;
+        }
+
+        private void startAttributes() {
+            keepAttributes = !endTag && safelist.isSafeTag(tagName.toString());
+        }
+
+        private void startAttribute(char c) {
+            commitAttribute();
+            inAttribute = true;
+            attributeName.setLength(0);
+            attributeValue.setLength(0);
+            if (keepAttributes) {
+                attributeName.append(lowerCase(c));
+            }
+            state = ATTRIBUTE_NAME;
+        }
+
+        private void appendValue(char c) {
+            if (keepAttributes) {
+                attributeValue.append(c);
+            }
+        }
+
+        /**
+         * Only the first of the attributes with the same name counts.
+         */
+        private void commitAttribute() {
+            if (inAttribute && keepAttributes && !attributeNames.contains(attributeName.toString())) {
+                attributeNames.add(attributeName.toString());
+                attributeValues.add(unescape(attributeValue.toString(), true));
+            }
+            inAttribute = false;
+        }
+
+        private void emitTag() {
+            commitAttribute();
+            flushText();
+            state = DATA;
+
+            String name = tagName.toString();
+            if (endTag) {
+                tree.endTag(name);
+                return;
+            }
+
+            tree.startTag(name, attributeNames, attributeValues, selfClosing);
+
+            if (RAW_TEXT.contains(name) || RCDATA.contains(name)) {
+                // scripts and the like are data, only kept when the element itself is
+                rawEndTag = name;
+                decodeText = RCDATA.contains(name);
+                keepText = decodeText || safelist.isSafeTag(name);
+                tree.raw(!decodeText);
+                state = RAW;
+            } else if (name.equals("plaintext")) {
+                // there is no end to it
+                decodeText = false;
+                state = PLAINTEXT;
+            }
+        }
+
+        private void comment(int commentState) {
+            flushText();
+            state = commentState;
+        }
+
+        private void appendText(char c) {
+            if (!keepText) {
+                return;
+            }
+            text.append(c);
+            if (text.length() >= SanitizingWriter.CHUNK_SIZE) {
+                flushPart();
+            }
+        }
+
+        private void appendRaw(char c) {
+            if (keepText) {
+                text.append(c);
+            }
+        }
+
+        /**
+         * Hand over most of a long text, up to where a character reference could be cut in two.
+         */
+        private void flushPart() {
+            int end = text.length();
+            if (decodeText) {
+                int reference = text.lastIndexOf("&", end - 1);
+                if (reference >= 0 && end - reference < MAX_REFERENCE_LENGTH) {
+                    end = reference;
+                }
+            }
+            if (end > 0) {
+                tree.text(decode(text.substring(0, end)));
+                text.delete(0, end);
+            }
+        }
+
+        private void flushText() {
+            if (!text.isEmpty()) {
+                tree.text(decode(text.toString()));
+                text.setLength(0);
+            }
+        }
+
+        private String decode(String raw) {
+            return decodeText ? unescape(raw, false) : raw;
+        }
+    }
+
+    /**
+     * Decode the character references in text or an attribute value the way jsoup does.
+     * <br />
+     * Jsoup sets up a whole tokeniser to decode a value, so it's only asked when there's a named reference, numeric
+     * ones are decoded here.
+     */
+    static String unescape(String raw, boolean inAttribute) {
+
+        int reference = raw.indexOf('&');
+        if (reference < 0) {
+            return raw;
+        }
+
+        StringBuilder decoded = new StringBuilder(raw.length());
+        int copied = 0;
+        while (reference >= 0) {
+            int next = reference + 1;
+            if (next < raw.length() && isAsciiLetter(raw.charAt(next))) {
+                // named references have rules of their own
+                return Parser.unescapeEntities(raw, inAttribute);
+            }
+
+            int end = next < raw.length() && raw.charAt(next) == '#' ? numericReferenceEnd(raw, next + 1) : -1;
+            if (end >= 0) {
+                decoded.append(raw, copied, reference).appendCodePoint(codePoint(raw, next + 1, end));
+                copied = end < raw.length() && raw.charAt(end) == ';' ? end + 1 : end;
+                next = copied;
+            }
+            reference = raw.indexOf('&', next);
+        }
+        return decoded.append(raw, copied, raw.length()).toString();
+    }
+
+    /**
+     * @return The end of the digits of a numeric reference, or -1 if there are none.
+     */
+    private static int numericReferenceEnd(String raw, int from) {
+        int start = from < raw.length() && (raw.charAt(from) == 'x' || raw.charAt(from) == 'X') ? from + 1 : from;
+        int radix = start == from ? 10 : 16;
+
+        int end = start;
+        while (end < raw.length() && Character.digit(raw.charAt(end), radix) >= 0 && raw.charAt(end) < 128) {
+            end++;
+        }
+        return end == start ? -1 : end;
+    }
+
+    private static int codePoint(String raw, int from, int end) {
+        int start = raw.charAt(from) == 'x' || raw.charAt(from) == 'X' ? from + 1 : from;
+        int radix = start == from ? 10 : 16;
+
+        long value = 0;
+        for (int i = start; i < end && value <= Character.MAX_CODE_POINT; i++) {
+            value = value * radix + Character.digit(raw.charAt(i), radix);
+        }
+
+        if (value > Character.MAX_CODE_POINT) {
+            return REPLACEMENT;
+        }
+        if (value >= 0x80 && value < 0x80 + WINDOWS_1252.length) {
+            // like browsers, these are read as windows-1252 rather than as control characters
+            return WINDOWS_1252[(int) value - 0x80];
+        }
+        return (int) value;
+    }
+
+    private static final char REPLACEMENT = '\uFFFD';
+
+    private static final int[] WINDOWS_1252 = {
+        0x20AC, 0x0081, 0x201A, 0x0192, 0x201E, 0x2026, 0x2020, 0x2021,
+        0x02C6, 0x2030, 0x0160, 0x2039, 0x0152, 0x008D, 0x017D, 0x008F,
+        0x0090, 0x2018, 0x2019, 0x201C, 0x201D, 0x2022, 0x2013, 0x2014,
+        0x02DC, 0x2122, 0x0161, 0x203A, 0x0153, 0x009D, 0x017E, 0x0178,
+    };
+
+    private static final Set<String> IGNORED = Set.of("html", "head", "body", "frameset");
+
+    private static final Set<String> VOID = Set.of(
+        "area", "base", "basefont", "bgsound", "br", "col", "embed", "frame", "hr", "image", "img", "input", "keygen",
+        "link", "meta", "param", "source", "track", "wbr");
+
+    private static final Set<String> HEADINGS = Set.of("h1", "h2", "h3", "h4", "h5", "h6");
+
+    /**
+     * Start tags that close an open paragraph.
+     */
+    private static final Set<String> CLOSES_PARAGRAPH = Set.of(
+        "address", "article", "aside", "blockquote", "center", "details", "dialog", "dir", "div", "dl", "fieldset",
+        "figcaption", "figure", "footer", "form", "header", "hgroup", "hr", "h1", "h2", "h3", "h4", "h5", "h6",
+        "listing", "main", "menu", "nav", "ol", "p", "plaintext", "pre", "search", "section", "summary", "table", "ul",
+        "xmp");
+
+    /**
+     * Start tags in front of which the formatting elements that were closed implicitly aren't reopened.
+     */
+    private static final Set<String> NO_RECONSTRUCT = Set.of(
+        "address", "article", "aside", "blockquote", "center", "details", "dialog", "dir", "div", "dl", "fieldset",
+        "figcaption", "figure", "footer", "form", "header", "hgroup", "hr", "h1", "h2", "h3", "h4", "h5", "h6",
+        "listing", "main", "menu", "nav", "ol", "p", "plaintext", "pre", "search", "section", "summary", "table", "ul",
+        "li", "dd", "dt", "caption", "colgroup", "col", "tbody", "td", "tfoot", "th", "thead", "tr", "title",
+        "textarea", "script", "style", "noembed", "noframes", "iframe", "base", "basefont", "bgsound", "link", "meta",
+        "param", "source", "track", "frame");
+
+    private static final Set<String> FORMATTING = Set.of(
+        "a", "b", "big", "code", "em", "font", "i", "nobr", "s", "small", "strike", "strong", "tt", "u");
+
+    /**
+     * Elements that the formatting elements opened inside of them can't leak out of.
+     */
+    private static final Set<String> MARKERS = Set.of("applet", "caption", "marquee", "object", "td", "th", "template");
+
+    private static final Set<String> IMPLIED_END = Set.of(
+        "dd", "dt", "li", "optgroup", "option", "p", "rb", "rp", "rt", "rtc");
+
+    private static final Set<String> BLOCK_END = Set.of(
+        "address", "article", "aside", "blockquote", "button", "center", "details", "dialog", "dir", "div", "dl",
+        "fieldset", "figcaption", "figure", "footer", "form", "header", "hgroup", "listing", "main", "menu", "nav", "ol",
+        "pre", "search", "section", "summary", "ul", "applet", "marquee", "object");
+
+    private static final Set<String> TABLE_PARTS = Set.of(
+        "table", "caption", "colgroup", "tbody", "td", "tfoot", "th", "thead", "tr");
+
+    private static final Set<String> SPECIAL = Set.of(
+        "address", "applet", "area", "article", "aside", "base", "basefont", "bgsound", "blockquote", "body", "br",
+        "button", "caption", "center", "col", "colgroup", "dd", "details", "dir", "div", "dl", "dt", "embed",
+        "fieldset", "figcaption", "figure", "footer", "form", "frame", "frameset", "h1", "h2", "h3", "h4", "h5", "h6",
+        "head", "header", "hgroup", "hr", "html", "iframe", "img", "input", "keygen", "li", "link", "listing", "main",
+        "marquee", "menu", "meta", "nav", "noembed", "noframes", "noscript", "object", "ol", "p", "param", "plaintext",
+        "pre", "script", "search", "section", "select", "source", "style", "summary", "table", "tbody", "td",
+        "template", "textarea", "tfoot", "th", "thead", "title", "tr", "track", "ul", "wbr", "xmp");
+
+    private static final Set<String> DEFAULT_SCOPE = Set.of(
+        "applet", "caption", "html", "table", "td", "th", "marquee", "object", "template");
+    private static final Set<String> BUTTON_SCOPE = Set.of(
+        "applet", "caption", "html", "table", "td", "th", "marquee", "object", "template", "button");
+    private static final Set<String> LIST_ITEM_SCOPE = Set.of(
+        "applet", "caption", "html", "table", "td", "th", "marquee", "object", "template", "ol", "ul");
+    private static final Set<String> TABLE_SCOPE = Set.of("html", "table", "template");
+
+    /**
+     * Like jsoup we only look this deep into the open elements, so deeply nested input can't make every tag cost more.
+     */
+    private static final int MAX_SCOPE_DEPTH = 100;
+
+    /**
+     * An open element, or one that was closed while it was still in the list of formatting elements.
+     */
+    private static final class OpenElement {
+        private final String name;
+        /**
+         * The start tag as it was written, null if the element was dropped.
+         */
+        private final String startTag;
+        private boolean open = true;
+
+        private OpenElement(String name, String startTag) {
+            this.name = name;
+            this.startTag = startTag;
+        }
+    }
+
+    private static final OpenElement MARKER = new OpenElement("", null);
+
+    /**
+     * Follows the rules of the html tree construction for the elements that are still open, and writes the tags of
+     * the elements that are kept.
+     */
+    private class TreeBuilder {
+
+        private final StringBuilder out;
+        private final List<OpenElement> stack = new ArrayList<>();
+        private final List<OpenElement> formatting = new ArrayList<>();
+
+        private boolean skipNewline;
+        private boolean raw;
+        private boolean data;
+
+        /**
+         * Carries the attribute that's checked, the safelist resolves urls through the element.
+         */
+        private Element scratch;
+
+        TreeBuilder(StringBuilder out) {
+            this.out = out;
+        }
+
+        void raw(boolean data) {
+            this.raw = true;
+            this.data = data;
+        }
+
+        void text(String text) {
+            if (skipNewline && text.startsWith("\n")) {
+                text = text.substring(1);
+            }
+            skipNewline = false;
+            if (text.isEmpty()) {
+                return;
+            }
+
+            if (data) {
+                // the contents of a script or style that's allowed
+                out.append(text);
+                return;
+            }
+            if (!raw) {
+                reconstructFormatting();
+            }
+            escape(out, text, false);
+        }
+
+        void startTag(String name, List<String> attributeNames, List<String> attributeValues, boolean selfClosing) {
+            skipNewline = false;
+
+            if (IGNORED.contains(name)) {
+                return;
+            }
+
+            if (name.equals("a")) {
+                // a link in a link closes the first one
+                OpenElement link = activeFormatting("a");
+                if (Objects.nonNull(link)) {
+                    if (link.open) {
+                        popUntil(link);
+                    }
+                    formatting.remove(link);
+                }
+            }
+
+            if (CLOSES_PARAGRAPH.contains(name)) {
+                closeParagraph();
+            }
+            if (HEADINGS.contains(name) && !stack.isEmpty() && HEADINGS.contains(current().name)) {
+                pop();
+            }
+            switch (name) {
+                case "li" -> closeListItem(Set.of("li"));
+                case "dd", "dt" -> closeListItem(Set.of("dd", "dt"));
+                case "td", "th" -> closeInTableScope(Set.of("td", "th"));
+                case "tr" -> closeInTableScope(Set.of("tr"));
+                case "tbody", "thead", "tfoot" -> closeInTableScope(Set.of("tbody", "thead", "tfoot"));
+                case "option", "optgroup" -> {
+                    if (!stack.isEmpty() && current().name.equals("option")) {
+                        pop();
+                    }
+                }
+                default -> {
+                }
+            }
+            if (!NO_RECONSTRUCT.contains(name) || name.equals("xmp")) {
+                reconstructFormatting();
+            }
+
+            String startTag = keptStartTag(name, attributeNames, attributeValues);
+
+            // like jsoup, the self closing flag only counts for elements html doesn't know
+            boolean isVoid = VOID.contains(name);
+            if (isVoid || selfClosing && !Tag.isKnownTag(name)) {
+                if (Objects.nonNull(startTag)) {
+                    out.append(startTag);
+                    if (!isVoid) {
+                        out.append("</").append(name).append('>');
+                    }
+                }
+                return;
+            }
+
+            OpenElement element = insert(name, startTag);
+            if (FORMATTING.contains(name)) {
+                pushFormatting(element);
+            }
+            if (MARKERS.contains(name)) {
+                formatting.add(MARKER);
+            }
+            if (name.equals("pre") || name.equals("listing")) {
+                skipNewline = true;
+            }
+        }
+
+        void endTag(String name) {
+            skipNewline = false;
+
+            if (raw) {
+                // the tokenizer only ends raw text with the end tag of its element
+                raw = false;
+                data = false;
+                if (!stack.isEmpty() && current().name.equals(name)) {
+                    pop();
+                }
+                return;
+            }
+
+            if (IGNORED.contains(name)) {
+                return;
+            }
+
+            if (name.equals("br")) {
+                startTag("br", List.of(), List.of(), false);
+            } else if (name.equals("p")) {
+                if (!inScope(Set.of("p"), BUTTON_SCOPE)) {
+                    // a stray end tag leaves an empty paragraph
+                    insert("p", keptStartTag("p", List.of(), List.of()));
+                }
+                closeElement("p");
+            } else if (name.equals("li")) {
+                if (inScope(Set.of("li"), LIST_ITEM_SCOPE)) {
+                    closeElement("li");
+                }
+            } else if (name.equals("dd") || name.equals("dt")) {
+                if (inScope(Set.of(name), DEFAULT_SCOPE)) {
+                    closeElement(name);
+                }
+            } else if (HEADINGS.contains(name)) {
+                if (inScope(HEADINGS, DEFAULT_SCOPE)) {
+                    generateImpliedEndTags(null);
+                    while (!stack.isEmpty() && !HEADINGS.contains(pop().name)) {
+                        // pop until the heading
+                    }
+                }
+            } else if (FORMATTING.contains(name)) {
+                endFormatting(name);
+            } else if (BLOCK_END.contains(name)) {
+                if (inScope(Set.of(name), DEFAULT_SCOPE)) {
+                    closeElement(name);
+                }
+            } else if (TABLE_PARTS.contains(name)) {
+                if (inScope(Set.of(name), TABLE_SCOPE)) {
+                    closeElement(name);
+                }
+            } else {
+                anyOtherEndTag(name);
+            }
+        }
+
+        /**
+         * Close everything that's still open.
+         */
+        void finish() {
+            while (!stack.isEmpty()) {
+                pop();
+            }
+        }
+
+        /**
+         * The start tag of an element with the attributes the safelist allows, null if the element isn't allowed.
+         */
+        private String keptStartTag(String name, List<String> attributeNames, List<String> attributeValues) {
+
+            if (attributeNames.isEmpty()) {
+                // elements that aren't allowed map to null, which isn't kept
+                return plainStartTags.computeIfAbsent(name, key -> startTag(key, List.of(), List.of()));
+            }
+            return startTag(name, attributeNames, attributeValues);
+        }
+
+        private String startTag(String name, List<String> attributeNames, List<String> attributeValues) {
+
+            if (!safelist.isSafeTag(name)) {
+                return null;
+            }
+
+            Map<String, String> attributes = new LinkedHashMap<>();
+            for (int i = 0; i < attributeNames.size(); i++) {
+                if (Objects.isNull(scratch)) {
+                    scratch = new Element("a");
+                }
+                scratch.clearAttributes();
+                scratch.attr(attributeNames.get(i), attributeValues.get(i));
+
+                // the safelist can change the value, e.g. when it resolves a url
+                Attribute attribute = new Attribute(attributeNames.get(i), attributeValues.get(i));
+                if (safelist.isSafeAttribute(name, scratch, attribute)) {
+                    attributes.put(attribute.getKey(), attribute.getValue());
+                }
+            }
+            for (Attribute enforced : safelist.getEnforcedAttributes(name)) {
+                attributes.put(enforced.getKey(), enforced.getValue());
+            }
+
+            StringBuilder startTag = new StringBuilder().append('<').append(name);
+            attributes.forEach((key, value) -> {
+                startTag.append(' ').append(key).append("=\"");
+                escape(startTag, value, true);
+                startTag.append('"');
+            });
+            return startTag.append('>').toString();
+        }
+
+        private OpenElement insert(String name, String startTag) {
+            if (Objects.nonNull(startTag)) {
+                out.append(startTag);
+            }
+            OpenElement element = new OpenElement(name, startTag);
+            stack.add(element);
+            return element;
+        }
+
+        private OpenElement current() {
+            return stack.get(stack.size() - 1);
+        }
+
+        private OpenElement pop() {
+            OpenElement element = stack.remove(stack.size() - 1);
+            element.open = false;
+            if (Objects.nonNull(element.startTag)) {
+                out.append("</").append(element.name).append('>');
+            }
+            if (MARKERS.contains(element.name)) {
+                clearFormattingToMarker();
+            }
+            return element;
+        }
+
+        private void popUntil(OpenElement element) {
+            while (element.open) {
+                pop();
+            }
+        }
+
+        private void closeElement(String name) {
+            generateImpliedEndTags(name);
+            while (!stack.isEmpty() && !pop().name.equals(name)) {
+                // pop until the element
+            }
+        }
+
+        private void generateImpliedEndTags(String except) {
+            while (!stack.isEmpty() && IMPLIED_END.contains(current().name) && !current().name.equals(except)) {
+                pop();
+            }
+        }
+
+        private void closeParagraph() {
+            if (inScope(Set.of("p"), BUTTON_SCOPE)) {
+                closeElement("p");
+            }
+        }
+
+        /**
+         * A new list item closes the open one, unless it's inside another block.
+         */
+        private void closeListItem(Set<String> items) {
+            for (int i = stack.size() - 1; i >= Math.max(0, stack.size() - MAX_SCOPE_DEPTH); i--) {
+                String name = stack.get(i).name;
+                if (items.contains(name)) {
+                    closeElement(name);
+                    break;
+                }
+                if (SPECIAL.contains(name) && !name.equals("address") && !name.equals("div") && !name.equals("p")) {
+                    break;
+                }
+            }
+            closeParagraph();
+        }
+
+        private void closeInTableScope(Set<String> names) {
+            for (int i = stack.size() - 1; i >= Math.max(0, stack.size() - MAX_SCOPE_DEPTH); i--) {
+                String name = stack.get(i).name;
+                if (names.contains(name)) {
+                    closeElement(name);
+                    return;
+                }
+                if (TABLE_SCOPE.contains(name)) {
+                    return;
+                }
+            }
+        }
+
+        private boolean inScope(Set<String> names, Set<String> scope) {
+            for (int i = stack.size() - 1; i >= Math.max(0, stack.size() - MAX_SCOPE_DEPTH); i--) {
+                String name = stack.get(i).name;
+                if (names.contains(name)) {
+                    return true;
+                }
+                if (scope.contains(name)) {
+                    return false;
+                }
+            }
+            return false;
+        }
+
+        private boolean inScope(OpenElement element) {
+            for (int i = stack.size() - 1; i >= Math.max(0, stack.size() - MAX_SCOPE_DEPTH); i--) {
+                OpenElement open = stack.get(i);
+                if (open == element) {
+                    return true;
+                }
+                if (DEFAULT_SCOPE.contains(open.name)) {
+                    return false;
+                }
+            }
+            return false;
+        }
+
+        private void anyOtherEndTag(String name) {
+            for (int i = stack.size() - 1; i >= Math.max(0, stack.size() - MAX_SCOPE_DEPTH); i--) {
+                OpenElement element = stack.get(i);
+                if (element.name.equals(name)) {
+                    generateImpliedEndTags(name);
+                    popUntil(element);
+                    return;
+                }
+                if (SPECIAL.contains(element.name)) {
+                    return;
+                }
+            }
+        }
+
+        /**
+         * The end of a formatting element closes everything inside of it. The formatting elements among those stay
+         * in the list, so they're reopened for the text that follows.
+         */
+        private void endFormatting(String name) {
+            OpenElement element = activeFormatting(name);
+            if (Objects.isNull(element)) {
+                anyOtherEndTag(name);
+            } else if (!element.open) {
+                formatting.remove(element);
+            } else if (inScope(element)) {
+                popUntil(element);
+                formatting.remove(element);
+            }
+        }
+
+        private OpenElement activeFormatting(String name) {
+            for (int i = formatting.size() - 1; i >= 0 && formatting.get(i) != MARKER; i--) {
+                if (formatting.get(i).name.equals(name)) {
+                    return formatting.get(i);
+                }
+            }
+            return null;
+        }
+
+        /**
+         * At most three of the same element are remembered.
+         */
+        private void pushFormatting(OpenElement element) {
+            int same = 0;
+            int earliest = -1;
+            for (int i = formatting.size() - 1; i >= 0 && formatting.get(i) != MARKER; i--) {
+                OpenElement other = formatting.get(i);
+                if (other.name.equals(element.name) && Objects.equals(other.startTag, element.startTag)) {
+                    same++;
+                    earliest = i;
+                }
+            }
+            if (same >= 3) {
+                formatting.remove(earliest);
+            }
+            formatting.add(element);
+        }
+
+        /**
+         * Reopen the formatting elements that were closed by something other than their own end tag.
+         */
+        private void reconstructFormatting() {
+            if (formatting.isEmpty()) {
+                return;
+            }
+            OpenElement last = formatting.get(formatting.size() - 1);
+            if (last == MARKER || last.open) {
+                return;
+            }
+
+            int first = formatting.size() - 1;
+            while (first > 0 && formatting.get(first - 1) != MARKER && !formatting.get(first - 1).open) {
+                first--;
+            }
+            for (int i = first; i < formatting.size(); i++) {
+                OpenElement closed = formatting.get(i);
+                formatting.set(i, insert(closed.name, closed.startTag));
+            }
+        }
+
+        private void clearFormattingToMarker() {
+            while (!formatting.isEmpty()) {
+                if (formatting.remove(formatting.size() - 1) == MARKER) {
+                    return;
+                }
+            }
+        }
+
+        private static void escape(StringBuilder target, String value, boolean attribute) {
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                switch (c) {
+                    case '&' -> target.append("&amp;");
+                    case '<' -> target.append("&lt;");
+                    case '>' -> target.append("&gt;");
+                    case '\u00A0' -> target.append("&nbsp;");
+                    case '"' -> target.append(attribute ? "&quot;" : "\"");
+                    default -> target.append(c);
+                }
+            }
+        }
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f';
+    }
+
+    private static boolean isAsciiLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static char lowerCase(char c) {
+        return c == '\0' ? REPLACEMENT : Character.toLowerCase(c);
+    }
+}
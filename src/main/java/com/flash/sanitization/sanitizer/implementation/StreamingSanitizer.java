@@ -0,0 +1,66 @@
+package com.flash.sanitization.sanitizer.implementation;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Objects;
+
+/**
+ * Optional contract for sanitizers that can sanitize a value while it's being read, so a large input never has to be
+ * held in memory as a whole.
+ */
+public interface StreamingSanitizer extends Sanitizer {
+
+    /**
+     * Wrap a writer, everything written to the returned writer is sanitized and then written to the downstream writer.
+     * <br />
+     * Only the part of the output that can't be changed by what's still to come is passed on. Closing the returned
+     * writer writes out the rest and closes the downstream writer. What ends up in the downstream writer must be the
+     * same as what {@link #sanitize(String)} would return for everything written.
+     *
+     * @param downstream
+     * Where to write the sanitized value.
+     *
+     * @return
+     * The writer to write the value to sanitize to.
+     */
+    Writer sanitizing(Writer downstream);
+
+    /**
+     * Wrap a sanitizer so it can be used as a StreamingSanitizer. Sanitizers that already implement the contract are
+     * returned as is, others hold on to the whole value until the writer is closed.
+     */
+    static StreamingSanitizer of(Sanitizer sanitizer) {
+        if (sanitizer instanceof StreamingSanitizer streamingSanitizer) {
+            return streamingSanitizer;
+        }
+
+        return new StreamingSanitizer() {
+            @Override
+            public Writer sanitizing(Writer downstream) {
+                return new SanitizingWriter(downstream) {
+
+                    private final StringBuilder value = new StringBuilder();
+
+                    @Override
+                    public void write(char[] cbuf, int off, int len) throws IOException {
+                        ensureOpen();
+                        value.append(cbuf, off, len);
+                    }
+
+                    @Override
+                    protected void finish() throws IOException {
+                        String sanitized = sanitizer.sanitize(value.toString());
+                        if (Objects.nonNull(sanitized)) {
+                            downstream.write(sanitized);
+                        }
+                    }
+                };
+            }
+
+            @Override
+            public String sanitize(String toSanitize) {
+                return sanitizer.sanitize(toSanitize);
+            }
+        };
+    }
+}
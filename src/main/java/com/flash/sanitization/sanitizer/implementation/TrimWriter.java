@@ -0,0 +1,52 @@
+package com.flash.sanitization.sanitizer.implementation;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Streaming version of {@link String#trim()}. Leading whitespace is dropped, whitespace is held back until we know
+ * it's not at the end.
+ */
+class TrimWriter extends SanitizingWriter {
+
+    private final StringBuilder whitespace = new StringBuilder();
+    private boolean started;
+
+    TrimWriter(Writer downstream) {
+        super(downstream);
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        ensureOpen();
+
+        int start = off;
+        int end = off + len;
+
+        if (!started) {
+            while (start < end && cbuf[start] <= ' ') {
+                start++;
+            }
+            if (start == end) {
+                return;
+            }
+            started = true;
+        }
+
+        int last = end - 1;
+        while (last >= start && cbuf[last] <= ' ') {
+            last--;
+        }
+
+        if (last >= start) {
+            emit(whitespace, whitespace.length());
+            downstream.write(cbuf, start, last + 1 - start);
+        }
+        whitespace.append(cbuf, last + 1, end - last - 1);
+    }
+
+    @Override
+    protected void finish() {
+        // whatever whitespace is left is at the end
+    }
+}
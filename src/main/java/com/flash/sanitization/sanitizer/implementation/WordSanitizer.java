@@ -1,28 +1,136 @@
 package com.flash.sanitization.sanitizer.implementation;
 
-import com.flash.sanitization.sanitizer.factory.WordSanitizerFactory;
+import com.flash.sanitization.sanitizer.matcher.AhoCorasickMatcher;
+import com.flash.sanitization.sanitizer.matcher.CharClass;
+import com.flash.sanitization.sanitizer.matcher.WordMatcher;
+import lombok.Getter;
+import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
 
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
-import java.util.regex.Pattern;
-import java.util.stream.Collectors;
 
 /**
  * Replace full words from a text, and replace it with a mask value.
+ * <br />
+ * All the words are compiled into a single {@link WordMatcher} so the text is only scanned once, no matter how many
+ * words there are. By default that's an {@link AhoCorasickMatcher}.
+ * <br />
+ * Sanitizers that know their words can be fused into one, see {@link #fuse(List)}. Sanitizers whose words contain no
+ * white space can sanitize a value in segments, they're created by {@link #of(List, String)} as a {@link Segmentable}.
  */
 @Slf4j
-public class WordSanitizer implements Sanitizer {
+@Getter
+public class WordSanitizer implements BufferSanitizer, StreamingSanitizer {
 
-    private final List<Pattern> bannedWordPatterns;
+    private final WordMatcher matcher;
     private final String maskValue;
 
+    /**
+     * The words the matcher was compiled from, null if it was given a compiled matcher.
+     */
+    private final List<String> words;
+
     public WordSanitizer(List<String> sensitiveWords, String maskValue) {
+        this(
+            AhoCorasickMatcher.compile(sensitiveWords),
+            maskValue,
+            Collections.unmodifiableList(new ArrayList<>(sensitiveWords)));
+    }
+
+    public WordSanitizer(@NonNull WordMatcher matcher, @NonNull String maskValue) {
+        this(matcher, maskValue, null);
+    }
+
+    private WordSanitizer(@NonNull WordMatcher matcher, @NonNull String maskValue, List<String> words) {
+        this.matcher = matcher;
         this.maskValue = maskValue;
+        this.words = words;
+    }
+
+    /**
+     * A sanitizer for the words, one that can sanitize segments if none of the words contains white space.
+     */
+    public static WordSanitizer of(List<String> sensitiveWords, String maskValue) {
+        List<String> words = Collections.unmodifiableList(new ArrayList<>(sensitiveWords));
+        return isSegmentable(words) ?
+            new Segmentable(AhoCorasickMatcher.compile(words), maskValue, words) :
+            new WordSanitizer(AhoCorasickMatcher.compile(words), maskValue, words);
+    }
+
+    /**
+     * A sanitizer for a compiled matcher, whose words aren't known anymore, so whether they contain white space is
+     * passed along.
+     *
+     * @param segmentable
+     * Whether none of the words the matcher was compiled from contains white space, see {@link #isSegmentable(List)}.
+     */
+    public static WordSanitizer of(@NonNull WordMatcher matcher, @NonNull String maskValue, boolean segmentable) {
+        return segmentable ? new Segmentable(matcher, maskValue, null) : new WordSanitizer(matcher, maskValue);
+    }
+
+    /**
+     * A match can't contain white space unless a word does, so a value can be split at any white space character if
+     * none of the words contains any.
+     */
+    public static boolean isSegmentable(List<String> words) {
+        return words.stream()
+            .filter(Objects::nonNull)
+            .noneMatch(word -> word.chars().anyMatch(Character::isWhitespace));
+    }
 
-        this.bannedWordPatterns = sensitiveWords.stream()
-            .map(word -> Pattern.compile("\\b" + Pattern.quote(word) + "\\b", Pattern.CASE_INSENSITIVE))
-            .collect(Collectors.toList());
+    /**
+     * A sanitizer can be fused if it knows its words, and every word is a single run of word characters. Such a word
+     * can only ever match a whole token of the text, from one non word character to the next, so two words either
+     * match the same token or don't overlap at all.
+     */
+    public boolean isFusable() {
+        return Objects.nonNull(words) && words.stream()
+            .filter(Objects::nonNull)
+            .allMatch(word -> word.chars().allMatch(c -> CharClass.isWord((char) c)));
+    }
+
+    /**
+     * One sanitizer that sanitizes the same as running the given ones one after the other, in a single pass.
+     * <br />
+     * As the words of fusable sanitizers only match whole tokens, running them in order comes down to replacing every
+     * token by what the first sanitizer matching it turns it into. Which is its mask, as the sanitizers after it
+     * would change it: a mask can contain a word of a later sanitizer. Trimming only once, at the end, makes no
+     * difference, white space never is a part of a token.
+     *
+     * @param sanitizers
+     * The sanitizers in the order they would run, all of them fusable.
+     */
+    public static WordSanitizer fuse(@NonNull List<WordSanitizer> sanitizers) {
+
+        // ordered, so the words of the first sanitizer win from the same words of later ones
+        Map<String, String> masks = new LinkedHashMap<>();
+        for (int i = 0; i < sanitizers.size(); i++) {
+            WordSanitizer sanitizer = sanitizers.get(i);
+            if (!sanitizer.isFusable()) {
+                throw new IllegalArgumentException("Sanitizer %d can't be fused".formatted(i));
+            }
+
+            String mask = sanitizer.maskValue;
+            for (WordSanitizer later : sanitizers.subList(i + 1, sanitizers.size())) {
+                mask = later.matcher.replace(mask, later.maskValue);
+            }
+
+            for (String word : sanitizer.words) {
+                if (Objects.nonNull(word)) {
+                    masks.putIfAbsent(word, mask);
+                }
+            }
+        }
+
+        // every word has its own mask, the one passed along is never used. None of the words contains white space
+        return new Segmentable(AhoCorasickMatcher.compile(masks), "", null);
     }
 
     @Override
@@ -31,14 +139,76 @@ public class WordSanitizer implements Sanitizer {
             return null;
         }
 
-        String sanitized = toSanitize;
-
         // remove all the unwanted words.
-        for (Pattern pattern : bannedWordPatterns) {
-            log.debug("Sanitizing using {}", pattern.pattern());
-            sanitized = pattern.matcher(sanitized).replaceAll(maskValue);
-            log.debug("Sanitized: {}", sanitized);
-        }
+        String sanitized = matcher.replace(toSanitize, maskValue);
+        log.debug("Sanitized: {}", sanitized);
+
         return sanitized.trim();
     }
+
+    @Override
+    public void sanitize(CharSequence toSanitize, StringBuilder output) {
+        int start = output.length();
+        matcher.replace(toSanitize, maskValue, output);
+        BufferSanitizer.trim(output, start);
+    }
+
+    @Override
+    public Writer sanitizing(Writer downstream) {
+        return new WordWriter(new TrimWriter(downstream));
+    }
+
+    /**
+     * Holds back the end of the input that could still be the start of a word, together with the character in front
+     * of it so the word boundary can be checked.
+     */
+    private class WordWriter extends SanitizingWriter {
+
+        private final StringBuilder pending = new StringBuilder();
+        private final StringBuilder output = new StringBuilder();
+        private int from;
+
+        private WordWriter(Writer downstream) {
+            super(downstream);
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) throws IOException {
+            ensureOpen();
+
+            pending.append(cbuf, off, len);
+            if (pending.length() >= CHUNK_SIZE) {
+                replace(false);
+            }
+        }
+
+        @Override
+        protected void finish() throws IOException {
+            replace(true);
+        }
+
+        private void replace(boolean last) throws IOException {
+            int done = matcher.replace(pending, from, maskValue, output, last);
+            emit(output, output.length());
+
+            int keep = Math.max(0, done - 1);
+            pending.delete(0, keep);
+            from = done - keep;
+        }
+    }
+
+    /**
+     * A word sanitizer none of whose words contains white space, see {@link #isSegmentable(List)}.
+     */
+    public static final class Segmentable extends WordSanitizer implements SegmentableSanitizer {
+
+        private Segmentable(WordMatcher matcher, String maskValue, List<String> words) {
+            super(matcher, maskValue, words);
+        }
+
+        @Override
+        public void sanitizeSegment(CharSequence segment, StringBuilder output) {
+            getMatcher().replace(segment, getMaskValue(), output);
+        }
+    }
 }
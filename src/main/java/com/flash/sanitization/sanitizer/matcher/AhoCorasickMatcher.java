@@ -0,0 +1,477 @@
+package com.flash.sanitization.sanitizer.matcher;
+
+import lombok.NonNull;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.TreeMap;
+
+/**
+ * Multi-pattern word matcher based on the Aho-Corasick automaton. All the words are compiled into a single automaton
+ * so an input is searched for every word in one linear pass, no matter how many words there are.
+ * <br />
+ * Matching is case-insensitive and word bounded, i.e. every word behaves like {@code \bword\b}. When matches overlap
+ * the leftmost match wins, and of the matches starting at the same position the longest one wins.
+ * <br />
+ * A matcher can also be compiled with a mask per word, see {@link #compile(Map)}, in which case every match is
+ * replaced by the mask of its word and the mask passed to the replace methods isn't used.
+ * <br />
+ * The automaton is immutable once compiled, so a single instance can be shared between threads.
+ */
+public class AhoCorasickMatcher implements WordMatcher {
+
+    private static final int ROOT = 0;
+    private static final int NONE = -1;
+
+    /**
+     * Transitions are stored in a compressed row format. The edges leaving state s can be found in the range
+     * [edgeStart[s], edgeStart[s + 1]) of edgeLabel and edgeTarget, sorted by label so we can binary search them.
+     */
+    private final int[] edgeStart;
+    private final char[] edgeLabel;
+    private final int[] edgeTarget;
+
+    /**
+     * Failure link of each state, the state matching the longest proper suffix of the current state.
+     */
+    private final int[] fail;
+
+    /**
+     * Length of the word ending in a state, 0 if no word ends in the state.
+     */
+    private final int[] wordLength;
+
+    /**
+     * The next state on the failure chain in which a word ends, {@link #NONE} if there are none.
+     */
+    private final int[] outputLink;
+
+    /**
+     * The mask of the word ending in a state, null if the matcher replaces every word with the same mask.
+     */
+    private final String[] masks;
+
+    /**
+     * The transitions of the root by ASCII character. Every failure chain ends in the root, and in most texts that's
+     * where the automaton spends most of its time.
+     */
+    private final int[] asciiRoot = new int[CharClass.ASCII];
+
+    private final int maxWordLength;
+    private final int wordCount;
+
+    private AhoCorasickMatcher(
+        int[] edgeStart,
+        char[] edgeLabel,
+        int[] edgeTarget,
+        int[] fail,
+        int[] wordLength,
+        int[] outputLink,
+        String[] masks,
+        int maxWordLength,
+        int wordCount)
+    {
+        this.edgeStart = edgeStart;
+        this.edgeLabel = edgeLabel;
+        this.edgeTarget = edgeTarget;
+        this.fail = fail;
+        this.wordLength = wordLength;
+        this.outputLink = outputLink;
+        this.masks = masks;
+        this.maxWordLength = maxWordLength;
+        this.wordCount = wordCount;
+
+        Arrays.fill(asciiRoot, NONE);
+        for (int e = edgeStart[ROOT]; e < edgeStart[ROOT + 1]; e++) {
+            if (edgeLabel[e] < CharClass.ASCII) {
+                asciiRoot[edgeLabel[e]] = edgeTarget[e];
+            }
+        }
+    }
+
+    /**
+     * Compile the words into an automaton. Null and empty words are ignored.
+     *
+     * @param words
+     * The words to match.
+     *
+     * @return
+     * The compiled matcher.
+     */
+    public static AhoCorasickMatcher compile(@NonNull Collection<String> words) {
+        return compile(words, null);
+    }
+
+    /**
+     * Compile the words into an automaton that replaces every word with its own mask. Null and empty words are
+     * ignored. Of the words that only differ in case the first one keeps its mask.
+     *
+     * @param masks
+     * The words to match, with the value to replace each of them with.
+     *
+     * @return
+     * The compiled matcher.
+     */
+    public static AhoCorasickMatcher compile(@NonNull Map<String, String> masks) {
+        return compile(masks.keySet(), masks);
+    }
+
+    private static AhoCorasickMatcher compile(Collection<String> words, Map<String, String> masks) {
+
+        // Build a plain trie first, it's easier to construct and then flatten it into arrays
+        // breadth first. Breadth first ordering means a state's failure link always points to a
+        // state with a lower number, so we can calculate them in a single loop over the states.
+        TrieNode trieRoot = new TrieNode();
+        int maxWordLength = 0;
+        int wordCount = 0;
+
+        for (String word : words) {
+            if (Objects.isNull(word) || word.isEmpty()) {
+                continue;
+            }
+
+            TrieNode node = trieRoot;
+            for (int i = 0; i < word.length(); i++) {
+                node = node.children.computeIfAbsent(CharClass.fold(word.charAt(i)), k -> new TrieNode());
+            }
+            if (node.wordLength == 0 && Objects.nonNull(masks)) {
+                node.mask = Objects.requireNonNull(masks.get(word), "mask");
+            }
+            node.wordLength = word.length();
+            maxWordLength = Math.max(maxWordLength, word.length());
+            wordCount++;
+        }
+
+        List<TrieNode> states = new ArrayList<>();
+        Queue<TrieNode> queue = new ArrayDeque<>();
+        queue.add(trieRoot);
+        int edgeCount = 0;
+        while (!queue.isEmpty()) {
+            TrieNode node = queue.poll();
+            node.state = states.size();
+            states.add(node);
+            edgeCount += node.children.size();
+            queue.addAll(node.children.values());
+        }
+
+        int stateCount = states.size();
+        int[] edgeStart = new int[stateCount + 1];
+        char[] edgeLabel = new char[edgeCount];
+        int[] edgeTarget = new int[edgeCount];
+        int[] wordLength = new int[stateCount];
+        String[] stateMasks = Objects.isNull(masks) ? null : new String[stateCount];
+
+        int edge = 0;
+        for (TrieNode node : states) {
+            edgeStart[node.state] = edge;
+            wordLength[node.state] = node.wordLength;
+            if (Objects.nonNull(stateMasks)) {
+                stateMasks[node.state] = node.mask;
+            }
+            // TreeMap iterates in label order, which keeps the edges sorted for the binary search
+            for (Map.Entry<Character, TrieNode> child : node.children.entrySet()) {
+                edgeLabel[edge] = child.getKey();
+                edgeTarget[edge] = child.getValue().state;
+                edge++;
+            }
+        }
+        edgeStart[stateCount] = edge;
+
+        int[] fail = new int[stateCount];
+        int[] outputLink = new int[stateCount];
+        outputLink[ROOT] = NONE;
+
+        AhoCorasickMatcher matcher = new AhoCorasickMatcher(
+            edgeStart, edgeLabel, edgeTarget, fail, wordLength, outputLink, stateMasks, maxWordLength, wordCount);
+
+        for (int state = 0; state < stateCount; state++) {
+            for (int e = edgeStart[state]; e < edgeStart[state + 1]; e++) {
+                int child = edgeTarget[e];
+
+                int childFail = state == ROOT ? ROOT : matcher.next(fail[state], edgeLabel[e]);
+                fail[child] = childFail;
+                outputLink[child] = wordLength[childFail] > 0 ? childFail : outputLink[childFail];
+            }
+        }
+
+        return matcher;
+    }
+
+    @Override
+    public int getWordCount() {
+        return wordCount;
+    }
+
+    @Override
+    public int getMaxWordLength() {
+        return maxWordLength;
+    }
+
+    /**
+     * Every state takes 16 bytes and every edge 6, on top of that the automaton is compiled from a trie of objects,
+     * which takes many times more while compiling. A mask per word adds a reference per state, not counting the masks
+     * themselves.
+     */
+    @Override
+    public long getFootprint() {
+        return 4L * (edgeStart.length + edgeTarget.length + fail.length + wordLength.length + outputLink.length
+            + asciiRoot.length + (Objects.isNull(masks) ? 0 : masks.length))
+            + 2L * edgeLabel.length;
+    }
+
+    /**
+     * Replace every match in the text with the mask.
+     *
+     * @param text
+     * The text to search.
+     *
+     * @param mask
+     * The value to replace the matches with.
+     *
+     * @return
+     * The text with the matches replaced, or the text itself if nothing matched.
+     */
+    @Override
+    public String replace(@NonNull String text, @NonNull String mask) {
+
+        if (wordCount == 0 || text.isEmpty()) {
+            return text;
+        }
+
+        StringBuilder out = new Scan(text, mask, null).run(0, text.length(), true);
+        return Objects.isNull(out) ? text : out.toString();
+    }
+
+    /**
+     * Replace every match in the text with the mask, appending the result to the output.
+     *
+     * @param text
+     * The text to search.
+     *
+     * @param mask
+     * The value to replace the matches with.
+     *
+     * @param output
+     * Where to append the result.
+     */
+    @Override
+    public void replace(@NonNull CharSequence text, @NonNull String mask, @NonNull StringBuilder output) {
+        if (wordCount == 0) {
+            output.append(text);
+            return;
+        }
+        new Scan(text, mask, output).run(0, text.length(), true);
+    }
+
+    /**
+     * Replace the matches in a text that is read in parts, appending the result to the output. Only the part of the
+     * text that can't be affected by what comes after it is written to the output.
+     * <br />
+     * The rest, starting from the returned position, has to be passed in again once more text is available, preceded
+     * by the character just before it so word boundaries can still be checked.
+     *
+     * @param text
+     * The text to search.
+     *
+     * @param from
+     * Where to start searching, the text before it is only used to check for word boundaries.
+     *
+     * @param mask
+     * The value to replace the matches with.
+     *
+     * @param output
+     * Where to append the result.
+     *
+     * @param last
+     * If this is the end of the text, in which case everything is written to the output.
+     *
+     * @return
+     * The position up to which the text has been handled.
+     */
+    @Override
+    public int replace(
+        @NonNull CharSequence text,
+        int from,
+        @NonNull String mask,
+        @NonNull StringBuilder output,
+        boolean last)
+    {
+        int length = text.length();
+        if (wordCount == 0) {
+            output.append(text, from, length);
+            return length;
+        }
+
+        Scan scan = new Scan(text, mask, output);
+        if (last) {
+            scan.run(from, length, true);
+            return length;
+        }
+
+        // leave the last character out of the scan, we need it to know if a match ending just before it ends
+        // on a word boundary. Every start that is at least a full word before that is final.
+        int scanned = length - 1;
+        int done = scanned - maxWordLength + 1;
+        scan.run(from, scanned, false);
+
+        if (scan.emitted < done) {
+            output.append(text, scan.emitted, done);
+            return done;
+        }
+        return scan.emitted;
+    }
+
+    /**
+     * A single run over (part of) a text.
+     */
+    private class Scan {
+        private final CharSequence text;
+        private final String mask;
+        private StringBuilder out;
+        private int emitted;
+
+        /**
+         * @param out
+         * Where to write the result. If null it's only allocated once something matched.
+         */
+        private Scan(CharSequence text, String mask, StringBuilder out) {
+            this.text = text;
+            this.mask = mask;
+            this.out = out;
+        }
+
+        /**
+         * Search the text between from and to. Unless this is the last part, only matches starting at least a full
+         * word before the end are selected, and nothing after the last selected match is written.
+         *
+         * @return
+         * The output, null if it was null and nothing matched.
+         */
+        private StringBuilder run(int from, int to, boolean last) {
+
+            // Matches are found by the position they end at, but we have to select them by the position
+            // they start at (leftmost-longest). Per start position we keep the state of the longest valid match,
+            // in a ring buffer that only needs to span the longest word. Once we've scanned far enough that no
+            // other match can start at a position, that position is final and can be written out.
+            int[] longest = null;
+            int state = ROOT;
+            emitted = from;
+
+            for (int i = from; i < to; i++) {
+                state = next(state, CharClass.fold(text.charAt(i)));
+
+                int output = wordLength[state] > 0 ? state : outputLink[state];
+                while (output != NONE) {
+                    int start = i + 1 - wordLength[output];
+                    if (start >= from && CharClass.isBoundary(text, start) && CharClass.isBoundary(text, i + 1)) {
+                        if (Objects.isNull(longest)) {
+                            longest = new int[maxWordLength];
+                        }
+                        int slot = start % maxWordLength;
+                        // no word ends in the root, so 0 is no match at all
+                        if (wordLength[output] > wordLength[longest[slot]]) {
+                            longest[slot] = output;
+                        }
+                    }
+                    output = outputLink[output];
+                }
+
+                int finalized = i + 1 - maxWordLength;
+                if (Objects.nonNull(longest) && finalized >= from) {
+                    select(longest, finalized);
+                }
+            }
+
+            if (!last) {
+                return out;
+            }
+
+            if (Objects.nonNull(longest)) {
+                for (int start = Math.max(from, to + 1 - maxWordLength); start < to; start++) {
+                    select(longest, start);
+                }
+            }
+
+            if (Objects.nonNull(out)) {
+                out.append(text, emitted, to);
+            }
+            return out;
+        }
+
+        private void select(int[] longest, int start) {
+            int slot = start % maxWordLength;
+            int matched = longest[slot];
+            longest[slot] = ROOT;
+
+            if (matched != ROOT && start >= emitted) {
+                out = append(out, text, emitted, start, Objects.isNull(masks) ? mask : masks[matched]);
+                emitted = start + wordLength[matched];
+            }
+        }
+    }
+
+    /**
+     * Write the unmatched text between from and to followed by the mask. The output is only allocated once we
+     * actually have something to replace.
+     */
+    private static StringBuilder append(StringBuilder out, CharSequence text, int from, int to, String mask) {
+        if (Objects.isNull(out)) {
+            out = new StringBuilder(text.length());
+        }
+        return out.append(text, from, to).append(mask);
+    }
+
+    /**
+     * The goto function of the automaton, following failure links until a transition is found.
+     */
+    private int next(int state, char c) {
+        while (true) {
+            int target = transition(state, c);
+            if (target != NONE) {
+                return target;
+            }
+            if (state == ROOT) {
+                return ROOT;
+            }
+            state = fail[state];
+        }
+    }
+
+    private int transition(int state, char c) {
+        if (state == ROOT && c < CharClass.ASCII) {
+            return asciiRoot[c];
+        }
+
+        int low = edgeStart[state];
+        int high = edgeStart[state + 1] - 1;
+
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            char label = edgeLabel[mid];
+            if (label < c) {
+                low = mid + 1;
+            } else if (label > c) {
+                high = mid - 1;
+            } else {
+                return edgeTarget[mid];
+            }
+        }
+        return NONE;
+    }
+
+    /**
+     * Only used while compiling.
+     */
+    private static class TrieNode {
+        private final Map<Character, TrieNode> children = new TreeMap<>();
+        private int wordLength;
+        private String mask;
+        private int state;
+    }
+}
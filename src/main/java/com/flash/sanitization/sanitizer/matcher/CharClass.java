@@ -0,0 +1,64 @@
+package com.flash.sanitization.sanitizer.matcher;
+
+/**
+ * Character classification shared by the word matchers, so every matcher agrees on what a word character is and
+ * how case is ignored.
+ * <br />
+ * Most of the text we match is ASCII, for which folding and classifying are a lookup in a 128 entry table. Only the
+ * characters outside of it go through the Unicode aware {@link Character} methods, so a single non ASCII character
+ * doesn't slow down the rest of the text.
+ */
+public final class CharClass {
+
+    /**
+     * Characters below this are ASCII, and are looked up in tables by the matchers.
+     */
+    static final int ASCII = 128;
+
+    private static final char[] ASCII_FOLD = new char[ASCII];
+    private static final boolean[] ASCII_WORD = new boolean[ASCII];
+
+    static {
+        // filled from the Unicode path, so both paths can never disagree
+        for (char c = 0; c < ASCII; c++) {
+            ASCII_FOLD[c] = unicodeFold(c);
+            ASCII_WORD[c] = unicodeIsWord(c);
+        }
+    }
+
+    private CharClass() {
+    }
+
+    /**
+     * Fold the case of a character so that upper and lower case compare equal. We go through upper case first since
+     * some characters have more than one lower case form.
+     */
+    public static char fold(char c) {
+        return c < ASCII ? ASCII_FOLD[c] : unicodeFold(c);
+    }
+
+    /**
+     * A word character is a letter, a digit or an underscore.
+     */
+    public static boolean isWord(char c) {
+        return c < ASCII ? ASCII_WORD[c] : unicodeIsWord(c);
+    }
+
+    /**
+     * Check if there is a word boundary in front of the given index, i.e. one side of the index is a word
+     * character and the other isn't. Anything outside the text counts as a non word character.
+     */
+    public static boolean isBoundary(CharSequence text, int index) {
+        boolean before = index > 0 && isWord(text.charAt(index - 1));
+        boolean after = index < text.length() && isWord(text.charAt(index));
+        return before != after;
+    }
+
+    private static char unicodeFold(char c) {
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+
+    private static boolean unicodeIsWord(char c) {
+        return c == '_' || Character.isLetterOrDigit(c);
+    }
+}
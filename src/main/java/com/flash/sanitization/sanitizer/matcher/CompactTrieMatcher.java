@@ -0,0 +1,499 @@
+package com.flash.sanitization.sanitizer.matcher;
+
+import lombok.NonNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Objects;
+
+/**
+ * Word matcher for very large word lists, it takes a fraction of the memory of the {@link AhoCorasickMatcher}.
+ * <br />
+ * Words can only match from a word boundary, so instead of an automaton that follows every position of the text, the
+ * trie is walked from every position where a word could start. That way the trie doesn't need failure links, and it
+ * can be stored in two arrays:
+ * <ul>
+ *     <li>The states are numbered breadth first, so the children of a state are numbered consecutively and the edges
+ *     can be numbered the same way: edge e always leads to state e + 1 and only its label has to be stored.</li>
+ *     <li>Per state only the first of its edges is stored, together with a bit set of the states in which a word
+ *     ends.</li>
+ * </ul>
+ * That's about 6 bytes per state. The trie is built straight from the sorted words, so there's never a trie of
+ * objects either.
+ * <br />
+ * A compiled trie can be written to a file with {@link #write(Path)}, and used straight from that file with
+ * {@link #map(Path)}. The file is memory mapped rather than read, so it loads in no time and its pages are shared by
+ * every JVM on the host that maps it.
+ * <br />
+ * The matcher is immutable once compiled, so a single instance can be shared between threads.
+ */
+public class CompactTrieMatcher implements WordMatcher {
+
+    private static final int ROOT = 0;
+    private static final int NONE = -1;
+
+    /**
+     * Start of a compiled file, followed by the format version.
+     */
+    private static final long MAGIC = 0x464c534844494354L; // FLSHDICT
+    private static final int FORMAT_VERSION = 2;
+
+    /**
+     * Magic, version, word count, max word length, state count, edge count and flags.
+     */
+    private static final int HEADER_SIZE = 8 + 6 * 4;
+
+    /**
+     * Set in the flags if a word contains white space.
+     */
+    private static final int WHITE_SPACE = 1;
+
+    /**
+     * The edges leaving state s are [edgeStart[s], edgeStart[s + 1]), edge e leads to state e + 1.
+     */
+    private final IntBuffer edgeStart;
+
+    /**
+     * The label of every edge, sorted per state so we can binary search them.
+     */
+    private final CharBuffer edgeLabel;
+
+    /**
+     * Bit set of the states in which a word ends.
+     */
+    private final LongBuffer wordEnd;
+
+    /**
+     * The transitions of the root by ASCII character, most positions in a text don't start a word so most scans end
+     * right here. It's derived from the edges, so it isn't stored in a compiled file.
+     */
+    private final int[] asciiRoot = new int[CharClass.ASCII];
+
+    private final int maxWordLength;
+    private final int wordCount;
+
+    /**
+     * Whether a word contains white space, which decides if a text can be split at white space, see
+     * {@link com.flash.sanitization.sanitizer.implementation.WordSanitizer#isSegmentable(java.util.List)}. It's
+     * stored in a compiled file, which doesn't have the words anymore.
+     */
+    private final boolean whiteSpace;
+
+    private CompactTrieMatcher(
+        IntBuffer edgeStart,
+        CharBuffer edgeLabel,
+        LongBuffer wordEnd,
+        int maxWordLength,
+        int wordCount,
+        boolean whiteSpace)
+    {
+        this.edgeStart = edgeStart;
+        this.edgeLabel = edgeLabel;
+        this.wordEnd = wordEnd;
+        this.maxWordLength = maxWordLength;
+        this.wordCount = wordCount;
+        this.whiteSpace = whiteSpace;
+
+        Arrays.fill(asciiRoot, NONE);
+        for (int e = edgeStart.get(ROOT); e < edgeStart.get(ROOT + 1); e++) {
+            char label = edgeLabel.get(e);
+            if (label < CharClass.ASCII) {
+                asciiRoot[label] = e + 1;
+            }
+        }
+    }
+
+    /**
+     * Compile the words into a trie. Null and empty words are ignored.
+     *
+     * @param words
+     * The words to match.
+     *
+     * @return
+     * The compiled matcher.
+     */
+    public static CompactTrieMatcher compile(@NonNull Collection<String> words) {
+
+        String[] folded = words
+            .stream()
+            .filter(word -> Objects.nonNull(word) && !word.isEmpty())
+            .map(CompactTrieMatcher::fold)
+            .sorted()
+            .distinct()
+            .toArray(String[]::new);
+        boolean whiteSpace = Arrays.stream(folded).anyMatch(word -> word.chars().anyMatch(Character::isWhitespace));
+
+        // every prefix that isn't shared with the previous word is a new state, so we know the exact sizes up front
+        int stateCount = 1;
+        int maxWordLength = 0;
+        for (int w = 0; w < folded.length; w++) {
+            int shared = w == 0 ? 0 : sharedPrefix(folded[w - 1], folded[w]);
+            stateCount = Math.addExact(stateCount, folded[w].length() - shared);
+            maxWordLength = Math.max(maxWordLength, folded[w].length());
+        }
+
+        int[] edgeStart = new int[stateCount + 1];
+        char[] edgeLabel = new char[stateCount - 1];
+        long[] wordEnd = new long[wordEndLength(stateCount)];
+
+        // Breadth first, one level (word length) at a time. Every state is a range of the sorted words that share
+        // its prefix, the words that end in the state come first in the range.
+        int[] from = {0};
+        int[] to = {folded.length};
+        int levelSize = folded.length == 0 ? 0 : 1;
+        int state = 0;
+        int edge = 0;
+
+        for (int depth = 0; levelSize > 0; depth++) {
+            int[] nextFrom = new int[Math.max(1, levelSize)];
+            int[] nextTo = new int[nextFrom.length];
+            int nextSize = 0;
+
+            for (int n = 0; n < levelSize; n++, state++) {
+                edgeStart[state] = edge;
+
+                int w = from[n];
+                if (folded[w].length() == depth) {
+                    wordEnd[state >>> 6] |= 1L << state;
+                    w++;
+                }
+
+                while (w < to[n]) {
+                    char label = folded[w].charAt(depth);
+                    int end = w + 1;
+                    while (end < to[n] && folded[end].charAt(depth) == label) {
+                        end++;
+                    }
+
+                    if (nextSize == nextFrom.length) {
+                        nextFrom = Arrays.copyOf(nextFrom, nextSize * 2);
+                        nextTo = Arrays.copyOf(nextTo, nextSize * 2);
+                    }
+                    nextFrom[nextSize] = w;
+                    nextTo[nextSize] = end;
+                    nextSize++;
+
+                    edgeLabel[edge++] = label;
+                    w = end;
+                }
+            }
+
+            from = nextFrom;
+            to = nextTo;
+            levelSize = nextSize;
+        }
+        edgeStart[stateCount] = edge;
+
+        return new CompactTrieMatcher(
+            IntBuffer.wrap(edgeStart),
+            CharBuffer.wrap(edgeLabel),
+            LongBuffer.wrap(wordEnd),
+            maxWordLength,
+            folded.length,
+            whiteSpace);
+    }
+
+    /**
+     * Memory map a trie that was written with {@link #write(Path)}.
+     *
+     * @param path
+     * The compiled file.
+     *
+     * @return
+     * The matcher, reading straight from the file.
+     *
+     * @throws IOException
+     * If the file can't be read.
+     *
+     * @throws IllegalArgumentException
+     * If the file isn't a compiled trie.
+     */
+    public static CompactTrieMatcher map(@NonNull Path path) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            // the mapping stays valid after the channel is closed
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+        if (buffer.capacity() < HEADER_SIZE || buffer.getLong(0) != MAGIC) {
+            throw new IllegalArgumentException("%s is not a compiled word list".formatted(path));
+        }
+        if (buffer.getInt(8) != FORMAT_VERSION) {
+            throw new IllegalArgumentException(
+                "%s has format version %d, expected %d, compile it again"
+                    .formatted(path, buffer.getInt(8), FORMAT_VERSION));
+        }
+
+        int wordCount = buffer.getInt(12);
+        int maxWordLength = buffer.getInt(16);
+        int stateCount = buffer.getInt(20);
+        int edgeCount = buffer.getInt(24);
+        int flags = buffer.getInt(28);
+
+        long edgeLabelOffset = HEADER_SIZE + 4L * (stateCount + 1);
+        long wordEndOffset = align(edgeLabelOffset + 2L * edgeCount);
+        long size = wordEndOffset + 8L * wordEndLength(stateCount);
+        if (stateCount < 1 || edgeCount != stateCount - 1 || size != buffer.capacity()) {
+            throw new IllegalArgumentException("%s is not a complete compiled word list".formatted(path));
+        }
+
+        return new CompactTrieMatcher(
+            slice(buffer, HEADER_SIZE, edgeLabelOffset).asIntBuffer(),
+            slice(buffer, edgeLabelOffset, edgeLabelOffset + 2L * edgeCount).asCharBuffer(),
+            slice(buffer, wordEndOffset, size).asLongBuffer(),
+            maxWordLength,
+            wordCount,
+            (flags & WHITE_SPACE) != 0);
+    }
+
+    /**
+     * Write the trie to a file, so it can be used with {@link #map(Path)} without compiling it again.
+     *
+     * @param path
+     * The file to write, it's replaced if it exists. It's written to a file of its own first, so whatever has the file
+     * it replaces mapped keeps reading the words it had.
+     *
+     * @throws IOException
+     * If the file can't be written.
+     */
+    public void write(@NonNull Path path) throws IOException {
+        int stateCount = edgeStart.limit() - 1;
+        int edgeCount = edgeLabel.limit();
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN)
+            .putLong(MAGIC)
+            .putInt(FORMAT_VERSION)
+            .putInt(wordCount)
+            .putInt(maxWordLength)
+            .putInt(stateCount)
+            .putInt(edgeCount)
+            .putInt(whiteSpace ? WHITE_SPACE : 0)
+            .flip();
+
+        ByteBuffer edgeStartBytes = ByteBuffer.allocate(4 * edgeStart.limit()).order(ByteOrder.LITTLE_ENDIAN);
+        edgeStartBytes.asIntBuffer().put(edgeStart.duplicate().rewind());
+
+        // the bit set is aligned to 8 bytes in the file, so it can be read as longs
+        long edgeLabelOffset = HEADER_SIZE + edgeStartBytes.capacity();
+        int padding = (int) (align(edgeLabelOffset + 2L * edgeCount) - edgeLabelOffset - 2L * edgeCount);
+        ByteBuffer edgeLabelBytes = ByteBuffer.allocate(2 * edgeCount + padding).order(ByteOrder.LITTLE_ENDIAN);
+        edgeLabelBytes.asCharBuffer().put(edgeLabel.duplicate().rewind());
+
+        ByteBuffer wordEndBytes = ByteBuffer.allocate(8 * wordEnd.limit()).order(ByteOrder.LITTLE_ENDIAN);
+        wordEndBytes.asLongBuffer().put(wordEnd.duplicate().rewind());
+
+        // written next to the file and moved over it, a running service may have the file it replaces mapped
+        Path absolute = path.toAbsolutePath();
+        Path temporary = Files.createTempFile(absolute.getParent(), absolute.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                ByteBuffer[] parts = {header, edgeStartBytes, edgeLabelBytes, wordEndBytes};
+                long remaining = Arrays.stream(parts).mapToLong(ByteBuffer::remaining).sum();
+                while (remaining > 0) {
+                    remaining -= channel.write(parts);
+                }
+                channel.force(true);
+            }
+            Files.move(temporary, absolute, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    @Override
+    public int getWordCount() {
+        return wordCount;
+    }
+
+    @Override
+    public int getMaxWordLength() {
+        return maxWordLength;
+    }
+
+    /**
+     * @return Whether a word contains white space.
+     */
+    public boolean hasWhiteSpace() {
+        return whiteSpace;
+    }
+
+    @Override
+    public long getFootprint() {
+        return 4L * (edgeStart.limit() + asciiRoot.length) + 2L * edgeLabel.limit() + 8L * wordEnd.limit();
+    }
+
+    @Override
+    public String replace(@NonNull String text, @NonNull String mask) {
+
+        if (wordCount == 0 || text.isEmpty()) {
+            return text;
+        }
+
+        Scan scan = new Scan(text, mask, null);
+        scan.run(0, text.length(), text.length());
+        if (Objects.isNull(scan.out)) {
+            return text;
+        }
+        return scan.out.append(text, scan.emitted, text.length()).toString();
+    }
+
+    @Override
+    public void replace(@NonNull CharSequence text, @NonNull String mask, @NonNull StringBuilder output) {
+        replace(text, 0, mask, output, true);
+    }
+
+    @Override
+    public int replace(
+        @NonNull CharSequence text,
+        int from,
+        @NonNull String mask,
+        @NonNull StringBuilder output,
+        boolean last)
+    {
+        int length = text.length();
+        if (wordCount == 0) {
+            output.append(text, from, length);
+            return length;
+        }
+
+        // Unless this is the end, a word has to fit before the last character, we need it to know if the word ends
+        // on a word boundary.
+        int starts = last ? length : length - maxWordLength;
+
+        Scan scan = new Scan(text, mask, output);
+        scan.run(from, starts, length);
+
+        int done = Math.max(scan.emitted, last ? length : starts);
+        output.append(text, scan.emitted, done);
+        return done;
+    }
+
+    /**
+     * A single run over (part of) a text.
+     */
+    private class Scan {
+        private final CharSequence text;
+        private final String mask;
+        private StringBuilder out;
+        private int emitted;
+
+        /**
+         * @param out
+         * Where to write the result. If null it's only allocated once something matched.
+         */
+        private Scan(CharSequence text, String mask, StringBuilder out) {
+            this.text = text;
+            this.mask = mask;
+            this.out = out;
+        }
+
+        /**
+         * Replace the matches that start between from and to, and end before end. Nothing after the last match is
+         * written.
+         */
+        private void run(int from, int to, int end) {
+            emitted = from;
+
+            for (int start = from; start < to; start++) {
+                if (!CharClass.isBoundary(text, start)) {
+                    continue;
+                }
+
+                int matchLength = longestMatch(start, end);
+                if (matchLength > 0) {
+                    if (Objects.isNull(out)) {
+                        out = new StringBuilder(text.length());
+                    }
+                    out.append(text, emitted, start).append(mask);
+                    emitted = start + matchLength;
+                    // the loop moves on to the end of the match
+                    start = emitted - 1;
+                }
+            }
+        }
+
+        /**
+         * @return The length of the longest word starting at the given position, that ends on a word boundary.
+         */
+        private int longestMatch(int start, int end) {
+            int longest = 0;
+            int state = ROOT;
+            int limit = Math.min(end, start + maxWordLength);
+
+            for (int i = start; i < limit; i++) {
+                state = transition(state, CharClass.fold(text.charAt(i)));
+                if (state == NONE) {
+                    break;
+                }
+                if ((wordEnd.get(state >>> 6) & (1L << state)) != 0 && CharClass.isBoundary(text, i + 1)) {
+                    longest = i + 1 - start;
+                }
+            }
+            return longest;
+        }
+    }
+
+    private int transition(int state, char c) {
+        if (state == ROOT && c < CharClass.ASCII) {
+            return asciiRoot[c];
+        }
+
+        int low = edgeStart.get(state);
+        int high = edgeStart.get(state + 1) - 1;
+
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            char label = edgeLabel.get(mid);
+            if (label < c) {
+                low = mid + 1;
+            } else if (label > c) {
+                high = mid - 1;
+            } else {
+                return mid + 1;
+            }
+        }
+        return NONE;
+    }
+
+    private static int wordEndLength(int stateCount) {
+        return (stateCount + 63) >>> 6;
+    }
+
+    private static long align(long offset) {
+        return (offset + 7) & ~7L;
+    }
+
+    private static ByteBuffer slice(ByteBuffer buffer, long from, long to) {
+        return buffer.slice((int) from, (int) (to - from)).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static String fold(String word) {
+        char[] chars = new char[word.length()];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = CharClass.fold(word.charAt(i));
+        }
+        return new String(chars);
+    }
+
+    private static int sharedPrefix(String a, String b) {
+        int length = Math.min(a.length(), b.length());
+        int i = 0;
+        while (i < length && a.charAt(i) == b.charAt(i)) {
+            i++;
+        }
+        return i;
+    }
+}
@@ -0,0 +1,68 @@
+package com.flash.sanitization.sanitizer.matcher;
+
+import lombok.NonNull;
+
+/**
+ * Finds a list of words in a text and replaces them with a mask.
+ * <br />
+ * Matching is case-insensitive and word bounded, i.e. every word behaves like {@code \bword\b}. When matches overlap
+ * the leftmost match wins, and of the matches starting at the same position the longest one wins. Implementations
+ * only differ in how fast they are and how much memory they take, never in what they match.
+ */
+public interface WordMatcher {
+
+    /**
+     * @return The number of words compiled into the matcher.
+     */
+    int getWordCount();
+
+    /**
+     * @return The length of the longest word compiled into the matcher.
+     */
+    int getMaxWordLength();
+
+    /**
+     * @return An estimate of the memory taken by the matcher, in bytes.
+     */
+    long getFootprint();
+
+    /**
+     * Replace every match in the text with the mask.
+     *
+     * @return
+     * The text with the matches replaced, or the text itself if nothing matched.
+     */
+    String replace(@NonNull String text, @NonNull String mask);
+
+    /**
+     * Replace every match in the text with the mask, appending the result to the output.
+     */
+    void replace(@NonNull CharSequence text, @NonNull String mask, @NonNull StringBuilder output);
+
+    /**
+     * Replace the matches in a text that is read in parts, appending the result to the output. Only the part of the
+     * text that can't be affected by what comes after it is written to the output.
+     * <br />
+     * The rest, starting from the returned position, has to be passed in again once more text is available, preceded
+     * by the character just before it so word boundaries can still be checked.
+     *
+     * @param text
+     * The text to search.
+     *
+     * @param from
+     * Where to start searching, the text before it is only used to check for word boundaries.
+     *
+     * @param mask
+     * The value to replace the matches with.
+     *
+     * @param output
+     * Where to append the result.
+     *
+     * @param last
+     * If this is the end of the text, in which case everything is written to the output.
+     *
+     * @return
+     * The position up to which the text has been handled.
+     */
+    int replace(@NonNull CharSequence text, int from, @NonNull String mask, @NonNull StringBuilder output, boolean last);
+}
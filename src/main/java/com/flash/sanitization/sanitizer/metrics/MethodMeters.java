@@ -0,0 +1,64 @@
+package com.flash.sanitization.sanitizer.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The meters of a single measured method. They're looked up once and then reused for every call, so recording a call
+ * doesn't allocate anything.
+ */
+public final class MethodMeters {
+
+    private final MeterRegistry meterRegistry;
+    private final Tags tags;
+
+    private final Counter success;
+    private final Counter all;
+    private final Timer time;
+
+    /**
+     * Error counters per exception type. Only the exception types a method actually throws end up in here, so it stays
+     * small.
+     */
+    private final Map<Class<?>, Counter> errors = new ConcurrentHashMap<>();
+
+    MethodMeters(MeterRegistry meterRegistry, String className, String methodName) {
+        this.meterRegistry = meterRegistry;
+        this.tags = Tags.of("class", className, "method", methodName);
+
+        this.success = meterRegistry.counter("method.success", tags);
+        // we have a separate counter for all despite that we could just add
+        // success and failures because it saves as a bit of processing time.
+        // over huge data sets those additions add up.
+        this.all = meterRegistry.counter("method.all", tags);
+        this.time = meterRegistry.timer("method.time", tags);
+    }
+
+    /**
+     * Record a call that completed normally.
+     */
+    public void recordSuccess(long nanos) {
+        success.increment();
+        all.increment();
+        time.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Record a call that threw.
+     */
+    public void recordError(Throwable throwable, long nanos) {
+        errors
+            .computeIfAbsent(
+                throwable.getClass(),
+                type -> meterRegistry.counter("method.error", tags.and("exception", type.getSimpleName())))
+            .increment();
+        all.increment();
+        time.record(nanos, TimeUnit.NANOSECONDS);
+    }
+}
@@ -1,87 +1,149 @@
 package com.flash.sanitization.sanitizer.metrics;
 
 
+import io.micrometer.core.instrument.Gauge;
 import io.micrometer.core.instrument.MeterRegistry;
-import io.micrometer.core.instrument.Tags;
 import io.micrometer.core.instrument.Timer;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
-import java.util.Objects;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 
 /**
  * A very basic micrometer implementation for creating metric.
- * Could be refined further with more meaningful measures, but serves as good "proof of concept".
+ * <br />
+ * Meters are created once and cached, so recording doesn't build tags or look anything up in the registry. Only low
+ * cardinality values are used as tags, never the values being sanitized. Input types and sanitizer names come from
+ * the configuration, but to be safe only the first {@link #MAX_TAG_VALUES} of each are tagged separately, anything
+ * after that is recorded as {@link #OTHER}. That value can't be a configured name by accident, so the overflow never
+ * shares a meter with one.
  */
 @Slf4j
 @Component
 @RequiredArgsConstructor
 public class SanitizerMetricBundle {
 
+    static final int MAX_TAG_VALUES = 100;
+    static final String OTHER = "<other>";
+
     @NonNull
     private final MeterRegistry meterRegistry;
 
+    private final Map<Method, MethodMeters> methodMeters = new ConcurrentHashMap<>();
+    private final BoundedTimers pipelineTimers = new BoundedTimers("sanitizer.pipeline.time", "inputType");
+    private final BoundedTimers constructionTimers = new BoundedTimers("sanitizer.construct.time", "sanitizer");
+    private final Map<String, AtomicLong> dictionaryFootprints = new ConcurrentHashMap<>();
+
     /**
-     * Record how long a method took.
+     * @return The meters for a method annotated with
+     * {@link com.flash.sanitization.sanitizer.metrics.annotation.SanitizerMeasure}.
      */
-    public void recordTime(String className, String methodName, Timer.Sample timer) {
+    public MethodMeters methodMeters(Method method) {
+        MethodMeters meters = methodMeters.get(method);
+        if (meters != null) {
+            return meters;
+        }
+        return methodMeters.computeIfAbsent(
+            method,
+            m -> new MethodMeters(meterRegistry, m.getDeclaringClass().getName(), m.getName()));
+    }
 
-        timer.stop(
-            meterRegistry.timer(
-                "method.time",
-                "class", className,
-                "method", methodName));
+    /**
+     * Record how long it took to sanitize a value with the pipeline of an input type.
+     */
+    public void recordSanitization(String inputType, long nanos) {
+        pipelineTimers.get(inputType).record(nanos, TimeUnit.NANOSECONDS);
     }
 
     /**
-     * Record the number of failures for a method.
+     * Record how long it took to construct a configured sanitizer.
      */
-    public void recordError(String className, String methodName, String errorType, Object[] methodArgs) {
+    public void recordConstruction(String sanitizerName, long nanos) {
+        constructionTimers.get(sanitizerName).record(nanos, TimeUnit.NANOSECONDS);
+    }
 
-        Tags paramTags = Tags.of("class", className, "method", methodName);
-        for(int i = 0; i < methodArgs.length; i++) {
-            paramTags.and("arg" + i, Objects.toString(methodArgs[i]));
+    /**
+     * Record the memory taken by the compiled words of a sanitizer, replacing what was recorded when it was built
+     * before.
+     */
+    public void recordDictionary(String sanitizerName, long bytes) {
+        AtomicLong footprint = dictionaryFootprints.get(sanitizerName);
+        if (footprint == null) {
+            if (dictionaryFootprints.size() >= MAX_TAG_VALUES) {
+                log.debug("Too many sanitizers to record the dictionary size of {}", sanitizerName);
+                return;
+            }
+            footprint = dictionaryFootprints.computeIfAbsent(sanitizerName, name -> {
+                AtomicLong value = new AtomicLong();
+                Gauge.builder("sanitizer.dictionary.bytes", value, AtomicLong::get)
+                    .tag("sanitizer", name)
+                    .baseUnit("bytes")
+                    .register(meterRegistry);
+                return value;
+            });
         }
+        footprint.set(bytes);
+    }
 
-        meterRegistry.counter("method.error", paramTags).increment();
+    /**
+     * Record how long the startup warm-up took.
+     */
+    public void recordWarmUp(long nanos) {
+        meterRegistry.timer("sanitizer.warmup.time").record(nanos, TimeUnit.NANOSECONDS);
+    }
 
-        recordCountAll(className, methodName, methodArgs);
+    /**
+     * Publish the hit ratio and the size of the result cache.
+     */
+    public void registerResultCache(Supplier<Number> hitRatio, Supplier<Number> bytesUsed) {
+        Gauge.builder("sanitizer.result.cache.hit.ratio", hitRatio).register(meterRegistry);
+        Gauge.builder("sanitizer.result.cache.bytes", bytesUsed).baseUnit("bytes").register(meterRegistry);
     }
 
     /**
-     * Record the number of success for a method.
+     * The timers of a name by the value of a tag, at most {@link #MAX_TAG_VALUES} of them and the one for
+     * {@link #OTHER}. That one is created on the first value past the limit, and kept like the others.
      */
-    public void recordSuccess(String className, String methodName, Object[] methodArgs) {
+    private class BoundedTimers {
 
+        private final String name;
+        private final String tag;
+        private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+        private volatile Timer other;
 
-        Tags paramTags = Tags.of("class", className, "method", methodName);
-        for(int i = 0; i < methodArgs.length; i++) {
-            paramTags.and("arg" + i, Objects.toString(methodArgs[i]));
+        private BoundedTimers(String name, String tag) {
+            this.name = name;
+            this.tag = tag;
         }
 
-        meterRegistry.counter("method.success",paramTags).increment();
-
-        recordCountAll(className, methodName, methodArgs);
-    }
-
-    private void recordCountAll(String className, String methodName, Object[] methodArgs) {
+        private Timer get(String value) {
+            Timer timer = timers.get(value);
+            if (timer != null) {
+                return timer;
+            }
 
-        Tags paramTags = Tags.of("class", className, "method", methodName);
-        for(int i = 0; i < methodArgs.length; i++) {
-            paramTags.and("arg" + i, Objects.toString(methodArgs[i]));
+            if (timers.size() >= MAX_TAG_VALUES) {
+                return other();
+            }
+            return timers.computeIfAbsent(value, v -> meterRegistry.timer(name, tag, v));
         }
 
-        meterRegistry.counter("method.success",paramTags).increment();
-
-        // we have a separate counter for all despite that we could just add
-        // success and failures because it saves as a bit of processing time.
-        // over huge data sets those additions add up.
-        meterRegistry.counter("method.all", paramTags).increment();
-
+        private Timer other() {
+            Timer timer = other;
+            if (timer == null) {
+                log.debug("Too many values for tag {} of {}, recording the rest as {}", tag, name, OTHER);
+                // the registry hands out the same timer if two threads get here at once
+                timer = meterRegistry.timer(name, tag, OTHER);
+                other = timer;
+            }
+            return timer;
+        }
     }
 }
-
-
-
@@ -1,12 +1,13 @@
 package com.flash.sanitization.sanitizer.metrics.annotation;
 
+import com.flash.sanitization.sanitizer.metrics.MethodMeters;
 import com.flash.sanitization.sanitizer.metrics.SanitizerMetricBundle;
-import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
 import org.springframework.stereotype.Component;
 
 /**
@@ -30,26 +31,20 @@ public class SanitizerMeasureAspect {
     @Around(value = "@annotation(restSanitizerMeasureAnnotation)")
     public Object timeMeasures(ProceedingJoinPoint joinPoint, SanitizerMeasure restSanitizerMeasureAnnotation) throws Throwable {
 
-        String className = joinPoint.getSignature().getDeclaringTypeName();
-        String methodName = joinPoint.getSignature().getName();
+        MethodMeters meters =
+            sanitizerMetricBundle.methodMeters(((MethodSignature) joinPoint.getSignature()).getMethod());
 
-        Object[] methodArgs = joinPoint.getArgs();
-
-        Timer.Sample timer = Timer.start();
+        long start = System.nanoTime();
 
         try {
             Object returnValue = joinPoint.proceed();
 
-            sanitizerMetricBundle.recordSuccess(className, methodName, methodArgs);
+            meters.recordSuccess(System.nanoTime() - start);
             return returnValue;
         }
         catch(Throwable throwable) {
-            sanitizerMetricBundle.recordError(className, methodName, throwable.getClass().getSimpleName(), methodArgs);
+            meters.recordError(throwable, System.nanoTime() - start);
             throw throwable;
         }
-        finally
-        {
-            sanitizerMetricBundle.recordTime(className, methodName, timer);
-        }
     }
 }
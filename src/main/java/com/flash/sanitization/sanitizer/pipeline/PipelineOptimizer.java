@@ -0,0 +1,118 @@
+package com.flash.sanitization.sanitizer.pipeline;
+
+import com.flash.sanitization.sanitizer.implementation.Sanitizer;
+import com.flash.sanitization.sanitizer.implementation.WordSanitizer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Turns the sanitizers configured for an input type into the stages a {@link SanitizerPipeline} runs.
+ * <br />
+ * Input types often have several word lists in a row (profanity, sql keywords, code names), each of which would scan
+ * the whole text. Adjacent {@link WordSanitizer}s that can be fused are run as a single stage instead, which scans the
+ * text once for all of their words and sanitizes exactly the same, see {@link WordSanitizer#fuse(List)}. Every other
+ * sanitizer is a stage of its own, and so is a word sanitizer that can't be fused, which also ends the run of word
+ * sanitizers before it.
+ */
+@Slf4j
+public final class PipelineOptimizer {
+
+    private PipelineOptimizer() {
+    }
+
+    /**
+     * @param sanitizers The configured sanitizers, in the order they run.
+     * @param names The names the sanitizers were configured with, in the same order.
+     *
+     * @return The stages to run instead.
+     */
+    public static List<Stage> optimize(List<Sanitizer> sanitizers, List<String> names) {
+
+        if (Objects.isNull(sanitizers)) {
+            return List.of();
+        }
+
+        List<Stage> stages = new ArrayList<>();
+        int i = 0;
+        while (i < sanitizers.size()) {
+            int end = i;
+            while (end < sanitizers.size()
+                && sanitizers.get(end) instanceof WordSanitizer words
+                && words.isFusable())
+            {
+                end++;
+            }
+
+            if (end - i < 2) {
+                stages.add(new Stage(sanitizers.get(i), List.of(name(sanitizers, names, i)), false));
+                i++;
+                continue;
+            }
+
+            List<WordSanitizer> fused = new ArrayList<>();
+            List<String> fusedNames = new ArrayList<>();
+            for (int j = i; j < end; j++) {
+                fused.add((WordSanitizer) sanitizers.get(j));
+                fusedNames.add(name(sanitizers, names, j));
+            }
+            log.debug("Fusing word sanitizers {}", fusedNames);
+
+            stages.add(new Stage(WordSanitizer.fuse(fused), List.copyOf(fusedNames), true));
+            i = end;
+        }
+        return List.copyOf(stages);
+    }
+
+    /**
+     * Every sanitizer a stage of its own, as they were configured.
+     */
+    public static List<Stage> unoptimized(List<Sanitizer> sanitizers) {
+
+        if (Objects.isNull(sanitizers)) {
+            return List.of();
+        }
+
+        List<Stage> stages = new ArrayList<>();
+        for (int i = 0; i < sanitizers.size(); i++) {
+            stages.add(new Stage(sanitizers.get(i), List.of(name(sanitizers, null, i)), false));
+        }
+        return List.copyOf(stages);
+    }
+
+    /**
+     * The configured name of a sanitizer, or its class if it wasn't given.
+     */
+    private static String name(List<Sanitizer> sanitizers, List<String> names, int i) {
+        return Objects.nonNull(names) && i < names.size() && Objects.nonNull(names.get(i)) ?
+            names.get(i) :
+            implementation(sanitizers.get(i));
+    }
+
+    /**
+     * The name of the class of a sanitizer, for a variant like {@link WordSanitizer.Segmentable} the class it's a
+     * variant of.
+     */
+    public static String implementation(Sanitizer sanitizer) {
+        return implementationClass(sanitizer).getSimpleName();
+    }
+
+    static Class<?> implementationClass(Sanitizer sanitizer) {
+        Class<?> type = sanitizer.getClass();
+        return type.isMemberClass() && type.getEnclosingClass().isAssignableFrom(type) ?
+            type.getEnclosingClass() :
+            type;
+    }
+
+    /**
+     * A stage of a pipeline.
+     *
+     * @param sanitizer The sanitizer the stage runs.
+     * @param sanitizers The configured sanitizers it runs for, more than one if they were fused.
+     * @param fused Whether the sanitizer was fused from the configured ones.
+     */
+    public record Stage(Sanitizer sanitizer, List<String> sanitizers, boolean fused) {
+    }
+}
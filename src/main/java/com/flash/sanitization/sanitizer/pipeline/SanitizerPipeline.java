@@ -1,28 +1,283 @@
 package com.flash.sanitization.sanitizer.pipeline;
 
+import com.flash.sanitization.sanitizer.implementation.BufferSanitizer;
 import com.flash.sanitization.sanitizer.implementation.Sanitizer;
-import lombok.RequiredArgsConstructor;
+import com.flash.sanitization.sanitizer.implementation.SegmentableSanitizer;
+import com.flash.sanitization.sanitizer.implementation.StreamingSanitizer;
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.lang3.StringUtils;
 
+import java.io.Writer;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * A Sanitizer Pipeline holds a number of Sanitizers and collectively executes these Sanitizers for an input.
+ * <br />
+ * Rather than creating a String per stage, the stages pass the value along through two buffers that are reused. Every
+ * stage reads from one buffer and writes into the other. The buffers are pooled rather than kept per thread, a
+ * request on a virtual thread has a thread of its own and would never reuse them. Sanitizers that don't implement
+ * {@link BufferSanitizer} still work, they're just adapted through a String.
+ * <br />
+ * A pipeline can also be streamed, see {@link #sanitizing(Writer)}.
+ * <br />
+ * The stages it runs don't have to be the configured sanitizers themselves, see {@link PipelineOptimizer}.
+ * <br />
+ * If every stage is a {@link SegmentableSanitizer} a very large value can be sanitized on several threads at once, see
+ * {@link #sanitize(String, int, ForkJoinPool)}.
  */
-@RequiredArgsConstructor
-public class SanitizerPipeline {
+public class SanitizerPipeline implements StreamingSanitizer {
+
+    /**
+     * Buffers that grew bigger than this, in characters, are dropped after use so one huge input doesn't pin the
+     * memory for as long as they're pooled.
+     */
+    static final int MAX_RETAINED_CAPACITY = 1 << 20;
+
+    /**
+     * Sanitizing doesn't block, so no more pipelines run at once than there are processors. The buffers of the ones
+     * beyond that are dropped.
+     */
+    static final int MAX_POOLED = 2 * Runtime.getRuntime().availableProcessors();
+
+    private static final BlockingQueue<Buffers> BUFFERS = new ArrayBlockingQueue<>(MAX_POOLED);
+
+    private static final AtomicLong VERSIONS = new AtomicLong();
 
     private final List<Sanitizer> sanitizers;
 
+    /**
+     * What's run for the sanitizers, and the sanitizers of those stages.
+     */
+    private final List<PipelineOptimizer.Stage> plan;
+    private final List<Sanitizer> planned;
+
+    private final BufferSanitizer[] stages;
+    private final StreamingSanitizer[] streamingStages;
+
+    /**
+     * The stages if all of them can sanitize segments, null otherwise.
+     */
+    private final SegmentableSanitizer[] segmentStages;
+
+    /**
+     * The names of the configured sanitizers the pipeline was built from.
+     */
+    private final Set<String> sanitizerNames;
+
+    /**
+     * Unique for every pipeline that's constructed, so anything derived from the output of a pipeline can tell when
+     * it's been replaced.
+     */
+    private final long version = VERSIONS.incrementAndGet();
+
+    public SanitizerPipeline(List<Sanitizer> sanitizers) {
+        this(sanitizers, Set.of());
+    }
+
+    public SanitizerPipeline(List<Sanitizer> sanitizers, Set<String> sanitizerNames) {
+        this(sanitizers, sanitizerNames, PipelineOptimizer.unoptimized(sanitizers));
+    }
+
+    /**
+     * @param plan The stages to run for the sanitizers, see {@link PipelineOptimizer#optimize(List, List)}.
+     */
+    public SanitizerPipeline(
+        List<Sanitizer> sanitizers,
+        Set<String> sanitizerNames,
+        List<PipelineOptimizer.Stage> plan)
+    {
+        this.sanitizers = sanitizers;
+        this.sanitizerNames = Set.copyOf(sanitizerNames);
+        this.plan = List.copyOf(plan);
+        this.planned = this.plan.stream().map(PipelineOptimizer.Stage::sanitizer).toList();
+        this.stages = planned.stream().map(BufferSanitizer::of).toArray(BufferSanitizer[]::new);
+        this.streamingStages = planned.stream().map(StreamingSanitizer::of).toArray(StreamingSanitizer[]::new);
+        this.segmentStages = !planned.isEmpty() && planned.stream().allMatch(SegmentableSanitizer.class::isInstance) ?
+            planned.stream().map(SegmentableSanitizer.class::cast).toArray(SegmentableSanitizer[]::new) :
+            null;
+    }
+
+    @Override
     public String sanitize(final String input) {
-        return sanitizers
-            .stream()
-            .reduce(
-                input, // initial input
-                (accumulated, sanitizer) -> sanitizer.sanitize(accumulated), // sanitize
-                (s1, s2) -> s2 // combine
-            );
+
+        // a single stage can't gain anything from the buffers, and they would only add a copy
+        if (Objects.isNull(input) || stages.length < 2) {
+            return planned
+                .stream()
+                .reduce(
+                    input, // initial input
+                    (accumulated, sanitizer) -> sanitizer.sanitize(accumulated), // sanitize
+                    (s1, s2) -> s2 // combine
+                );
+        }
+
+        // a stage running a pipeline itself takes other buffers than the ones we're still reading from
+        Buffers buffers = BUFFERS.poll();
+        if (Objects.isNull(buffers)) {
+            buffers = new Buffers();
+        }
+
+        try {
+            CharSequence current = input;
+            StringBuilder target = buffers.first;
+
+            for (BufferSanitizer stage : stages) {
+                target.setLength(0);
+                stage.sanitize(current, target);
+
+                current = target;
+                target = target == buffers.first ? buffers.second : buffers.first;
+            }
+
+            return current.toString();
+        } finally {
+            buffers.release();
+            BUFFERS.offer(buffers);
+        }
+    }
+
+    /**
+     * Sanitize a large value in segments of about the given length, all at once on the pool, and join them. A segment
+     * only ends right before a white space character, which is where the stages can split a value, see
+     * {@link SegmentableSanitizer#sanitizeSegment(CharSequence, StringBuilder)}. A value without white space for a
+     * long stretch gets a segment that's as much longer.
+     * <br />
+     * Values that aren't longer than a segment, and pipelines with a stage that can't sanitize segments, are
+     * sanitized the same way as {@link #sanitize(String)} does.
+     */
+    public String sanitize(final String input, int segmentLength, ForkJoinPool pool) {
+
+        if (Objects.isNull(input) || input.length() <= segmentLength || !supportsSegmentation()) {
+            return sanitize(input);
+        }
+
+        int[] bounds = segments(input, Math.max(1, segmentLength));
+        if (bounds.length <= 2) {
+            return sanitize(input);
+        }
+
+        String[] sanitized = new String[bounds.length - 1];
+        pool.invoke(new Segments(input, bounds, sanitized, 0, sanitized.length));
+
+        StringBuilder joined = new StringBuilder(input.length());
+        for (String segment : sanitized) {
+            joined.append(segment);
+        }
+        // every stage would have trimmed the value, trimming it once comes down to the same
+        BufferSanitizer.trim(joined, 0);
+        return joined.toString();
+    }
+
+    /**
+     * @return Whether every stage can sanitize segments, see {@link #sanitize(String, int, ForkJoinPool)}.
+     */
+    public boolean supportsSegmentation() {
+        return Objects.nonNull(segmentStages);
+    }
+
+    /**
+     * Runs the segment through every stage, none of which trims it.
+     */
+    private void sanitizeSegment(CharSequence segment, StringBuilder output) {
+
+        CharSequence current = segment;
+        StringBuilder target = new StringBuilder(segment.length());
+        StringBuilder other = new StringBuilder(segment.length());
+
+        for (SegmentableSanitizer stage : segmentStages) {
+            target.setLength(0);
+            stage.sanitizeSegment(current, target);
+
+            current = target;
+            target = other;
+            other = (StringBuilder) current;
+        }
+
+        output.append(current);
+    }
+
+    /**
+     * @return Where the segments of the value start, and its length at the end.
+     */
+    static int[] segments(CharSequence input, int segmentLength) {
+
+        int[] bounds = new int[2 + input.length() / segmentLength];
+        int count = 1;
+
+        int from = 0;
+        while (input.length() - from > segmentLength) {
+            int split = from + segmentLength;
+            while (split < input.length() && !Character.isWhitespace(input.charAt(split))) {
+                split++;
+            }
+            if (split == input.length()) {
+                break;
+            }
+
+            bounds[count++] = split;
+            from = split;
+        }
+
+        bounds[count++] = input.length();
+        return Arrays.copyOf(bounds, count);
+    }
+
+    /**
+     * Chains the stages, every stage writes into the next one. Stages that can't stream hold on to the whole value
+     * until the writer is closed.
+     */
+    @Override
+    public Writer sanitizing(Writer downstream) {
+        Writer writer = downstream;
+        for (int i = streamingStages.length - 1; i >= 0; i--) {
+            writer = streamingStages[i].sanitizing(writer);
+        }
+        return writer;
+    }
+
+    /**
+     * @return The stages the pipeline runs, in order.
+     */
+    public List<PipelineOptimizer.Stage> getPlan() {
+        return plan;
+    }
+
+    public long version() {
+        return version;
+    }
+
+    /**
+     * @return Whether both pipelines run the same sanitizer instances in the same order, and so sanitize everything
+     * the same way.
+     */
+    public boolean hasSameSanitizers(SanitizerPipeline other) {
+        if (Objects.isNull(sanitizers) || Objects.isNull(other.sanitizers)) {
+            return Objects.isNull(sanitizers) && Objects.isNull(other.sanitizers);
+        }
+        if (sanitizers.size() != other.sanitizers.size()) {
+            return false;
+        }
+        for (int i = 0; i < sanitizers.size(); i++) {
+            if (sanitizers.get(i) != other.sanitizers.get(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return Whether the pipeline was built using the configured sanitizer with the given name.
+     */
+    public boolean references(String sanitizerName) {
+        return sanitizerNames.contains(sanitizerName);
     }
 
     public boolean contains(String sanitizerName) {
@@ -33,9 +288,69 @@ public class SanitizerPipeline {
         return
             sanitizers
                 .stream()
-                .filter(e -> StringUtils.equals(e.getClass().getName(), sanitizerName))
+                .filter(e -> StringUtils.equals(PipelineOptimizer.implementationClass(e).getName(), sanitizerName))
                 .map(e -> true)
                 .findFirst()
                 .orElse(false);
     }
+
+    /**
+     * Sanitizes a range of the segments, by splitting it in two until there's a single segment left.
+     */
+    private class Segments extends RecursiveAction {
+
+        private final String input;
+        private final int[] bounds;
+        private final String[] sanitized;
+        private final int from;
+        private final int to;
+
+        private Segments(String input, int[] bounds, String[] sanitized, int from, int to) {
+            this.input = input;
+            this.bounds = bounds;
+            this.sanitized = sanitized;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                StringBuilder output = new StringBuilder(bounds[to] - bounds[from]);
+                sanitizeSegment(input.substring(bounds[from], bounds[to]), output);
+                sanitized[from] = output.toString();
+                return;
+            }
+
+            int middle = (from + to) >>> 1;
+            invokeAll(
+                new Segments(input, bounds, sanitized, from, middle),
+                new Segments(input, bounds, sanitized, middle, to));
+        }
+    }
+
+    /**
+     * @return The number of buffers that are pooled.
+     */
+    static int pooledBuffers() {
+        return BUFFERS.size();
+    }
+
+    private static class Buffers {
+        private StringBuilder first = new StringBuilder();
+        private StringBuilder second = new StringBuilder();
+
+        private void release() {
+            first = shrink(first);
+            second = shrink(second);
+        }
+
+        private static StringBuilder shrink(StringBuilder buffer) {
+            if (buffer.capacity() > MAX_RETAINED_CAPACITY) {
+                return new StringBuilder();
+            }
+            buffer.setLength(0);
+            return buffer;
+        }
+    }
 }
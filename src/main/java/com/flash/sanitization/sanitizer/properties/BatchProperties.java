@@ -0,0 +1,71 @@
+package com.flash.sanitization.sanitizer.properties;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.validation.annotation.Validated;
+
+/**
+ * Configuration of the batch sanitization.
+ */
+@Getter
+@Setter
+@Component
+@Validated
+@ConfigurationProperties("flash.sanitizer.batch")
+public class BatchProperties {
+
+    /**
+     * The number of threads sanitizing batch items, shared by all batch requests. The sanitize-file command uses as
+     * many threads.
+     */
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Number of items sanitized by a single task. Batches that aren't bigger than this are sanitized on the request
+     * thread.
+     */
+    private int chunkSize = 64;
+
+    /**
+     * The maximum number of items in a single batch.
+     */
+    private int maxItems = 10_000;
+
+    /**
+     * The number of chunks of a line by line stream that are read but not yet written. Once there are this many, the
+     * stream isn't read any further until the oldest chunk has been written, so a slow client holds back its own
+     * stream rather than filling the memory.
+     */
+    private int streamChunks = 16;
+
+    /**
+     * The number of bytes of a file that are sanitized at a time by the sanitize-file command.
+     */
+    private DataSize fileChunkSize = DataSize.ofMegabytes(8);
+
+    /**
+     * The number of bytes of a csv or tsv stream that are sanitized at a time, a block is bigger if a single record
+     * is.
+     */
+    private DataSize columnBlockSize = DataSize.ofMegabytes(1);
+
+    /**
+     * The maximum number of bytes of a single csv or tsv record. A quote that's never closed makes the rest of the
+     * input a single record, it's rejected once it's this long rather than read into memory as a whole.
+     */
+    private DataSize maxRecordSize = DataSize.ofMegabytes(16);
+
+    /**
+     * Values of at least this many characters are split into segments that are sanitized at the same time, on the
+     * batch threads, if every sanitizer of their input type supports it. 0 turns it off.
+     */
+    private int segmentThreshold = 1 << 20;
+
+    /**
+     * The number of characters of a segment, it ends at the first white space after that.
+     */
+    private int segmentLength = 1 << 18;
+}
@@ -17,4 +17,16 @@ public class CacheProperties {
 
     private Duration expiryTime = Duration.ofSeconds(30);
     private int maxSize = 100;
+
+    /**
+     * After how long a pipeline that is still being used is rebuilt in the background, while the old one keeps being
+     * served. Only applies if it's shorter than the expiry time, zero or negative disables it.
+     */
+    private Duration refreshTime = Duration.ofSeconds(20);
+
+    /**
+     * How often the log of configuration changes is checked, to drop the sanitizers and pipelines that changed.
+     * Zero or negative disables it, leaving only the expiry time.
+     */
+    private Duration changePollInterval = Duration.ofSeconds(5);
 }
@@ -0,0 +1,33 @@
+package com.flash.sanitization.sanitizer.properties;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.validation.annotation.Validated;
+
+import java.time.Duration;
+
+/**
+ * Configuration of the sanitizer used when no input type is provided.
+ */
+@Getter
+@Setter
+@Component
+@Validated
+@ConfigurationProperties("flash.sanitizer.default")
+public class DefaultSanitizerProperties {
+
+    /**
+     * Source of the banned words, in the same format the word-sanitizer-factory accepts i.e. LIST:, FILE: or
+     * CLASSPATH:
+     */
+    private String src = "CLASSPATH:default-word-list.txt";
+
+    private String mask = "***";
+
+    /**
+     * How often to check if the source has changed. Zero or negative disables the reload.
+     */
+    private Duration reloadInterval = Duration.ofSeconds(30);
+}
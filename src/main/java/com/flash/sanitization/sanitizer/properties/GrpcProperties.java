@@ -0,0 +1,48 @@
+package com.flash.sanitization.sanitizer.properties;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.validation.annotation.Validated;
+
+import java.time.Duration;
+
+/**
+ * Configuration of the grpc server, which serves the same operations as the rest api on a port of its own.
+ */
+@Getter
+@Setter
+@Component
+@Validated
+@ConfigurationProperties("flash.sanitizer.grpc")
+public class GrpcProperties {
+
+    private boolean enabled = true;
+
+    /**
+     * Zero picks a free port.
+     */
+    private int port = 9090;
+
+    /**
+     * The number of threads the calls are served by, separate from the threads serving the rest api.
+     */
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * The largest request the server accepts, a batch included.
+     */
+    private DataSize maxMessageSize = DataSize.ofMegabytes(4);
+
+    /**
+     * How many requests of a stream are asked for ahead of their responses.
+     */
+    private int streamWindow = 64;
+
+    /**
+     * How long calls that are still in progress get to finish on shutdown.
+     */
+    private Duration shutdownTimeout = Duration.ofSeconds(10);
+}
@@ -0,0 +1,36 @@
+package com.flash.sanitization.sanitizer.properties;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.validation.annotation.Validated;
+
+/**
+ * Configuration of the cache of sanitized values. The values are stored outside the heap, so the cache can be large
+ * without adding to the garbage collection.
+ */
+@Getter
+@Setter
+@Component
+@Validated
+@ConfigurationProperties("flash.sanitizer.result-cache")
+public class ResultCacheProperties {
+
+    /**
+     * Only worth it if the same values are sanitized again and again.
+     */
+    private boolean enabled = false;
+
+    /**
+     * The memory reserved for the cache, values and their sanitized version are stored as two bytes per character. At
+     * most 1GB.
+     */
+    private DataSize maxSize = DataSize.ofMegabytes(64);
+
+    /**
+     * Values that take more than this, together with their sanitized version, aren't cached.
+     */
+    private DataSize maxEntrySize = DataSize.ofKilobytes(256);
+}
@@ -0,0 +1,37 @@
+package com.flash.sanitization.sanitizer.properties;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.validation.annotation.Validated;
+
+import java.time.Duration;
+
+/**
+ * Configuration of the warm-up that runs on startup, before the application reports it's ready.
+ */
+@Getter
+@Setter
+@Component
+@Validated
+@ConfigurationProperties("flash.sanitizer.warm-up")
+public class WarmUpProperties {
+
+    /**
+     * Whether all the pipelines are built on startup.
+     */
+    private boolean enabled = true;
+
+    /**
+     * How often the synthetic workload is sent through every pipeline once it's built, so the JIT has compiled the
+     * sanitizers by the time the first request comes in. Zero only builds the pipelines.
+     */
+    private int iterations = 200;
+
+    /**
+     * The time after which the synthetic workload is stopped, however far it got, so a large number of input types
+     * can't hold up the startup.
+     */
+    private Duration timeLimit = Duration.ofSeconds(30);
+}
@@ -0,0 +1,161 @@
+package com.flash.sanitization.sanitizer.registry;
+
+import com.flash.sanitization.db.dao.ConfigChangeDao;
+import com.flash.sanitization.db.record.ConfigChangeRecord;
+import com.flash.sanitization.sanitizer.properties.CacheProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads the log of configuration changes written by the DAOs, and drops only the sanitizers and pipelines that were
+ * changed from the {@link SanitizerRegistry}. Every node polls the shared database, so a change made through one node
+ * is picked up by all of them, and the cache expiry can be long.
+ * <br />
+ * Versions are handed out when a change is written, not when it's committed, so a change can show up after a later
+ * one has already been read. Versions that were skipped are therefore checked again for a while. A pipeline that was
+ * being built while its change was applied is dropped along with the sanitizers it cached, only the requests that
+ * were waiting for it get the old sanitizer.
+ * <br />
+ * Changes are only needed until every node has seen them, so the log is cleaned up as it's polled: changes up to the
+ * last version that were made more than {@link #MISSING_TIMEOUT} ago are deleted. A node that fails to poll for longer
+ * than that misses them, its cache expiry still catches up.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ConfigChangePoller {
+
+    /**
+     * How long a skipped version is checked for, longer than any transaction writing a change should take.
+     */
+    static final Duration MISSING_TIMEOUT = Duration.ofMinutes(1);
+
+    /**
+     * Skipping more versions than this isn't caused by transactions still in progress, the database has jumped ahead
+     * (SQL Server does on a restart), so they're not checked.
+     */
+    static final int MAX_MISSING = 100;
+
+    /**
+     * How often the log is cleaned up, every node does so.
+     */
+    static final Duration CLEANUP_INTERVAL = MISSING_TIMEOUT;
+
+    private final ConfigChangeDao configChangeDao;
+    private final SanitizerRegistry registry;
+    private final CacheProperties cacheProperties;
+
+    /**
+     * Versions that were skipped, with the time (in nanos) after which they are no longer checked.
+     */
+    private final Map<Long, Long> missing = new HashMap<>();
+
+    private long lastVersion;
+
+    /**
+     * The time (in nanos) after which the log is cleaned up again.
+     */
+    private long nextCleanup;
+
+    private ScheduledExecutorService pollExecutor;
+
+    /**
+     * Everything that's cached is built after this, so only the changes from now on matter.
+     */
+    @PostConstruct
+    public void start() {
+
+        lastVersion = configChangeDao.findLatestVersion();
+        nextCleanup = System.nanoTime();
+
+        Duration pollInterval = cacheProperties.getChangePollInterval();
+        if (Objects.nonNull(pollInterval) && pollInterval.isPositive()) {
+            pollExecutor = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("config-change-poller").daemon().factory());
+
+            pollExecutor.scheduleWithFixedDelay(
+                this::pollSafely,
+                pollInterval.toMillis(),
+                pollInterval.toMillis(),
+                TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (Objects.nonNull(pollExecutor)) {
+            pollExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * Apply the changes that were made since the last poll.
+     *
+     * @return The number of changes applied.
+     */
+    public synchronized int poll() {
+
+        long now = System.nanoTime();
+        missing.values().removeIf(timeout -> now - timeout > 0);
+
+        List<ConfigChangeRecord> changes = configChangeDao.findChangesSince(lastVersion, missing.keySet());
+        for (ConfigChangeRecord change : changes) {
+            if (change.version() > lastVersion) {
+                if (change.version() - lastVersion - 1 <= MAX_MISSING) {
+                    for (long version = lastVersion + 1; version < change.version(); version++) {
+                        missing.put(version, now + MISSING_TIMEOUT.toNanos());
+                    }
+                }
+                lastVersion = change.version();
+            }
+            missing.remove(change.version());
+
+            apply(change);
+        }
+
+        if (now - nextCleanup >= 0) {
+            cleanUp(now);
+        }
+        return changes.size();
+    }
+
+    private void cleanUp(long now) {
+        nextCleanup = now + CLEANUP_INTERVAL.toNanos();
+
+        int deleted = configChangeDao.deleteChangesBefore(lastVersion, Instant.now().minus(MISSING_TIMEOUT));
+        log.debug("Deleted {} configuration changes up to version {}", deleted, lastVersion);
+    }
+
+    private void pollSafely() {
+        try {
+            poll();
+        } catch (RuntimeException e) {
+            // try again next time, a failure would stop the schedule
+            log.error("Failed to poll for configuration changes", e);
+        }
+    }
+
+    private void apply(ConfigChangeRecord change) {
+        log.debug("Applying configuration change {}", change);
+
+        if (Objects.nonNull(change.sanitizer())) {
+            registry.invalidateSanitizer(change.sanitizer());
+        }
+        if (Objects.nonNull(change.inputType())) {
+            registry.invalidateInputType(change.inputType());
+        }
+    }
+}
@@ -2,30 +2,48 @@ package com.flash.sanitization.sanitizer.registry;
 
 import com.flash.sanitization.db.dao.InputTypeDao;
 import com.flash.sanitization.db.record.ConfigRecord;
+import com.flash.sanitization.sanitizer.cache.ResultCache;
 import com.flash.sanitization.sanitizer.exception.ConstructionException;
 import com.flash.sanitization.sanitizer.exception.NoFactoryException;
 import com.flash.sanitization.sanitizer.exception.NoSanitizerException;
 import com.flash.sanitization.sanitizer.factory.SanitizerFactory;
 import com.flash.sanitization.sanitizer.implementation.NoConfigSanitizer;
 import com.flash.sanitization.sanitizer.implementation.Sanitizer;
+import com.flash.sanitization.sanitizer.metrics.SanitizerMetricBundle;
 import com.flash.sanitization.sanitizer.metrics.annotation.SanitizerMeasure;
+import com.flash.sanitization.sanitizer.pipeline.PipelineOptimizer;
 import com.flash.sanitization.sanitizer.pipeline.SanitizerPipeline;
 import com.flash.sanitization.sanitizer.properties.CacheProperties;
+import com.flash.sanitization.sanitizer.properties.DefaultSanitizerProperties;
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
 import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.collections4.CollectionUtils;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.FileSystemResource;
 import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Component;
 
-import java.io.File;
+import java.io.IOException;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -54,9 +72,13 @@ public class SanitizerRegistry {
 
     /**
      * Cache of the sanitization pipelines, cached using the input type as the key. We cache the pipeline to prevent
-     * unnecessary reconstruction of the pipelines.
+     * unnecessary reconstruction of the pipelines. Concurrent requests for the same missing input type share a single
+     * load.
+     * <br />
+     * It holds futures, so a missing pipeline is loaded outside the lock of the cache's map. Loading inside it would
+     * pin a virtual thread to its carrier for the whole database query, waiting for a future doesn't.
      */
-    private final Cache<String, SanitizerPipeline> sanitizerPipelineCache;
+    private final AsyncLoadingCache<String, SanitizerPipeline> sanitizerPipelineCache;
 
     /**
      * Injected factories used to construct sanitizers.
@@ -65,13 +87,45 @@ public class SanitizerRegistry {
 
     private final InputTypeDao inputTypeDao;
 
+    private final DefaultSanitizerProperties defaultSanitizerProperties;
+
+    private final SanitizerMetricBundle sanitizerMetricBundle;
+
+    /**
+     * Holds what the pipelines sanitized, it's dropped along with the pipeline.
+     */
+    private final ResultCache resultCache;
+
+    /**
+     * Counts the sanitizers that were dropped, so a load that read its configuration before one of them was dropped
+     * can tell, the sanitizers it cached may have been built from that configuration.
+     */
+    private final AtomicLong sanitizerInvalidations = new AtomicLong();
+
+    /**
+     * The sanitizer used when no input type is provided. It's built once at startup and shared by all requests, only
+     * being replaced when its source changes.
+     */
+    private volatile Sanitizer defaultSanitizer;
+
+    /**
+     * Last modified timestamp of the default sanitizer's source when it was built.
+     */
+    private volatile long defaultSourceModified;
+
+    private ScheduledExecutorService defaultReloadExecutor;
+
 
     public SanitizerRegistry(
         Map<String, NoConfigSanitizer> noConfigSanitizers,
         @Qualifier("sanitizer-cache") Cache<String, Sanitizer> configSanitizerCache,
-        @Qualifier("pipeline-cache") Cache<String, SanitizerPipeline> sanitizerPipelineCache,
+        @Qualifier("pipeline-cache-builder") Caffeine<Object, Object> pipelineCacheBuilder,
+        @Qualifier("pipeline-loader") Executor pipelineLoader,
         Map<String, SanitizerFactory> factories,
-        InputTypeDao inputTypeDao)
+        InputTypeDao inputTypeDao,
+        DefaultSanitizerProperties defaultSanitizerProperties,
+        SanitizerMetricBundle sanitizerMetricBundle,
+        ResultCache resultCache)
     {
         // set key to lowercase, since well be matching it with possible user input we don't want
         // casing to cause a mismatch.
@@ -81,13 +135,61 @@ public class SanitizerRegistry {
                 .collect(Collectors.toMap(e -> e.getKey().toLowerCase(), Map.Entry::getValue));
 
         this.configSanitizerCache = configSanitizerCache;
-        this.sanitizerPipelineCache = sanitizerPipelineCache;
+        // the pipeline loader only refreshes, missing pipelines are loaded by the request that needs them
+        this.sanitizerPipelineCache = pipelineCacheBuilder.executor(pipelineLoader).buildAsync(new CacheLoader<>() {
+            @Override
+            public SanitizerPipeline load(String inputType) {
+                return loadPipeline(inputType);
+            }
+
+            @Override
+            public SanitizerPipeline reload(String inputType, SanitizerPipeline oldPipeline) {
+                // keep the pipeline if nothing changed, so its version, and what's derived from it, stays valid
+                SanitizerPipeline pipeline = loadPipeline(inputType);
+                return pipeline.hasSameSanitizers(oldPipeline) ? oldPipeline : pipeline;
+            }
+        });
         this.factories =
             factories
                 .entrySet().stream()
                 .collect(Collectors.toMap(e -> e.getKey().toLowerCase(), Map.Entry::getValue));
 
         this.inputTypeDao = inputTypeDao;
+        this.defaultSanitizerProperties = defaultSanitizerProperties;
+        this.sanitizerMetricBundle = sanitizerMetricBundle;
+        this.resultCache = resultCache;
+    }
+
+    /**
+     * Build the default sanitizer up front, so the first request without an input type doesn't pay for it, and start
+     * watching its source for changes.
+     */
+    @PostConstruct
+    public void initDefault() {
+
+        Resource source = defaultSource();
+        defaultSourceModified = lastModified(source);
+        defaultSanitizer = constructDefault();
+
+        // Nothing to watch if the words are configured inline
+        Duration reloadInterval = defaultSanitizerProperties.getReloadInterval();
+        if (Objects.nonNull(source) && Objects.nonNull(reloadInterval) && reloadInterval.isPositive()) {
+            defaultReloadExecutor = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("default-sanitizer-reload").daemon().factory());
+
+            defaultReloadExecutor.scheduleWithFixedDelay(
+                this::reloadDefaultIfChanged,
+                reloadInterval.toMillis(),
+                reloadInterval.toMillis(),
+                TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (Objects.nonNull(defaultReloadExecutor)) {
+            defaultReloadExecutor.shutdownNow();
+        }
     }
 
     /**
@@ -102,39 +204,108 @@ public class SanitizerRegistry {
     public SanitizerPipeline getPipeline(@NonNull String inputType) throws NoFactoryException, NoSanitizerException {
 
         log.debug("Retrieving Pipeline For {}", inputType);
-        SanitizerPipeline toReturn = sanitizerPipelineCache.getIfPresent(inputType);
 
-        // Found nothing in the cache... so we'll need to check in the config
-        // if this input type has configured sanitizers.
-        if (Objects.isNull(toReturn)) {
-            // get the sanitizers that have been configured for this input type
+        while (true) {
+            CompletableFuture<SanitizerPipeline> pipeline = sanitizerPipelineCache.getIfPresent(inputType);
 
-            log.debug("No Pipeline Found for {} Will attempt to construct it", inputType);
-            List<ConfigRecord> sanitizerConfig = inputTypeDao.findConfigByInputType(inputType);
+            if (Objects.isNull(pipeline)) {
+                CompletableFuture<SanitizerPipeline> load = new CompletableFuture<>();
+                pipeline = sanitizerPipelineCache.asMap().putIfAbsent(inputType, load);
+                if (Objects.isNull(pipeline)) {
+                    return load(inputType, load);
+                }
+            }
 
-            if (CollectionUtils.isEmpty(sanitizerConfig)) {
-                throw new NoSanitizerException(inputType);
+            SanitizerPipeline loaded = pipeline.join();
+            if (Objects.nonNull(loaded)) {
+                return loaded;
             }
+            // the load we waited for failed, so we try it ourselves, like the requests waiting on a synchronous load
+        }
+    }
 
-            List<Sanitizer> pipelineSanitizers = new ArrayList<>();
+    /**
+     * Load a missing pipeline on the requesting thread, for the requests waiting on the future as well.
+     * <br />
+     * A failed load completes the future without a pipeline rather than with the exception, which Caffeine would log
+     * for every unknown input type. Either way the entry is dropped, only the requesting thread gets the exception.
+     */
+    private SanitizerPipeline load(String inputType, CompletableFuture<SanitizerPipeline> load) {
+
+        SanitizerPipeline pipeline = null;
+        try {
+            pipeline = loadPipeline(inputType);
+            return pipeline;
+        } finally {
+            load.complete(pipeline);
+        }
+    }
 
-            sanitizerConfig.forEach(conf -> {
-                pipelineSanitizers.add(getSanitizer(conf));
-            });
+    /**
+     * Construct the pipeline for an input type from configuration that has already been retrieved, and cache it. Used
+     * to build the pipelines up front rather than on their first request.
+     *
+     * @param inputType The input type the configuration belongs to.
+     * @param sanitizerConfig The sanitizers configured for the input type.
+     *
+     * @return The pipeline that was cached.
+     */
+    public SanitizerPipeline preloadPipeline(@NonNull String inputType, List<ConfigRecord> sanitizerConfig)
+        throws NoFactoryException, NoSanitizerException
+    {
+        SanitizerPipeline pipeline = buildPipeline(inputType, sanitizerConfig);
+        sanitizerPipelineCache.synchronous().put(inputType, pipeline);
+        return pipeline;
+    }
 
-            toReturn = new SanitizerPipeline(pipelineSanitizers);
+    /**
+     * Construct the pipeline for an input type, called by the cache when it's missing or needs to be refreshed.
+     * <br />
+     * A sanitizer can be dropped while the pipeline is built, after its configuration was read. The pipeline itself is
+     * dropped along with it (see {@link #invalidateSanitizer(String)}), but the sanitizers it cached are dropped here,
+     * otherwise the pipelines built next would pick up the old ones until they expire.
+     */
+    private SanitizerPipeline loadPipeline(String inputType) throws NoFactoryException, NoSanitizerException {
 
-            log.debug("Pipeline Constructed {}", toReturn);
+        long invalidations = sanitizerInvalidations.get();
 
-            // Add to cache so we don't need to reconstruct it again, at least for a while.
-            sanitizerPipelineCache.put(inputType, toReturn);
+        // get the sanitizers that have been configured for this input type
+        log.debug("No Pipeline Found for {} Will attempt to construct it", inputType);
+        List<ConfigRecord> sanitizerConfig = inputTypeDao.findConfigByInputType(inputType);
+        SanitizerPipeline pipeline = buildPipeline(inputType, sanitizerConfig);
+
+        if (sanitizerInvalidations.get() != invalidations) {
+            log.debug("Sanitizers changed while {} was built, dropping the ones it cached", inputType);
+            // which ones changed isn't known, the others are simply built again
+            configSanitizerCache.invalidateAll(sanitizerConfig.stream().map(ConfigRecord::sanitizer).toList());
         }
+        return pipeline;
+    }
 
-        return toReturn;
+    private SanitizerPipeline buildPipeline(String inputType, List<ConfigRecord> sanitizerConfig)
+        throws NoFactoryException, NoSanitizerException
+    {
+        if (CollectionUtils.isEmpty(sanitizerConfig)) {
+            throw new NoSanitizerException(inputType);
+        }
 
+        List<Sanitizer> pipelineSanitizers = new ArrayList<>();
+
+        sanitizerConfig.forEach(conf -> {
+            pipelineSanitizers.add(getSanitizer(conf));
+        });
+
+        // adjacent word sanitizers are run as one, the pipeline still reports the sanitizers it was built from
+        List<String> sanitizerNames = sanitizerConfig.stream().map(ConfigRecord::sanitizer).toList();
+        SanitizerPipeline pipeline = new SanitizerPipeline(
+            pipelineSanitizers,
+            new HashSet<>(sanitizerNames),
+            PipelineOptimizer.optimize(pipelineSanitizers, sanitizerNames));
+
+        log.debug("Pipeline Constructed {}", pipeline);
+        return pipeline;
     }
 
-    @SanitizerMeasure
     private Sanitizer getSanitizer(@NonNull ConfigRecord configRecord) throws NoFactoryException, NoSanitizerException {
 
         log.debug("Retrieving Sanitizer Using Config {}", configRecord);
@@ -179,10 +350,10 @@ public class SanitizerRegistry {
      * @throws NoFactoryException   Thrown if no factory was found that matched the configuration
      * @throws NoSanitizerException Thrown if no sanitizer could be created.
      */
-    @SanitizerMeasure
     private Sanitizer constructSanitizer(ConfigRecord configRecord) throws NoFactoryException, NoSanitizerException {
 
         log.debug("No Sanitizer Found on Sanitizer Cache for {}", configRecord);
+        long start = System.nanoTime();
 
         SanitizerFactory factory =
             Objects.isNull(configRecord.factory()) ? null : factories.get(configRecord.factory().toLowerCase());
@@ -207,45 +378,151 @@ public class SanitizerRegistry {
         }
 
         log.debug("Constructed Sanitizer {}", toReturn);
+        sanitizerMetricBundle.recordConstruction(configRecord.sanitizer(), System.nanoTime() - start);
         return toReturn;
     }
 
+    /**
+     * Drop a configured sanitizer and every pipeline that uses it, so they're rebuilt from the current configuration
+     * the next time they're needed, along with what those pipelines sanitized. Pipelines that are still loading are
+     * dropped as well, the requests waiting for them still get them.
+     *
+     * @param sanitizerName The name of the sanitizer whose configuration changed.
+     */
+    public void invalidateSanitizer(@NonNull String sanitizerName) {
+        log.info("Invalidating sanitizer {} and the pipelines using it", sanitizerName);
+
+        // counted first, a load that cached the sanitizer after it's dropped below must see it
+        sanitizerInvalidations.incrementAndGet();
+        configSanitizerCache.invalidate(sanitizerName);
+        // the futures rather than the synchronous view, which only has the pipelines that are done
+        List<String> inputTypes = new ArrayList<>();
+        sanitizerPipelineCache.asMap().entrySet().removeIf(entry -> {
+            if (mayReference(entry.getValue(), sanitizerName)) {
+                inputTypes.add(entry.getKey());
+                return true;
+            }
+            return false;
+        });
+        inputTypes.forEach(resultCache::invalidate);
+    }
+
+    /**
+     * Whether a cached pipeline uses the sanitizer, or may once it's done: a pipeline that's still loading can have
+     * read the configuration from before the change.
+     */
+    private static boolean mayReference(CompletableFuture<SanitizerPipeline> pipeline, String sanitizerName) {
+
+        if (!pipeline.isDone() || pipeline.isCompletedExceptionally()) {
+            return true;
+        }
+        SanitizerPipeline loaded = pipeline.join();
+        return Objects.isNull(loaded) || loaded.references(sanitizerName);
+    }
+
+    /**
+     * Drop the pipeline of an input type and what it sanitized, so it's rebuilt from the current configuration the
+     * next time it's needed.
+     *
+     * @param inputType The input type whose configuration changed.
+     */
+    public void invalidateInputType(@NonNull String inputType) {
+        log.info("Invalidating pipeline {}", inputType);
+
+        sanitizerPipelineCache.synchronous().invalidate(inputType);
+        resultCache.invalidate(inputType);
+    }
+
     /**
      * This is largely for testing purposes.
      * Although if more time allowed a "reset" API could be added.
      */
     public void clearCache() {
+        sanitizerInvalidations.incrementAndGet();
         configSanitizerCache.invalidateAll();
-        sanitizerPipelineCache.invalidateAll();
+        sanitizerPipelineCache.synchronous().invalidateAll();
 
         configSanitizerCache.cleanUp();
-        sanitizerPipelineCache.cleanUp();
+        sanitizerPipelineCache.synchronous().cleanUp();
+        resultCache.clear();
     }
 
+    /**
+     * @return The sanitizer to use when no input type was provided.
+     */
     public Sanitizer getDefault() {
+        return defaultSanitizer;
+    }
+
+    /**
+     * Rebuild the default sanitizer if its source changed since it was last built. Requests keep using the previous
+     * sanitizer until the new one is ready, and if the rebuild fails we keep the previous one.
+     */
+    void reloadDefaultIfChanged() {
+
+        try {
+            long modified = lastModified(defaultSource());
+            if (modified == defaultSourceModified) {
+                return;
+            }
+
+            log.info("Default sanitizer source changed, reloading");
+            defaultSanitizer = constructDefault();
+            defaultSourceModified = modified;
+        }
+        catch (Exception e) {
+            log.error("Failed to reload the default sanitizer, keeping the previous one", e);
+        }
+    }
+
+    private Sanitizer constructDefault() {
 
         try
         {
-        SanitizerFactory defaultFactory = this.factories.get("word-sanitizer-factory");
-
-        Resource resource = new ClassPathResource("default-word-list.txt");
-        File file = resource.getFile(); // This gives a real File
-
-        return defaultFactory.createSanitizer(
-            new ConfigRecord(
-                "DEFAULT-SANITIZER",
-                null, // not relevant for the factory to know itself
-                new HashMap<>() {{
-                    put("mask", "***");
-                    put("src", "FILE:" + file.getAbsolutePath());
-                }})
+            SanitizerFactory defaultFactory = this.factories.get("word-sanitizer-factory");
+
+            return defaultFactory.createSanitizer(
+                new ConfigRecord(
+                    "DEFAULT-SANITIZER",
+                    null, // not relevant for the factory to know itself
+                    new HashMap<>() {{
+                        put("mask", defaultSanitizerProperties.getMask());
+                        put("src", defaultSanitizerProperties.getSrc());
+                    }})
             );
         }
         catch(Exception e) {
 
-            throw new ConstructionException("DEFAULT", "word-sanitizer-factory");
+            throw new ConstructionException("DEFAULT", "word-sanitizer-factory", e);
         }
+    }
+
+    /**
+     * @return The resource the default sanitizer reads its words from, or null if the words are configured inline.
+     */
+    private Resource defaultSource() {
 
+        String src = defaultSanitizerProperties.getSrc();
 
+        if (src.startsWith("CLASSPATH:")) {
+            return new ClassPathResource(src.substring("CLASSPATH:".length()));
+        } else if (src.startsWith("FILE:")) {
+            return new FileSystemResource(src.substring("FILE:".length()));
+        }
+        return null;
+    }
+
+    private static long lastModified(Resource resource) {
+
+        if (Objects.isNull(resource)) {
+            return 0;
+        }
+
+        try {
+            return resource.lastModified();
+        } catch (IOException e) {
+            // Not every resource can tell us (i.e. some jar entries), then we simply never reload
+            return 0;
+        }
     }
 }
@@ -0,0 +1,97 @@
+package com.flash.sanitization.sanitizer.registry;
+
+import com.flash.sanitization.db.dao.InputTypeDao;
+import com.flash.sanitization.db.record.ConfigRecord;
+import com.flash.sanitization.sanitizer.implementation.Sanitizer;
+import com.flash.sanitization.sanitizer.metrics.SanitizerMetricBundle;
+import com.flash.sanitization.sanitizer.properties.WarmUpProperties;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds the pipeline of every input type on startup and sends a synthetic workload through them, so the first
+ * requests don't pay for the database lookups, the construction of the sanitizers and a cold JIT.
+ * <br />
+ * Runners are called before the application reports it's ready to accept traffic, so the readiness only changes
+ * once the warm-up is done. An input type that can't be built is logged and skipped, it will fail the same way when
+ * it's requested.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SanitizerWarmUp implements ApplicationRunner {
+
+    /**
+     * Samples of the kinds of values that are sanitized, so every branch of the sanitizers gets some use.
+     */
+    static final List<String> WORKLOAD = List.of(
+        "A plain sentence, with nothing in it that needs to be removed.",
+        "<p>Some <b>formatted</b> text with a <a href=\"https://example.com\" onclick=\"steal()\">link</a></p>"
+            + "<script>alert('x')</script>",
+        "SELECT * FROM users WHERE id = 1; -- comment\nDROP TABLE users; /* block */ DELETE FROM audit",
+        "Mixed Case WORDS and punctuation: commas, full stops. Numbers 12345 and under_scores ".repeat(20));
+
+    private final SanitizerRegistry registry;
+    private final InputTypeDao inputTypeDao;
+    private final WarmUpProperties warmUpProperties;
+    private final SanitizerMetricBundle sanitizerMetricBundle;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!warmUpProperties.isEnabled()) {
+            log.info("Warm-up disabled");
+            return;
+        }
+
+        long start = System.nanoTime();
+        try {
+            warmUp(start);
+        } catch (RuntimeException e) {
+            // the pipelines are still built on request, so there's no reason not to start
+            log.error("Warm-up failed", e);
+        } finally {
+            sanitizerMetricBundle.recordWarmUp(System.nanoTime() - start);
+        }
+    }
+
+    private void warmUp(long start) {
+
+        Map<String, List<ConfigRecord>> configs = inputTypeDao.findAllConfig();
+
+        List<Sanitizer> sanitizers = new ArrayList<>();
+        sanitizers.add(registry.getDefault());
+
+        for (Map.Entry<String, List<ConfigRecord>> config : configs.entrySet()) {
+            try {
+                sanitizers.add(registry.preloadPipeline(config.getKey(), config.getValue()));
+            } catch (RuntimeException e) {
+                log.warn("Could not build the pipeline for input type '{}' during warm-up", config.getKey(), e);
+            }
+        }
+        log.info("Built {} of {} pipelines", sanitizers.size() - 1, configs.size());
+
+        long deadline = start + warmUpProperties.getTimeLimit().toNanos();
+        int iteration = 0;
+        while (iteration < warmUpProperties.getIterations() && System.nanoTime() - deadline < 0) {
+            for (Sanitizer sanitizer : sanitizers) {
+                for (String value : WORKLOAD) {
+                    sanitizer.sanitize(value);
+                }
+            }
+            iteration++;
+        }
+
+        log.info(
+            "Warm-up ran {} iterations through {} sanitizers in {} ms",
+            iteration,
+            sanitizers.size(),
+            (System.nanoTime() - start) / 1_000_000);
+    }
+}
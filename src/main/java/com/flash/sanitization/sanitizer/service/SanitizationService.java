@@ -4,26 +4,84 @@ package com.flash.sanitization.sanitizer.service;
 import com.flash.sanitization.db.dao.InputTypeDao;
 import com.flash.sanitization.db.exception.RecordExistsException;
 import com.flash.sanitization.db.record.ConfigRecord;
+import com.flash.sanitization.sanitizer.cache.ResultCache;
+import com.flash.sanitization.sanitizer.columns.ColumnFormat;
+import com.flash.sanitization.sanitizer.columns.ColumnSanitizer;
+import com.flash.sanitization.sanitizer.exception.BatchSizeException;
+import com.flash.sanitization.sanitizer.exception.InvalidColumnsException;
+import com.flash.sanitization.sanitizer.exception.InvalidLineException;
+import com.flash.sanitization.sanitizer.exception.SanitizationException;
+import com.flash.sanitization.sanitizer.implementation.Sanitizer;
+import com.flash.sanitization.sanitizer.implementation.StreamingSanitizer;
 import com.flash.sanitization.sanitizer.implementation.WordSanitizer;
+import com.flash.sanitization.sanitizer.metrics.SanitizerMetricBundle;
+import com.flash.sanitization.sanitizer.pipeline.PipelineOptimizer;
 import com.flash.sanitization.sanitizer.pipeline.SanitizerPipeline;
+import com.flash.sanitization.sanitizer.properties.BatchProperties;
 import com.flash.sanitization.sanitizer.registry.SanitizerRegistry;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 import com.flash.sanitization.sanitizer.exception.NoFactoryException;
 import com.flash.sanitization.sanitizer.exception.NoSanitizerException;
 
+import java.io.BufferedReader;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
 
 @Slf4j
 @Service
-@RequiredArgsConstructor
 public class SanitizationService {
 
+    /**
+     * Put after the last chunk of a stream.
+     */
+    private static final Future<?> END_OF_CHUNKS = CompletableFuture.completedFuture(null);
+
     private final SanitizerRegistry registry;
     private final InputTypeDao inputTypeDao;
+    private final BatchProperties batchProperties;
+    private final ExecutorService batchExecutor;
+    private final SanitizerMetricBundle sanitizerMetricBundle;
+    private final ResultCache resultCache;
+
+    public SanitizationService(
+        SanitizerRegistry registry,
+        InputTypeDao inputTypeDao,
+        BatchProperties batchProperties,
+        @Qualifier("batch-executor") ExecutorService batchExecutor,
+        SanitizerMetricBundle sanitizerMetricBundle,
+        ResultCache resultCache)
+    {
+        this.registry = registry;
+        this.inputTypeDao = inputTypeDao;
+        this.batchProperties = batchProperties;
+        this.batchExecutor = batchExecutor;
+        this.sanitizerMetricBundle = sanitizerMetricBundle;
+        this.resultCache = resultCache;
+    }
 
     public String santizeString(String toSanitize, String inputType)
         throws NoFactoryException, NoSanitizerException
@@ -39,7 +97,475 @@ public class SanitizationService {
         }
 
         SanitizerPipeline pipeline = registry.getPipeline(inputType);
-        return pipeline.sanitize(toSanitize);
+
+        return resultCache.get(inputType, pipeline.version(), toSanitize, () -> {
+            long start = System.nanoTime();
+            String sanitized = sanitize(pipeline, toSanitize);
+            sanitizerMetricBundle.recordSanitization(inputType, System.nanoTime() - start);
+            return sanitized;
+        });
+    }
+
+    /**
+     * Sanitize a value with a pipeline, in segments on the batch threads if it's large enough.
+     */
+    private String sanitize(SanitizerPipeline pipeline, String toSanitize) {
+
+        int threshold = batchProperties.getSegmentThreshold();
+        if (threshold <= 0 || toSanitize.length() < threshold || !pipeline.supportsSegmentation()) {
+            return pipeline.sanitize(toSanitize);
+        }
+
+        ForkJoinPool pool = batchExecutor instanceof ForkJoinPool forkJoinPool ?
+            forkJoinPool :
+            ForkJoinPool.commonPool();
+        return pipeline.sanitize(toSanitize, batchProperties.getSegmentLength(), pool);
+    }
+
+    /**
+     * Get the sanitizer to stream a value of the given input type through. It's resolved up front so a bad input type
+     * fails before anything has been written.
+     */
+    public StreamingSanitizer streamingSanitizer(String inputType)
+        throws NoFactoryException, NoSanitizerException
+    {
+        // No input type provided. So we default.
+        if(StringUtils.isEmpty(inputType)) {
+            log.warn("No input type provided, using default sensitization");
+            return StreamingSanitizer.of(registry.getDefault());
+        }
+
+        return registry.getPipeline(inputType);
+    }
+
+    /**
+     * Get the stages the pipeline of an input type runs, which can be fewer than the sanitizers configured for it, see
+     * {@link PipelineOptimizer}.
+     */
+    public List<PipelineOptimizer.Stage> getPlan(String inputType)
+        throws NoFactoryException, NoSanitizerException
+    {
+        // No input type provided. So we default.
+        if(StringUtils.isEmpty(inputType)) {
+            return PipelineOptimizer.unoptimized(List.of(registry.getDefault()));
+        }
+
+        return registry.getPipeline(inputType).getPlan();
+    }
+
+    /**
+     * Sanitize a batch of values. Every distinct input type is only resolved once, and the items are sanitized in
+     * chunks on the batch executor.
+     * <br />
+     * A failing item doesn't fail the batch, its result contains the error instead.
+     *
+     * @param items
+     * The values to sanitize.
+     *
+     * @return
+     * The results, in the same order as the items.
+     */
+    public List<BatchResult> sanitizeBatch(List<BatchItem> items) throws BatchSizeException {
+
+        if (items.size() > batchProperties.getMaxItems()) {
+            throw new BatchSizeException(items.size(), batchProperties.getMaxItems());
+        }
+
+        Map<String, BatchResult> failures = new HashMap<>();
+        Map<String, Sanitizer> sanitizers = new HashMap<>();
+        for (BatchItem item : items) {
+            resolve(StringUtils.defaultString(item.inputType()), sanitizers, failures);
+        }
+
+        BatchResult[] results = new BatchResult[items.size()];
+        int chunkSize = Math.max(1, batchProperties.getChunkSize());
+
+        // not worth handing off to another thread
+        if (items.size() <= chunkSize) {
+            sanitizeChunk(items, 0, items.size(), sanitizers, failures, results);
+            return Arrays.asList(results);
+        }
+
+        Map<String, String> context = MDC.getCopyOfContextMap();
+        List<Future<?>> chunks = new ArrayList<>();
+        for (int from = 0; from < items.size(); from += chunkSize) {
+            int start = from;
+            int end = Math.min(items.size(), from + chunkSize);
+
+            chunks.add(batchExecutor.submit(() -> {
+                if (Objects.nonNull(context)) {
+                    MDC.setContextMap(context);
+                }
+                try {
+                    sanitizeChunk(items, start, end, sanitizers, failures, results);
+                } finally {
+                    MDC.clear();
+                }
+            }));
+        }
+
+        try {
+            for (Future<?> chunk : chunks) {
+                chunk.get();
+            }
+        } catch (InterruptedException e) {
+            chunks.forEach(chunk -> chunk.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new SanitizationException("Interrupted while sanitizing the batch", e);
+        } catch (ExecutionException e) {
+            chunks.forEach(chunk -> chunk.cancel(true));
+            throw new SanitizationException("Failed to sanitize the batch", e.getCause());
+        }
+
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Resolve the sanitizer of an input type into either of the maps, unless it's already in one of them.
+     */
+    private void resolve(String inputType, Map<String, Sanitizer> sanitizers, Map<String, BatchResult> failures) {
+
+        if (sanitizers.containsKey(inputType) || failures.containsKey(inputType)) {
+            return;
+        }
+
+        try {
+            sanitizers.put(inputType, resolve(inputType));
+        } catch (RuntimeException e) {
+            log.error("Could not resolve input type '{}'", inputType, e);
+            failures.put(inputType, BatchResult.failed(e));
+        }
+    }
+
+    private Sanitizer resolve(String inputType) throws NoFactoryException, NoSanitizerException {
+
+        // No input type provided. So we default.
+        if(StringUtils.isEmpty(inputType)) {
+            return registry.getDefault();
+        }
+        return registry.getPipeline(inputType);
+    }
+
+    private void sanitizeChunk(
+        List<BatchItem> items,
+        int from,
+        int to,
+        Map<String, Sanitizer> sanitizers,
+        Map<String, BatchResult> failures,
+        BatchResult[] results)
+    {
+        for (int i = from; i < to; i++) {
+            results[i] = sanitizeItem(items.get(i), i, sanitizers, failures);
+        }
+    }
+
+    private BatchResult sanitizeItem(
+        BatchItem item,
+        long number,
+        Map<String, Sanitizer> sanitizers,
+        Map<String, BatchResult> failures)
+    {
+        String inputType = StringUtils.defaultString(item.inputType());
+
+        if (failures.containsKey(inputType)) {
+            return failures.get(inputType);
+        } else if (Objects.isNull(item.toSanitize())) {
+            return BatchResult.sanitized("");
+        }
+
+        try {
+            long start = System.nanoTime();
+            BatchResult result = BatchResult.sanitized(sanitizers.get(inputType).sanitize(item.toSanitize()));
+            if (!inputType.isEmpty()) {
+                sanitizerMetricBundle.recordSanitization(inputType, System.nanoTime() - start);
+            }
+            return result;
+        } catch (RuntimeException e) {
+            log.error("Failed to sanitize item {}", number, e);
+            return BatchResult.failed(e);
+        }
+    }
+
+    /**
+     * Sanitize a stream with a request on every line, writing a line with the result of every request in the same
+     * order. The lines are read and resolved on the calling thread, sanitized in chunks on the batch executor and
+     * written by a thread of their own, so all three happen at the same time.
+     * <br />
+     * At most {@link BatchProperties#getStreamChunks()} chunks are in between reading and writing, however long the
+     * stream is. Every distinct input type is only resolved once per stream. Blank lines are skipped, and a line that
+     * fails doesn't fail the stream, its result contains the error instead.
+     *
+     * @param reader
+     * The requests, one per line.
+     *
+     * @param writer
+     * Where the results are written, one per line.
+     *
+     * @param format
+     * How to read a request from a line, and write its result to one.
+     */
+    public <T> void sanitizeLines(BufferedReader reader, Writer writer, LineFormat<T> format) throws IOException {
+
+        int chunkSize = Math.max(1, batchProperties.getChunkSize());
+        Map<String, String> context = MDC.getCopyOfContextMap();
+
+        // read by the chunks while new input types are still being added
+        Map<String, Sanitizer> sanitizers = new ConcurrentHashMap<>();
+        Map<String, BatchResult> failures = new ConcurrentHashMap<>();
+
+        ChunkReader<String> lines = (chunks, writeFailure) -> {
+            List<Line<T>> chunk = new ArrayList<>(chunkSize);
+            long number = 0;
+            String text;
+
+            // stop reading once the results can't be written anymore
+            while (Objects.isNull(writeFailure.get()) && Objects.nonNull(text = reader.readLine())) {
+                number++;
+                if (text.isBlank()) {
+                    continue;
+                }
+
+                chunk.add(parseLine(number, text, format, sanitizers, failures));
+                if (chunk.size() == chunkSize) {
+                    chunks.put(submitLines(chunk, format, sanitizers, failures, context));
+                    chunk = new ArrayList<>(chunkSize);
+                }
+            }
+
+            if (!chunk.isEmpty()) {
+                chunks.put(submitLines(chunk, format, sanitizers, failures, context));
+            }
+        };
+
+        streamChunks(lines, writer::write, writer, context);
+    }
+
+    /**
+     * Sanitize a csv or tsv stream, every column with the pipeline of its own input type, and write the records in the
+     * same order. The header is written as it is, and the columns that aren't sanitized as the bytes they are.
+     * <br />
+     * The header is read and the input types are resolved on the calling thread before anything is written, so a
+     * missing column or input type fails the request as a whole. Otherwise it's the same as
+     * {@link #sanitizeLines(BufferedReader, Writer, LineFormat)}, with blocks of
+     * {@link BatchProperties#getColumnBlockSize()} bytes of whole records rather than chunks of lines.
+     *
+     * @param input The records, in utf-8.
+     * @param output Opens where the sanitized records are written, once the input types are resolved.
+     * @param format The format of the records.
+     * @param header Whether the first record is the header.
+     * @param columns The input type of every column to sanitize, by the name of the column or its index from 0.
+     */
+    public void sanitizeColumns(
+        InputStream input,
+        OutputOpener output,
+        ColumnFormat format,
+        boolean header,
+        Map<String, String> columns) throws IOException
+    {
+        Map<String, String> context = MDC.getCopyOfContextMap();
+        RecordReader records = new RecordReader(
+            input,
+            (int) Math.clamp(batchProperties.getColumnBlockSize().toBytes(), 1, Integer.MAX_VALUE / 2),
+            (int) Math.clamp(batchProperties.getMaxRecordSize().toBytes(), 1, Integer.MAX_VALUE / 2));
+
+        ByteBuffer headerRecord = header ? records.next(format, true) : null;
+        ColumnSanitizer columnSanitizer = ColumnSanitizer.of(
+            format,
+            Objects.isNull(headerRecord) ? null : format.values(headerRecord, 0, headerRecord.limit()),
+            columns,
+            this::resolve);
+
+        ChunkReader<ByteBuffer> blocks = (chunks, writeFailure) -> {
+            if (Objects.nonNull(headerRecord)) {
+                chunks.put(CompletableFuture.completedFuture(headerRecord));
+            }
+
+            ByteBuffer block;
+            while (Objects.isNull(writeFailure.get()) && Objects.nonNull(block = records.next(format, false))) {
+                ByteBuffer toSanitize = block;
+                chunks.put(submit(() -> columnSanitizer.sanitize(toSanitize).bytes(), context));
+            }
+        };
+
+        OutputStream out = output.open();
+        streamChunks(
+            blocks,
+            bytes -> out.write(bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining()),
+            out,
+            context);
+    }
+
+    /**
+     * Read the chunks of a stream on the calling thread while a thread of its own writes them in order as they're
+     * done. At most {@link BatchProperties#getStreamChunks()} chunks are in between, once there are that many reading
+     * waits for the writing to catch up.
+     */
+    private <T> void streamChunks(
+        ChunkReader<T> reader,
+        ChunkWriter<T> writer,
+        Flushable flushable,
+        Map<String, String> context) throws IOException
+    {
+        BlockingQueue<Future<T>> chunks = new ArrayBlockingQueue<>(Math.max(1, batchProperties.getStreamChunks()));
+        AtomicReference<Exception> writeFailure = new AtomicReference<>();
+
+        Thread writing = Thread.ofVirtual()
+            .name("chunk-writer")
+            .start(() -> writeChunks(chunks, writer, flushable, context, writeFailure));
+
+        boolean ended = false;
+        try {
+            reader.read(chunks, writeFailure);
+            chunks.put(endOfChunks());
+            ended = true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SanitizationException("Interrupted while sanitizing the stream", e);
+        } finally {
+            if (!ended) {
+                writing.interrupt();
+            }
+            awaitWriting(writing);
+        }
+
+        Exception failure = writeFailure.get();
+        if (failure instanceof IOException e) {
+            throw e;
+        } else if (Objects.nonNull(failure)) {
+            throw new SanitizationException("Failed to write the stream", failure);
+        }
+    }
+
+    private <T> Line<T> parseLine(
+        long number,
+        String text,
+        LineFormat<T> format,
+        Map<String, Sanitizer> sanitizers,
+        Map<String, BatchResult> failures)
+    {
+        T request;
+        try {
+            request = format.parse(text);
+        } catch (RuntimeException e) {
+            log.warn("Line {} of the stream is not a valid request: {}", number, e.getMessage());
+            return new Line<>(number, null, null, BatchResult.failed(new InvalidLineException(number, e)));
+        }
+
+        BatchItem item = format.item(request);
+        resolve(StringUtils.defaultString(item.inputType()), sanitizers, failures);
+        return new Line<>(number, request, item, null);
+    }
+
+    private <T> Future<String> submitLines(
+        List<Line<T>> chunk,
+        LineFormat<T> format,
+        Map<String, Sanitizer> sanitizers,
+        Map<String, BatchResult> failures,
+        Map<String, String> context)
+    {
+        return submit(
+            () -> {
+                StringBuilder lines = new StringBuilder();
+                for (Line<T> line : chunk) {
+                    BatchResult result = Objects.isNull(line.item()) ?
+                        line.failure() :
+                        sanitizeItem(line.item(), line.number(), sanitizers, failures);
+                    lines.append(format.format(line.request(), result)).append('\n');
+                }
+                return lines.toString();
+            },
+            context);
+    }
+
+    private <T> Future<T> submit(Callable<T> task, Map<String, String> context) {
+        return batchExecutor.submit(() -> {
+            if (Objects.nonNull(context)) {
+                MDC.setContextMap(context);
+            }
+            try {
+                return task.call();
+            } finally {
+                MDC.clear();
+            }
+        });
+    }
+
+    /**
+     * Write the chunks in the order they were read until the end of the chunks. After a failure of any kind the rest of
+     * them are cancelled rather than written, but still taken so reading never waits on a full queue.
+     */
+    private static <T> void writeChunks(
+        BlockingQueue<Future<T>> chunks,
+        ChunkWriter<T> writer,
+        Flushable flushable,
+        Map<String, String> context,
+        AtomicReference<Exception> writeFailure)
+    {
+        if (Objects.nonNull(context)) {
+            MDC.setContextMap(context);
+        }
+        try {
+            for (Future<T> chunk = chunks.take(); chunk != END_OF_CHUNKS; chunk = chunks.take()) {
+                if (Objects.nonNull(writeFailure.get())) {
+                    chunk.cancel(true);
+                    continue;
+                }
+
+                try {
+                    writer.write(chunk.get());
+
+                    // the client gets the results as soon as there's a wait for the next ones
+                    Future<T> next = chunks.peek();
+                    if (Objects.isNull(next) || !next.isDone()) {
+                        flushable.flush();
+                    }
+                } catch (IOException e) {
+                    log.warn("Failed to write the stream", e);
+                    writeFailure.set(e);
+                } catch (ExecutionException e) {
+                    log.error("Failed to sanitize the stream", e.getCause());
+                    writeFailure.set(e);
+                } catch (RuntimeException e) {
+                    // the rest of the chunks still have to be taken, or reading waits on a full queue forever
+                    log.error("Failed to write the stream", e);
+                    writeFailure.set(e);
+                }
+            }
+
+            if (Objects.isNull(writeFailure.get())) {
+                flushable.flush();
+            }
+        } catch (InterruptedException e) {
+            chunks.forEach(chunk -> chunk.cancel(true));
+        } catch (IOException | RuntimeException e) {
+            log.warn("Failed to write the stream", e);
+            writeFailure.set(e);
+        } finally {
+            MDC.clear();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Future<T> endOfChunks() {
+        return (Future<T>) END_OF_CHUNKS;
+    }
+
+    /**
+     * The writer has to be done before the response is, even when the calling thread was interrupted.
+     */
+    private static void awaitWriting(Thread writing) {
+
+        boolean interrupted = Thread.interrupted();
+        while (writing.isAlive()) {
+            try {
+                writing.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
     }
 
     public void createInputType(String inputType, List<ConfigRecord> config) throws RecordExistsException {
@@ -48,5 +574,141 @@ public class SanitizationService {
         inputTypeDao.createInputType(inputType, config);
     }
 
+    /**
+     * A single value in a batch.
+     */
+    public record BatchItem(String inputType, String toSanitize) {
+    }
+
+    /**
+     * How the requests of a stream are read from its lines, and their results written to them.
+     */
+    public interface LineFormat<T> {
+
+        /**
+         * Read the request on a line, throwing if it isn't one.
+         */
+        T parse(String line);
+
+        /**
+         * The value to sanitize of a request.
+         */
+        BatchItem item(T request);
+
+        /**
+         * Write the result of a request as a line, without the line break. There's no request if the line couldn't be
+         * read.
+         */
+        String format(T request, BatchResult result);
+    }
+
+    /**
+     * Opens the output of a stream, only once it's known the stream can be sanitized. Until then an error can still be
+     * written as a response of its own.
+     */
+    @FunctionalInterface
+    public interface OutputOpener {
+
+        OutputStream open() throws IOException;
+    }
+
+    /**
+     * Reads a stream and submits its chunks, until it ends or writing failed.
+     */
+    @FunctionalInterface
+    private interface ChunkReader<T> {
+
+        void read(BlockingQueue<Future<T>> chunks, AtomicReference<Exception> writeFailure)
+            throws IOException, InterruptedException;
+    }
+
+    @FunctionalInterface
+    private interface ChunkWriter<T> {
+
+        void write(T chunk) throws IOException;
+    }
+
+    /**
+     * Reads a csv or tsv stream in blocks of whole records.
+     */
+    private static class RecordReader {
+
+        private final InputStream input;
+        private final int maxRecordSize;
+        private byte[] buffer;
+        private int length;
+        private boolean ended;
+
+        RecordReader(InputStream input, int blockSize, int maxRecordSize) {
+            this.input = input;
+            this.maxRecordSize = maxRecordSize;
+            this.buffer = new byte[blockSize];
+        }
+
+        /**
+         * The next block, as many whole records as fit or the first one only. The buffer is grown when a single record
+         * doesn't fit, up to the maximum size of a record.
+         *
+         * @return The block, or null at the end of the stream.
+         *
+         * @throws InvalidColumnsException When a record is longer than the maximum.
+         */
+        ByteBuffer next(ColumnFormat format, boolean first) throws IOException {
+
+            while (true) {
+                while (!ended && length < buffer.length) {
+                    int read = input.read(buffer, length, buffer.length - length);
+                    if (read < 0) {
+                        ended = true;
+                    } else {
+                        length += read;
+                    }
+                }
+
+                ByteBuffer bytes = ByteBuffer.wrap(buffer, 0, length);
+                int end = first ? format.recordEnd(bytes, 0, length) : format.recordsEnd(bytes, 0, length);
+                if (end < 0 && ended) {
+                    end = length;
+                } else if (end < 0 && buffer.length >= maxRecordSize) {
+                    throw new InvalidColumnsException(
+                        "A record is longer than %d bytes, is a quote not closed?".formatted(maxRecordSize));
+                } else if (end < 0) {
+                    buffer = Arrays.copyOf(buffer, Math.min(buffer.length * 2, maxRecordSize));
+                    continue;
+                }
+
+                if (end == 0) {
+                    return null;
+                }
+                ByteBuffer block = ByteBuffer.wrap(Arrays.copyOf(buffer, end));
+                System.arraycopy(buffer, end, buffer, 0, length - end);
+                length -= end;
+                return block;
+            }
+        }
+    }
+
+    /**
+     * A line of a stream, either with its request and the value to sanitize or with the reason it isn't one.
+     */
+    private record Line<T>(long number, T request, BatchItem item, BatchResult failure) {
+    }
+
+    /**
+     * The result of a single value in a batch, either the sanitized value or an error message.
+     */
+    public record BatchResult(String sanitized, String error) {
 
+        static BatchResult sanitized(String sanitized) {
+            return new BatchResult(sanitized, null);
+        }
+
+        static BatchResult failed(RuntimeException e) {
+            return new BatchResult(
+                null,
+                e instanceof SanitizationException ?
+                    "Configuration or Request Error: %s".formatted(e.getMessage()) :
+                    "UNEXPECTED ERROR: %s".formatted(e.getMessage()));
+        }
+    }
 }
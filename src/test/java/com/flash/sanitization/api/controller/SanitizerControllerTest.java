@@ -7,21 +7,39 @@ import com.flash.sanitization.sanitizer.registry.SanitizerRegistry;
 import com.flash.sanitization.sanitizer.service.SanitizationService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.core.io.Resource;
 import org.springframework.http.MediaType;
+import org.springframework.mock.web.DelegatingServletInputStream;
+import org.springframework.mock.web.DelegatingServletOutputStream;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.transaction.annotation.Transactional;
 
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.ServletOutputStream;
+
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+import static org.assertj.core.api.AssertionsForClassTypes.assertThatThrownBy;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @ActiveProfiles("h2")
@@ -42,6 +60,9 @@ public class SanitizerControllerTest {
     @Autowired
     private SanitizerRegistry sanitizerRegistry;
 
+    @Autowired
+    private SanitizerController sanitizerController;
+
     @BeforeEach
     public void setUp() {
         sanitizerRegistry.clearCache();
@@ -191,4 +212,267 @@ public class SanitizerControllerTest {
             .andExpect(jsonPath("$.requestId").value("12345"))
             .andExpect(jsonPath("$.sanitized").value("ThIS *** *** IS *** *** *** COOL *** ***"));
     }
+
+    @Test
+    public void testSanitizeStreamEndpoint() throws Exception {
+
+        sanitizationService.createInputType(
+            "sql",
+            List.of(new ConfigRecord(
+                    "Words",
+                    "word-sanitizer-factory",
+                    new HashMap<>() {
+                        {
+                            put("mask", "XXX");
+                            put("src", "LIST:users,secret");
+                        }
+                    }
+                ),
+                new ConfigRecord(
+                    "sql-sanitizer",
+                    null,
+                    null
+                )
+            )
+        );
+
+        String input = "SELECT secret FROM users; DROP TABLE users -- bye\n".repeat(5_000);
+
+        String sanitized = mockMvc.perform(post("/flash/sanitize/stream")
+                .param("inputType", "sql")
+                .contentType(MediaType.TEXT_PLAIN)
+                .content(input))
+            .andExpect(status().isOk())
+            .andReturn()
+            .getResponse()
+            .getContentAsString();
+
+        assertThat(sanitized).isEqualTo(sanitizationService.santizeString(input, "sql"));
+        assertThat(sanitized).startsWith("SELECT XXX FROM XXX;  TABLE XXX \nSELECT");
+    }
+
+    @Test
+    public void testSanitizeStreamEndpoint_NoType() throws Exception {
+
+        mockMvc.perform(post("/flash/sanitize/stream")
+                .contentType(MediaType.TEXT_PLAIN)
+                .content("ThIS ACTION FETCH IS PRESERVE SYSNIX UNION COOL SPACE TEMPORARY"))
+            .andExpect(status().isOk())
+            .andExpect(content().string("ThIS *** *** IS *** *** *** COOL *** ***"));
+    }
+
+    @Test
+    public void testSanitizeBatchEndpoint() throws Exception {
+
+        sanitizationService.createInputType(
+            "sql",
+            List.of(new ConfigRecord(
+                "sql-sanitizer",
+                null,
+                null
+            ))
+        );
+
+        List<SanitizerRequest> requests = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            SanitizerRequest request = new SanitizerRequest();
+            request.setRequestId(String.valueOf(i));
+            request.setToSanitize("SELECT " + i + "; DROP TABLE users");
+            request.setInputType(i % 10 == 0 ? "missing" : "sql");
+            requests.add(request);
+        }
+
+        mockMvc.perform(post("/flash/sanitize/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(requests)))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(200))
+            .andExpect(jsonPath("$[1].requestId").value("1"))
+            .andExpect(jsonPath("$[1].sanitized").value("SELECT 1;  TABLE users"))
+            .andExpect(jsonPath("$[199].requestId").value("199"))
+            .andExpect(jsonPath("$[199].sanitized").value("SELECT 199;  TABLE users"))
+            .andExpect(jsonPath("$[10].requestId").value("10"))
+            .andExpect(jsonPath("$[10].sanitized").doesNotExist())
+            .andExpect(jsonPath("$[10].message").exists());
+    }
+
+    @Test
+    public void testSanitizeNdjsonEndpoint() throws Exception {
+
+        sanitizationService.createInputType(
+            "sql",
+            List.of(new ConfigRecord(
+                "sql-sanitizer",
+                null,
+                null
+            ))
+        );
+
+        StringBuilder requests = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            requests.append(
+                "{\"requestId\":\"%d\",\"inputType\":\"%s\",\"toSanitize\":\"SELECT %d; DROP TABLE users\"}\n".formatted(i, i % 10 == 0 ? "missing" : "sql", i));
+        }
+        requests.append("{not json\n");
+
+        String response = mockMvc.perform(post("/flash/sanitize/ndjson")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .content(requests.toString()))
+            .andExpect(status().isOk())
+            .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+            .andReturn()
+            .getResponse()
+            .getContentAsString();
+
+        String[] lines = response.split("\n");
+        assertThat(lines.length).isEqualTo(201);
+        assertThat(lines[1]).isEqualTo("{\"requestId\":\"1\",\"sanitized\":\"SELECT 1;  TABLE users\"}");
+        assertThat(lines[199]).isEqualTo("{\"requestId\":\"199\",\"sanitized\":\"SELECT 199;  TABLE users\"}");
+        assertThat(lines[10]).startsWith("{\"requestId\":\"10\",\"message\":\"Configuration or Request Error:");
+        assertThat(lines[200])
+            .startsWith("{\"message\":\"Configuration or Request Error: Line 201 is not a valid request");
+    }
+
+    /**
+     * Once the client is gone the rest of an endless stream isn't read anymore. The servlet stream of a response fails
+     * when it can't be written, the writer it's wrapped in mustn't hide that.
+     */
+    @Test
+    @Timeout(30)
+    public void testSanitizeNdjsonEndpoint_ClientGone() throws Exception {
+
+        sanitizationService.createInputType(
+            "sql",
+            List.of(new ConfigRecord(
+                "sql-sanitizer",
+                null,
+                null
+            ))
+        );
+
+        byte[] line = "{\"inputType\":\"sql\",\"toSanitize\":\"DROP TABLE users\"}\n".getBytes(StandardCharsets.UTF_8);
+        long[] read = {0};
+        InputStream endless = new InputStream() {
+            @Override
+            public int read() {
+                return line[(int) (read[0]++ % line.length)];
+            }
+        };
+        MockHttpServletRequest request = new MockHttpServletRequest() {
+            @Override
+            public ServletInputStream getInputStream() {
+                return new DelegatingServletInputStream(endless);
+            }
+        };
+
+        OutputStream gone = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("Broken pipe");
+            }
+        };
+        MockHttpServletResponse response = new MockHttpServletResponse() {
+            @Override
+            public ServletOutputStream getOutputStream() {
+                return new DelegatingServletOutputStream(gone);
+            }
+
+            @Override
+            public PrintWriter getWriter() {
+                return new PrintWriter(gone);
+            }
+        };
+
+        assertThatThrownBy(() -> sanitizerController.sanitizeNdjson(request, response))
+            .isInstanceOf(IOException.class)
+            .hasMessage("Broken pipe");
+        assertThat(read[0]).isGreaterThan(0L);
+    }
+
+    @Test
+    public void testSanitizeColumnsEndpoint() throws Exception {
+
+        sanitizationService.createInputType(
+            "sql",
+            List.of(new ConfigRecord(
+                "sql-sanitizer",
+                null,
+                null
+            ))
+        );
+
+        mockMvc.perform(post("/flash/sanitize/columns")
+                .param("columns", "query:sql")
+                .contentType("text/csv")
+                .content("id,query\n1,\"SELECT 1; DROP TABLE users\"\n2,DROP\n"))
+            .andExpect(status().isOk())
+            .andExpect(content().contentTypeCompatibleWith("text/csv"))
+            .andExpect(content().string("id,query\n1,\"SELECT 1;  TABLE users\"\n2,\n"));
+    }
+
+    @Test
+    public void testSanitizeColumnsEndpoint_NotInHeader() throws Exception {
+
+        mockMvc.perform(post("/flash/sanitize/columns")
+                .param("columns", "missing:sql")
+                .param("format", "tsv")
+                .contentType("text/tab-separated-values")
+                .content("id\tquery\n1\tDROP\n"))
+            .andExpect(status().isBadRequest())
+            .andExpect(jsonPath("$.message").value("Request Error: Column 'missing' is not in the header"));
+    }
+
+    @Test
+    public void testSanitizeColumnsEndpoint_IndexOutOfRange() throws Exception {
+
+        mockMvc.perform(post("/flash/sanitize/columns")
+                .param("columns", "99999999999:sql")
+                .param("header", "false")
+                .contentType("text/csv")
+                .content("1,DROP\n"))
+            .andExpect(status().isBadRequest())
+            .andExpect(jsonPath("$.message")
+                .value("Request Error: Column 99999999999 is out of range, only the first 4096 can be sanitized"));
+    }
+
+    @Test
+    public void testPlanEndpoint() throws Exception {
+
+        sanitizationService.createInputType(
+            "fused",
+            List.of(
+                new ConfigRecord("profanity", "word-sanitizer-factory", new HashMap<>(Map.of(
+                    "mask", "***",
+                    "src", "LIST:darn,heck"))),
+                new ConfigRecord("codenames", "word-sanitizer-factory", new HashMap<>(Map.of(
+                    "mask", "---",
+                    "src", "LIST:bluebird")))
+            )
+        );
+
+        mockMvc.perform(get("/flash/sanitize/plan").param("inputType", "fused"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(1))
+            .andExpect(jsonPath("$[0].sanitizers.length()").value(2))
+            .andExpect(jsonPath("$[0].implementation").value("WordSanitizer"))
+            .andExpect(jsonPath("$[0].fused").value(true))
+            .andExpect(jsonPath("$[0].words").value(3));
+    }
+
+    @Test
+    public void testPlanEndpoint_NoFusion() throws Exception {
+
+        sanitizationService.createInputType(
+            "html",
+            List.of(new ConfigRecord("html-sanitizer", null, null))
+        );
+
+        mockMvc.perform(get("/flash/sanitize/plan").param("inputType", "html"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(1))
+            .andExpect(jsonPath("$[0].sanitizers[0]").value("html-sanitizer"))
+            .andExpect(jsonPath("$[0].implementation").value("HtmlSanitizer"))
+            .andExpect(jsonPath("$[0].fused").value(false))
+            .andExpect(jsonPath("$[0].words").doesNotExist());
+    }
 }
@@ -0,0 +1,185 @@
+package com.flash.sanitization.api.grpc;
+
+import com.flash.sanitization.api.grpc.proto.SanitizeBatchRequest;
+import com.flash.sanitization.api.grpc.proto.SanitizeBatchResponse;
+import com.flash.sanitization.api.grpc.proto.SanitizeRequest;
+import com.flash.sanitization.api.grpc.proto.SanitizeResponse;
+import com.flash.sanitization.api.grpc.proto.SanitizerServiceGrpc;
+import com.flash.sanitization.sanitizer.exception.BatchSizeException;
+import com.flash.sanitization.sanitizer.exception.NoSanitizerException;
+import com.flash.sanitization.sanitizer.properties.GrpcProperties;
+import com.flash.sanitization.sanitizer.service.SanitizationService;
+import com.flash.sanitization.sanitizer.service.SanitizationService.BatchItem;
+import com.flash.sanitization.sanitizer.service.SanitizationService.BatchResult;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.StreamObserver;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+import static org.assertj.core.api.AssertionsForClassTypes.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class GrpcSanitizerServiceTest {
+
+    @Mock
+    private SanitizationService sanitizationService;
+
+    private final GrpcProperties grpcProperties = new GrpcProperties();
+
+    private Server server;
+    private ManagedChannel channel;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        // smaller than the streams, so they have to ask for more
+        grpcProperties.setStreamWindow(8);
+
+        String name = InProcessServerBuilder.generateName();
+        server = InProcessServerBuilder.forName(name)
+            .directExecutor()
+            .addService(new GrpcSanitizerService(sanitizationService, grpcProperties))
+            .build()
+            .start();
+        channel = InProcessChannelBuilder.forName(name).directExecutor().build();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        server.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void sanitize() {
+        when(sanitizationService.santizeString("<b>x</b>", "html")).thenReturn("x");
+
+        SanitizeResponse response = SanitizerServiceGrpc.newBlockingStub(channel).sanitize(request("1", "html", "<b>x</b>"));
+
+        assertThat(response.getRequestId()).isEqualTo("1");
+        assertThat(response.getSanitized()).isEqualTo("x");
+    }
+
+    @Test
+    void sanitize_noSanitizer() {
+        when(sanitizationService.santizeString("x", "missing")).thenThrow(new NoSanitizerException("missing"));
+
+        assertThatThrownBy(() -> SanitizerServiceGrpc.newBlockingStub(channel).sanitize(request("1", "missing", "x")))
+            .isInstanceOf(StatusRuntimeException.class)
+            .satisfies(e -> assertThat(Status.fromThrowable(e).getCode()).isEqualTo(Status.Code.NOT_FOUND))
+            .hasMessageContaining("Configuration or Request Error");
+    }
+
+    @Test
+    void sanitize_unexpected() {
+        when(sanitizationService.santizeString("x", "html")).thenThrow(new IllegalStateException("broken"));
+
+        assertThatThrownBy(() -> SanitizerServiceGrpc.newBlockingStub(channel).sanitize(request("1", "html", "x")))
+            .isInstanceOf(StatusRuntimeException.class)
+            .satisfies(e -> assertThat(Status.fromThrowable(e).getCode()).isEqualTo(Status.Code.INTERNAL))
+            .hasMessageContaining("UNEXPECTED ERROR: broken");
+    }
+
+    @Test
+    void sanitizeBatch() {
+        when(sanitizationService.sanitizeBatch(List.of(new BatchItem("html", "a"), new BatchItem("missing", "b"))))
+            .thenReturn(List.of(new BatchResult("A", null), new BatchResult(null, "no sanitizer")));
+
+        SanitizeBatchResponse response = SanitizerServiceGrpc.newBlockingStub(channel)
+            .sanitizeBatch(SanitizeBatchRequest.newBuilder()
+                .addRequests(request("1", "html", "a"))
+                .addRequests(request("2", "missing", "b"))
+                .build());
+
+        assertThat(response.getResponsesCount()).isEqualTo(2);
+        assertThat(response.getResponses(0).getRequestId()).isEqualTo("1");
+        assertThat(response.getResponses(0).getSanitized()).isEqualTo("A");
+        assertThat(response.getResponses(1).getRequestId()).isEqualTo("2");
+        assertThat(response.getResponses(1).getMessage()).isEqualTo("no sanitizer");
+    }
+
+    @Test
+    void sanitizeBatch_tooLarge() {
+        when(sanitizationService.sanitizeBatch(List.of(new BatchItem("html", "a"))))
+            .thenThrow(new BatchSizeException(1, 0));
+
+        assertThatThrownBy(() -> SanitizerServiceGrpc.newBlockingStub(channel)
+            .sanitizeBatch(SanitizeBatchRequest.newBuilder().addRequests(request("1", "html", "a")).build()))
+            .isInstanceOf(StatusRuntimeException.class)
+            .satisfies(e -> assertThat(Status.fromThrowable(e).getCode()).isEqualTo(Status.Code.INVALID_ARGUMENT));
+    }
+
+    /**
+     * Every request gets its response in the order they were sent, a failing one included.
+     */
+    @Test
+    void sanitizeStream_inOrder() throws Exception {
+        when(sanitizationService.santizeString(anyString(), eq("html"))).thenAnswer(call -> call.getArgument(0) + "!");
+        when(sanitizationService.santizeString("x", "missing")).thenThrow(new NoSanitizerException("missing"));
+
+        List<SanitizeResponse> responses = new CopyOnWriteArrayList<>();
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        StreamObserver<SanitizeRequest> requests = SanitizerServiceGrpc.newStub(channel)
+            .sanitizeStream(new StreamObserver<>() {
+                @Override
+                public void onNext(SanitizeResponse response) {
+                    responses.add(response);
+                }
+
+                @Override
+                public void onError(Throwable t) {
+                    done.completeExceptionally(t);
+                }
+
+                @Override
+                public void onCompleted() {
+                    done.complete(null);
+                }
+            });
+
+        for (int i = 0; i < 100; i++) {
+            requests.onNext(i == 50 ?
+                request(String.valueOf(i), "missing", "x") :
+                request(String.valueOf(i), "html", String.valueOf(i)));
+        }
+        requests.onCompleted();
+        done.get(10, TimeUnit.SECONDS);
+
+        assertThat(responses.size()).isEqualTo(100);
+        for (int i = 0; i < 100; i++) {
+            SanitizeResponse response = responses.get(i);
+            assertThat(response.getRequestId()).isEqualTo(String.valueOf(i));
+            if (i == 50) {
+                assertThat(response.getMessage()).startsWith("Configuration or Request Error");
+            } else {
+                assertThat(response.getSanitized()).isEqualTo(i + "!");
+            }
+        }
+    }
+
+    private static SanitizeRequest request(String requestId, String inputType, String toSanitize) {
+        return SanitizeRequest.newBuilder()
+            .setRequestId(requestId)
+            .setInputType(inputType)
+            .setToSanitize(toSanitize)
+            .build();
+    }
+}
@@ -0,0 +1,266 @@
+package com.flash.sanitization.cli;
+
+import com.flash.sanitization.FlashSanitizerServiceApplication;
+import com.flash.sanitization.db.record.ConfigRecord;
+import com.flash.sanitization.sanitizer.columns.ColumnFormat;
+import com.flash.sanitization.sanitizer.columns.ColumnSanitizer;
+import com.flash.sanitization.sanitizer.exception.InvalidColumnsException;
+import com.flash.sanitization.sanitizer.implementation.HtmlSanitizer;
+import com.flash.sanitization.sanitizer.implementation.Sanitizer;
+import com.flash.sanitization.sanitizer.implementation.WordSanitizer;
+import com.flash.sanitization.sanitizer.service.SanitizationService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+import static org.assertj.core.api.AssertionsForClassTypes.assertThatThrownBy;
+
+class FileSanitizerTest {
+
+    private final WordSanitizer wordSanitizer = new WordSanitizer(List.of("secret"), "***");
+
+    private final ForkJoinPool pool = new ForkJoinPool(3);
+
+    @TempDir
+    private Path directory;
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdown();
+    }
+
+    /**
+     * Far more chunks than are sanitized at once, with lines longer than a chunk. Every line should be sanitized on its
+     * own and written in order, line breaks and multi byte characters included.
+     */
+    @Test
+    void chunks_inOrder() throws IOException {
+        Random random = new Random(3);
+        List<String> words = List.of("secret", "public", "sécret", "日本", "", " ");
+
+        StringBuilder input = new StringBuilder();
+        StringBuilder expected = new StringBuilder();
+        for (int line = 0; line < 2_000; line++) {
+            StringBuilder text = new StringBuilder(String.valueOf(line));
+            for (int i = random.nextInt(line % 100 == 0 ? 200 : 8); i > 0; i--) {
+                text.append(' ').append(words.get(random.nextInt(words.size())));
+            }
+            String lineBreak = random.nextBoolean() ? "\n" : "\r\n";
+
+            input.append(text).append(lineBreak);
+            expected.append(wordSanitizer.sanitize(text.toString())).append(lineBreak);
+        }
+        // the last line doesn't need a line break
+        input.append("last secret");
+        expected.append(wordSanitizer.sanitize("last secret"));
+
+        Path in = Files.writeString(directory.resolve("in.txt"), input, StandardCharsets.UTF_8);
+        Path out = directory.resolve("out.txt");
+
+        FileSanitizer.Result result = FileSanitizer.sanitize(in, out, wordSanitizer, pool, 100);
+
+        assertThat(Files.readString(out, StandardCharsets.UTF_8)).isEqualTo(expected.toString());
+        assertThat(result.records()).isEqualTo(2_001L);
+        assertThat(result.bytesRead()).isEqualTo(Files.size(in));
+        assertThat(result.bytesWritten()).isEqualTo(Files.size(out));
+    }
+
+    /**
+     * The html sanitizer puts line breaks between elements, a line still gives a single line.
+     */
+    @Test
+    void lines_sanitizerAddsLineBreaks() throws IOException {
+        Path in = Files.writeString(directory.resolve("in.jsonl"), "{\"c\":\"<p>a</p><p>b</p>\"}\r\n{\"c\":\"d\"}\n");
+        Path out = directory.resolve("out.jsonl");
+
+        FileSanitizer.Result result = FileSanitizer.sanitize(in, out, new HtmlSanitizer(), pool, 100);
+
+        assertThat(Files.readString(out)).isEqualTo("{\"c\":\" <p>a</p> <p>b</p> \"}\r\n{\"c\":\"d\"}\n");
+        assertThat(result.records()).isEqualTo(2L);
+    }
+
+    @Test
+    void emptyFile() throws IOException {
+        Path in = Files.writeString(directory.resolve("in.txt"), "");
+        Path out = Files.writeString(directory.resolve("out.txt"), "replaced");
+
+        FileSanitizer.Result result = FileSanitizer.sanitize(in, out, wordSanitizer, pool, 100);
+
+        assertThat(Files.readString(out)).isEmpty();
+        assertThat(result.records()).isEqualTo(0L);
+    }
+
+    @Test
+    void run_usage() {
+        assertThat(FileSanitizer.run("in.txt", "out.txt")).isEqualTo(2);
+    }
+
+    /**
+     * The command runs against the database of the service, whatever the schema generation of the application
+     * properties. The input type configured before is used, and still there afterward.
+     */
+    @Test
+    void run_keepsSchema() throws Exception {
+        String url = "jdbc:h2:mem:file-sanitizer;DB_CLOSE_DELAY=-1";
+        try (ConfigurableApplicationContext service = new SpringApplicationBuilder(
+            FlashSanitizerServiceApplication.class)
+            .profiles("h2")
+            .web(WebApplicationType.NONE)
+            .run("--spring.datasource.url=" + url, "--flash.sanitizer.grpc.port=0"))
+        {
+            service.getBean(SanitizationService.class).createInputType(
+                "cli",
+                List.of(new ConfigRecord("cli-html", "html-sanitizer-factory", new HashMap<>(Map.of("tags", "b")))));
+        }
+
+        Path in = Files.writeString(directory.resolve("in.txt"), "<b>bold</b><script>x</script>\n");
+        Path out = directory.resolve("out.txt");
+
+        // not the h2 profile, so it's the schema generation of application.properties the command has to overrule
+        int exitCode = FileSanitizer.run(h2(url, in.toString(), out.toString(), "cli"));
+
+        assertThat(exitCode).isEqualTo(0);
+        assertThat(Files.readString(out)).isEqualTo("<b>bold</b>\n");
+        try (Connection connection = DriverManager.getConnection(url, "sa", "");
+             ResultSet inputTypes = connection.createStatement().executeQuery(
+                 "SELECT COUNT(*) FROM tbl_input_types WHERE sansitizer_input_type = 'cli'"))
+        {
+            inputTypes.next();
+            assertThat(inputTypes.getInt(1)).isEqualTo(1);
+        }
+    }
+
+    /**
+     * The service is running on the same host, with the grpc port the command would have used.
+     */
+    @Test
+    void run_noGrpcServer() throws Exception {
+        Path in = Files.writeString(directory.resolve("in.txt"), "a secret\n");
+        Path out = directory.resolve("out.txt");
+
+        try (ServerSocket service = new ServerSocket(0)) {
+            int exitCode = FileSanitizer.run(h2(
+                "jdbc:h2:mem:file-sanitizer-grpc;DB_CLOSE_DELAY=-1",
+                in.toString(),
+                out.toString(),
+                "",
+                // an empty database, the arguments of the command win
+                "--spring.jpa.hibernate.ddl-auto=update",
+                "--flash.sanitizer.grpc.port=" + service.getLocalPort()));
+
+            assertThat(exitCode).isEqualTo(0);
+        }
+        assertThat(Files.readString(out)).isEqualTo("a secret\n");
+    }
+
+    /**
+     * Quoted values with line breaks in them, in far more chunks than are sanitized at once. The chunks may only end
+     * at the end of a record, or the quoted values would be split.
+     */
+    @Test
+    void columns_inOrder() throws IOException {
+        Random random = new Random(5);
+        List<String> values = List.of("secret", "public", "\"a secret, quoted\"", "\"two\nsecret lines\"", "\"\"\"\"");
+
+        StringBuilder records = new StringBuilder();
+        for (int record = 0; record < 2_000; record++) {
+            records.append(record).append(',')
+                .append(values.get(random.nextInt(values.size()))).append(',')
+                .append(values.get(random.nextInt(values.size()))).append(random.nextBoolean() ? "\n" : "\r\n");
+        }
+
+        Path in = Files.writeString(directory.resolve("in.csv"), "id,text,kept\n" + records);
+        Path out = directory.resolve("out.csv");
+
+        FileSanitizer.Result result = FileSanitizer.sanitizeColumns(
+            in, out, ColumnFormat.CSV, true, Map.of("text", "word"), inputType -> wordSanitizer, pool, 100, 1_000);
+
+        ColumnSanitizer columnSanitizer = new ColumnSanitizer(ColumnFormat.CSV, new Sanitizer[]{null, wordSanitizer});
+        String expected = StandardCharsets.UTF_8.decode(
+            columnSanitizer.sanitize(ByteBuffer.wrap(records.toString().getBytes(StandardCharsets.UTF_8))).bytes())
+            .toString();
+
+        assertThat(Files.readString(out)).isEqualTo("id,text,kept\n" + expected);
+        assertThat(Files.readString(out)).contains("\"two\n*** lines\"").doesNotContain(",secret,");
+        assertThat(result.records()).isEqualTo(2_001L);
+    }
+
+    /**
+     * A quote in the middle of a value doesn't open a quoted value, the line break of a later quoted one still isn't
+     * the end of a record, wherever the chunks end.
+     */
+    @Test
+    void columns_strayQuote() throws IOException {
+        Path in = Files.writeString(directory.resolve("in.csv"), "id,text\n1,5\" secret\n2,\"a\nsecret\"\n3,secret\n");
+        Path out = directory.resolve("out.csv");
+
+        for (int chunkSize = 1; chunkSize <= 40; chunkSize++) {
+            FileSanitizer.Result result = FileSanitizer.sanitizeColumns(
+                in, out, ColumnFormat.CSV, true, Map.of("text", "word"), inputType -> wordSanitizer, pool, chunkSize,
+                1_000);
+
+            assertThat(Files.readString(out))
+                .as("chunk size %d", chunkSize)
+                .isEqualTo("id,text\n1,\"5\"\" ***\"\n2,\"a\n***\"\n3,***\n");
+            assertThat(result.records()).isEqualTo(4L);
+        }
+    }
+
+    /**
+     * A quote that's never closed makes the rest of the file a single record, it fails once that's longer than the
+     * maximum.
+     */
+    @Test
+    void columns_quoteNotClosed() throws IOException {
+        Path in = Files.writeString(
+            directory.resolve("in.csv"),
+            "id,text\n1,\"a secret\n" + "2,secret\n".repeat(1_000));
+        Path out = directory.resolve("out.csv");
+
+        assertThatThrownBy(() -> FileSanitizer.sanitizeColumns(
+            in, out, ColumnFormat.CSV, true, Map.of("text", "word"), inputType -> wordSanitizer, pool, 100, 1_000))
+            .isInstanceOf(InvalidColumnsException.class)
+            .hasMessageContaining("at byte 8");
+
+        // the end of the file is the end of the record, if that's not too far off
+        Files.writeString(in, "id,text\n1,\"a secret\n" + "2,secret\n".repeat(10));
+        FileSanitizer.sanitizeColumns(
+            in, out, ColumnFormat.CSV, true, Map.of("text", "word"), inputType -> wordSanitizer, pool, 100, 1_000);
+        assertThat(Files.readString(out)).startsWith("id,text\n1,\"a ***\n2,***\n");
+    }
+
+    /**
+     * The arguments of a command, followed by those to run it against an h2 database with the rest of
+     * application.properties.
+     */
+    private static String[] h2(String url, String... args) {
+        return Stream.concat(Arrays.stream(args), Stream.of(
+            "--spring.datasource.url=" + url,
+            "--spring.datasource.driver-class-name=org.h2.Driver",
+            "--spring.datasource.username=sa",
+            "--spring.datasource.password=",
+            "--spring.jpa.database-platform=org.hibernate.dialect.H2Dialect"))
+            .toArray(String[]::new);
+    }
+}
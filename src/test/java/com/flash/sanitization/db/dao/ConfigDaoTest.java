@@ -2,6 +2,7 @@ package com.flash.sanitization.db.dao;
 
 import com.flash.sanitization.db.SqlTestContainer;
 import com.flash.sanitization.db.entity.ConfigEntity;
+import com.flash.sanitization.db.record.ConfigChangeRecord;
 import com.flash.sanitization.db.record.ConfigRecord;
 import com.flash.sanitization.db.repository.ConfigRepo;
 import org.junit.jupiter.api.Nested;
@@ -28,6 +29,9 @@ class ConfigDaoTest extends SqlTestContainer {
     @Autowired
     private ConfigRepo configRepo;
 
+    @Autowired
+    private ConfigChangeDao configChangeDao;
+
     @Nested
     class UpdateConfig {
 
@@ -45,6 +49,8 @@ class ConfigDaoTest extends SqlTestContainer {
 
             configRepo.saveAndFlush(configEntity);
 
+            long version = configChangeDao.findLatestVersion();
+
             // perform change
             configDao.updateConfig(
                 "sanitizer",
@@ -64,6 +70,12 @@ class ConfigDaoTest extends SqlTestContainer {
                         put("updated1", "updated2");
                     }}
                 );
+
+            // the change is logged so every node drops the sanitizer
+            List<ConfigChangeRecord> changes = configChangeDao.findChangesSince(version, List.of());
+            assertThat(changes).hasSize(1);
+            assertThat(changes.get(0).sanitizer()).isEqualTo("sanitizer");
+            assertThat(changes.get(0).inputType()).isNull();
         }
 
         @Test
@@ -15,6 +15,7 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static org.assertj.core.api.AssertionsForClassTypes.assertThatThrownBy;
@@ -292,4 +293,35 @@ class InputTypeDaoTest extends SqlTestContainer {
         }
     }
 
+
+    @Nested
+    class FindAllConfig {
+
+        /**
+         * Every input type is returned with all of its config, including input types without any.
+         */
+        @Test
+        void allInputTypes_withConfig() throws RecordExistsException {
+
+            inputTypeDao.createInputType(
+                "Type1",
+                List.of(
+                    new ConfigRecord("sanitizer", "factory", new HashMap<>() {{ put("key1", "val1"); }}),
+                    new ConfigRecord("sanitizer2", "factory2", null)));
+            inputTypeDao.createInputType(
+                "Type2",
+                List.of(new ConfigRecord("sanitizer", "factory", new HashMap<>() {{ put("key1", "val1"); }})));
+            inputTypeDao.createInputType("Type3", null);
+
+            Map<String, List<ConfigRecord>> configs = inputTypeDao.findAllConfig();
+
+            assertThat(configs).containsOnlyKeys("Type1", "Type2", "Type3");
+            assertThat(configs.get("Type1"))
+                .extracting(ConfigRecord::sanitizer)
+                .containsExactlyInAnyOrder("sanitizer", "sanitizer2");
+            assertThat(configs.get("Type2")).extracting(ConfigRecord::sanitizer).containsExactly("sanitizer");
+            assertThat(configs.get("Type3")).isEmpty();
+        }
+    }
+
 }
\ No newline at end of file
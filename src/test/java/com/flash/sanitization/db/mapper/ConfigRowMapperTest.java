@@ -0,0 +1,51 @@
+package com.flash.sanitization.db.mapper;
+
+import com.flash.sanitization.db.record.ConfigRecord;
+import org.junit.jupiter.api.Test;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ConfigRowMapperTest {
+
+    private final ConfigRowMapper configRowMapper = new ConfigRowMapper();
+
+    @Test
+    void mapRow() throws SQLException {
+        ResultSet resultSet = mock(ResultSet.class);
+        when(resultSet.getString("sanitizer_name")).thenReturn("sanitizer");
+        when(resultSet.getString("sanitizer_factory_name")).thenReturn("factory");
+        when(resultSet.getString("sanitizer_config")).thenReturn("{\"key1\":\"val1\",\"key2\":\"val2\"}");
+
+        ConfigRecord record = configRowMapper.mapRow(resultSet, 0);
+
+        assertThat(record.sanitizer()).isEqualTo("sanitizer");
+        assertThat(record.factory()).isEqualTo("factory");
+        assertThat(record.config()).containsExactlyInAnyOrderEntriesOf(Map.of("key1", "val1", "key2", "val2"));
+    }
+
+    /**
+     * The same json is only parsed once, and as the map is shared it can't be changed.
+     */
+    @Test
+    void parseConfig_cached() {
+        Map<String, String> first = configRowMapper.parseConfig("{\"key1\":\"val1\"}");
+        Map<String, String> second = configRowMapper.parseConfig(new String("{\"key1\":\"val1\"}"));
+
+        assertThat(second).isSameAs(first);
+        assertThatThrownBy(() -> first.put("key2", "val2")).isInstanceOf(UnsupportedOperationException.class);
+    }
+
+    @Test
+    void parseConfig_empty() {
+        assertThat(configRowMapper.parseConfig(null)).isEmpty();
+        assertThat(configRowMapper.parseConfig("")).isEmpty();
+        assertThat(configRowMapper.parseConfig("{}")).isEmpty();
+    }
+}
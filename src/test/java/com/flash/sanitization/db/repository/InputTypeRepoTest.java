@@ -52,7 +52,8 @@ public class InputTypeRepoTest extends SqlTestContainer {
         inputType.setType("TypeA");
         inputType.addConfig(config1).addConfig(config2);
 
-        inputTypeRepo.save(inputType);
+        // the config is read with plain jdbc, so it has to be in the database
+        inputTypeRepo.saveAndFlush(inputType);
 
         // test
         List<ConfigRecord> sanitizerNames = inputTypeDao.findConfigByInputType("TypeA");
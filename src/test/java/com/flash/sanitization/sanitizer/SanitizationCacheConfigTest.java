@@ -0,0 +1,77 @@
+package com.flash.sanitization.sanitizer;
+
+import com.flash.sanitization.sanitizer.properties.CacheProperties;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SanitizationCacheConfigTest {
+
+    /**
+     * An entry that's still used is reloaded in the background after the refresh time, the old value is served until
+     * the new one is there. An entry that's not used expires as before.
+     */
+    @Test
+    void pipelineCache_refreshAhead() {
+        CacheProperties cacheProperties = new CacheProperties();
+        cacheProperties.setExpiryTime(Duration.ofSeconds(30));
+        cacheProperties.setRefreshTime(Duration.ofSeconds(10));
+
+        AtomicLong time = new AtomicLong();
+        AtomicInteger loads = new AtomicInteger();
+        List<Runnable> background = new ArrayList<>();
+
+        LoadingCache<String, Integer> cache = new SanitizationCacheConfig(cacheProperties)
+            .pipelineCacheBuilder()
+            .ticker(time::get)
+            .executor(background::add)
+            .build(key -> loads.incrementAndGet());
+
+        assertThat(cache.get("html")).isEqualTo(1);
+
+        time.addAndGet(Duration.ofSeconds(11).toNanos());
+        // triggers the refresh, but still returns the old value
+        assertThat(cache.get("html")).isEqualTo(1);
+        assertThat(background).isNotEmpty();
+
+        List.copyOf(background).forEach(Runnable::run);
+        assertThat(cache.get("html")).isEqualTo(2);
+
+        time.addAndGet(Duration.ofSeconds(31).toNanos());
+        assertThat(cache.get("html")).isEqualTo(3);
+    }
+
+    /**
+     * A refresh time that isn't shorter than the expiry time would never kick in, and Caffeine doesn't accept zero.
+     */
+    @Test
+    void pipelineCache_noRefresh() {
+        CacheProperties cacheProperties = new CacheProperties();
+        cacheProperties.setExpiryTime(Duration.ofSeconds(30));
+
+        for (Duration refreshTime : new Duration[]{Duration.ZERO, Duration.ofSeconds(-1), Duration.ofSeconds(30), null}) {
+            cacheProperties.setRefreshTime(refreshTime);
+
+            AtomicLong time = new AtomicLong();
+            AtomicInteger loads = new AtomicInteger();
+
+            LoadingCache<String, Integer> cache = new SanitizationCacheConfig(cacheProperties)
+                .pipelineCacheBuilder()
+                .ticker(time::get)
+                .executor(Runnable::run)
+                .build(key -> loads.incrementAndGet());
+
+            assertThat(cache.get("html")).isEqualTo(1);
+            time.addAndGet(Duration.ofSeconds(29).toNanos());
+            assertThat(cache.get("html")).isEqualTo(1);
+            assertThat(cache.get("html")).isEqualTo(1);
+        }
+    }
+}
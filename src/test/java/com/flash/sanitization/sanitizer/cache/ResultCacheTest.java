@@ -0,0 +1,243 @@
+package com.flash.sanitization.sanitizer.cache;
+
+import com.flash.sanitization.sanitizer.metrics.SanitizerMetricBundle;
+import com.flash.sanitization.sanitizer.properties.ResultCacheProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+import static org.assertj.core.api.AssertionsForClassTypes.assertThatThrownBy;
+
+class ResultCacheTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ResultCacheProperties resultCacheProperties = new ResultCacheProperties();
+    private final AtomicInteger sanitized = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        resultCacheProperties.setEnabled(true);
+        resultCacheProperties.setMaxSize(DataSize.ofBytes(1_000));
+        resultCacheProperties.setMaxEntrySize(DataSize.ofBytes(200));
+    }
+
+    private ResultCache resultCache() {
+        return new ResultCache(resultCacheProperties, new SanitizerMetricBundle(meterRegistry));
+    }
+
+    private String upperCase(String value) {
+        sanitized.incrementAndGet();
+        return value.toUpperCase();
+    }
+
+    @Test
+    void get_cached() {
+        ResultCache resultCache = resultCache();
+
+        assertThat(resultCache.get("html", 1, "some value", () -> upperCase("some value"))).isEqualTo("SOME VALUE");
+        assertThat(resultCache.get("html", 1, "some value", () -> upperCase("some value"))).isEqualTo("SOME VALUE");
+        assertThat(resultCache.get("html", 1, "other value", () -> upperCase("other value"))).isEqualTo("OTHER VALUE");
+
+        assertThat(sanitized.get()).isEqualTo(2);
+        assertThat(resultCache.hitRatio()).isEqualTo(1.0 / 3);
+        assertThat(meterRegistry.get("sanitizer.result.cache.hit.ratio").gauge().value()).isEqualTo(1.0 / 3);
+        assertThat(meterRegistry.get("sanitizer.result.cache.bytes").gauge().value())
+            .isEqualTo(2.0 * ("some valueSOME VALUE".length() + "other valueOTHER VALUE".length()));
+    }
+
+    /**
+     * The key includes the input type and the version of the pipeline.
+     */
+    @Test
+    void get_perInputTypeAndVersion() {
+        ResultCache resultCache = resultCache();
+
+        resultCache.get("html", 1, "value", () -> "html");
+        assertThat(resultCache.get("sql", 1, "value", () -> "sql")).isEqualTo("sql");
+        assertThat(resultCache.get("html", 2, "value", () -> "html v2")).isEqualTo("html v2");
+        assertThat(resultCache.get("html", 2, "value", () -> "unused")).isEqualTo("html v2");
+    }
+
+    /**
+     * Using a new version of a pipeline drops what the old one sanitized.
+     */
+    @Test
+    void get_newVersionPurges() {
+        ResultCache resultCache = resultCache();
+
+        resultCache.get("html", 1, "value", () -> "v1");
+        resultCache.get("sql", 1, "value", () -> "v1");
+        long before = resultCache.bytesUsed();
+
+        resultCache.get("html", 2, "other", () -> "v2");
+        assertThat(resultCache.bytesUsed()).isEqualTo(before - 2L * "valuev1".length() + 2L * "otherv2".length());
+
+        // a late request with the old version doesn't undo the purge of the newer one
+        assertThat(resultCache.get("html", 2, "other", () -> "unused")).isEqualTo("v2");
+        resultCache.get("html", 1, "value", () -> "v1");
+        assertThat(resultCache.get("html", 2, "other", () -> "unused")).isEqualTo("v2");
+    }
+
+    /**
+     * Many requests switching to a new version at once keep the newest one, and what it cached.
+     */
+    @Test
+    void get_newVersionConcurrently() throws Exception {
+        ResultCache resultCache = resultCache();
+        resultCache.get("html", 1, "value", () -> "v1");
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<String>> requests = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                long version = 2 + i % 4;
+                requests.add(executor.submit(() -> {
+                    start.await();
+                    return resultCache.get("html", version, "value", () -> "v" + version);
+                }));
+            }
+            start.countDown();
+            for (Future<String> request : requests) {
+                request.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertThat(resultCache.get("html", 5, "value", () -> "unused")).isEqualTo("v5");
+        assertThat(resultCache.get("html", 1, "value", () -> "v1 again")).isEqualTo("v1 again");
+    }
+
+    /**
+     * Invalidating an input type drops only what was sanitized for it.
+     */
+    @Test
+    void invalidate() {
+        ResultCache resultCache = resultCache();
+
+        resultCache.get("html", 1, "value", () -> "html");
+        resultCache.get("sql", 1, "value", () -> "sql");
+        resultCache.invalidate("html");
+
+        assertThat(resultCache.bytesUsed()).isEqualTo(2L * "valuesql".length());
+        assertThat(resultCache.get("html", 1, "value", () -> "html again")).isEqualTo("html again");
+        assertThat(resultCache.get("sql", 1, "value", () -> "unused")).isEqualTo("sql");
+    }
+
+    /**
+     * Only what fits in the budget is kept, the oldest entries are evicted first.
+     */
+    @Test
+    void get_evictsOldest() {
+        ResultCache resultCache = resultCache();
+
+        // 500 characters fit, every entry takes 2 * 30
+        for (int i = 0; i < 100; i++) {
+            String value = "value %09d".formatted(i);
+            resultCache.get("html", 1, value, () -> upperCase(value));
+            assertThat(resultCache.bytesUsed()).isLessThanOrEqualTo(1_000L);
+        }
+        assertThat(sanitized.get()).isEqualTo(100);
+
+        // the most recent are still there, the first are gone
+        for (int i = 99; i > 95; i--) {
+            String value = "value %09d".formatted(i);
+            assertThat(resultCache.get("html", 1, value, () -> upperCase(value))).isEqualTo(value.toUpperCase());
+        }
+        assertThat(sanitized.get()).isEqualTo(100);
+
+        resultCache.get("html", 1, "value 000000000", () -> upperCase("value 000000000"));
+        assertThat(sanitized.get()).isEqualTo(101);
+    }
+
+    @Test
+    void get_tooLarge() {
+        ResultCache resultCache = resultCache();
+        String value = "x".repeat(60);
+
+        resultCache.get("html", 1, value, () -> upperCase(value));
+        resultCache.get("html", 1, value, () -> upperCase(value));
+
+        assertThat(sanitized.get()).isEqualTo(2);
+        assertThat(resultCache.bytesUsed()).isEqualTo(0L);
+    }
+
+    @Test
+    void get_disabled() {
+        resultCacheProperties.setEnabled(false);
+        ResultCache resultCache = resultCache();
+
+        resultCache.get("html", 1, "value", () -> upperCase("value"));
+        resultCache.get("html", 1, "value", () -> upperCase("value"));
+
+        assertThat(resultCache.isEnabled()).isFalse();
+        assertThat(sanitized.get()).isEqualTo(2);
+    }
+
+    /**
+     * Concurrent requests for the same value are sanitized once.
+     */
+    @Test
+    void get_inFlightOnce() throws Exception {
+        ResultCache resultCache = resultCache();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Future<String> first = executor.submit(() -> resultCache.get("html", 1, "value", () -> {
+                started.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return upperCase("value");
+            }));
+            started.await(5, TimeUnit.SECONDS);
+
+            List<Future<String>> others = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                others.add(executor.submit(() -> resultCache.get("html", 1, "value", () -> upperCase("value"))));
+            }
+            // give them time to find the running one
+            Thread.sleep(100);
+            release.countDown();
+
+            assertThat(first.get()).isEqualTo("VALUE");
+            for (Future<String> other : others) {
+                assertThat(other.get()).isEqualTo("VALUE");
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertThat(sanitized.get()).isEqualTo(1);
+    }
+
+    /**
+     * A failure isn't cached, the next request tries again.
+     */
+    @Test
+    void get_failure() {
+        ResultCache resultCache = resultCache();
+
+        assertThatThrownBy(() -> resultCache.get("html", 1, "value", () -> {
+            throw new IllegalStateException("failed");
+        })).isInstanceOf(IllegalStateException.class);
+
+        assertThat(resultCache.get("html", 1, "value", () -> upperCase("value"))).isEqualTo("VALUE");
+    }
+}
@@ -0,0 +1,165 @@
+package com.flash.sanitization.sanitizer.columns;
+
+import com.flash.sanitization.sanitizer.exception.InvalidColumnsException;
+import com.flash.sanitization.sanitizer.implementation.Sanitizer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+import static org.assertj.core.api.AssertionsForClassTypes.assertThatThrownBy;
+
+class ColumnSanitizerTest {
+
+    private static final Sanitizer UPPER_CASE = value -> value.toUpperCase();
+
+    /**
+     * Only the second column is sanitized.
+     */
+    static Stream<Arguments> records() {
+        return Stream.of(
+            Arguments.of("Plain", ColumnFormat.CSV, "a,b,c\nd,e,f\n", "a,B,c\nd,E,f\n"),
+            Arguments.of("No Line Break At The End", ColumnFormat.CSV, "a,b,c", "a,B,c"),
+            Arguments.of("Carriage Returns", ColumnFormat.CSV, "a,b\r\nc,d\r\n", "a,B\r\nc,D\r\n"),
+            Arguments.of("Quoted", ColumnFormat.CSV, "a,\"b,c\",d\n", "a,\"B,C\",d\n"),
+            Arguments.of("Quoted Line Break", ColumnFormat.CSV, "a,\"b\nc\",d\ne,f\n", "a,\"B\nC\",d\ne,F\n"),
+            Arguments.of("Escaped Quote", ColumnFormat.CSV, "a,\"b\"\"c\"\n", "a,\"B\"\"C\"\n"),
+            Arguments.of("Other Columns Untouched", ColumnFormat.CSV, " \"x\"\"\" ,b, y \n", " \"x\"\"\" ,B, y \n"),
+            Arguments.of("Empty Values", ColumnFormat.CSV, ",,\n\n,x\n", ",,\n\n,X\n"),
+            Arguments.of("Missing Column", ColumnFormat.CSV, "a\n", "a\n"),
+            Arguments.of("Multi Byte", ColumnFormat.CSV, "日本,sécret,ü\n", "日本,SÉCRET,ü\n"),
+            Arguments.of("Tsv", ColumnFormat.TSV, "a\tb\tc\n\"d\t\"e\"\tf\n", "a\tB\tc\n\"d\t\"E\"\tf\n"));
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("records")
+    void sanitize(String name, ColumnFormat format, String records, String expected) {
+        ColumnSanitizer sanitizer = new ColumnSanitizer(format, new Sanitizer[]{null, UPPER_CASE});
+
+        assertThat(sanitize(sanitizer, records)).isEqualTo(expected);
+    }
+
+    @Test
+    void sanitize_quotesWhereNeeded() {
+        ColumnSanitizer csv = new ColumnSanitizer(ColumnFormat.CSV, new Sanitizer[]{value -> value + ",\"x\"\n"});
+        ColumnSanitizer tsv = new ColumnSanitizer(ColumnFormat.TSV, new Sanitizer[]{value -> value + "\t\"x\"\n"});
+
+        assertThat(sanitize(csv, "a,b\n")).isEqualTo("\"a,\"\"x\"\"\n\",b\n");
+        assertThat(sanitize(tsv, "a\tb\n")).isEqualTo("a \"x\" \tb\n");
+    }
+
+    @Test
+    void sanitize_countsRecords() {
+        ColumnSanitizer sanitizer = new ColumnSanitizer(ColumnFormat.CSV, new Sanitizer[]{UPPER_CASE});
+
+        assertThat(sanitizer.sanitize(bytes("a\n\"b\nc\"\nd")).records()).isEqualTo(3);
+    }
+
+    @Test
+    void of_byHeaderOrIndex() {
+        List<String> resolved = new ArrayList<>();
+        ColumnSanitizer sanitizer = ColumnSanitizer.of(
+            ColumnFormat.CSV,
+            List.of("id", "email", "comment"),
+            Map.of("comment", "upper", "0", "upper"),
+            inputType -> {
+                resolved.add(inputType);
+                return UPPER_CASE;
+            });
+
+        assertThat(sanitize(sanitizer, "a,b,c\n")).isEqualTo("A,b,C\n");
+        assertThat(resolved).isEqualTo(List.of("upper"));
+    }
+
+    @Test
+    void of_missingColumn() {
+        assertThatThrownBy(() -> ColumnSanitizer.of(
+            ColumnFormat.CSV, List.of("id"), Map.of("email", "upper"), inputType -> UPPER_CASE))
+            .isInstanceOf(InvalidColumnsException.class)
+            .hasMessage("Column 'email' is not in the header");
+        assertThatThrownBy(() -> ColumnSanitizer.of(
+            ColumnFormat.CSV, null, Map.of("email", "upper"), inputType -> UPPER_CASE))
+            .isInstanceOf(InvalidColumnsException.class);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"3", "2000000000", "99999999999999999999"})
+    void of_indexOutOfRange(String index) {
+        assertThatThrownBy(() -> ColumnSanitizer.of(
+            ColumnFormat.CSV, List.of("id", "email", "comment"), Map.of(index, "upper"), inputType -> UPPER_CASE))
+            .isInstanceOf(InvalidColumnsException.class)
+            .hasMessage("Column %s is out of range, the header has 3 columns".formatted(index));
+    }
+
+    @Test
+    void of_indexWithoutHeader() {
+        ColumnSanitizer sanitizer = ColumnSanitizer.of(
+            ColumnFormat.CSV, null, Map.of("2", "upper"), inputType -> UPPER_CASE);
+        assertThat(sanitize(sanitizer, "a,b,c\n")).isEqualTo("a,b,C\n");
+
+        String last = String.valueOf(ColumnSanitizer.MAX_COLUMNS);
+        assertThatThrownBy(() -> ColumnSanitizer.of(
+            ColumnFormat.CSV, null, Map.of(last, "upper"), inputType -> UPPER_CASE))
+            .isInstanceOf(InvalidColumnsException.class);
+    }
+
+    @Test
+    void columns() {
+        assertThat(ColumnSanitizer.columns(" email : word,comment:html"))
+            .isEqualTo(Map.of("email", "word", "comment", "html"));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"", "email", "email:", ":word", "email:word,"})
+    void columns_invalid(String columns) {
+        assertThatThrownBy(() -> ColumnSanitizer.columns(columns)).isInstanceOf(InvalidColumnsException.class);
+    }
+
+    @Test
+    void recordEnd_skipsQuotedLineBreaks() {
+        ByteBuffer records = bytes("a,\"b\nc\"\nd\ne");
+
+        assertThat(ColumnFormat.CSV.recordEnd(records, 0, records.limit())).isEqualTo(8);
+        assertThat(ColumnFormat.CSV.recordsEnd(records, 0, records.limit())).isEqualTo(10);
+        assertThat(ColumnFormat.TSV.recordEnd(records, 0, records.limit())).isEqualTo(5);
+        assertThat(ColumnFormat.CSV.recordEnd(records, 0, 7)).isEqualTo(-1);
+    }
+
+    /**
+     * A quote in the middle of a value is part of it, it doesn't open a quoted value.
+     */
+    @Test
+    void recordEnd_strayQuote() {
+        ByteBuffer records = bytes("1,5\" tv\n2,\"a\nb\"\n3,\"\"\"x\n\"\n");
+
+        assertThat(ColumnFormat.CSV.recordEnd(records, 0, records.limit())).isEqualTo(8);
+        assertThat(ColumnFormat.CSV.recordEnd(records, 8, records.limit())).isEqualTo(16);
+        assertThat(ColumnFormat.CSV.recordEnd(records, 16, records.limit())).isEqualTo(records.limit());
+        assertThat(ColumnFormat.CSV.recordsEnd(records, 0, 13)).isEqualTo(8);
+    }
+
+    @Test
+    void values() {
+        ByteBuffer header = bytes("id,\"e,mail\",\"a \"\"b\"\"\"\r\n");
+
+        assertThat(ColumnFormat.CSV.values(header, 0, header.limit())).isEqualTo(List.of("id", "e,mail", "a \"b\""));
+    }
+
+    private static String sanitize(ColumnSanitizer sanitizer, String records) {
+        ByteBuffer sanitized = sanitizer.sanitize(bytes(records)).bytes();
+        return StandardCharsets.UTF_8.decode(sanitized).toString();
+    }
+
+    private static ByteBuffer bytes(String records) {
+        return ByteBuffer.wrap(records.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,116 @@
+package com.flash.sanitization.sanitizer.factory;
+
+import com.flash.sanitization.db.record.ConfigRecord;
+import com.flash.sanitization.sanitizer.exception.ConstructionException;
+import com.flash.sanitization.sanitizer.implementation.HtmlSanitizer;
+import com.flash.sanitization.sanitizer.implementation.Sanitizer;
+import com.flash.sanitization.sanitizer.implementation.StreamingHtmlSanitizer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThatThrownBy;
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+
+class HtmlSanitizerFactoryTest {
+
+    private final HtmlSanitizerFactory factory = new HtmlSanitizerFactory();
+
+    private static Stream<Arguments> configSource() {
+        return Stream.of(
+            Arguments.of(
+                "Default",
+                Map.of(),
+                "<b>a</b><font>b</font><a href='http://x'>c</a>",
+                "<b>a</b>b<a href=\"http://x\" rel=\"nofollow\">c</a>"),
+            Arguments.of(
+                "Base Safelist",
+                Map.of("safelist", "none"),
+                "<p><b>a</b><span>b</span></p>",
+                "ab"),
+            Arguments.of(
+                "Extra Tags",
+                Map.of("safelist", "none", "tags", "b, span"),
+                "<p><b>a</b><span>b</span></p>",
+                "<b>a</b><span>b</span>"),
+            Arguments.of(
+                "Attributes",
+                Map.of("tags", "span", "attributes.span", "class", "attributes.:all", "title"),
+                "<span class=c title=t id=i>a</span><b title=t class=c>b</b>",
+                "<span class=\"c\" title=\"t\">a</span><b title=\"t\">b</b>"),
+            Arguments.of(
+                "Protocols",
+                Map.of("safelist", "none", "tags", "a", "attributes.a", "href", "protocols.a.href", "https"),
+                "<a href='https://x'>s</a><a href='http://x'>h</a>",
+                "<a href=\"https://x\">s</a><a>h</a>"),
+            Arguments.of(
+                "Protocols Replace The Base Ones",
+                Map.of("protocols.a.href", "https", "protocols.q.cite", "HTTPS, ftp"),
+                "<a href='https://x'>s</a><a href='http://x'>h</a><a href='mailto:x'>m</a><a href='ftp://x'>f</a>"
+                    + "<q cite='http://x'>h</q><q cite='ftp://x'>f</q>",
+                "<a href=\"https://x\" rel=\"nofollow\">s</a><a rel=\"nofollow\">h</a><a rel=\"nofollow\">m</a>"
+                    + "<a rel=\"nofollow\">f</a><q>h</q><q cite=\"ftp://x\">f</q>"),
+            Arguments.of(
+                "Protocols Of Relaxed",
+                Map.of("safelist", "relaxed", "protocols.img.src", "https"),
+                "<img src='http://x/a.png'><img src='https://x/a.png'>",
+                "<img><img src=\"https://x/a.png\">"),
+            Arguments.of(
+                "Enforced",
+                Map.of("enforced.a.target", "_blank"),
+                "<a>x</a>",
+                "<a rel=\"nofollow\" target=\"_blank\">x</a>"),
+            Arguments.of(
+                "Removed Tags",
+                Map.of("remove-tags", "a, b", "attributes.a", "title"),
+                "<a title=t>x</a><b>y</b><i>z</i>",
+                "xy<i>z</i>"),
+            Arguments.of(
+                "Plain Text",
+                Map.of("safelist", "none"),
+                "a > b",
+                "a > b")
+        );
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("configSource")
+    void sanitizer(String name, Map<String, String> config, String toSanitize, String expected) {
+        Sanitizer sanitizer = factory.createSanitizer(new ConfigRecord("sanitizer", "html-sanitizer-factory", config));
+
+        assertThat(sanitizer).isInstanceOf(HtmlSanitizer.class);
+        assertThat(sanitizer.sanitize(toSanitize)).isEqualTo(expected);
+    }
+
+    @Test
+    void noConfig() {
+        Sanitizer sanitizer = factory.createSanitizer(new ConfigRecord("sanitizer", "html-sanitizer-factory", null));
+        assertThat(sanitizer.sanitize("<div>stuff</div>")).isEqualTo("stuff");
+    }
+
+    @Test
+    void streamingParser() {
+        Sanitizer sanitizer = factory.createSanitizer(
+            new ConfigRecord("sanitizer", "html-sanitizer-factory", Map.of("parser", "streaming", "tags", "span")));
+
+        assertThat(sanitizer).isInstanceOf(StreamingHtmlSanitizer.class);
+        assertThat(sanitizer.sanitize("<span>a</span><div>b</div>")).isEqualTo("<span>a</span>b");
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+        "safelist=everything", "parser=regex", "attributes=class", "protocols.a=https", "protocols.a.href=,"})
+    void invalidConfig(String setting) {
+        String[] keyValue = setting.split("=");
+        ConfigRecord config = new ConfigRecord("sanitizer", "html-sanitizer-factory", Map.of(keyValue[0], keyValue[1]));
+
+        assertThatThrownBy(() -> factory.createSanitizer(config))
+            .isInstanceOf(ConstructionException.class)
+            .hasCauseInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -1,8 +1,14 @@
 package com.flash.sanitization.sanitizer.factory;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.flash.sanitization.cli.DictionaryCompiler;
 import com.flash.sanitization.db.record.ConfigRecord;
 import com.flash.sanitization.sanitizer.implementation.Sanitizer;
+import com.flash.sanitization.sanitizer.implementation.SegmentableSanitizer;
+import com.flash.sanitization.sanitizer.metrics.SanitizerMetricBundle;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
@@ -10,6 +16,7 @@ import org.junit.jupiter.params.provider.MethodSource;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.stream.Stream;
@@ -18,6 +25,9 @@ import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
 
 class WordSanitizerFactoryTest {
 
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final SanitizerMetricBundle sanitizerMetricBundle = new SanitizerMetricBundle(meterRegistry);
+
     private static Stream<Arguments> simpleTestSource() {
         return Stream.of(
 
@@ -67,7 +77,7 @@ class WordSanitizerFactoryTest {
     @ParameterizedTest(name = "{0}")
     @MethodSource("simpleTestSource")
     void list_sanitizer(String name, String toSanitize, List<String> bannedWords, String expected) {
-        WordSanitizerFactory factory = new WordSanitizerFactory(new ObjectMapper());
+        WordSanitizerFactory factory = new WordSanitizerFactory(new ObjectMapper(), sanitizerMetricBundle);
 
         ConfigRecord config
             = new ConfigRecord(
@@ -84,13 +94,35 @@ class WordSanitizerFactoryTest {
         assertThat(sanitizer.sanitize(toSanitize)).isEqualTo(expected);
     }
 
+    /**
+     * The classpath source is read as a stream so it also works from inside a packaged jar.
+     */
+    @Test
+    void classpath_sanitizer() {
+        WordSanitizerFactory factory = new WordSanitizerFactory(new ObjectMapper(), sanitizerMetricBundle);
+
+        ConfigRecord config
+            = new ConfigRecord(
+                "sanitizer",
+                "factory",
+            new HashMap<>() {
+                    {
+                        put("mask", "---");
+                        put("src", "CLASSPATH:default-word-list.txt");
+                    }
+                });
+
+        Sanitizer sanitizer = factory.createSanitizer(config);
+        assertThat(sanitizer.sanitize("ThIS ACTION IS COOL")).isEqualTo("ThIS --- IS COOL");
+    }
+
     @ParameterizedTest(name = "{0}")
     @MethodSource("simpleTestSource")
     void file_sanitizer(String name, String toSanitize, List<String> bannedWords, String expected) throws IOException {
 
         ObjectMapper mapper = new ObjectMapper();
 
-        WordSanitizerFactory factory = new WordSanitizerFactory(mapper);
+        WordSanitizerFactory factory = new WordSanitizerFactory(mapper, sanitizerMetricBundle);
 
         Path filePath = Path.of("./sanitizeFile.txt");
         try {
@@ -117,4 +149,85 @@ class WordSanitizerFactoryTest {
         }
     }
 
-}
\ No newline at end of file
+
+    /**
+     * Large lists are compiled into a compact trie, which matches the same way, and the size of every compiled list
+     * is reported.
+     */
+    @Test
+    void large_sanitizer() throws IOException {
+
+        ObjectMapper mapper = new ObjectMapper();
+        WordSanitizerFactory factory = new WordSanitizerFactory(mapper, sanitizerMetricBundle);
+
+        List<String> bannedWords = new ArrayList<>();
+        for (int i = 0; i < WordSanitizerFactory.COMPACT_THRESHOLD; i++) {
+            bannedWords.add("name" + i);
+        }
+
+        Path filePath = Path.of("./largeSanitizeFile.txt");
+        try {
+            mapper.writeValue(filePath.toFile(), bannedWords);
+
+            ConfigRecord config
+                = new ConfigRecord(
+                "large",
+                "factory",
+                new HashMap<>() {
+                    {
+                        put("mask", "---");
+                        put("src", "FILE:./largeSanitizeFile.txt");
+                    }
+                }
+            );
+
+            Sanitizer sanitizer = factory.createSanitizer(config);
+            assertThat(sanitizer.sanitize("Hello NAME123 and name9999, not name10000"))
+                .isEqualTo("Hello --- and ---, not name10000");
+            // the words aren't kept, whether they contain white space is passed along
+            assertThat(sanitizer).isInstanceOf(SegmentableSanitizer.class);
+
+            double footprint = meterRegistry.get("sanitizer.dictionary.bytes").tag("sanitizer", "large").gauge().value();
+            assertThat(footprint).isBetween(1.0, 2_000_000.0);
+        } finally {
+            Files.deleteIfExists(filePath);
+        }
+    }
+
+    /**
+     * A word list compiled by the {@link DictionaryCompiler} is mapped and matched like the list itself.
+     */
+    @Test
+    void compiled_sanitizer(@TempDir Path dir) throws IOException {
+
+        ObjectMapper mapper = new ObjectMapper();
+        WordSanitizerFactory factory = new WordSanitizerFactory(mapper, sanitizerMetricBundle);
+
+        Path words = dir.resolve("words.json");
+        Path compiled = dir.resolve("words.dict");
+        mapper.writeValue(words.toFile(), List.of("quick", "lazy dog"));
+        assertThat(DictionaryCompiler.run(words.toString(), compiled.toString())).isEqualTo(0);
+
+        ConfigRecord config
+            = new ConfigRecord(
+            "compiled",
+            "factory",
+            new HashMap<>() {
+                {
+                    put("mask", "---");
+                    put("src", "COMPILED:" + compiled);
+                }
+            }
+        );
+
+        Sanitizer sanitizer = factory.createSanitizer(config);
+        assertThat(sanitizer.sanitize("The quick brown fox jumped over the LAZY DOG"))
+            .isEqualTo("The --- brown fox jumped over the ---");
+        // a word contains white space, which the compiled file remembers
+        assertThat(sanitizer).isNotInstanceOf(SegmentableSanitizer.class);
+
+        mapper.writeValue(words.toFile(), List.of("quick", "lazy"));
+        assertThat(DictionaryCompiler.run(words.toString(), compiled.toString())).isEqualTo(0);
+        assertThat(factory.createSanitizer(config)).isInstanceOf(SegmentableSanitizer.class);
+    }
+}
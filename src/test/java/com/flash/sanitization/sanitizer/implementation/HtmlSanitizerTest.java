@@ -1,5 +1,8 @@
 package com.flash.sanitization.sanitizer.implementation;
 
+import org.jsoup.Jsoup;
+import org.jsoup.safety.Safelist;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -23,5 +26,32 @@ class HtmlSanitizerTest {
         assertThat(htmlSanitizer.sanitize(input)).isEqualTo("stuff");
     }
 
+    @ParameterizedTest
+    @ValueSource(strings = {
+        "<p onclick='x()'>a <b>b</b></p><script>c</script>",
+        "<a href='http://x' title=t>l</a><a href='javascript:x'>j</a>",
+        "a &amp; b &copy; &lt;c&gt;",
+        "<p>a<div>b</div>c</p>",
+        "<img src='http://x/i.png'>",
+    })
+    void sameAsJsoup(String input) {
+        assertThat(htmlSanitizer.sanitize(input)).isEqualTo(Jsoup.clean(input, Safelist.basic()));
+        assertThat(new HtmlSanitizer(Safelist.relaxed()).sanitize(input))
+            .isEqualTo(Jsoup.clean(input, Safelist.relaxed()));
+    }
+
+    /**
+     * Without a tag or a reference there's nothing to clean, it's not parsed at all.
+     */
+    @ParameterizedTest
+    @ValueSource(strings = {"", "stuff", "a > b", "  spaced   out  "})
+    void plainText_unchanged(String input) {
+        assertThat(htmlSanitizer.sanitize(input)).isEqualTo(input);
+    }
+
+    @Test
+    void nullInput() {
+        assertThat(htmlSanitizer.sanitize(null)).isNull();
+    }
 
 }
\ No newline at end of file
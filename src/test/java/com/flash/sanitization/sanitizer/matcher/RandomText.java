@@ -0,0 +1,20 @@
+package com.flash.sanitization.sanitizer.matcher;
+
+import java.util.Random;
+
+/**
+ * Random text for the randomized tests of the matchers and the sanitizers built on them.
+ */
+public final class RandomText {
+
+    private RandomText() {
+    }
+
+    public static String randomText(Random random, int length, String alphabet) {
+        StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            builder.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return builder.toString();
+    }
+}
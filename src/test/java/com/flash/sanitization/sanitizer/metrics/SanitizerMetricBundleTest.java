@@ -0,0 +1,105 @@
+package com.flash.sanitization.sanitizer.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+
+class SanitizerMetricBundleTest {
+
+    private MeterRegistry meterRegistry;
+    private SanitizerMetricBundle sanitizerMetricBundle;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        sanitizerMetricBundle = new SanitizerMetricBundle(meterRegistry);
+    }
+
+    @Test
+    void methodMeters_cached() throws NoSuchMethodException {
+        Method method = String.class.getMethod("trim");
+
+        assertThat(sanitizerMetricBundle.methodMeters(method))
+            .isSameAs(sanitizerMetricBundle.methodMeters(String.class.getMethod("trim")));
+    }
+
+    /**
+     * Every call should be counted once, as success or error, and once in all.
+     */
+    @Test
+    void methodMeters_counts() throws NoSuchMethodException {
+        MethodMeters meters = sanitizerMetricBundle.methodMeters(String.class.getMethod("trim"));
+
+        meters.recordSuccess(1_000);
+        meters.recordSuccess(1_000);
+        meters.recordError(new IllegalStateException(), 1_000);
+
+        assertThat(meterRegistry.get("method.success").tag("method", "trim").counter().count()).isEqualTo(2.0);
+        assertThat(meterRegistry.get("method.all").tag("method", "trim").counter().count()).isEqualTo(3.0);
+        assertThat(meterRegistry.get("method.time").tag("method", "trim").timer().count()).isEqualTo(3L);
+        assertThat(
+            meterRegistry.get("method.error")
+                .tag("class", "java.lang.String")
+                .tag("exception", "IllegalStateException")
+                .counter()
+                .count())
+            .isEqualTo(1.0);
+    }
+
+    @Test
+    void recordSanitization_perInputType() {
+        sanitizerMetricBundle.recordSanitization("html", 2_000_000);
+        sanitizerMetricBundle.recordSanitization("html", 4_000_000);
+        sanitizerMetricBundle.recordSanitization("sql", 1_000_000);
+
+        assertThat(meterRegistry.get("sanitizer.pipeline.time").tag("inputType", "html").timer().count())
+            .isEqualTo(2L);
+        assertThat(
+            meterRegistry.get("sanitizer.pipeline.time").tag("inputType", "html").timer()
+                .totalTime(TimeUnit.MILLISECONDS))
+            .isEqualTo(6.0);
+        assertThat(meterRegistry.get("sanitizer.pipeline.time").tag("inputType", "sql").timer().count())
+            .isEqualTo(1L);
+    }
+
+    /**
+     * Past the limit new values all end up in the same timer, so the number of meters stays bounded.
+     */
+    @Test
+    void recordSanitization_bounded() {
+        for (int i = 0; i < SanitizerMetricBundle.MAX_TAG_VALUES + 50; i++) {
+            sanitizerMetricBundle.recordSanitization("type-" + i, 1_000);
+        }
+
+        assertThat(meterRegistry.find("sanitizer.pipeline.time").timers().size())
+            .isEqualTo(SanitizerMetricBundle.MAX_TAG_VALUES + 1);
+        assertThat(
+            meterRegistry.get("sanitizer.pipeline.time").tag("inputType", SanitizerMetricBundle.OTHER).timer()
+                .count())
+            .isEqualTo(50L);
+    }
+
+    /**
+     * An input type named other has a timer of its own, apart from the overflow.
+     */
+    @Test
+    void recordSanitization_otherIsNotTheOverflow() {
+        sanitizerMetricBundle.recordSanitization("other", 1_000);
+        for (int i = 0; i < SanitizerMetricBundle.MAX_TAG_VALUES + 5; i++) {
+            sanitizerMetricBundle.recordSanitization("type-" + i, 1_000);
+        }
+
+        assertThat(meterRegistry.get("sanitizer.pipeline.time").tag("inputType", "other").timer().count())
+            .isEqualTo(1L);
+        assertThat(
+            meterRegistry.get("sanitizer.pipeline.time").tag("inputType", SanitizerMetricBundle.OTHER).timer()
+                .count())
+            .isEqualTo(6L);
+    }
+}
@@ -0,0 +1,85 @@
+package com.flash.sanitization.sanitizer.pipeline;
+
+import com.flash.sanitization.sanitizer.implementation.HtmlSanitizer;
+import com.flash.sanitization.sanitizer.implementation.Sanitizer;
+import com.flash.sanitization.sanitizer.implementation.SqlSanitizer;
+import com.flash.sanitization.sanitizer.implementation.WordSanitizer;
+import com.flash.sanitization.sanitizer.pipeline.PipelineOptimizer.Stage;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+
+class PipelineOptimizerTest {
+
+    private final WordSanitizer profanity = new WordSanitizer(List.of("darn", "heck"), "[CENSORED]");
+    private final WordSanitizer codenames = new WordSanitizer(List.of("bluebird", "censored"), "***");
+    private final WordSanitizer phrases = new WordSanitizer(List.of("top secret"), "***");
+    private final WordSanitizer keywords = new WordSanitizer(List.of("select", "drop"), "");
+    private final SqlSanitizer sql = new SqlSanitizer();
+    private final HtmlSanitizer html = new HtmlSanitizer();
+
+    private final List<Sanitizer> sanitizers =
+        List.of(profanity, codenames, html, keywords, phrases, profanity, keywords);
+    private final List<String> names =
+        List.of("profanity", "codenames", "html", "keywords", "phrases", "profanity", "keywords");
+
+    /**
+     * Only adjacent word sanitizers are fused, a word sanitizer that can't be fused ends the run of them.
+     */
+    @Test
+    void optimize_fusesAdjacentWords() {
+        List<Stage> plan = PipelineOptimizer.optimize(sanitizers, names);
+
+        assertThat(plan.size()).isEqualTo(5);
+        assertThat(plan.get(0).sanitizers()).isEqualTo(List.of("profanity", "codenames"));
+        assertThat(plan.get(0).fused()).isTrue();
+        assertThat(plan.get(1).sanitizer()).isSameAs(html);
+        assertThat(plan.get(2).sanitizer()).isSameAs(keywords);
+        assertThat(plan.get(2).fused()).isFalse();
+        assertThat(plan.get(3).sanitizer()).isSameAs(phrases);
+        assertThat(plan.get(4).sanitizers()).isEqualTo(List.of("profanity", "keywords"));
+        assertThat(plan.get(4).fused()).isTrue();
+    }
+
+    @Test
+    void optimize_nothingToFuse() {
+        List<Stage> plan = PipelineOptimizer.optimize(List.of(profanity, sql, codenames), null);
+
+        assertThat(plan.size()).isEqualTo(3);
+        assertThat(plan.get(0).sanitizer()).isSameAs(profanity);
+        assertThat(plan.get(0).sanitizers()).isEqualTo(List.of("WordSanitizer"));
+        assertThat(plan.get(1).sanitizer()).isSameAs(sql);
+        assertThat(plan.get(2).sanitizer()).isSameAs(codenames);
+    }
+
+    @Test
+    void optimizedPipeline_sanitizesTheSame() throws IOException {
+        SanitizerPipeline configured = new SanitizerPipeline(sanitizers);
+        SanitizerPipeline optimized = new SanitizerPipeline(
+            sanitizers,
+            Set.copyOf(names),
+            PipelineOptimizer.optimize(sanitizers, names));
+
+        String input = "  <p>Heck, <b>bluebird</b> said darn: select * from top secret; drop censored</p>  ";
+        assertThat(optimized.sanitize(input)).isEqualTo(configured.sanitize(input));
+        // the mask of the profanity is censored by the code names
+        assertThat(optimized.sanitize(input))
+            .isEqualTo("<p>[***], <b>***</b> said [***]:  * from ***;  ***</p>");
+
+        StringWriter streamed = new StringWriter();
+        try (Writer writer = optimized.sanitizing(streamed)) {
+            writer.write(input);
+        }
+        assertThat(streamed.toString()).isEqualTo(configured.sanitize(input));
+
+        assertThat(optimized.hasSameSanitizers(configured)).isTrue();
+        assertThat(optimized.getPlan().size()).isEqualTo(5);
+        assertThat(configured.getPlan().size()).isEqualTo(sanitizers.size());
+    }
+}
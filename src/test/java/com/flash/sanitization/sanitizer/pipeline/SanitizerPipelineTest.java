@@ -1,14 +1,26 @@
 package com.flash.sanitization.sanitizer.pipeline;
 
+import com.flash.sanitization.sanitizer.implementation.HtmlSanitizer;
 import com.flash.sanitization.sanitizer.implementation.Sanitizer;
+import com.flash.sanitization.sanitizer.implementation.SqlSanitizer;
+import com.flash.sanitization.sanitizer.implementation.WordSanitizer;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
+import static com.flash.sanitization.sanitizer.matcher.RandomText.randomText;
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
@@ -76,4 +88,208 @@ class SanitizerPipelineTest {
         assertThat(pipeline.sanitize("Doesn't Matter")).isEqualTo("5050");
     }
 
-}
\ No newline at end of file
+    /**
+     * Buffer sanitizers and String sanitizers mixed, should give the same result as running them one by one.
+     */
+    @Test
+    void pipeline_bufferSanitizers_sameAsSequential() {
+
+        List<Sanitizer> sanitizers = List.of(
+            new WordSanitizer(List.of("secret", "password"), "***"),
+            new SqlSanitizer(),
+            new HtmlSanitizer(),
+            new WordSanitizer(List.of("drop"), "#"));
+
+        SanitizerPipeline pipeline = new SanitizerPipeline(sanitizers);
+
+        for (String input : List.of(
+            "  my secret is DROP TABLE users -- password  ",
+            "<b>password</b> /* secret */ <script>alert(1)</script> drop",
+            "nothing to see here",
+            "   ",
+            "")) {
+
+            String expected = input;
+            for (Sanitizer sanitizer : sanitizers) {
+                expected = sanitizer.sanitize(expected);
+            }
+
+            // twice, the second run reuses the buffers of the first
+            assertThat(pipeline.sanitize(input)).isEqualTo(expected);
+            assertThat(pipeline.sanitize(input)).isEqualTo(expected);
+        }
+    }
+
+    /**
+     * A stage that runs a pipeline itself must not get the buffers the outer pipeline is using.
+     */
+    @Test
+    void pipeline_nested() {
+
+        SanitizerPipeline inner = new SanitizerPipeline(List.of(
+            new WordSanitizer(List.of("inner"), "I"),
+            new WordSanitizer(List.of("again"), "A")));
+
+        SanitizerPipeline outer = new SanitizerPipeline(List.of(
+            new WordSanitizer(List.of("outer"), "O"),
+            inner::sanitize,
+            new WordSanitizer(List.of("last"), "L")));
+
+        assertThat(outer.sanitize("outer inner again last")).isEqualTo("O I A L");
+    }
+
+    /**
+     * A request on a virtual thread has a thread of its own, the buffers are still reused by the next one. Only as
+     * many are kept as are pooled.
+     */
+    @Test
+    void pipeline_buffersReusedAcrossThreads() throws Exception {
+
+        SanitizerPipeline pipeline = new SanitizerPipeline(List.of(
+            new WordSanitizer(List.of("secret"), "***"),
+            new SqlSanitizer()));
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < 10; i++) {
+                assertThat(executor.submit(() -> pipeline.sanitize("a secret")).get()).isEqualTo("a ***");
+            }
+            int pooled = SanitizerPipeline.pooledBuffers();
+            assertThat(pooled).isBetween(1, SanitizerPipeline.MAX_POOLED);
+
+            assertThat(executor.submit(() -> pipeline.sanitize("a secret")).get()).isEqualTo("a ***");
+            assertThat(SanitizerPipeline.pooledBuffers()).isEqualTo(pooled);
+
+            List<Future<String>> concurrent = new ArrayList<>();
+            for (int i = 0; i < 1_000; i++) {
+                concurrent.add(executor.submit(() -> pipeline.sanitize("a secret")));
+            }
+            for (Future<String> result : concurrent) {
+                assertThat(result.get()).isEqualTo("a ***");
+            }
+            assertThat(SanitizerPipeline.pooledBuffers()).isLessThanOrEqualTo(SanitizerPipeline.MAX_POOLED);
+        }
+    }
+
+    @Test
+    void pipeline_nullInput() {
+
+        SanitizerPipeline pipeline = new SanitizerPipeline(List.of(
+            new WordSanitizer(List.of("a"), "b"),
+            new SqlSanitizer()));
+
+        assertThat(pipeline.sanitize(null)).isNull();
+    }
+
+    /**
+     * Buffers that grew too big are not kept around, but the result must still be correct.
+     */
+    @Test
+    void pipeline_largeInput() {
+
+        SanitizerPipeline pipeline = new SanitizerPipeline(List.of(
+            new WordSanitizer(List.of("secret"), "***"),
+            new SqlSanitizer()));
+
+        String input = "secret ".repeat(SanitizerPipeline.MAX_RETAINED_CAPACITY / 4);
+
+        assertThat(pipeline.sanitize(input)).isEqualTo("*** ".repeat(SanitizerPipeline.MAX_RETAINED_CAPACITY / 4).trim());
+        assertThat(pipeline.sanitize("secret")).isEqualTo("***");
+    }
+
+    /**
+     * Streaming a pipeline should give the same result as sanitizing the whole value, also with a stage that can't
+     * stream in between.
+     */
+    @Test
+    void pipeline_streaming() throws IOException {
+
+        SanitizerPipeline pipeline = new SanitizerPipeline(List.of(
+            new WordSanitizer(List.of("secret", "password"), "***"),
+            new SqlSanitizer(),
+            new HtmlSanitizer(),
+            new WordSanitizer(List.of("drop"), "#")));
+
+        String input = "  <b>password</b> /* secret */ DROP TABLE users; -- drop\n<i>drop</i> ".repeat(2_000);
+
+        StringWriter result = new StringWriter();
+        try (Writer writer = pipeline.sanitizing(result)) {
+            for (int i = 0; i < input.length(); i += 1_000) {
+                writer.write(input, i, Math.min(1_000, input.length() - i));
+            }
+        }
+
+        assertThat(result.toString()).isEqualTo(pipeline.sanitize(input));
+    }
+
+    /**
+     * Every pipeline gets its own version, but pipelines of the same sanitizer instances sanitize the same way.
+     */
+    @Test
+    void pipeline_sameSanitizers() {
+        WordSanitizer words = new WordSanitizer(List.of("secret"), "***");
+        SqlSanitizer sql = new SqlSanitizer();
+
+        SanitizerPipeline pipeline = new SanitizerPipeline(List.of(words, sql));
+        SanitizerPipeline rebuilt = new SanitizerPipeline(List.of(words, sql));
+
+        assertThat(rebuilt.version()).isNotEqualTo(pipeline.version());
+        assertThat(rebuilt.hasSameSanitizers(pipeline)).isTrue();
+        assertThat(new SanitizerPipeline(List.of(sql, words)).hasSameSanitizers(pipeline)).isFalse();
+        assertThat(new SanitizerPipeline(List.of(new WordSanitizer(List.of("secret"), "***"), sql))
+            .hasSameSanitizers(pipeline)).isFalse();
+    }
+
+    @Test
+    void segments_endBeforeWhiteSpace() {
+        assertThat(SanitizerPipeline.segments("aaa bbb\tccc", 2)).isEqualTo(new int[]{0, 3, 7, 11});
+        assertThat(SanitizerPipeline.segments("aaa bbb\tccc", 5)).isEqualTo(new int[]{0, 7, 11});
+        assertThat(SanitizerPipeline.segments("aaaaaaaaaa", 2)).isEqualTo(new int[]{0, 10});
+        assertThat(SanitizerPipeline.segments("a b", 5)).isEqualTo(new int[]{0, 3});
+    }
+
+    /**
+     * Sanitized in segments, the result should be the same as in one go. The masks create and remove white space,
+     * and the small alphabet makes sure the words are all over the text.
+     */
+    @Test
+    void randomised_segmented() {
+        Random random = new Random(5);
+        ForkJoinPool pool = new ForkJoinPool(3);
+        try {
+            for (int round = 0; round < 200; round++) {
+                List<Sanitizer> stages = new ArrayList<>();
+                for (int i = 0; i < 1 + random.nextInt(3); i++) {
+                    stages.add(WordSanitizer.of(
+                        List.of(randomText(random, 1 + random.nextInt(3), "ab"), randomText(random, 2, "ab.")),
+                        randomText(random, random.nextInt(4), "ab* ")));
+                }
+                SanitizerPipeline pipeline = new SanitizerPipeline(stages);
+                assertThat(pipeline.supportsSegmentation()).isTrue();
+
+                for (int t = 0; t < 10; t++) {
+                    String text = randomText(random, random.nextInt(200), "abAB. \n");
+                    assertThat(pipeline.sanitize(text, 1 + random.nextInt(10), pool))
+                        .as("text '%s'", text)
+                        .isEqualTo(pipeline.sanitize(text));
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * A single stage that can't be split at white space, and the value is sanitized in one go.
+     */
+    @Test
+    void segmented_htmlOptsOut() {
+        SanitizerPipeline pipeline = new SanitizerPipeline(List.of(
+            WordSanitizer.of(List.of("secret"), "***"),
+            new HtmlSanitizer()));
+
+        String input = "<p title='a secret'>secret <b>and more</b></p> ".repeat(100);
+
+        assertThat(pipeline.supportsSegmentation()).isFalse();
+        assertThat(pipeline.sanitize(input, 10, ForkJoinPool.commonPool())).isEqualTo(pipeline.sanitize(input));
+    }
+}
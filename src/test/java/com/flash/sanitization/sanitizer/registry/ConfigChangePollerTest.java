@@ -0,0 +1,138 @@
+package com.flash.sanitization.sanitizer.registry;
+
+import com.flash.sanitization.db.dao.ConfigChangeDao;
+import com.flash.sanitization.db.record.ConfigChangeRecord;
+import com.flash.sanitization.sanitizer.properties.CacheProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ConfigChangePollerTest {
+
+    @Mock
+    private ConfigChangeDao configChangeDao;
+
+    @Mock
+    private SanitizerRegistry registry;
+
+    private ConfigChangePoller poller;
+
+    @BeforeEach
+    void setUp() {
+        CacheProperties cacheProperties = new CacheProperties();
+        // polled by the test itself
+        cacheProperties.setChangePollInterval(Duration.ZERO);
+
+        when(configChangeDao.findLatestVersion()).thenReturn(10L);
+
+        poller = new ConfigChangePoller(configChangeDao, registry, cacheProperties);
+        poller.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        poller.shutdown();
+    }
+
+    /**
+     * Changes from before the poller started were already part of what's cached.
+     */
+    @Test
+    void poll_fromLatestVersion() {
+
+        when(configChangeDao.findChangesSince(10L, Set.of())).thenReturn(List.of());
+
+        assertThat(poller.poll()).isEqualTo(0);
+        verify(registry, never()).invalidateSanitizer(anyString());
+        verify(registry, never()).invalidateInputType(anyString());
+    }
+
+    @Test
+    void poll_invalidatesChanges() {
+
+        when(configChangeDao.findChangesSince(10L, Set.of())).thenReturn(List.of(
+            new ConfigChangeRecord(11L, "words", null),
+            new ConfigChangeRecord(12L, null, "comment")));
+        when(configChangeDao.findChangesSince(12L, Set.of())).thenReturn(List.of());
+
+        assertThat(poller.poll()).isEqualTo(2);
+        verify(registry).invalidateSanitizer("words");
+        verify(registry).invalidateInputType("comment");
+
+        // nothing new
+        assertThat(poller.poll()).isEqualTo(0);
+    }
+
+    /**
+     * A change that's committed after a later one is still applied, and only once.
+     */
+    @Test
+    void poll_lateCommit() {
+
+        when(configChangeDao.findChangesSince(10L, Set.of())).thenReturn(List.of(
+            new ConfigChangeRecord(12L, "words", null)));
+        when(configChangeDao.findChangesSince(12L, Set.of(11L))).thenReturn(List.of(
+            new ConfigChangeRecord(11L, "html", null)));
+        when(configChangeDao.findChangesSince(12L, Set.of())).thenReturn(List.of());
+
+        assertThat(poller.poll()).isEqualTo(1);
+        verify(registry).invalidateSanitizer("words");
+
+        assertThat(poller.poll()).isEqualTo(1);
+        verify(registry).invalidateSanitizer("html");
+
+        assertThat(poller.poll()).isEqualTo(0);
+    }
+
+    /**
+     * The changes that every node has had time to see are deleted, up to the last version that was seen. Not on
+     * every poll.
+     */
+    @Test
+    void poll_cleansUpLog() {
+
+        when(configChangeDao.findChangesSince(10L, Set.of())).thenReturn(List.of(
+            new ConfigChangeRecord(12L, "words", null)));
+        when(configChangeDao.findChangesSince(12L, Set.of(11L))).thenReturn(List.of());
+
+        Instant before = Instant.now().minus(ConfigChangePoller.MISSING_TIMEOUT);
+        poller.poll();
+        poller.poll();
+
+        ArgumentCaptor<Instant> deleteBefore = ArgumentCaptor.forClass(Instant.class);
+        verify(configChangeDao).deleteChangesBefore(eq(12L), deleteBefore.capture());
+        assertThat(deleteBefore.getValue()).isBetween(before, Instant.now().minus(ConfigChangePoller.MISSING_TIMEOUT));
+    }
+
+    /**
+     * A jump in the versions is the database skipping ahead, not changes in progress.
+     */
+    @Test
+    void poll_largeJump() {
+
+        long jump = 10L + ConfigChangePoller.MAX_MISSING + 2;
+        when(configChangeDao.findChangesSince(10L, Set.of())).thenReturn(List.of(
+            new ConfigChangeRecord(jump, null, "comment")));
+        when(configChangeDao.findChangesSince(eq(jump), eq(Set.of()))).thenReturn(List.of());
+
+        assertThat(poller.poll()).isEqualTo(1);
+        assertThat(poller.poll()).isEqualTo(0);
+    }
+}
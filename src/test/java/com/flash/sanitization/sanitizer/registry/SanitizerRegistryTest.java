@@ -4,28 +4,49 @@ import com.flash.sanitization.db.dao.InputTypeDao;
 import com.flash.sanitization.db.record.ConfigRecord;
 import com.flash.sanitization.sanitizer.JacksonConfig;
 import com.flash.sanitization.sanitizer.SanitizationCacheConfig;
+import com.flash.sanitization.sanitizer.cache.ResultCache;
+import com.flash.sanitization.sanitizer.exception.NoSanitizerException;
 import com.flash.sanitization.sanitizer.factory.WordSanitizerFactory;
 import com.flash.sanitization.sanitizer.implementation.HtmlSanitizer;
 import com.flash.sanitization.sanitizer.implementation.SqlSanitizer;
 import com.flash.sanitization.sanitizer.implementation.WordSanitizer;
+import com.flash.sanitization.sanitizer.metrics.MeterConfig;
+import com.flash.sanitization.sanitizer.metrics.SanitizerMetricBundle;
 import com.flash.sanitization.sanitizer.pipeline.SanitizerPipeline;
 import com.flash.sanitization.sanitizer.properties.CacheProperties;
+import com.flash.sanitization.sanitizer.properties.DefaultSanitizerProperties;
 import com.flash.sanitization.sanitizer.service.SanitizationService;
 import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import org.hibernate.cfg.CacheSettings;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+import static org.assertj.core.api.AssertionsForClassTypes.assertThatThrownBy;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @SpringBootTest(
@@ -34,10 +55,12 @@ import static org.mockito.Mockito.when;
         SanitizerRegistry.class,
         HtmlSanitizer.class, // this should be injected into the registry by spring
         SqlSanitizer.class, // this should be injected into the registry by spring
+        DefaultSanitizerProperties.class,
+        SanitizerMetricBundle.class,
         Cache.class,
         CacheSettings.class}
 )
-@Import({SanitizationCacheConfig.class, JacksonConfig.class})
+@Import({SanitizationCacheConfig.class, JacksonConfig.class, MeterConfig.class})
 @ExtendWith(MockitoExtension.class)
 class SanitizerRegistryTest {
 
@@ -50,9 +73,277 @@ class SanitizerRegistryTest {
     @MockBean
     private InputTypeDao inputTypeDao;
 
+    @MockBean
+    private ResultCache resultCache;
+
     @Autowired
     private SanitizerRegistry sanitizerRegistry;
 
+    @Autowired
+    private DefaultSanitizerProperties defaultSanitizerProperties;
+
+    @Nested
+    class Default {
+
+        /**
+         * The default sanitizer is built once and shared, not rebuilt on every call.
+         */
+        @Test
+        void default_isShared() {
+            assertThat(sanitizerRegistry.getDefault()).isSameAs(sanitizerRegistry.getDefault());
+            assertThat(sanitizerRegistry.getDefault().sanitize("ThIS ACTION IS COOL")).isEqualTo("ThIS *** IS COOL");
+        }
+
+        /**
+         * When the source changes the default sanitizer is rebuilt.
+         */
+        @Test
+        void default_reloadedWhenSourceChanges() throws IOException {
+
+            String originalSrc = defaultSanitizerProperties.getSrc();
+            Path filePath = Path.of("./defaultWordList.txt");
+            try {
+                Files.writeString(filePath, "[\"COOL\"]");
+                defaultSanitizerProperties.setSrc("FILE:" + filePath);
+
+                sanitizerRegistry.reloadDefaultIfChanged();
+                assertThat(sanitizerRegistry.getDefault().sanitize("ThIS ACTION IS COOL")).isEqualTo("ThIS ACTION IS ***");
+            } finally {
+                defaultSanitizerProperties.setSrc(originalSrc);
+                sanitizerRegistry.reloadDefaultIfChanged();
+                Files.deleteIfExists(filePath);
+            }
+        }
+    }
+
+    @Autowired
+    private SqlSanitizer sqlSanitizer;
+
+    @Autowired
+    private WordSanitizerFactory wordSanitizerFactory;
+
+    @Autowired
+    private SanitizerMetricBundle sanitizerMetricBundle;
+
+    @Autowired
+    @Qualifier("pipeline-loader")
+    private ExecutorService pipelineLoader;
+
+    /**
+     * The cache properties are mocked to zero, which turns the shared registry's caches off. Tests about the caching
+     * use a registry of their own.
+     */
+    private SanitizerRegistry cachingRegistry() {
+        return new SanitizerRegistry(
+            Map.of("sql-sanitizer", sqlSanitizer),
+            Caffeine.newBuilder().build(),
+            Caffeine.newBuilder(),
+            pipelineLoader,
+            Map.of("word-sanitizer-factory", wordSanitizerFactory),
+            inputTypeDao,
+            defaultSanitizerProperties,
+            sanitizerMetricBundle,
+            resultCache);
+    }
+
+    @Nested
+    class Loading {
+
+        /**
+         * Concurrent requests for an input type that isn't cached should share a single load.
+         */
+        @Test
+        void concurrentMisses_loadOnce() throws Exception {
+            SanitizerRegistry sanitizerRegistry = cachingRegistry();
+
+            ConfigRecord sqlConfig = new ConfigRecord("sql-sanitizer", null, null);
+            when(inputTypeDao.findConfigByInputType("popular")).thenAnswer(invocation -> {
+                Thread.sleep(300);
+                return List.of(sqlConfig);
+            });
+
+            int threads = 8;
+            CyclicBarrier start = new CyclicBarrier(threads);
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            try {
+                List<Future<SanitizerPipeline>> pipelines = new ArrayList<>();
+                for (int i = 0; i < threads; i++) {
+                    pipelines.add(executor.submit(() -> {
+                        start.await();
+                        return sanitizerRegistry.getPipeline("popular");
+                    }));
+                }
+
+                SanitizerPipeline first = pipelines.get(0).get();
+                for (Future<SanitizerPipeline> pipeline : pipelines) {
+                    assertThat(pipeline.get()).isSameAs(first);
+                }
+            } finally {
+                executor.shutdown();
+            }
+
+            verify(inputTypeDao, times(1)).findConfigByInputType("popular");
+        }
+
+        /**
+         * The pipeline is loaded by the request that missed it, so the load can see what the request can. A failed load
+         * isn't cached.
+         */
+        @Test
+        void load_onRequestThread() {
+            SanitizerRegistry sanitizerRegistry = cachingRegistry();
+
+            List<Thread> loadedOn = new ArrayList<>();
+            when(inputTypeDao.findConfigByInputType("query")).thenAnswer(invocation -> {
+                loadedOn.add(Thread.currentThread());
+                return loadedOn.size() == 1 ? List.of() : List.of(new ConfigRecord("sql-sanitizer", null, null));
+            });
+
+            assertThatThrownBy(() -> sanitizerRegistry.getPipeline("query")).isInstanceOf(NoSanitizerException.class);
+            assertThat(sanitizerRegistry.getPipeline("query")).isSameAs(sanitizerRegistry.getPipeline("query"));
+
+            assertThat(loadedOn.size()).isEqualTo(2);
+            assertThat(loadedOn.get(0)).isSameAs(Thread.currentThread());
+        }
+    }
+
+    @Nested
+    class Invalidation {
+
+        private final ConfigRecord words = new ConfigRecord(
+            "words",
+            "word-sanitizer-factory",
+            new HashMap<>() {{
+                put("mask", "***");
+                put("src", "LIST:secret");
+            }});
+
+        private final ConfigRecord sql = new ConfigRecord("sql-sanitizer", null, null);
+
+        /**
+         * Only the sanitizer that changed and the pipelines using it are rebuilt.
+         */
+        @Test
+        void sanitizer_onlyAffectedPipelines() {
+            SanitizerRegistry sanitizerRegistry = cachingRegistry();
+
+            when(inputTypeDao.findConfigByInputType("comment")).thenReturn(List.of(words, sql));
+            when(inputTypeDao.findConfigByInputType("query")).thenReturn(List.of(sql));
+
+            SanitizerPipeline comment = sanitizerRegistry.getPipeline("comment");
+            SanitizerPipeline query = sanitizerRegistry.getPipeline("query");
+            assertThat(comment.sanitize("a secret")).isEqualTo("a ***");
+
+            ConfigRecord changed = new ConfigRecord(
+                "words",
+                "word-sanitizer-factory",
+                new HashMap<>() {{
+                    put("mask", "###");
+                    put("src", "LIST:secret");
+                }});
+            when(inputTypeDao.findConfigByInputType("comment")).thenReturn(List.of(changed, sql));
+
+            sanitizerRegistry.invalidateSanitizer("words");
+
+            assertThat(sanitizerRegistry.getPipeline("query")).isSameAs(query);
+            assertThat(sanitizerRegistry.getPipeline("comment")).isNotSameAs(comment);
+            assertThat(sanitizerRegistry.getPipeline("comment").sanitize("a secret")).isEqualTo("a ###");
+            verify(inputTypeDao, times(1)).findConfigByInputType("query");
+            verify(resultCache).invalidate("comment");
+            verify(resultCache, never()).invalidate("query");
+        }
+
+        /**
+         * A pipeline that's loading while a sanitizer it uses changes may have read the configuration from before the
+         * change. The request waiting for it gets it, but it's not kept.
+         */
+        @Test
+        void sanitizer_whileLoading() throws Exception {
+            SanitizerRegistry sanitizerRegistry = cachingRegistry();
+
+            CountDownLatch reading = new CountDownLatch(1);
+            CountDownLatch invalidated = new CountDownLatch(1);
+            when(inputTypeDao.findConfigByInputType("comment"))
+                .thenAnswer(invocation -> {
+                    reading.countDown();
+                    invalidated.await();
+                    return List.of(words, sql);
+                })
+                .thenReturn(List.of(sql));
+
+            ExecutorService executor = Executors.newSingleThreadExecutor();
+            try {
+                Future<SanitizerPipeline> loading = executor.submit(() -> sanitizerRegistry.getPipeline("comment"));
+                reading.await();
+                sanitizerRegistry.invalidateSanitizer("words");
+                invalidated.countDown();
+
+                assertThat(loading.get().references("words")).isTrue();
+                assertThat(sanitizerRegistry.getPipeline("comment").references("words")).isFalse();
+            } finally {
+                executor.shutdown();
+            }
+            verify(inputTypeDao, times(2)).findConfigByInputType("comment");
+        }
+
+        /**
+         * A sanitizer built by a load that read the configuration from before the change isn't kept either, the next
+         * pipeline using it gets the new one.
+         */
+        @Test
+        void sanitizer_whileLoadingRebuilt() throws Exception {
+            SanitizerRegistry sanitizerRegistry = cachingRegistry();
+
+            ConfigRecord changed = new ConfigRecord(
+                "words",
+                "word-sanitizer-factory",
+                new HashMap<>() {{
+                    put("mask", "###");
+                    put("src", "LIST:secret");
+                }});
+            CountDownLatch reading = new CountDownLatch(1);
+            CountDownLatch invalidated = new CountDownLatch(1);
+            when(inputTypeDao.findConfigByInputType("comment"))
+                .thenAnswer(invocation -> {
+                    reading.countDown();
+                    invalidated.await();
+                    return List.of(words, sql);
+                });
+            when(inputTypeDao.findConfigByInputType("note")).thenReturn(List.of(changed));
+
+            ExecutorService executor = Executors.newSingleThreadExecutor();
+            try {
+                Future<SanitizerPipeline> loading = executor.submit(() -> sanitizerRegistry.getPipeline("comment"));
+                reading.await();
+                sanitizerRegistry.invalidateSanitizer("words");
+                invalidated.countDown();
+
+                assertThat(loading.get().sanitize("a secret")).isEqualTo("a ***");
+                assertThat(sanitizerRegistry.getPipeline("note").sanitize("a secret")).isEqualTo("a ###");
+            } finally {
+                executor.shutdown();
+            }
+        }
+
+        @Test
+        void inputType_onlyThatPipeline() {
+            SanitizerRegistry sanitizerRegistry = cachingRegistry();
+
+            when(inputTypeDao.findConfigByInputType("comment")).thenReturn(List.of(words, sql));
+            when(inputTypeDao.findConfigByInputType("query")).thenReturn(List.of(sql));
+
+            SanitizerPipeline comment = sanitizerRegistry.getPipeline("comment");
+            SanitizerPipeline query = sanitizerRegistry.getPipeline("query");
+
+            sanitizerRegistry.invalidateInputType("query");
+
+            assertThat(sanitizerRegistry.getPipeline("comment")).isSameAs(comment);
+            assertThat(sanitizerRegistry.getPipeline("query")).isNotSameAs(query);
+            verify(resultCache).invalidate("query");
+            verify(resultCache, never()).invalidate("comment");
+        }
+    }
+
     @Nested
     class Combined {
 
@@ -88,6 +379,36 @@ class SanitizerRegistryTest {
         }
     }
 
+    @Nested
+    class Optimized {
+
+        /**
+         * Adjacent word sanitizers run as a single stage, with the same result as one after the other.
+         */
+        @Test
+        void adjacentWords_fused() {
+            ConfigRecord profanity = new ConfigRecord(
+                "profanity",
+                "word-sanitizer-factory",
+                new HashMap<>(Map.of("mask", "[CENSORED]", "src", "LIST:darn,heck")));
+            ConfigRecord codenames = new ConfigRecord(
+                "codenames",
+                "word-sanitizer-factory",
+                new HashMap<>(Map.of("mask", "---", "src", "LIST:bluebird,censored")));
+            ConfigRecord html = new ConfigRecord("html-sanitizer", null, null);
+
+            when(inputTypeDao.findConfigByInputType("fused")).thenReturn(List.of(profanity, codenames, html));
+            SanitizerPipeline pipeline = sanitizerRegistry.getPipeline("fused");
+
+            assertThat(pipeline.getPlan().size()).isEqualTo(2);
+            assertThat(pipeline.getPlan().get(0).fused()).isTrue();
+            assertThat(pipeline.getPlan().get(0).sanitizers()).isEqualTo(List.of("profanity", "codenames"));
+            assertThat(pipeline.references("codenames")).isTrue();
+
+            assertThat(pipeline.sanitize("Heck, bluebird said darn")).isEqualTo("[---], --- said [---]");
+        }
+    }
+
     @Nested
     class Word {
         /**
@@ -0,0 +1,113 @@
+package com.flash.sanitization.sanitizer.registry;
+
+import com.flash.sanitization.db.dao.InputTypeDao;
+import com.flash.sanitization.db.record.ConfigRecord;
+import com.flash.sanitization.sanitizer.exception.NoFactoryException;
+import com.flash.sanitization.sanitizer.implementation.Sanitizer;
+import com.flash.sanitization.sanitizer.metrics.SanitizerMetricBundle;
+import com.flash.sanitization.sanitizer.pipeline.SanitizerPipeline;
+import com.flash.sanitization.sanitizer.properties.WarmUpProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.boot.DefaultApplicationArguments;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class SanitizerWarmUpTest {
+
+    @Mock
+    private SanitizerRegistry registry;
+
+    @Mock
+    private InputTypeDao inputTypeDao;
+
+    @Mock
+    private Sanitizer defaultSanitizer;
+
+    private final WarmUpProperties warmUpProperties = new WarmUpProperties();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private SanitizerWarmUp warmUp;
+
+    @BeforeEach
+    void setUp() {
+        warmUpProperties.setIterations(3);
+        warmUp = new SanitizerWarmUp(
+            registry,
+            inputTypeDao,
+            warmUpProperties,
+            new SanitizerMetricBundle(meterRegistry));
+    }
+
+    /**
+     * Every input type is built from the config retrieved in one go, and the workload is sent through every
+     * pipeline. An input type that can't be built doesn't stop the rest.
+     */
+    @Test
+    void warmUp_allPipelines() {
+
+        List<ConfigRecord> htmlConfig = List.of(new ConfigRecord("html-sanitizer", null, null));
+        List<ConfigRecord> brokenConfig = List.of(new ConfigRecord("broken", "missing", null));
+        Sanitizer html = mock(Sanitizer.class);
+
+        when(inputTypeDao.findAllConfig()).thenReturn(Map.of("html", htmlConfig, "broken", brokenConfig));
+        when(registry.getDefault()).thenReturn(defaultSanitizer);
+        when(registry.preloadPipeline("html", htmlConfig)).thenReturn(new SanitizerPipeline(List.of(html)));
+        when(registry.preloadPipeline("broken", brokenConfig)).thenThrow(new NoFactoryException("missing"));
+
+        warmUp.run(new DefaultApplicationArguments());
+
+        verify(inputTypeDao, times(1)).findAllConfig();
+        verify(registry, never()).getPipeline(anyString());
+        verify(html, times(3 * SanitizerWarmUp.WORKLOAD.size())).sanitize(anyString());
+        verify(defaultSanitizer, times(3 * SanitizerWarmUp.WORKLOAD.size())).sanitize(anyString());
+        assertThat(meterRegistry.timer("sanitizer.warmup.time").count()).isEqualTo(1L);
+    }
+
+    /**
+     * The workload stops once the time limit has passed, but the pipelines are still built.
+     */
+    @Test
+    void warmUp_timeLimit() {
+
+        warmUpProperties.setIterations(Integer.MAX_VALUE);
+        warmUpProperties.setTimeLimit(Duration.ofMillis(50));
+
+        List<ConfigRecord> htmlConfig = List.of(new ConfigRecord("html-sanitizer", null, null));
+        when(inputTypeDao.findAllConfig()).thenReturn(Map.of("html", htmlConfig));
+        when(registry.getDefault()).thenReturn(defaultSanitizer);
+        when(registry.preloadPipeline("html", htmlConfig)).thenReturn(new SanitizerPipeline(List.of()));
+
+        warmUp.run(new DefaultApplicationArguments());
+
+        verify(registry, times(1)).preloadPipeline(any(), any());
+        assertThat(meterRegistry.timer("sanitizer.warmup.time").count()).isEqualTo(1L);
+    }
+
+    @Test
+    void warmUp_disabled() {
+
+        warmUpProperties.setEnabled(false);
+
+        warmUp.run(new DefaultApplicationArguments());
+
+        verifyNoInteractions(registry, inputTypeDao);
+    }
+}
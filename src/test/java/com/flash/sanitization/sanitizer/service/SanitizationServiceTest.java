@@ -0,0 +1,386 @@
+package com.flash.sanitization.sanitizer.service;
+
+import com.flash.sanitization.db.dao.InputTypeDao;
+import com.flash.sanitization.sanitizer.cache.ResultCache;
+import com.flash.sanitization.sanitizer.columns.ColumnFormat;
+import com.flash.sanitization.sanitizer.exception.BatchSizeException;
+import com.flash.sanitization.sanitizer.exception.InvalidColumnsException;
+import com.flash.sanitization.sanitizer.exception.NoSanitizerException;
+import com.flash.sanitization.sanitizer.exception.SanitizationException;
+import com.flash.sanitization.sanitizer.implementation.SqlSanitizer;
+import com.flash.sanitization.sanitizer.implementation.WordSanitizer;
+import com.flash.sanitization.sanitizer.metrics.SanitizerMetricBundle;
+import com.flash.sanitization.sanitizer.pipeline.SanitizerPipeline;
+import com.flash.sanitization.sanitizer.properties.BatchProperties;
+import com.flash.sanitization.sanitizer.properties.ResultCacheProperties;
+import com.flash.sanitization.sanitizer.registry.SanitizerRegistry;
+import com.flash.sanitization.sanitizer.service.SanitizationService.BatchItem;
+import com.flash.sanitization.sanitizer.service.SanitizationService.BatchResult;
+import com.flash.sanitization.sanitizer.service.SanitizationService.LineFormat;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.util.unit.DataSize;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+import static org.assertj.core.api.AssertionsForClassTypes.assertThatThrownBy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class SanitizationServiceTest {
+
+    @Mock
+    private SanitizerRegistry registry;
+
+    @Mock
+    private InputTypeDao inputTypeDao;
+
+    private final ExecutorService executor = new ForkJoinPool(3);
+
+    private final BatchProperties batchProperties = new BatchProperties();
+
+    private SanitizationService service;
+
+    @BeforeEach
+    void setUp() {
+        batchProperties.setChunkSize(4);
+        batchProperties.setMaxItems(1_000);
+        batchProperties.setColumnBlockSize(DataSize.ofBytes(64));
+
+        SanitizerMetricBundle sanitizerMetricBundle = new SanitizerMetricBundle(new SimpleMeterRegistry());
+        service = new SanitizationService(
+            registry,
+            inputTypeDao,
+            batchProperties,
+            executor,
+            sanitizerMetricBundle,
+            new ResultCache(new ResultCacheProperties(), sanitizerMetricBundle));
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Enough items for several chunks, with mixed input types. The results should be in order and every input type
+     * only resolved once.
+     */
+    @Test
+    void batch_inOrder() {
+
+        when(registry.getPipeline("word")).thenReturn(
+            new SanitizerPipeline(List.of(new WordSanitizer(List.of("secret"), "***"))));
+        when(registry.getPipeline("sql")).thenReturn(
+            new SanitizerPipeline(List.of(new SqlSanitizer())));
+        when(registry.getDefault()).thenReturn(new WordSanitizer(List.of("default"), "###"));
+
+        List<BatchItem> items = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            items.add(switch (i % 3) {
+                case 0 -> new BatchItem("word", "secret " + i);
+                case 1 -> new BatchItem("sql", "DROP " + i);
+                default -> new BatchItem(null, "default " + i);
+            });
+        }
+
+        List<BatchResult> results = service.sanitizeBatch(items);
+
+        assertThat(results.size()).isEqualTo(100);
+        for (int i = 0; i < 100; i++) {
+            String expected = switch (i % 3) {
+                case 0 -> "*** " + i;
+                case 1 -> String.valueOf(i);
+                default -> "### " + i;
+            };
+            assertThat(results.get(i)).isEqualTo(new BatchResult(expected, null));
+        }
+
+        verify(registry, times(1)).getPipeline("word");
+        verify(registry, times(1)).getPipeline("sql");
+        verify(registry, times(1)).getDefault();
+    }
+
+    /**
+     * A value from the threshold on is sanitized in segments, with the same result.
+     */
+    @Test
+    void string_segmented() {
+        batchProperties.setSegmentThreshold(1_000);
+        batchProperties.setSegmentLength(100);
+
+        SanitizerPipeline pipeline = new SanitizerPipeline(List.of(
+            WordSanitizer.of(List.of("secret", "token"), ""),
+            WordSanitizer.of(List.of("password"), "***")));
+        assertThat(pipeline.supportsSegmentation()).isTrue();
+        when(registry.getPipeline("word")).thenReturn(pipeline);
+
+        String value = "  a secret password, and a token\n".repeat(1_000);
+
+        assertThat(service.santizeString(value, "word")).isEqualTo(pipeline.sanitize(value));
+        assertThat(service.santizeString(value, "word")).startsWith("a  ***, and a \n  a  ***");
+    }
+
+    /**
+     * An unknown input type fails its own items, not the batch.
+     */
+    @Test
+    void batch_perItemErrors() {
+
+        when(registry.getPipeline("word")).thenReturn(
+            new SanitizerPipeline(List.of(new WordSanitizer(List.of("secret"), "***"))));
+        when(registry.getPipeline("unknown")).thenThrow(new NoSanitizerException("unknown"));
+
+        List<BatchResult> results = service.sanitizeBatch(List.of(
+            new BatchItem("word", "secret"),
+            new BatchItem("unknown", "secret"),
+            new BatchItem("word", null),
+            new BatchItem("unknown", "secret")));
+
+        assertThat(results.get(0)).isEqualTo(new BatchResult("***", null));
+        assertThat(results.get(1).sanitized()).isNull();
+        assertThat(results.get(1).error()).contains("Could not find a sanitizer matching '{unknown}'");
+        assertThat(results.get(2)).isEqualTo(new BatchResult("", null));
+        assertThat(results.get(3)).isEqualTo(results.get(1));
+
+        verify(registry, times(1)).getPipeline("unknown");
+    }
+
+    @Test
+    void batch_tooLarge() {
+
+        List<BatchItem> items = new ArrayList<>();
+        for (int i = 0; i < 1_001; i++) {
+            items.add(new BatchItem("word", "value"));
+        }
+
+        assertThatThrownBy(() -> service.sanitizeBatch(items)).isInstanceOf(BatchSizeException.class);
+    }
+
+    /**
+     * Enough lines for more chunks than there's room for, the results should still all be written in order.
+     */
+    @Test
+    void lines_inOrder() throws IOException {
+
+        when(registry.getPipeline("word")).thenReturn(
+            new SanitizerPipeline(List.of(new WordSanitizer(List.of("secret"), "***"))));
+        when(registry.getPipeline("unknown")).thenThrow(new NoSanitizerException("unknown"));
+
+        StringBuilder input = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            input.append(switch (i % 5) {
+                case 0 -> "unknown|secret " + i;
+                case 1 -> "not a request " + i;
+                case 2 -> "   ";
+                default -> "word|secret " + i;
+            }).append('\n');
+        }
+
+        StringWriter output = new StringWriter();
+        service.sanitizeLines(new BufferedReader(new StringReader(input.toString())), output, new PipeFormat());
+
+        String[] lines = output.toString().split("\n");
+        assertThat(lines.length).isEqualTo(400);
+        for (int i = 0, line = 0; i < 500; i++) {
+            switch (i % 5) {
+                case 0 -> assertThat(lines[line++]).contains("Could not find a sanitizer matching '{unknown}'");
+                case 1 -> assertThat(lines[line++]).contains("Line %d is not a valid request".formatted(i + 1));
+                case 2 -> { }
+                default -> assertThat(lines[line++]).isEqualTo("*** " + i);
+            }
+        }
+
+        verify(registry, times(1)).getPipeline("word");
+        verify(registry, times(1)).getPipeline("unknown");
+    }
+
+    /**
+     * Once the results can't be written the rest of the stream isn't read anymore.
+     */
+    @Test
+    void lines_writeFails() {
+
+        when(registry.getPipeline("word")).thenReturn(
+            new SanitizerPipeline(List.of(new WordSanitizer(List.of("secret"), "***"))));
+
+        Writer failing = new Writer() {
+            @Override
+            public void write(char[] buffer, int offset, int length) throws IOException {
+                throw new IOException("closed");
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+
+        int[] read = {0};
+        BufferedReader endless = new BufferedReader(new StringReader("")) {
+            @Override
+            public String readLine() {
+                read[0]++;
+                return "word|secret";
+            }
+        };
+
+        assertThatThrownBy(() -> service.sanitizeLines(endless, failing, new PipeFormat()))
+            .isInstanceOf(IOException.class)
+            .hasMessage("closed");
+        assertThat(read[0]).isGreaterThan(0);
+    }
+
+    /**
+     * A writer that fails on something other than an {@link IOException} still stops the stream, rather than leaving
+     * the reading waiting on a full queue.
+     */
+    @Test
+    @Timeout(30)
+    void lines_writeFailsUnexpectedly() {
+
+        when(registry.getPipeline("word")).thenReturn(
+            new SanitizerPipeline(List.of(new WordSanitizer(List.of("secret"), "***"))));
+
+        Writer failing = new StringWriter() {
+            @Override
+            public void write(String text) {
+                throw new IllegalStateException("not writable");
+            }
+        };
+
+        BufferedReader endless = new BufferedReader(new StringReader("")) {
+            @Override
+            public String readLine() {
+                return "word|secret";
+            }
+        };
+
+        assertThatThrownBy(() -> service.sanitizeLines(endless, failing, new PipeFormat()))
+            .isInstanceOf(SanitizationException.class)
+            .hasMessage("Failed to write the stream")
+            .hasRootCauseMessage("not writable");
+    }
+
+    /**
+     * Blocks far smaller than the stream, with quoted line breaks. The header is written as it is.
+     */
+    @Test
+    void columns_inBlocks() throws IOException {
+
+        when(registry.getPipeline("word")).thenReturn(
+            new SanitizerPipeline(List.of(new WordSanitizer(List.of("secret"), "***"))));
+
+        StringBuilder input = new StringBuilder("id,kept,text\n");
+        StringBuilder expected = new StringBuilder("id,kept,text\n");
+        for (int i = 0; i < 300; i++) {
+            input.append("%d,secret,\"a secret,\nor %d\"\n".formatted(i, i));
+            expected.append("%d,secret,\"a ***,\nor %d\"\n".formatted(i, i));
+        }
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        service.sanitizeColumns(
+            new ByteArrayInputStream(input.toString().getBytes(StandardCharsets.UTF_8)),
+            () -> output,
+            ColumnFormat.CSV,
+            true,
+            Map.of("text", "word"));
+
+        assertThat(output.toString(StandardCharsets.UTF_8)).isEqualTo(expected.toString());
+        verify(registry, times(1)).getPipeline("word");
+    }
+
+    @Test
+    void columns_notInHeader() {
+
+        assertThatThrownBy(() -> service.sanitizeColumns(
+            new ByteArrayInputStream("id,text\n".getBytes(StandardCharsets.UTF_8)),
+            ByteArrayOutputStream::new,
+            ColumnFormat.CSV,
+            true,
+            Map.of("missing", "word")))
+            .isInstanceOf(InvalidColumnsException.class);
+    }
+
+    /**
+     * A quote that's never closed makes the rest of an endless stream a single record, it's only read up to the
+     * maximum size of a record.
+     */
+    @Test
+    void columns_quoteNotClosed() {
+        batchProperties.setMaxRecordSize(DataSize.ofBytes(1_000));
+
+        when(registry.getPipeline("word")).thenReturn(
+            new SanitizerPipeline(List.of(new WordSanitizer(List.of("secret"), "***"))));
+
+        byte[] records = "1,a secret\n".getBytes(StandardCharsets.UTF_8);
+        int[] read = {0};
+        InputStream endless = new InputStream() {
+            @Override
+            public int read() {
+                return read[0]++ == 0 ? '"' : records[read[0] % records.length];
+            }
+        };
+
+        assertThatThrownBy(() -> service.sanitizeColumns(
+            endless,
+            ByteArrayOutputStream::new,
+            ColumnFormat.CSV,
+            false,
+            Map.of("1", "word")))
+            .isInstanceOf(InvalidColumnsException.class)
+            .hasMessageContaining("1000 bytes");
+        assertThat(read[0]).isLessThanOrEqualTo(1_000);
+    }
+
+    /**
+     * An input type and the value to sanitize, split by a pipe.
+     */
+    private static class PipeFormat implements LineFormat<String[]> {
+
+        @Override
+        public String[] parse(String line) {
+            String[] request = line.split("\\|", 2);
+            if (request.length != 2) {
+                throw new IllegalArgumentException("no pipe");
+            }
+            return request;
+        }
+
+        @Override
+        public BatchItem item(String[] request) {
+            return new BatchItem(request[0], request[1]);
+        }
+
+        @Override
+        public String format(String[] request, BatchResult result) {
+            return Objects.isNull(result.error()) ? result.sanitized() : result.error();
+        }
+    }
+}